@@ -0,0 +1,86 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.common.ByteArray;
+import com.github.dtprj.dongting.dtkv.KvReq;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode KvReq of put and batch put, which use EncodeUtil to encode bytes and objects.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeUtilBenchmark {
+
+    private final ByteBuffer buf = ByteBuffer.allocate(8192);
+    private final EncodeContext context = new EncodeContext(null);
+
+    private KvReq putReq;
+    private KvReq batchPutReq;
+
+    @Setup
+    public void setup() {
+        putReq = new KvReq(1, "test_key_0001".getBytes(StandardCharsets.UTF_8),
+                new ByteArray(new byte[64]), null, null, null);
+        ArrayList<byte[]> keys = new ArrayList<>();
+        ArrayList<ByteArray> values = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            keys.add(("test_key_" + i).getBytes(StandardCharsets.UTF_8));
+            values.add(new ByteArray(new byte[64]));
+        }
+        batchPutReq = new KvReq(1, null, null, keys, values, null);
+    }
+
+    private int encode(KvReq req) {
+        ByteBuffer buf = this.buf;
+        buf.clear();
+        context.reset();
+        req.encode(context, buf);
+        return buf.position();
+    }
+
+    @Benchmark
+    public int encodePut() {
+        return encode(putReq);
+    }
+
+    @Benchmark
+    public int encodeBatchPut() {
+        return encode(batchPutReq);
+    }
+}
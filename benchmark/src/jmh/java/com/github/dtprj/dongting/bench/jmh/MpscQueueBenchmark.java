@@ -0,0 +1,95 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.queue.MpscLinkedQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offer and poll MpscLinkedQueue in one thread, and offer/poll in a producer thread and a consumer thread
+ * (same as bench/queue/MpscQueueTest). The producer stops offering if there are too many pending elements,
+ * to avoid OOM when the consumer can't keep up.
+ *
+ * @author huangli
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MpscQueueBenchmark {
+
+    private static final Object DATA = new Object();
+    private static final int MAX_PENDING = 64 * 1024;
+    private static final int UPDATE_MASK = 255;
+
+    @State(Scope.Thread)
+    public static class LocalQueue {
+        final MpscLinkedQueue<Object> queue = MpscLinkedQueue.newInstance();
+    }
+
+    @State(Scope.Group)
+    public static class SharedQueue {
+        final MpscLinkedQueue<Object> queue = MpscLinkedQueue.newInstance();
+        // written by consumer only
+        volatile long consumed;
+    }
+
+    @State(Scope.Thread)
+    public static class Counter {
+        long count;
+    }
+
+    @Benchmark
+    public Object offerAndPoll(LocalQueue q) {
+        q.queue.offer(DATA);
+        return q.queue.relaxedPoll();
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean offer(SharedQueue q, Counter produced) {
+        if (produced.count - q.consumed >= MAX_PENDING) {
+            return false;
+        }
+        produced.count++;
+        return q.queue.offer(DATA);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public Object poll(SharedQueue q, Counter consumed) {
+        Object o = q.queue.relaxedPoll();
+        if (o != null && ((++consumed.count) & UPDATE_MASK) == 0) {
+            q.consumed = consumed.count;
+        }
+        return o;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.common.IntObjMap;
+import com.github.dtprj.dongting.common.LongObjMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Get and put (overwrite) random keys of IntObjMap and LongObjMap, HashMap is used as the baseline.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjMapBenchmark {
+
+    private static final Object VALUE = new Object();
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    private int[] keys;
+    private int index;
+
+    private IntObjMap<Object> intMap;
+    private LongObjMap<Object> longMap;
+    private HashMap<Integer, Object> hashMap;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(0);
+        intMap = new IntObjMap<>();
+        longMap = new LongObjMap<>();
+        hashMap = new HashMap<>();
+        keys = new int[size];
+        for (int i = 0; i < size; i++) {
+            int k = r.nextInt();
+            keys[i] = k;
+            intMap.put(k, VALUE);
+            longMap.put(k, VALUE);
+            hashMap.put(k, VALUE);
+        }
+    }
+
+    private int nextKey() {
+        int i = index + 1;
+        if (i == keys.length) {
+            i = 0;
+        }
+        index = i;
+        return keys[i];
+    }
+
+    @Benchmark
+    public Object intObjMapGet() {
+        return intMap.get(nextKey());
+    }
+
+    @Benchmark
+    public Object intObjMapPut() {
+        return intMap.put(nextKey(), VALUE);
+    }
+
+    @Benchmark
+    public Object longObjMapGet() {
+        return longMap.get(nextKey());
+    }
+
+    @Benchmark
+    public Object longObjMapPut() {
+        return longMap.put(nextKey(), VALUE);
+    }
+
+    @Benchmark
+    public Object hashMapGet() {
+        return hashMap.get(nextKey());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.bench.codec.DecodeTest;
+import com.github.dtprj.dongting.buf.DefaultPoolFactory;
+import com.github.dtprj.dongting.buf.RefBufferFactory;
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.DecoderCallback;
+import com.github.dtprj.dongting.codec.Encodable;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.PbParser;
+import com.github.dtprj.dongting.common.ByteArray;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.dtkv.KvReq;
+import com.github.dtprj.dongting.dtkv.server.KvReqCallback;
+import com.github.dtprj.dongting.raft.rpc.AppendReq;
+import com.github.dtprj.dongting.raft.sm.RaftCodecFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode AppendReq and KvReq with PbParser. If split is true, the message is split into 2 buffers at the
+ * last byte, so the resumable path is used.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PbParserBenchmark {
+
+    @Param({"false", "true"})
+    public boolean split;
+
+    private final DecodeContext decodeContext = new DecodeContext();
+    private final PbParser parser = new PbParser();
+    private AppendReq.Callback appendCallback;
+
+    private byte[] appendReq;
+    private byte[] kvReq;
+
+    @Setup
+    public void setup() {
+        decodeContext.setHeapPool(new RefBufferFactory(new DefaultPoolFactory().createPool(new Timestamp(), false), 128));
+        RaftCodecFactory codecFactory = new RaftCodecFactory() {
+            @Override
+            public DecoderCallback<? extends Encodable> createHeaderCallback(int bizType, DecodeContext context) {
+                return new ByteArray.Callback();
+            }
+
+            @Override
+            public DecoderCallback<? extends Encodable> createBodyCallback(int bizType, DecodeContext context) {
+                return new ByteArray.Callback();
+            }
+        };
+        appendCallback = new AppendReq.Callback(groupId -> codecFactory);
+
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        DecodeTest.encodeAppendReq(buf);
+        appendReq = toBytes(buf);
+
+        buf.clear();
+        KvReq req = new KvReq(1, "test_key_0001".getBytes(StandardCharsets.UTF_8),
+                new ByteArray(new byte[64]), null, null, null);
+        req.encode(new EncodeContext(null), buf);
+        kvReq = toBytes(buf);
+    }
+
+    private static byte[] toBytes(ByteBuffer buf) {
+        buf.flip();
+        byte[] bs = new byte[buf.remaining()];
+        buf.get(bs);
+        return bs;
+    }
+
+    private Object parse(byte[] data) {
+        PbParser parser = this.parser;
+        if (split) {
+            parser.parse(ByteBuffer.wrap(data, 0, data.length - 1));
+            return parser.parse(ByteBuffer.wrap(data, data.length - 1, 1));
+        } else {
+            return parser.parse(ByteBuffer.wrap(data));
+        }
+    }
+
+    @Benchmark
+    public Object decodeAppendReq() {
+        parser.prepareNext(decodeContext, appendCallback, appendReq.length);
+        return parse(appendReq);
+    }
+
+    @Benchmark
+    public Object decodeKvReq() {
+        parser.prepareNext(decodeContext, new KvReqCallback(), kvReq.length);
+        return parse(kvReq);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.buf.ByteBufferPool;
+import com.github.dtprj.dongting.buf.DefaultPoolFactory;
+import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.common.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Borrow and release a buffer from SimpleByteBufferPool and TwoLevelPool (created by DefaultPoolFactory,
+ * the buffers larger than 16KB are borrowed from the thread safe global pool).
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    public int size;
+
+    private SimpleByteBufferPool simplePool;
+    private ByteBufferPool twoLevelPool;
+
+    @Setup
+    public void setup() {
+        Timestamp ts = new Timestamp();
+        simplePool = new SimpleByteBufferPool(ts, false);
+        twoLevelPool = new DefaultPoolFactory().createPool(ts, false);
+    }
+
+    @Benchmark
+    public ByteBuffer simplePool() {
+        ByteBuffer buf = simplePool.borrow(size);
+        simplePool.release(buf);
+        return buf;
+    }
+
+    @Benchmark
+    public ByteBuffer twoLevelPool() {
+        ByteBuffer buf = twoLevelPool.borrow(size);
+        twoLevelPool.release(buf);
+        return buf;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import com.github.dtprj.dongting.common.ByteArray;
+import com.github.dtprj.dongting.common.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Get, put (overwrite) and list of KvImpl. The keys are in dirs of depth levels (10 sub dirs in each level),
+ * for example, "d3.d7.key12345" if depth is 2.
+ * It's in the same package of KvImpl, because KvImpl is package private.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class KvImplBenchmark {
+
+    @Param({"10000000"})
+    public int keyCount;
+
+    @Param({"1", "4"})
+    public int depth;
+
+    private KvImpl kv;
+    private byte[][] keys;
+    private ByteArray[] dirs;
+    private final byte[] value = new byte[64];
+
+    private long raftIndex;
+    private int keyIndex;
+    private int dirIndex;
+
+    @Setup
+    public void setup() {
+        int leafDirCount = 1;
+        for (int i = 0; i < depth; i++) {
+            leafDirCount *= 10;
+        }
+        kv = new KvImpl(new Timestamp(), 1, keyCount + leafDirCount * 2, 0.75f);
+        String[] dirNames = new String[leafDirCount];
+        dirs = new ByteArray[leafDirCount];
+        for (int i = 0; i < leafDirCount; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int level = 0, x = i; level < depth; level++, x /= 10) {
+                if (level > 0) {
+                    sb.append('.');
+                }
+                sb.append('d').append(x % 10);
+                // mkdir an existing dir only updates it
+                kv.mkdir(++raftIndex, new ByteArray(sb.toString().getBytes(StandardCharsets.UTF_8)));
+            }
+            dirNames[i] = sb.toString();
+            dirs[i] = new ByteArray(dirNames[i].getBytes(StandardCharsets.UTF_8));
+        }
+        keys = new byte[keyCount][];
+        for (int i = 0; i < keyCount; i++) {
+            String k = dirNames[i % leafDirCount] + ".key" + i;
+            // use new byte array to avoid reference equality in map lookup
+            keys[i] = k.getBytes(StandardCharsets.UTF_8);
+            kv.put(++raftIndex, new ByteArray(k.getBytes(StandardCharsets.UTF_8)), value);
+        }
+        // access in random order
+        Random r = new Random(0);
+        for (int i = keyCount - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            byte[] tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+    }
+
+    private ByteArray nextKey() {
+        int i = keyIndex + 1;
+        if (i == keys.length) {
+            i = 0;
+        }
+        keyIndex = i;
+        // the key decoded from request is a new object, so the cached hash can't be reused
+        return new ByteArray(keys[i]);
+    }
+
+    @Benchmark
+    public Object get() {
+        return kv.get(nextKey());
+    }
+
+    @Benchmark
+    public Object put() {
+        return kv.put(++raftIndex, nextKey(), value);
+    }
+
+    @Benchmark
+    public Object list() {
+        int i = dirIndex + 1;
+        if (i == dirs.length) {
+            i = 0;
+        }
+        dirIndex = i;
+        return kv.list(dirs[i]);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.raft.server.LogItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Write and read (with crc check) LogHeader, and the index operations of LongLongSeqMap used by IdxFileQueue.
+ * It's in the same package of LogHeader, because LogHeader is package private.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogStoreBenchmark {
+
+    private static final int SEQ_MAP_SIZE = 1024;
+
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer headerBuf = ByteBuffer.allocateDirect(LogHeader.ITEM_HEADER_SIZE);
+    private final LogHeader header = new LogHeader();
+    private final LogItem item = new LogItem();
+
+    private final LongLongSeqMap seqMap = new LongLongSeqMap(SEQ_MAP_SIZE);
+    private long nextKey;
+
+    @Setup
+    public void setup() {
+        item.setType(LogItem.TYPE_NORMAL);
+        item.setBizType(1);
+        item.setTerm(5);
+        item.setPrevLogTerm(5);
+        item.setIndex(100000);
+        item.setTimestamp(System.currentTimeMillis());
+        item.setActualHeaderSize(16);
+        item.setActualBodySize(256);
+        for (; nextKey < SEQ_MAP_SIZE; nextKey++) {
+            seqMap.put(nextKey, nextKey << 10);
+        }
+    }
+
+    @Benchmark
+    public int writeHeader() {
+        ByteBuffer buf = headerBuf;
+        buf.clear();
+        return LogHeader.writeHeader(crc, buf, item);
+    }
+
+    @Benchmark
+    public boolean readHeader() {
+        ByteBuffer buf = headerBuf;
+        buf.clear();
+        LogHeader.writeHeader(crc, buf, item);
+        buf.flip();
+        header.read(buf);
+        return header.crcMatch();
+    }
+
+    @Benchmark
+    public long seqMapPutAndRemove() {
+        // keep the size of the map, like IdxFileQueue remove persisted items from the head
+        seqMap.remove();
+        long k = nextKey++;
+        seqMap.put(k, k << 10);
+        return seqMap.get(k - (SEQ_MAP_SIZE >> 1));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.buf;
+
+import com.github.dtprj.dongting.bench.common.BenchBase;
+import com.github.dtprj.dongting.buf.ByteBufferPool;
+import com.github.dtprj.dongting.buf.DefaultPoolFactory;
+import com.github.dtprj.dongting.buf.MagazineBufferPool;
+import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.buf.SimpleByteBufferPoolConfig;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.github.dtprj.dongting.buf.SimpleByteBufferPool.calcTotalSize;
+
+/**
+ * Borrow and release buffers of the global pool (same config as DefaultPoolFactory) in 32 threads.
+ * Run with -Dpool=simple to test the thread safe SimpleByteBufferPool, otherwise MagazineBufferPool is tested.
+ * Each thread borrows 1~4 buffers of random size (not larger than 256KB) before release them.
+ *
+ * @author huangli
+ */
+public class GlobalPoolTest extends BenchBase {
+
+    private static final boolean SIMPLE = "simple".equals(System.getProperty("pool"));
+    private static final int MAX_SIZE = 256 * 1024;
+
+    private final ByteBufferPool pool;
+    private final ByteBuffer[][] bufs;
+
+    public static void main(String[] args) throws Exception {
+        GlobalPoolTest t = new GlobalPoolTest(32, 5000, 1000);
+        t.start();
+        System.out.println(t.pool.formatStat());
+    }
+
+    public GlobalPoolTest(int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+        SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(null, true, 0, true);
+        c.setBufSizes(DefaultPoolFactory.DEFAULT_GLOBAL_SIZE);
+        c.setMinCount(DefaultPoolFactory.DEFAULT_GLOBAL_MIN_COUNT);
+        c.setMaxCount(DefaultPoolFactory.DEFAULT_GLOBAL_MAX_COUNT);
+        c.setTimeoutMillis(30000);
+        if (SIMPLE) {
+            c.setShareSize(calcTotalSize(c.getBufSizes(), c.getMaxCount()) / 2);
+            pool = new SimpleByteBufferPool(c);
+        } else {
+            pool = new MagazineBufferPool(c);
+        }
+        bufs = new ByteBuffer[threadCount][4];
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime, int state) {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        ByteBuffer[] bufs = this.bufs[threadIndex];
+        int count = r.nextInt(bufs.length) + 1;
+        for (int i = 0; i < count; i++) {
+            bufs[i] = pool.borrow(r.nextInt(MAX_SIZE) + 1);
+        }
+        for (int i = 0; i < count; i++) {
+            pool.release(bufs[i]);
+            bufs[i] = null;
+        }
+        success(state);
+    }
+}
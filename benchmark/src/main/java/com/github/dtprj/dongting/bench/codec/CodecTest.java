@@ -0,0 +1,103 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.codec;
+
+import com.github.dtprj.dongting.bench.common.BenchBase;
+import com.github.dtprj.dongting.buf.DefaultPoolFactory;
+import com.github.dtprj.dongting.buf.RefBufferFactory;
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.PbParser;
+import com.github.dtprj.dongting.codec.PbUtil;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.raft.rpc.VoteReq;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compare the hand-written codec of VoteReq and the generated codec of GenVoteReq (encode + decode).
+ * Run with -Dgen=false to test the hand-written codec.
+ *
+ * @author huangli
+ */
+public class CodecTest extends BenchBase {
+
+    private static final boolean GEN = !"false".equals(System.getProperty("gen"));
+
+    private final ByteBuffer buf = ByteBuffer.allocate(256);
+    private final EncodeContext encodeContext = new EncodeContext(null);
+    private final DecodeContext decodeContext = new DecodeContext();
+    private final PbParser parser = new PbParser();
+
+    private final VoteReq voteReq = new VoteReq();
+    private final GenVoteReq genVoteReq = new GenVoteReq();
+
+    private long sum;
+
+    public static void main(String[] args) throws Exception {
+        new CodecTest(1, 5000, 1000).start();
+    }
+
+    public CodecTest(int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+        decodeContext.setHeapPool(new RefBufferFactory(new DefaultPoolFactory().createPool(new Timestamp(), false), 128));
+        voteReq.setGroupId(1);
+        voteReq.setTerm(100);
+        voteReq.setCandidateId(3);
+        voteReq.setLastLogIndex(123456789L);
+        voteReq.setLastLogTerm(99);
+        voteReq.setPreVote(true);
+        genVoteReq.groupId = 1;
+        genVoteReq.term = 100;
+        genVoteReq.candidateId = 3;
+        genVoteReq.lastLogIndex = 123456789L;
+        genVoteReq.lastLogTerm = 99;
+        genVoteReq.preVote = true;
+    }
+
+    @Override
+    public void shutdown() {
+        System.out.println("gen=" + GEN + ", sum=" + sum);
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime, int state) {
+        ByteBuffer buf = this.buf;
+        buf.clear();
+        if (GEN) {
+            encodeContext.reset();
+            genVoteReq.encode(encodeContext, buf);
+            buf.flip();
+            parser.prepareNext(decodeContext, new GenVoteReqCodec.Callback(), buf.remaining());
+            GenVoteReq r = (GenVoteReq) parser.parse(buf);
+            sum += r.lastLogIndex;
+        } else {
+            // same as VoteReq.VoteReqWritePacket.encodeBody()
+            VoteReq data = voteReq;
+            PbUtil.writeUnsignedInt32(buf, 1, data.getGroupId());
+            PbUtil.writeUnsignedInt32(buf, 2, data.getTerm());
+            PbUtil.writeUnsignedInt32(buf, 3, data.getCandidateId());
+            PbUtil.writeFix64(buf, 4, data.getLastLogIndex());
+            PbUtil.writeUnsignedInt32(buf, 5, data.getLastLogTerm());
+            PbUtil.writeUnsignedInt32(buf, 6, data.isPreVote() ? 1 : 0);
+            buf.flip();
+            parser.prepareNext(decodeContext, new VoteReq.Callback(), buf.remaining());
+            VoteReq r = (VoteReq) parser.parse(buf);
+            sum += r.getLastLogIndex();
+        }
+        success(state);
+    }
+}
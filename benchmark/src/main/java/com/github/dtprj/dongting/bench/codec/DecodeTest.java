@@ -0,0 +1,142 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.codec;
+
+import com.github.dtprj.dongting.bench.common.BenchBase;
+import com.github.dtprj.dongting.buf.DefaultPoolFactory;
+import com.github.dtprj.dongting.buf.RefBufferFactory;
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.DecoderCallback;
+import com.github.dtprj.dongting.codec.Encodable;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.PbCallback;
+import com.github.dtprj.dongting.codec.PbParser;
+import com.github.dtprj.dongting.codec.PbUtil;
+import com.github.dtprj.dongting.common.ByteArray;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.dtkv.KvReq;
+import com.github.dtprj.dongting.dtkv.server.KvReqCallback;
+import com.github.dtprj.dongting.raft.rpc.AppendReq;
+import com.github.dtprj.dongting.raft.server.LogItem;
+import com.github.dtprj.dongting.raft.sm.RaftCodecFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decode performance of KvReq (-Dmsg=kv) and AppendReq (-Dmsg=append, default).
+ * Run with -Dsplit=true to split the message into 2 buffers at the last byte, so the resumable path of
+ * PbParser is used, otherwise the whole message is in one buffer and the fast path is used.
+ *
+ * @author huangli
+ */
+public class DecodeTest extends BenchBase {
+
+    private static final boolean KV = "kv".equals(System.getProperty("msg"));
+    private static final boolean SPLIT = "true".equals(System.getProperty("split"));
+
+    private final DecodeContext decodeContext = new DecodeContext();
+    private final PbParser parser = new PbParser();
+    private final byte[] data;
+
+    private final AppendReq.Callback appendCallback;
+
+    private long sum;
+
+    public static void main(String[] args) throws Exception {
+        new DecodeTest(1, 5000, 1000).start();
+    }
+
+    public DecodeTest(int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+        decodeContext.setHeapPool(new RefBufferFactory(new DefaultPoolFactory().createPool(new Timestamp(), false), 128));
+        RaftCodecFactory codecFactory = new RaftCodecFactory() {
+            @Override
+            public DecoderCallback<? extends Encodable> createHeaderCallback(int bizType, DecodeContext context) {
+                return new ByteArray.Callback();
+            }
+
+            @Override
+            public DecoderCallback<? extends Encodable> createBodyCallback(int bizType, DecodeContext context) {
+                return new ByteArray.Callback();
+            }
+        };
+        appendCallback = new AppendReq.Callback(groupId -> codecFactory);
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        if (KV) {
+            KvReq req = new KvReq(1, "test_key_0001".getBytes(StandardCharsets.UTF_8),
+                    new ByteArray(new byte[64]), null, null, null);
+            req.encode(new EncodeContext(null), buf);
+        } else {
+            encodeAppendReq(buf);
+        }
+        buf.flip();
+        data = new byte[buf.remaining()];
+        buf.get(data);
+    }
+
+    // same as AppendReqWritePacket.encodeBody()
+    public static void encodeAppendReq(ByteBuffer buf) {
+        PbUtil.writeUnsignedInt32(buf, 1, 1);
+        PbUtil.writeUnsignedInt32(buf, 2, 5);
+        PbUtil.writeUnsignedInt32(buf, 3, 2);
+        PbUtil.writeFix64(buf, 4, 100000L);
+        PbUtil.writeUnsignedInt32(buf, 5, 5);
+        PbUtil.writeFix64(buf, 6, 99999L);
+        ByteBuffer itemBuf = ByteBuffer.allocate(256);
+        for (int i = 0; i < 3; i++) {
+            itemBuf.clear();
+            PbUtil.writeUnsignedInt32(itemBuf, 1, LogItem.TYPE_NORMAL);
+            PbUtil.writeUnsignedInt32(itemBuf, 2, 1);
+            PbUtil.writeUnsignedInt32(itemBuf, 3, 5);
+            PbUtil.writeFix64(itemBuf, 4, 100001L + i);
+            PbUtil.writeUnsignedInt32(itemBuf, 5, 5);
+            PbUtil.writeFix64(itemBuf, 6, System.currentTimeMillis());
+            PbUtil.writeBytes(itemBuf, 7, new byte[16]);
+            PbUtil.writeBytes(itemBuf, 8, new byte[64]);
+            itemBuf.flip();
+            byte[] item = new byte[itemBuf.remaining()];
+            itemBuf.get(item);
+            PbUtil.writeBytes(buf, 7, item);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        System.out.println("msg=" + (KV ? "kv" : "append") + ", size=" + data.length + ", split=" + SPLIT
+                + ", sum=" + sum);
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime, int state) {
+        byte[] data = this.data;
+        PbCallback<?> callback = KV ? new KvReqCallback() : appendCallback;
+        parser.prepareNext(decodeContext, callback, data.length);
+        Object o;
+        if (SPLIT) {
+            parser.parse(ByteBuffer.wrap(data, 0, data.length - 1));
+            o = parser.parse(ByteBuffer.wrap(data, data.length - 1, 1));
+        } else {
+            o = parser.parse(ByteBuffer.wrap(data));
+        }
+        if (KV) {
+            sum += ((KvReq) o).getGroupId();
+        } else {
+            sum += ((AppendReq) o).getLogs().size();
+        }
+        success(state);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.fiber;
+
+import com.github.dtprj.dongting.bench.common.BenchBase;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.fiber.Dispatcher;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Compare the allocation rate of the dispatcher thread when create a new future for each operation and when
+ * use the recyclable future. Run with -Drecycle=false to test the normal future.
+ *
+ * @author huangli
+ */
+public class FutureAllocTest extends BenchBase {
+
+    private static final boolean RECYCLE = !"false".equals(System.getProperty("recycle"));
+    private static final int BATCH = 1000;
+
+    private final Dispatcher dispatcher = new Dispatcher("testDispatcher");
+    private final FiberGroup group = new FiberGroup("testGroup", dispatcher);
+
+    private final BiConsumer<Object, Throwable> callback = (r, ex) -> success(state.getOpaque());
+
+    private volatile long dispatcherThreadId;
+    private volatile long opCount;
+    private long startBytes;
+    private long startOps;
+
+    public static void main(String[] args) throws Exception {
+        new FutureAllocTest(1, 5000, 1000).start();
+    }
+
+    public FutureAllocTest(int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+    }
+
+    @Override
+    public void init() {
+        dispatcher.start();
+        dispatcher.startGroup(group).join();
+        group.fireFiber("worker", new FiberFrame<>() {
+            private long count;
+            @SuppressWarnings("unchecked")
+            private final FiberFuture<Object>[] pending = new FiberFuture[BATCH];
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                dispatcherThreadId = Thread.currentThread().getId();
+                return loop(null);
+            }
+
+            private FrameCallResult loop(Void v) {
+                if (isGroupShouldStopPlain()) {
+                    return Fiber.frameReturn();
+                }
+                // the futures are held in array like the pending io operations, so they escape and can't be
+                // eliminated by escape analysis of JIT
+                FiberFuture<Object>[] futures = pending;
+                for (int i = 0; i < BATCH; i++) {
+                    FiberFuture<Object> f = RECYCLE ? group.newRecyclableFuture("f") : group.newFuture("f");
+                    f.registerCallback(callback);
+                    futures[i] = f;
+                }
+                for (int i = 0; i < BATCH; i++) {
+                    futures[i].complete(null);
+                }
+                for (int i = 0; i < BATCH; i++) {
+                    futures[i].recycle();
+                    futures[i] = null;
+                }
+                count += BATCH;
+                opCount = count;
+                return Fiber.yield(this::loop);
+            }
+        });
+    }
+
+    private static long allocatedBytes(long threadId) {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(threadId);
+    }
+
+    @Override
+    protected void afterWarmup() {
+        startBytes = allocatedBytes(dispatcherThreadId);
+        startOps = opCount;
+    }
+
+    @Override
+    public void shutdown() {
+        long bytes = allocatedBytes(dispatcherThreadId) - startBytes;
+        long ops = opCount - startOps;
+        System.out.printf("recycle=%s, dispatcher thread allocated %,d bytes, %.1f bytes/op%n",
+                RECYCLE, bytes, ops == 0 ? 0.0 : bytes * 1.0 / ops);
+        dispatcher.stop(new DtTime(3, TimeUnit.SECONDS));
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime, int state) {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.fiber;
+
+import com.github.dtprj.dongting.bench.common.BenchBase;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.fiber.Dispatcher;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberCondition;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer heavy workload: many fibers sleep with short timeout (expire path), and many fibers wait
+ * condition with long timeout but signaled before timeout (cancel path).
+ *
+ * @author huangli
+ */
+public class TimerTest extends BenchBase {
+
+    private static final int SLEEPER_COUNT = 10000;
+    private static final int WAITER_COUNT = 10000;
+    private static final long WAIT_TIMEOUT_MILLIS = 500;
+
+    private final Dispatcher dispatcher = new Dispatcher("testDispatcher");
+    private final FiberGroup group = new FiberGroup("testGroup", dispatcher);
+    private final FiberCondition[] conditions = new FiberCondition[WAITER_COUNT];
+
+    public static void main(String[] args) throws Exception {
+        new TimerTest(1, 5000, 1000).start();
+    }
+
+    public TimerTest(int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+    }
+
+    @Override
+    public void init() {
+        dispatcher.start();
+        dispatcher.startGroup(group).join();
+        group.fireFiber("init", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                for (int i = 0; i < SLEEPER_COUNT; i++) {
+                    startSleeper(1 + i % 10);
+                }
+                for (int i = 0; i < WAITER_COUNT; i++) {
+                    conditions[i] = group.newCondition("c" + i);
+                    startWaiter(conditions[i]);
+                }
+                startSignaler();
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
+    private void startSleeper(long millis) {
+        Fiber f = new Fiber("sleeper", group, new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (isGroupShouldStopPlain()) {
+                    return Fiber.frameReturn();
+                }
+                return Fiber.sleep(millis, this::resume);
+            }
+
+            private FrameCallResult resume(Void v) {
+                success(state.getOpaque());
+                return execute(null);
+            }
+        });
+        f.start();
+    }
+
+    private void startWaiter(FiberCondition c) {
+        Fiber f = new Fiber("waiter", group, new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (isGroupShouldStopPlain()) {
+                    return Fiber.frameReturn();
+                }
+                return c.await(WAIT_TIMEOUT_MILLIS, this::resume);
+            }
+
+            private FrameCallResult resume(Void v) {
+                success(state.getOpaque());
+                return execute(null);
+            }
+        });
+        f.start();
+    }
+
+    private void startSignaler() {
+        Fiber f = new Fiber("signaler", group, new FiberFrame<>() {
+            private int index;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (isGroupShouldStopPlain()) {
+                    return Fiber.frameReturn();
+                }
+                for (int i = 0; i < 100; i++) {
+                    conditions[index].signal();
+                    index = (index + 1) % WAITER_COUNT;
+                }
+                return Fiber.yield(this);
+            }
+        });
+        f.start();
+    }
+
+    @Override
+    public void shutdown() {
+        dispatcher.stop(new DtTime(3, TimeUnit.SECONDS));
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime, int state) {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.fixcount;
+
+import com.github.dtprj.dongting.queue.MpscChunkedQueue;
+
+/**
+ * Same as MpscQueueCountTest, but use MpscChunkedQueue.
+ *
+ * @author huangli
+ */
+public class MpscChunkedQueueCountTest extends MpscCountBenchBase {
+    private final Object data = new Object();
+
+    private final MpscChunkedQueue<Object> queue = MpscChunkedQueue.newInstance();
+
+    public static void main(String[] args) throws Exception {
+        new MpscChunkedQueueCountTest(1, 500_000, 10000).start();
+    }
+
+    public MpscChunkedQueueCountTest(int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime) {
+        queue.offer(data);
+    }
+
+    @Override
+    protected boolean poll() {
+        return queue.relaxedPoll() != null;
+    }
+}
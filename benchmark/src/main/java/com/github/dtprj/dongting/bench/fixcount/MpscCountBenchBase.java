@@ -15,6 +15,7 @@
  */
 package com.github.dtprj.dongting.bench.fixcount;
 
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
@@ -31,6 +32,8 @@ public abstract class MpscCountBenchBase {
     private static final boolean LOG_RT = false;
     private final LongAdder totalNanos = new LongAdder();
     private final AtomicLong maxNanos = new AtomicLong();
+    // allocated bytes of producers and consumer in test phase, include the elements created by test()
+    private final LongAdder allocatedBytes = new LongAdder();
 
     protected final CountDownLatch latch;
 
@@ -60,6 +63,12 @@ public abstract class MpscCountBenchBase {
             t.join();
         }
         c.join();
+        System.out.printf("allocated %.2f bytes per element%n", allocatedBytes.sum() / (double) (count * threadCount));
+    }
+
+    private static long allocatedBytes() {
+        long threadId = Thread.currentThread().getId();
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(threadId);
     }
 
     public void run(int threadIndex) {
@@ -75,6 +84,7 @@ public abstract class MpscCountBenchBase {
             latch.countDown();
             latch.await();
             loop = this.count;
+            long bytes = allocatedBytes();
             long t = System.currentTimeMillis();
             for (int i = 0; i < loop; i++) {
                 long startTime = 0;
@@ -84,6 +94,7 @@ public abstract class MpscCountBenchBase {
                 test(threadIndex, startTime);
             }
             t = System.currentTimeMillis() - t;
+            allocatedBytes.add(allocatedBytes() - bytes);
             System.out.println("producer " + threadIndex + " finished in " + t + "ms");
         } catch (Throwable e) {
             e.printStackTrace();
@@ -101,6 +112,7 @@ public abstract class MpscCountBenchBase {
             latch.countDown();
             latch.await();
             loop = this.count * threadCount;
+            long bytes = allocatedBytes();
             long t = System.currentTimeMillis();
             for (int i = 0; i < loop; ) {
                 if (poll()) {
@@ -108,6 +120,7 @@ public abstract class MpscCountBenchBase {
                 }
             }
             t = System.currentTimeMillis() - t;
+            allocatedBytes.add(allocatedBytes() - bytes);
             System.out.println("consumer finished in " + t + "ms");
         } catch (Throwable e) {
             e.printStackTrace();
@@ -0,0 +1,105 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.map;
+
+import com.github.dtprj.dongting.bench.common.BenchBase;
+import com.github.dtprj.dongting.common.ConcurrentIntObjMap;
+import com.github.dtprj.dongting.common.IntObjMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-mostly lookup by int key (like looking up raft group for each request), compare the
+ * ConcurrentHashMap with boxed keys, copy on write IntObjMap and ConcurrentIntObjMap.
+ *
+ * @author huangli
+ */
+public class ConcurrentMapBenchmark extends BenchBase {
+    private static final int KEYS = 128;
+    // one put for every WRITE_INTERVAL gets in thread 0
+    private static final int WRITE_INTERVAL = 10_000;
+
+    private static final int TYPE_CHM = 0;
+    private static final int TYPE_COW = 1;
+    private static final int TYPE_CONCURRENT = 2;
+
+    private final int type;
+    private final ConcurrentHashMap<Integer, Object> chm = new ConcurrentHashMap<>();
+    private volatile IntObjMap<Object> cowMap = new IntObjMap<>();
+    private final ConcurrentIntObjMap<Object> concurrentMap = new ConcurrentIntObjMap<>();
+
+    // run each type in a separate JVM to avoid the JIT profile pollution
+    public static void main(String[] args) throws Exception {
+        String[] names = {"ConcurrentHashMap", "copy on write IntObjMap", "ConcurrentIntObjMap"};
+        int type = args.length > 0 ? Integer.parseInt(args[0]) : TYPE_CONCURRENT;
+        System.out.println(names[type] + ":");
+        new ConcurrentMapBenchmark(type, 4, 5000, 1000).start();
+    }
+
+    public ConcurrentMapBenchmark(int type, int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+        this.type = type;
+    }
+
+    @Override
+    public void init() {
+        for (int i = 0; i < KEYS; i++) {
+            put(i, new Object());
+        }
+    }
+
+    private void put(int key, Object value) {
+        switch (type) {
+            case TYPE_CHM:
+                chm.put(key, value);
+                break;
+            case TYPE_COW:
+                synchronized (this) {
+                    cowMap = IntObjMap.copyOnWritePut(cowMap, key, value).getRight();
+                }
+                break;
+            default:
+                concurrentMap.put(key, value);
+        }
+    }
+
+    private Object get(int key) {
+        switch (type) {
+            case TYPE_CHM:
+                return chm.get(key);
+            case TYPE_COW:
+                return cowMap.get(key);
+            default:
+                return concurrentMap.get(key);
+        }
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime, int state) {
+        int count = 0;
+        for (int i = 0; i < WRITE_INTERVAL; i++) {
+            if (get(i & (KEYS - 1)) != null) {
+                count++;
+            }
+        }
+        if (threadIndex == 0) {
+            put(count & (KEYS - 1), new Object());
+        }
+        if (count == WRITE_INTERVAL) {
+            success(state);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.queue;
+
+import com.github.dtprj.dongting.bench.common.BenchBase;
+import com.github.dtprj.dongting.queue.MpscChunkedQueue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Same as MpscQueueTest, but use MpscChunkedQueue, and the consumer drains the queue in batch.
+ *
+ * @author huangli
+ */
+public class MpscChunkedQueueTest extends BenchBase {
+    private final Object data = new Object();
+
+    private final MpscChunkedQueue<Object> queue = MpscChunkedQueue.newInstance();
+
+    public static void main(String[] args) throws Exception {
+        new MpscChunkedQueueTest(1, 5000, 1000).start();
+    }
+
+    public MpscChunkedQueueTest(int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+    }
+
+    @Override
+    public void init() {
+        new Thread(this::consumerRun).start();
+    }
+
+    private void consumerRun() {
+        try {
+            AtomicInteger state = this.state;
+            MpscChunkedQueue<Object> queue = this.queue;
+            int[] s = new int[1];
+            Consumer<Object> c = o -> success(s[0]);
+            while ((s[0] = state.getOpaque()) < STATE_BEFORE_SHUTDOWN) {
+                queue.drain(c, 1024);
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime, int state) {
+        queue.offer(data);
+    }
+}
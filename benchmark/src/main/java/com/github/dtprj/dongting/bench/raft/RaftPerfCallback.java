@@ -30,6 +30,8 @@ public class RaftPerfCallback extends SimplePerfCallback {
 
     private final Summary fiberPoll;
     private final Summary fiberWork;
+    private final Summary fiberExec;
+    private final Summary fiberWait;
 
     private final Summary raftLeaderRunnerFiberLatency;
     private final Summary raftLogEncodeAndWrite;
@@ -61,6 +63,8 @@ public class RaftPerfCallback extends SimplePerfCallback {
         this.debugSum = createSummary(prefix + "debug_sum");
         this.fiberPoll = createSummary(prefix + "fiber_poll");
         this.fiberWork = createSummary(prefix + "fiber_work");
+        this.fiberExec = createSummary(prefix + "fiber_exec");
+        this.fiberWait = createSummary(prefix + "fiber_wait");
         this.raftLeaderRunnerFiberLatency = createSummary(prefix + "raft_leader_runner_fiber_latency");
         this.raftLogEncodeAndWrite = createSummary(prefix + "raft_log_encode_and_write");
         this.raftLogWriteTime = createSummary(prefix + "raft_log_write_time");
@@ -107,6 +111,12 @@ public class RaftPerfCallback extends SimplePerfCallback {
             case FIBER_D_WORK:
                 fiberWork.observe(costTime);
                 break;
+            case FIBER_D_EXEC:
+                fiberExec.observe(costTime);
+                break;
+            case FIBER_D_WAIT:
+                fiberWait.observe(costTime);
+                break;
             case RAFT_D_LEADER_RUNNER_FIBER_LATENCY:
                 raftLeaderRunnerFiberLatency.observe(costTime);
                 break;
@@ -166,6 +176,8 @@ public class RaftPerfCallback extends SimplePerfCallback {
         printValue(debugSum);
         printTime(fiberPoll);
         printTime(fiberWork);
+        printTime(fiberExec);
+        printTime(fiberWait);
         printTime(raftLeaderRunnerFiberLatency);
         printTime(raftLogEncodeAndWrite);
         printTime(raftLogWriteTime);
@@ -29,6 +29,7 @@ import com.github.dtprj.dongting.net.NioServerConfig;
 import com.github.dtprj.dongting.net.ReadPacket;
 import com.github.dtprj.dongting.net.RpcCallback;
 
+import javax.net.ssl.SSLContext;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Random;
@@ -43,8 +44,9 @@ public class RpcBenchmark extends BenchBase {
     private NioClient client;
     private final int cmd;
     private byte[] data;
+    private int dataLen = 128;
+    private SSLContext sslContext;
 
-    private static final int DATA_LEN = 128;
     private static final boolean SYNC = false;
     private static final long TIMEOUT = 1500;
     private static final boolean PERF = false;
@@ -66,6 +68,7 @@ public class RpcBenchmark extends BenchBase {
         serverConfig.setIoThreads(1);
         serverConfig.setBizThreads(1);
         serverConfig.setPort(9000);
+        serverConfig.setSslContext(sslContext);
         if (PERF) {
             serverConfig.setPerfCallback(new RpcPerfCallback(true, "server_"));
         }
@@ -74,6 +77,7 @@ public class RpcBenchmark extends BenchBase {
 
         NioClientConfig clientConfig = new NioClientConfig();
         clientConfig.setHostPorts(Collections.singletonList(new HostPort("127.0.0.1", 9000)));
+        clientConfig.setSslContext(sslContext);
 
         if (PERF) {
             clientConfig.setPerfCallback(new RpcPerfCallback(true, "client_"));
@@ -83,10 +87,18 @@ public class RpcBenchmark extends BenchBase {
         client.start();
         client.waitStart();
 
-        data = new byte[DATA_LEN];
+        data = new byte[dataLen];
         new Random().nextBytes(data);
     }
 
+    public void setDataLen(int dataLen) {
+        this.dataLen = dataLen;
+    }
+
+    public void setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
     @Override
     protected void afterWarmup() {
         PerfCallback c = server.getConfig().getPerfCallback();
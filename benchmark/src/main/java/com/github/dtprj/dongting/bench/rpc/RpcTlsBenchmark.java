@@ -0,0 +1,67 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.rpc;
+
+import com.github.dtprj.dongting.net.Commands;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.InputStream;
+import java.security.KeyStore;
+
+/**
+ * Compare the throughput of plain text and TLS rpc, with small and large packets.
+ *
+ * @author huangli
+ */
+public class RpcTlsBenchmark {
+
+    private static final int[] DATA_LENS = {128, 16 * 1024};
+
+    public static void main(String[] args) throws Exception {
+        SSLContext sslContext = createSslContext();
+        for (int len : DATA_LENS) {
+            System.out.println("----------------- plain text, data len " + len + " -----------------");
+            run(len, null);
+            System.out.println("----------------- TLS, data len " + len + " -----------------");
+            run(len, sslContext);
+        }
+    }
+
+    private static void run(int dataLen, SSLContext sslContext) throws Exception {
+        RpcBenchmark benchmark = new RpcBenchmark(1, 5000, 1000, Commands.CMD_PING);
+        benchmark.setDataLen(dataLen);
+        benchmark.setSslContext(sslContext);
+        benchmark.setLogRt(true);
+        benchmark.start();
+    }
+
+    private static SSLContext createSslContext() throws Exception {
+        char[] pwd = "123456".toCharArray();
+        KeyStore ks = KeyStore.getInstance("PKCS12");
+        try (InputStream in = RpcTlsBenchmark.class.getResourceAsStream("/dt-bench.p12")) {
+            ks.load(in, pwd);
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, pwd);
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(ks);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+        return sslContext;
+    }
+}
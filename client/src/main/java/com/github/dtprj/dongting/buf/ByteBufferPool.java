@@ -40,6 +40,10 @@ public abstract class ByteBufferPool {
 
     public abstract void clean();
 
-    // TODO return a stat object, not a string
+    /**
+     * Return a snapshot of the statistics, or null if the pool has no statistics.
+     */
+    public abstract PoolStat getStat();
+
     public abstract String formatStat();
 }
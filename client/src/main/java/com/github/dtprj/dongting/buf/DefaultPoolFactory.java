@@ -16,6 +16,8 @@
 package com.github.dtprj.dongting.buf;
 
 import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.common.NoopPerfCallback;
+import com.github.dtprj.dongting.common.PerfCallback;
 import com.github.dtprj.dongting.common.Timestamp;
 
 import java.util.concurrent.TimeUnit;
@@ -40,8 +42,8 @@ public class DefaultPoolFactory implements PoolFactory {
     // 18,874,368 bytes
     public static final int[] DEFAULT_SMALL_MAX_COUNT = new int[]{8192, 4096, 2048, 1024, 1024, 1024, 512, 256};
 
-    private static final SimpleByteBufferPool GLOBAL_DIRECT_POOL = createGlobalPool(true);
-    private static final SimpleByteBufferPool GLOBAL_HEAP_POOL = createGlobalPool(false);
+    private static final ByteBufferPool GLOBAL_DIRECT_POOL = createGlobalPool(true);
+    private static final ByteBufferPool GLOBAL_HEAP_POOL = createGlobalPool(false);
 
     static {
         Runnable r = () -> {
@@ -51,18 +53,20 @@ public class DefaultPoolFactory implements PoolFactory {
         DtUtil.SCHEDULED_SERVICE.scheduleWithFixedDelay(r, 1, 1, TimeUnit.SECONDS);
     }
 
-    private static SimpleByteBufferPool createGlobalPool(boolean direct) {
-        // Thread safe pool should use a dedicated timestamp
+    private static ByteBufferPool createGlobalPool(boolean direct) {
+        // the global pool is shared by all NioWorkers and DispatcherThreads, use lock free pool
         SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(
                 null, direct, 0, true);
         c.setBufSizes(DEFAULT_GLOBAL_SIZE);
         c.setMinCount(DEFAULT_GLOBAL_MIN_COUNT);
         c.setMaxCount(DEFAULT_GLOBAL_MAX_COUNT);
         c.setTimeoutMillis(30000);
-        c.setShareSize(calcTotalSize(c.getBufSizes(), c.getMaxCount()) / 2);
-        return new SimpleByteBufferPool(c);
+        return new MagazineBufferPool(c);
     }
 
+    private PerfCallback perfCallback = NoopPerfCallback.INSTANCE;
+    private boolean autoTune;
+
     @Override
     public ByteBufferPool createPool(Timestamp ts, boolean direct) {
         SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(
@@ -72,6 +76,8 @@ public class DefaultPoolFactory implements PoolFactory {
         c.setMaxCount(DEFAULT_SMALL_MAX_COUNT);
         c.setTimeoutMillis(10000);
         c.setShareSize(calcTotalSize(c.getBufSizes(), c.getMaxCount()) / 2);
+        c.setPerfCallback(perfCallback);
+        c.setAutoTune(autoTune);
         SimpleByteBufferPool p1 = new SimpleByteBufferPool(c);
         return new TwoLevelPool(direct, p1, direct ? GLOBAL_DIRECT_POOL : GLOBAL_HEAP_POOL, 16 * 1024);
     }
@@ -81,4 +87,32 @@ public class DefaultPoolFactory implements PoolFactory {
         TwoLevelPool p = (TwoLevelPool) pool;
         ((SimpleByteBufferPool) p.getSmallPool()).cleanAll();
     }
+
+    public static PoolStat getGlobalStat(boolean direct) {
+        return direct ? GLOBAL_DIRECT_POOL.getStat() : GLOBAL_HEAP_POOL.getStat();
+    }
+
+    public PerfCallback getPerfCallback() {
+        return perfCallback;
+    }
+
+    /**
+     * Set the PerfCallback of the pools created by this factory (not include the global pool), it receives
+     * the POOL_C_ALLOCATE (borrow miss) and POOL_C_DISCARD (pool is full when release) events.
+     */
+    public void setPerfCallback(PerfCallback perfCallback) {
+        this.perfCallback = perfCallback;
+    }
+
+    public boolean isAutoTune() {
+        return autoTune;
+    }
+
+    /**
+     * If true, the min/max count of each size class of the pools created by this factory are adjusted by the
+     * observed demand, DEFAULT_SMALL_MAX_COUNT is used as the upper bound.
+     */
+    public void setAutoTune(boolean autoTune) {
+        this.autoTune = autoTune;
+    }
 }
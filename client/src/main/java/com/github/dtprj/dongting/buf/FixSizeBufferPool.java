@@ -17,6 +17,7 @@ package com.github.dtprj.dongting.buf;
 
 import com.github.dtprj.dongting.common.DtException;
 import com.github.dtprj.dongting.common.IndexedQueue;
+import com.github.dtprj.dongting.net.PerfConsts;
 
 import java.nio.ByteBuffer;
 
@@ -27,20 +28,29 @@ class FixSizeBufferPool {
     private static final int MAGIC_INDEX = 0;
     private static final int RETURN_TIME_INDEX = 4;
     private final int bufferSize;
-    private final int maxCount;
-    private final int minCount;
+    // maxCount and minCount may be changed by auto tune, the configured maxCount is the upper bound
+    private int maxCount;
+    private int minCount;
+    private final int maxCountLimit;
     private final SimpleByteBufferPool p;
     private final boolean direct;
     private final long shareSize;
     private static final int MAGIC = 0xEA1D9C07;
 
     private final IndexedQueue<ByteBuffer> bufferStack;
+    // the count of cached buffers beyond maxCount, they are accounted in the share size of SimpleByteBufferPool
+    private int sharedCount;
 
     long statBorrowCount;
     long statBorrowHitCount;
     long statReleaseCount;
     long statReleaseHitCount;
 
+    // the max outstanding count (borrowed and not released) since last tune
+    private long peakOutstanding;
+    // smoothed peak outstanding count
+    private double demand;
+
     public FixSizeBufferPool(SimpleByteBufferPool p, boolean direct, long shareSize, int minCount, int maxCount, int bufferSize) {
         this.p = p;
         this.direct = direct;
@@ -50,12 +60,16 @@ class FixSizeBufferPool {
         }
         this.minCount = minCount;
         this.maxCount = maxCount;
+        this.maxCountLimit = maxCount;
         this.bufferSize = bufferSize;
         this.bufferStack = new IndexedQueue<>(maxCount);
     }
 
     public ByteBuffer borrow() {
-        statBorrowCount++;
+        long outstanding = ++statBorrowCount - statReleaseCount;
+        if (outstanding > peakOutstanding) {
+            peakOutstanding = outstanding;
+        }
         ByteBuffer buf = bufferStack.removeLast();
         if (buf != null) {
             int bufMagic = buf.getInt(MAGIC_INDEX);
@@ -64,6 +78,9 @@ class FixSizeBufferPool {
             }
             buf.putInt(MAGIC_INDEX, 0);
             statBorrowHitCount++;
+            if (sharedCount > 0) {
+                returnShare();
+            }
         }
         return buf;
     }
@@ -89,9 +106,11 @@ class FixSizeBufferPool {
                 if (direct) {
                     SimpleByteBufferPool.VF.releaseDirectBuffer(buf);
                 }
+                p.perfCallback.fire(PerfConsts.POOL_C_DISCARD, 1, bufferSize);
                 return;
             } else {
                 p.currentUsedShareSize = newUsedShareSize;
+                sharedCount++;
             }
         }
         statReleaseHitCount++;
@@ -118,6 +137,52 @@ class FixSizeBufferPool {
                 }
             }
         }
+        returnShare();
+    }
+
+    /**
+     * the cached buffers beyond maxCount use the share size, return the share when they leave the stack
+     * or maxCount grows.
+     */
+    private void returnShare() {
+        int excess = Math.max(0, bufferStack.size() - maxCount);
+        if (excess < sharedCount) {
+            p.currentUsedShareSize -= (long) (sharedCount - excess) * bufferSize;
+            sharedCount = excess;
+        }
+    }
+
+    /**
+     * Adjust minCount and maxCount by the observed demand (peak outstanding count since last call), the
+     * smoothed demand is kept in pool as minCount, and the pool can cache twice of it. Since the demand
+     * is smoothed, a short burst does not shrink the pool immediately.
+     */
+    public void tune() {
+        long peak = Math.max(peakOutstanding, statBorrowCount - statReleaseCount);
+        peakOutstanding = 0;
+        demand = demand * 0.75 + peak * 0.25;
+        int newMin = (int) Math.min(Math.ceil(demand), maxCountLimit);
+        int newMax = (int) Math.min(Math.max(Math.ceil(demand * 2), peak), maxCountLimit);
+        this.minCount = newMin;
+        this.maxCount = Math.max(newMax, Math.max(newMin, 1));
+        IndexedQueue<ByteBuffer> stack = this.bufferStack;
+        while (stack.size() > this.maxCount) {
+            ByteBuffer buf = stack.removeFirst();
+            if (direct) {
+                SimpleByteBufferPool.VF.releaseDirectBuffer(buf);
+            }
+        }
+        returnShare();
+    }
+
+    void fillStat(PoolStat stat, int index) {
+        stat.borrowCount[index] = statBorrowCount;
+        stat.borrowHitCount[index] = statBorrowHitCount;
+        stat.releaseCount[index] = statReleaseCount;
+        stat.releaseHitCount[index] = statReleaseHitCount;
+        stat.cachedCount[index] = bufferStack.size();
+        stat.minCount[index] = minCount;
+        stat.maxCount[index] = maxCount;
     }
 
     public void cleanAll() {
@@ -130,5 +195,6 @@ class FixSizeBufferPool {
             ByteBuffer buf = stack.removeFirst();
             SimpleByteBufferPool.VF.releaseDirectBuffer(buf);
         }
+        returnShare();
     }
 }
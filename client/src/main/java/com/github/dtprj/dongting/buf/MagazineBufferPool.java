@@ -0,0 +1,613 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+import com.github.dtprj.dongting.common.DtException;
+import com.github.dtprj.dongting.common.PerfCallback;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.net.PerfConsts;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread safe ByteBuffer pool without lock, used as the global pool shared by all threads.
+ *
+ * <p>Each thread caches buffers in magazines (small stacks of buffers of the same size), two magazines per
+ * buffer size. A thread exchanges full or empty magazines with a central depot only when both magazines
+ * are full (release) or empty (borrow), the depot is lock free. So most borrow/release operations only touch
+ * the thread local magazines.
+ *
+ * <p>The buffer sizes with small max count or large size are not cached in thread, the buffers are
+ * exchanged with the depot directly (one by one), to limit the memory hold by each thread.
+ *
+ * <p>clean() releases the buffers in depot that have not been used for a timeout, but keeps at least minCount
+ * buffers. The buffers in thread local magazines are not cleaned, they are limited by magazine capacity.
+ *
+ * @author huangli
+ */
+public class MagazineBufferPool extends ByteBufferPool {
+    private static final int MAGIC_INDEX = 0;
+    private static final int MAGIC = 0xEA1D9C07;
+
+    private static final int MAX_MAGAZINE_CAPACITY = 16;
+    private static final int MAX_MAGAZINE_BYTES = 512 * 1024;
+
+    private static final int STAT_BORROW = 0;
+    private static final int STAT_BORROW_HIT = 1;
+    private static final int STAT_RELEASE = 2;
+    private static final int STAT_RELEASE_HIT = 3;
+    private static final int STAT_BORROW_TOO_SMALL = 4;
+    private static final int STAT_BORROW_TOO_LARGE = 5;
+    private static final int STAT_FIELD_COUNT = 4;
+
+    private final int threshold;
+    private final int[] bufSizes;
+    private final int[] minCount;
+    private final long timeoutNanos;
+    private final Depot[] depots;
+    private final PerfCallback perfCallback;
+
+    private final ThreadLocal<ThreadCache> threadCache = ThreadLocal.withInitial(this::createThreadCache);
+    // only contains the stat array of each thread, so the buffers of dead threads can be collected
+    private final CopyOnWriteArrayList<ThreadStat> threadStats = new CopyOnWriteArrayList<>();
+    // the stats of dead threads, guarded by statLock
+    private final ReentrantLock statLock = new ReentrantLock();
+    private final long[] retiredStats;
+
+    private Timestamp ts;
+
+    public MagazineBufferPool(SimpleByteBufferPoolConfig config) {
+        super(config.isDirect());
+        Objects.requireNonNull(config.getBufSizes());
+        Objects.requireNonNull(config.getMinCount());
+        Objects.requireNonNull(config.getMaxCount());
+        this.threshold = config.getThreshold();
+        this.bufSizes = config.getBufSizes();
+        this.minCount = config.getMinCount();
+        this.timeoutNanos = config.getTimeoutMillis() * 1000 * 1000;
+        this.perfCallback = config.getPerfCallback();
+
+        int[] bufSizes = this.bufSizes;
+        int[] maxCount = config.getMaxCount();
+        int bufferTypeCount = bufSizes.length;
+        if (bufferTypeCount != minCount.length || bufferTypeCount != maxCount.length) {
+            throw new IllegalArgumentException();
+        }
+        if (config.getTimeoutMillis() <= 0) {
+            throw new IllegalArgumentException("timeout<=0. timeout=" + config.getTimeoutMillis());
+        }
+        for (int i = 0; i < bufferTypeCount; i++) {
+            if (bufSizes[i] < 16) {
+                throw new IllegalArgumentException("buffer size too small: " + bufSizes[i]);
+            }
+            if (minCount[i] < 0) {
+                throw new IllegalArgumentException("minCount<0");
+            }
+            if (maxCount[i] <= 0) {
+                throw new IllegalArgumentException("maxCount<0");
+            }
+            if (maxCount[i] < minCount[i]) {
+                throw new IllegalArgumentException("maxCount<minCount");
+            }
+        }
+
+        this.depots = new Depot[bufferTypeCount];
+        for (int i = 0; i < bufferTypeCount; i++) {
+            int c = Math.min(MAX_MAGAZINE_CAPACITY, maxCount[i] / 8);
+            c = Math.min(c, MAX_MAGAZINE_BYTES / bufSizes[i]);
+            // capacity 1 means no thread cache, exchange single buffer with depot directly
+            c = Math.max(c, 1);
+            depots[i] = new Depot(c, Math.max(1, maxCount[i] / c));
+        }
+        this.retiredStats = new long[bufferTypeCount * (STAT_FIELD_COUNT + 2)];
+    }
+
+    private ThreadCache createThreadCache() {
+        ThreadCache tc = new ThreadCache(depots);
+        threadStats.add(new ThreadStat(tc.stats));
+        return tc;
+    }
+
+    /**
+     * Sum the stats of all threads, the stats of dead threads are merged into retired stats and removed
+     * from the list.
+     */
+    private long[] sumStats() {
+        long[] result;
+        statLock.lock();
+        try {
+            ArrayList<ThreadStat> dead = null;
+            for (ThreadStat ts : threadStats) {
+                if (ts.thread.get() == null) {
+                    // the thread is dead, no more writes
+                    add(ts.stats, retiredStats);
+                    if (dead == null) {
+                        dead = new ArrayList<>();
+                    }
+                    dead.add(ts);
+                }
+            }
+            if (dead != null) {
+                threadStats.removeAll(dead);
+            }
+            result = retiredStats.clone();
+        } finally {
+            statLock.unlock();
+        }
+        for (ThreadStat ts : threadStats) {
+            add(ts.stats, result);
+        }
+        return result;
+    }
+
+    private static void add(long[] src, long[] dest) {
+        for (int i = 0; i < dest.length; i++) {
+            dest[i] += src[i];
+        }
+    }
+
+    // for unit test
+    int threadStatCount() {
+        return threadStats.size();
+    }
+
+    @Override
+    public ByteBuffer allocate(int size) {
+        return this.direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private int poolIndex(int size, boolean exactly) {
+        int[] bufSizes = this.bufSizes;
+        int poolCount = bufSizes.length;
+        for (int i = 0; i < poolCount; i++) {
+            int s = bufSizes[i];
+            if (s == size || (!exactly && s > size)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public ByteBuffer borrow(int requestSize) {
+        if (requestSize <= threshold) {
+            threadCache.get().stats[STAT_BORROW_TOO_SMALL * bufSizes.length]++;
+            return allocate(requestSize);
+        }
+        int poolIndex = poolIndex(requestSize, false);
+        ThreadCache tc = threadCache.get();
+        if (poolIndex < 0) {
+            // request buffer too large, allocate without pool
+            tc.stats[STAT_BORROW_TOO_LARGE * bufSizes.length]++;
+            return allocate(requestSize);
+        }
+        long[] stats = tc.stats;
+        int bufferTypeCount = bufSizes.length;
+        stats[STAT_BORROW * bufferTypeCount + poolIndex]++;
+        Depot depot = depots[poolIndex];
+        ByteBuffer buf;
+        if (depot.capacity == 1) {
+            buf = depot.borrowOne();
+        } else {
+            buf = borrowFromMagazine(tc, depot, poolIndex);
+        }
+        if (buf == null) {
+            perfCallback.fire(PerfConsts.POOL_C_ALLOCATE, 1, bufSizes[poolIndex]);
+            return allocate(bufSizes[poolIndex]);
+        }
+        stats[STAT_BORROW_HIT * bufferTypeCount + poolIndex]++;
+        if (buf.getInt(MAGIC_INDEX) != MAGIC) {
+            throw new DtException("A bug may exist where the buffer is written to after release.");
+        }
+        buf.putInt(MAGIC_INDEX, 0);
+        return buf;
+    }
+
+    private ByteBuffer borrowFromMagazine(ThreadCache tc, Depot depot, int poolIndex) {
+        Magazine loaded = tc.loaded[poolIndex];
+        if (loaded.size > 0) {
+            return loaded.pop();
+        }
+        Magazine previous = tc.previous[poolIndex];
+        if (previous.size > 0) {
+            tc.loaded[poolIndex] = previous;
+            tc.previous[poolIndex] = loaded;
+            return previous.pop();
+        }
+        Magazine full = (Magazine) depot.full.pop();
+        if (full == null) {
+            return null;
+        }
+        // both loaded and previous are empty, return one of them to depot
+        depot.empty.push(previous, 0);
+        tc.previous[poolIndex] = loaded;
+        tc.loaded[poolIndex] = full;
+        return full.pop();
+    }
+
+    @Override
+    public void release(ByteBuffer buf) {
+        if (buf.isDirect() != direct) {
+            throw new DtException("buffer released to wrong pool");
+        }
+        int capacity = buf.capacity();
+        int poolIndex = capacity <= threshold ? -1 : poolIndex(capacity, true);
+        if (poolIndex < 0) {
+            // buffer too small or too large, release it without pool
+            if (direct) {
+                SimpleByteBufferPool.VF.releaseDirectBuffer(buf);
+            }
+            return;
+        }
+        ThreadCache tc = threadCache.get();
+        long[] stats = tc.stats;
+        int bufferTypeCount = bufSizes.length;
+        stats[STAT_RELEASE * bufferTypeCount + poolIndex]++;
+
+        // ByteBuffer.getInt may check limit, so we clear buffer first
+        buf.clear();
+        Depot depot = depots[poolIndex];
+        if (buf.getInt(MAGIC_INDEX) == MAGIC && depot.capacity > 1
+                && (tc.loaded[poolIndex].contains(buf) || tc.previous[poolIndex].contains(buf))) {
+            // only check the magazines of current thread
+            throw new DtException("A bug may exist where the buffer is released twice.");
+        }
+        buf.putInt(MAGIC_INDEX, MAGIC);
+
+        boolean success;
+        if (depot.capacity == 1) {
+            success = depot.releaseOne(buf, nanoTime());
+        } else {
+            success = releaseToMagazine(tc, depot, poolIndex, buf);
+        }
+        if (success) {
+            stats[STAT_RELEASE_HIT * bufferTypeCount + poolIndex]++;
+        } else {
+            // too many buffer in pool
+            if (direct) {
+                SimpleByteBufferPool.VF.releaseDirectBuffer(buf);
+            }
+            perfCallback.fire(PerfConsts.POOL_C_DISCARD, 1, capacity);
+        }
+    }
+
+    private boolean releaseToMagazine(ThreadCache tc, Depot depot, int poolIndex, ByteBuffer buf) {
+        Magazine loaded = tc.loaded[poolIndex];
+        if (loaded.size < depot.capacity) {
+            loaded.push(buf);
+            return true;
+        }
+        Magazine previous = tc.previous[poolIndex];
+        if (previous.size == 0) {
+            tc.loaded[poolIndex] = previous;
+            tc.previous[poolIndex] = loaded;
+            previous.push(buf);
+            return true;
+        }
+        // both loaded and previous are full, return one of them to depot
+        if (!depot.full.push(loaded, nanoTime())) {
+            return false;
+        }
+        Magazine m = depot.empty.pop();
+        if (m == null) {
+            m = new Magazine(depot.capacity);
+        }
+        tc.loaded[poolIndex] = m;
+        m.push(buf);
+        return true;
+    }
+
+    private long nanoTime() {
+        Timestamp ts = this.ts;
+        return ts == null ? System.nanoTime() : ts.getNanoTime();
+    }
+
+    @Override
+    public void clean() {
+        long expireNanos = nanoTime() - this.timeoutNanos;
+        for (int i = 0; i < depots.length; i++) {
+            depots[i].clean(expireNanos, minCount[i], direct);
+        }
+    }
+
+    /**
+     * The cached count of the returned stat only includes the buffers in depot, the buffers cached in the
+     * magazines of threads are not included. The max count is the capacity of depot.
+     */
+    @Override
+    public PoolStat getStat() {
+        int bufferTypeCount = bufSizes.length;
+        PoolStat stat = new PoolStat(bufSizes);
+        long[] s = sumStats();
+        for (int i = 0; i < bufferTypeCount; i++) {
+            stat.borrowCount[i] = s[STAT_BORROW * bufferTypeCount + i];
+            stat.borrowHitCount[i] = s[STAT_BORROW_HIT * bufferTypeCount + i];
+            stat.releaseCount[i] = s[STAT_RELEASE * bufferTypeCount + i];
+            stat.releaseHitCount[i] = s[STAT_RELEASE_HIT * bufferTypeCount + i];
+        }
+        stat.borrowTooSmallCount = s[STAT_BORROW_TOO_SMALL * bufferTypeCount];
+        stat.borrowTooLargeCount = s[STAT_BORROW_TOO_LARGE * bufferTypeCount];
+        for (int i = 0; i < bufferTypeCount; i++) {
+            Depot d = depots[i];
+            stat.cachedCount[i] = d.full.count.get() * d.capacity;
+            stat.minCount[i] = minCount[i];
+            stat.maxCount[i] = d.maxMagazines * d.capacity;
+        }
+        return stat;
+    }
+
+    @Override
+    public String formatStat() {
+        int bufferTypeCount = bufSizes.length;
+        long[] sum = sumStats();
+        long borrowTooSmall = sum[STAT_BORROW_TOO_SMALL * bufferTypeCount];
+        long borrowTooLarge = sum[STAT_BORROW_TOO_LARGE * bufferTypeCount];
+        StringBuilder sb = new StringBuilder(512);
+        DecimalFormat f1 = new DecimalFormat("#,###");
+        NumberFormat f2 = NumberFormat.getPercentInstance();
+        f2.setMaximumFractionDigits(1);
+        long totalBorrow = 0;
+        long totalBorrowHit = 0;
+        long totalRelease = 0;
+        long totalReleaseHit = 0;
+        for (int i = 0; i < bufferTypeCount; i++) {
+            totalBorrow += sum[STAT_BORROW * bufferTypeCount + i];
+            totalBorrowHit += sum[STAT_BORROW_HIT * bufferTypeCount + i];
+            totalRelease += sum[STAT_RELEASE * bufferTypeCount + i];
+            totalReleaseHit += sum[STAT_RELEASE_HIT * bufferTypeCount + i];
+        }
+        sb.append("borrow ");
+        appendCount(sb, f1, f2, totalBorrow, totalBorrowHit);
+        sb.append(", release ");
+        appendCount(sb, f1, f2, totalRelease, totalReleaseHit);
+        sb.append(", borrow too small ").append(f1.format(borrowTooSmall))
+                .append(", borrow too large ").append(f1.format(borrowTooLarge))
+                .append(", threads ").append(threadStats.size())
+                .append('\n');
+        for (int s : bufSizes) {
+            if (s < 1024) {
+                sb.append(s).append("B, ");
+            } else {
+                sb.append(s / 1024).append("KB, ");
+            }
+        }
+        sb.setLength(sb.length() - 2);
+        sb.append("\nborrow ");
+        for (int i = 0; i < bufferTypeCount; i++) {
+            appendCount(sb, f1, f2, sum[STAT_BORROW * bufferTypeCount + i], sum[STAT_BORROW_HIT * bufferTypeCount + i]);
+            sb.append(", ");
+        }
+        sb.setLength(sb.length() - 2);
+        sb.append("\nrelease ");
+        for (int i = 0; i < bufferTypeCount; i++) {
+            appendCount(sb, f1, f2, sum[STAT_RELEASE * bufferTypeCount + i], sum[STAT_RELEASE_HIT * bufferTypeCount + i]);
+            sb.append(", ");
+        }
+        sb.setLength(sb.length() - 2);
+        sb.append("\ndepot ");
+        for (Depot d : depots) {
+            sb.append(d.full.count.get()).append('/').append(d.maxMagazines).append('*').append(d.capacity).append(", ");
+        }
+        sb.setLength(sb.length() - 2);
+        return sb.toString();
+    }
+
+    private static void appendCount(StringBuilder sb, DecimalFormat f1, NumberFormat f2, long count, long hit) {
+        sb.append(f1.format(count)).append('(');
+        if (count == 0) {
+            sb.append("0%");
+        } else {
+            sb.append(f2.format((double) hit / count));
+        }
+        sb.append(')');
+    }
+
+    // for unit test
+    void setTs(Timestamp ts) {
+        this.ts = ts;
+    }
+
+    // for unit test
+    int depotSize(int poolIndex) {
+        return depots[poolIndex].full.count.get();
+    }
+
+    private static final class ThreadCache {
+        final Magazine[] loaded;
+        final Magazine[] previous;
+        // written by owner thread only, read by formatStat without synchronization
+        final long[] stats;
+
+        ThreadCache(Depot[] depots) {
+            int n = depots.length;
+            loaded = new Magazine[n];
+            previous = new Magazine[n];
+            for (int i = 0; i < n; i++) {
+                int c = depots[i].capacity;
+                if (c > 1) {
+                    loaded[i] = new Magazine(c);
+                    previous[i] = new Magazine(c);
+                }
+            }
+            // the borrow too small/large count use the first slot of the last 2 rows
+            stats = new long[n * (STAT_FIELD_COUNT + 2)];
+        }
+    }
+
+    private static final class ThreadStat {
+        final WeakReference<Thread> thread = new WeakReference<>(Thread.currentThread());
+        final long[] stats;
+
+        ThreadStat(long[] stats) {
+            this.stats = stats;
+        }
+    }
+
+    private static final class Magazine {
+        final ByteBuffer[] bufs;
+        int size;
+
+        Magazine(int capacity) {
+            bufs = new ByteBuffer[capacity];
+        }
+
+        void push(ByteBuffer buf) {
+            bufs[size++] = buf;
+        }
+
+        ByteBuffer pop() {
+            ByteBuffer buf = bufs[--size];
+            bufs[size] = null;
+            return buf;
+        }
+
+        boolean contains(ByteBuffer buf) {
+            for (int i = 0; i < size; i++) {
+                if (bufs[i] == buf) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Depot {
+        final int capacity;
+        final int maxMagazines;
+        // if capacity is 1, the items of full stack are ByteBuffers, otherwise Magazines
+        final DepotStack<Object> full;
+        final DepotStack<Magazine> empty;
+
+        Depot(int capacity, int maxMagazines) {
+            this.capacity = capacity;
+            this.maxMagazines = maxMagazines;
+            this.full = new DepotStack<>(maxMagazines);
+            this.empty = new DepotStack<>(maxMagazines);
+        }
+
+        ByteBuffer borrowOne() {
+            return (ByteBuffer) full.pop();
+        }
+
+        boolean releaseOne(ByteBuffer buf, long nanos) {
+            return full.push(buf, nanos);
+        }
+
+        void clean(long expireNanos, int minCount, boolean direct) {
+            Node<Object> n = full.head.getAndSet(null);
+            if (n == null) {
+                return;
+            }
+            // newer items are at the head of stack
+            int keepBuffers = 0;
+            Node<Object> keep = null;
+            while (n != null) {
+                Node<Object> next = n.next;
+                int bufCount = capacity == 1 ? 1 : ((Magazine) n.item).size;
+                if (keepBuffers < minCount || n.returnNanos - expireNanos > 0) {
+                    keepBuffers += bufCount;
+                    keep = new Node<>(n.item, n.returnNanos, keep);
+                } else {
+                    full.count.decrementAndGet();
+                    if (capacity == 1) {
+                        release((ByteBuffer) n.item, direct);
+                    } else {
+                        Magazine m = (Magazine) n.item;
+                        while (m.size > 0) {
+                            release(m.pop(), direct);
+                        }
+                        empty.push(m, 0);
+                    }
+                }
+                n = next;
+            }
+            // keep is in reverse order, push the oldest first
+            while (keep != null) {
+                full.pushBack(keep.item, keep.returnNanos);
+                keep = keep.next;
+            }
+        }
+
+        private static void release(ByteBuffer buf, boolean direct) {
+            if (direct) {
+                SimpleByteBufferPool.VF.releaseDirectBuffer(buf);
+            }
+        }
+    }
+
+    // the node is immutable, so the ABA problem of Treiber stack is avoided by GC
+    private static final class Node<T> {
+        final T item;
+        final long returnNanos;
+        final Node<T> next;
+
+        Node(T item, long returnNanos, Node<T> next) {
+            this.item = item;
+            this.returnNanos = returnNanos;
+            this.next = next;
+        }
+    }
+
+    private static final class DepotStack<T> {
+        final AtomicReference<Node<T>> head = new AtomicReference<>();
+        final AtomicInteger count = new AtomicInteger();
+        private final int maxCount;
+
+        DepotStack(int maxCount) {
+            this.maxCount = maxCount;
+        }
+
+        boolean push(T item, long nanos) {
+            if (count.incrementAndGet() > maxCount) {
+                count.decrementAndGet();
+                return false;
+            }
+            pushBack(item, nanos);
+            return true;
+        }
+
+        // the count is not changed
+        void pushBack(T item, long nanos) {
+            AtomicReference<Node<T>> head = this.head;
+            Node<T> h;
+            do {
+                h = head.get();
+            } while (!head.compareAndSet(h, new Node<>(item, nanos, h)));
+        }
+
+        T pop() {
+            AtomicReference<Node<T>> head = this.head;
+            Node<T> h;
+            do {
+                h = head.get();
+                if (h == null) {
+                    return null;
+                }
+            } while (!head.compareAndSet(h, h.next));
+            count.decrementAndGet();
+            return h.item;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+/**
+ * A snapshot of the statistics of a ByteBufferPool, the arrays are indexed by size class. The snapshot of
+ * a pool used by other threads may be slightly inconsistent, since the counters are not read atomically.
+ *
+ * @author huangli
+ */
+public class PoolStat {
+    private final int[] bufSizes;
+    final long[] borrowCount;
+    final long[] borrowHitCount;
+    final long[] releaseCount;
+    final long[] releaseHitCount;
+    final int[] cachedCount;
+    final int[] minCount;
+    final int[] maxCount;
+    long borrowTooSmallCount;
+    long borrowTooLargeCount;
+
+    PoolStat(int[] bufSizes) {
+        int n = bufSizes.length;
+        this.bufSizes = bufSizes;
+        this.borrowCount = new long[n];
+        this.borrowHitCount = new long[n];
+        this.releaseCount = new long[n];
+        this.releaseHitCount = new long[n];
+        this.cachedCount = new int[n];
+        this.minCount = new int[n];
+        this.maxCount = new int[n];
+    }
+
+    public int getSizeClassCount() {
+        return bufSizes.length;
+    }
+
+    public int getBufSize(int sizeClass) {
+        return bufSizes[sizeClass];
+    }
+
+    public long getBorrowCount(int sizeClass) {
+        return borrowCount[sizeClass];
+    }
+
+    public long getBorrowHitCount(int sizeClass) {
+        return borrowHitCount[sizeClass];
+    }
+
+    public long getReleaseCount(int sizeClass) {
+        return releaseCount[sizeClass];
+    }
+
+    public long getReleaseHitCount(int sizeClass) {
+        return releaseHitCount[sizeClass];
+    }
+
+    /**
+     * The count of buffers borrowed from the size class and not released yet.
+     */
+    public long getOutstandingCount(int sizeClass) {
+        return Math.max(0, borrowCount[sizeClass] - releaseCount[sizeClass]);
+    }
+
+    public long getOutstandingBytes(int sizeClass) {
+        return getOutstandingCount(sizeClass) * bufSizes[sizeClass];
+    }
+
+    /**
+     * The count of idle buffers cached in the pool.
+     */
+    public int getCachedCount(int sizeClass) {
+        return cachedCount[sizeClass];
+    }
+
+    /**
+     * The current min count of the size class, it may be changed by auto tune.
+     */
+    public int getMinCount(int sizeClass) {
+        return minCount[sizeClass];
+    }
+
+    /**
+     * The current max count of the size class, it may be changed by auto tune.
+     */
+    public int getMaxCount(int sizeClass) {
+        return maxCount[sizeClass];
+    }
+
+    public long getBorrowTooSmallCount() {
+        return borrowTooSmallCount;
+    }
+
+    public long getBorrowTooLargeCount() {
+        return borrowTooLargeCount;
+    }
+
+    public long getTotalBorrowCount() {
+        return sum(borrowCount);
+    }
+
+    public long getTotalBorrowHitCount() {
+        return sum(borrowHitCount);
+    }
+
+    public long getTotalReleaseCount() {
+        return sum(releaseCount);
+    }
+
+    public long getTotalReleaseHitCount() {
+        return sum(releaseHitCount);
+    }
+
+    public long getTotalOutstandingBytes() {
+        long total = 0;
+        for (int i = 0; i < bufSizes.length; i++) {
+            total += getOutstandingBytes(i);
+        }
+        return total;
+    }
+
+    public long getTotalCachedBytes() {
+        long total = 0;
+        for (int i = 0; i < bufSizes.length; i++) {
+            total += (long) cachedCount[i] * bufSizes[i];
+        }
+        return total;
+    }
+
+    private static long sum(long[] array) {
+        long s = 0;
+        for (long v : array) {
+            s += v;
+        }
+        return s;
+    }
+}
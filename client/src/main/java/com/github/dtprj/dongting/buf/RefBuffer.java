@@ -46,6 +46,9 @@ public final class RefBuffer extends RefCount implements Encodable {
         }
         this.size = this.buffer.remaining();
         this.root = null;
+        if (updater != null) {
+            RefBufferTracker.onCreate(this, size);
+        }
     }
 
     private RefBuffer(RefBuffer root, int absolutePos, int absoluteLimit) {
@@ -132,6 +135,7 @@ public final class RefBuffer extends RefCount implements Encodable {
     @Override
     protected void doClean() {
         // not called if this RefBuffer is a sliced buffer
+        RefBufferTracker.onRelease(this, size);
         if (pool != null) {
             pool.release(buffer);
         } else {
@@ -141,6 +145,10 @@ public final class RefBuffer extends RefCount implements Encodable {
         this.buffer = null;
     }
 
+    public boolean isDirect() {
+        return direct;
+    }
+
     public ByteBuffer getBuffer() {
         return buffer;
     }
@@ -0,0 +1,124 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+import com.github.dtprj.dongting.common.CoarseClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Track the live RefBuffers (not sliced, and should be released) to count them and find the leak suspects
+ * (held longer than a threshold). The tracking is enabled by system property "dt.buf.track=true" or
+ * setTrackEnabled(), it costs a map put/remove and global counter updates for each RefBuffer, so it's not
+ * enabled by default, and nothing is counted when it's disabled.
+ *
+ * @author huangli
+ */
+public final class RefBufferTracker {
+
+    private static volatile boolean track = Boolean.getBoolean("dt.buf.track");
+
+    private static final LongAdder LIVE_COUNT = new LongAdder();
+    private static final LongAdder LIVE_BYTES = new LongAdder();
+
+    private static final ConcurrentHashMap<RefBuffer, TrackInfo> LIVE_BUFFERS = new ConcurrentHashMap<>();
+
+    private RefBufferTracker() {
+    }
+
+    static void onCreate(RefBuffer rb, int size) {
+        if (track) {
+            LIVE_COUNT.increment();
+            LIVE_BYTES.add(size);
+            LIVE_BUFFERS.put(rb, new TrackInfo(CoarseClock.nanoTime(), Thread.currentThread().getName()));
+        }
+    }
+
+    static void onRelease(RefBuffer rb, int size) {
+        // only the tracked RefBuffers are counted, remove it even if track is disabled now
+        if (!LIVE_BUFFERS.isEmpty() && LIVE_BUFFERS.remove(rb) != null) {
+            LIVE_COUNT.decrement();
+            LIVE_BYTES.add(-size);
+        }
+    }
+
+    /**
+     * the count of live tracked RefBuffers, always 0 if tracking is not enabled.
+     */
+    public static long getLiveCount() {
+        return LIVE_COUNT.sum();
+    }
+
+    public static long getLiveBytes() {
+        return LIVE_BYTES.sum();
+    }
+
+    public static boolean isTrackEnabled() {
+        return track;
+    }
+
+    /**
+     * Enable or disable tracking, the RefBuffers created before enabled are not tracked, and the counters
+     * are reset when disabled.
+     */
+    public static void setTrackEnabled(boolean enabled) {
+        track = enabled;
+        if (!enabled) {
+            LIVE_BUFFERS.clear();
+            LIVE_COUNT.reset();
+            LIVE_BYTES.reset();
+        }
+    }
+
+    /**
+     * Find the live RefBuffers held longer than heldMillis, return empty list if tracking is not enabled.
+     *
+     * @param maxCount the max count of returned items
+     */
+    public static List<String> findLeakSuspects(long heldMillis, int maxCount) {
+        ArrayList<String> list = new ArrayList<>();
+        long now = System.nanoTime();
+        long heldNanos = TimeUnit.MILLISECONDS.toNanos(heldMillis);
+        for (Map.Entry<RefBuffer, TrackInfo> en : LIVE_BUFFERS.entrySet()) {
+            if (list.size() >= maxCount) {
+                break;
+            }
+            TrackInfo ti = en.getValue();
+            long held = now - ti.createNanos;
+            if (held >= heldNanos) {
+                RefBuffer rb = en.getKey();
+                list.add("size=" + rb.actualSize() + ", direct=" + rb.isDirect()
+                        + ", heldMillis=" + TimeUnit.NANOSECONDS.toMillis(held) + ", thread=" + ti.threadName);
+            }
+        }
+        return list;
+    }
+
+    private static final class TrackInfo {
+        final long createNanos;
+        final String threadName;
+
+        TrackInfo(long createNanos, String threadName) {
+            this.createNanos = createNanos;
+            this.threadName = threadName;
+        }
+    }
+}
@@ -16,8 +16,10 @@
 package com.github.dtprj.dongting.buf;
 
 import com.github.dtprj.dongting.common.DtException;
+import com.github.dtprj.dongting.common.PerfCallback;
 import com.github.dtprj.dongting.common.Timestamp;
 import com.github.dtprj.dongting.common.VersionFactory;
+import com.github.dtprj.dongting.net.PerfConsts;
 
 import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
@@ -38,6 +40,8 @@ public class SimpleByteBufferPool extends ByteBufferPool {
     private final int[] bufSizes;
     private final long timeoutNanos;
     private final boolean threadSafe;
+    private final boolean autoTune;
+    final PerfCallback perfCallback;
 
     private long statBorrowTooSmallCount;
     private long statBorrowTooLargeCount;
@@ -85,6 +89,8 @@ public class SimpleByteBufferPool extends ByteBufferPool {
         this.threshold = config.getThreshold();
         this.bufSizes = config.getBufSizes();
         this.timeoutNanos = config.getTimeoutMillis() * 1000 * 1000;
+        this.autoTune = config.isAutoTune();
+        this.perfCallback = config.getPerfCallback();
 
         int[] bufSizes = this.bufSizes;
         int[] minCount = config.getMinCount();
@@ -173,6 +179,7 @@ public class SimpleByteBufferPool extends ByteBufferPool {
             return result;
         } else {
             int size = bufSizes[poolIndex];
+            perfCallback.fire(PerfConsts.POOL_C_ALLOCATE, 1, size);
             return allocate(size);
         }
     }
@@ -232,6 +239,9 @@ public class SimpleByteBufferPool extends ByteBufferPool {
     private void clean0() {
         long expireNanos = ts.getNanoTime() - this.timeoutNanos;
         for (FixSizeBufferPool pool : pools) {
+            if (autoTune) {
+                pool.tune();
+            }
             pool.clean(expireNanos);
         }
     }
@@ -242,6 +252,28 @@ public class SimpleByteBufferPool extends ByteBufferPool {
         }
     }
 
+    @Override
+    public PoolStat getStat() {
+        if (threadSafe) {
+            synchronized (this) {
+                return getStat0();
+            }
+        } else {
+            return getStat0();
+        }
+    }
+
+    private PoolStat getStat0() {
+        PoolStat stat = new PoolStat(bufSizes);
+        for (int i = 0; i < pools.length; i++) {
+            pools[i].fillStat(stat, i);
+        }
+        stat.borrowTooSmallCount = statBorrowTooSmallCount;
+        stat.borrowTooLargeCount = statBorrowTooLargeCount;
+        return stat;
+    }
+
+    @Override
     public String formatStat() {
         if (threadSafe) {
             synchronized (this) {
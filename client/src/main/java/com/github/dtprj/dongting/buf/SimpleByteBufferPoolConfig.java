@@ -15,6 +15,8 @@
  */
 package com.github.dtprj.dongting.buf;
 
+import com.github.dtprj.dongting.common.NoopPerfCallback;
+import com.github.dtprj.dongting.common.PerfCallback;
 import com.github.dtprj.dongting.common.Timestamp;
 
 /**
@@ -30,6 +32,9 @@ public class SimpleByteBufferPoolConfig {
     private int[] maxCount = SimpleByteBufferPool.DEFAULT_MAX_COUNT;
     private long timeoutMillis = 10 * 1000;
     private long shareSize = 0;
+    // if true, minCount and maxCount are adjusted by observed demand in clean(), maxCount is the upper bound
+    private boolean autoTune = false;
+    private PerfCallback perfCallback = NoopPerfCallback.INSTANCE;
 
     public SimpleByteBufferPoolConfig() {
     }
@@ -117,4 +122,20 @@ public class SimpleByteBufferPoolConfig {
     public void setShareSize(long shareSize) {
         this.shareSize = shareSize;
     }
+
+    public boolean isAutoTune() {
+        return autoTune;
+    }
+
+    public void setAutoTune(boolean autoTune) {
+        this.autoTune = autoTune;
+    }
+
+    public PerfCallback getPerfCallback() {
+        return perfCallback;
+    }
+
+    public void setPerfCallback(PerfCallback perfCallback) {
+        this.perfCallback = perfCallback;
+    }
 }
@@ -84,6 +84,11 @@ public class TwoLevelPool extends ByteBufferPool {
         smallPool.clean();
     }
 
+    @Override
+    public PoolStat getStat() {
+        return smallPool.getStat();
+    }
+
     @Override
     public String formatStat() {
         return smallPool.formatStat();
@@ -101,6 +101,163 @@ public class EncodeUtil {
         }
     }
 
+    /**
+     * the utf8 length of the string, same as the length of String.getBytes(UTF_8) but not allocate.
+     */
+    static int utf8Length(String s) {
+        int len = s.length();
+        int n = len;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                n++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // 4 bytes for 2 chars
+                n += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                n += 2;
+            }
+            // the unpaired surrogate is replaced by '?'
+        }
+        return n;
+    }
+
+    public static int actualSize(int pbIndex, String s) {
+        if (s == null || s.isEmpty()) {
+            return 0;
+        }
+        return PbUtil.accurateLengthDelimitedSize(pbIndex, utf8Length(s));
+    }
+
+    public static boolean encode(EncodeContext c, ByteBuffer destBuffer, int pbIndex, String s) {
+        if (s == null || s.isEmpty()) {
+            return true;
+        }
+        EncodeContext sub;
+        if (c.pending == 0) {
+            int len = utf8Length(s);
+            int prefixSize = PbUtil.accurateLengthDelimitedPrefixSize(pbIndex, len);
+            if (destBuffer.remaining() < prefixSize) {
+                return false;
+            }
+            PbUtil.writeLengthDelimitedPrefix(destBuffer, pbIndex, len);
+            c.pending = 1;
+            sub = c.createOrGetNestedContext(true);
+        } else if (c.pending == 1) {
+            sub = c.createOrGetNestedContext(false);
+        } else {
+            throw new CodecException(c);
+        }
+        if (encodeUtf8(sub, destBuffer, s)) {
+            c.pending = 0;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * encode the chars directly without String.getBytes(). The stage of the nested context is the index of
+     * the next char, and the pending is the bytes of that char already written (a char may be split
+     * between two buffers).
+     */
+    private static boolean encodeUtf8(EncodeContext sub, ByteBuffer dest, String s) {
+        int len = s.length();
+        int i = sub.stage;
+        int written = sub.pending;
+        while (i < len) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) {
+                if (!dest.hasRemaining()) {
+                    sub.stage = i;
+                    sub.pending = 0;
+                    return false;
+                }
+                dest.put((byte) ch);
+                i++;
+                continue;
+            }
+            int cp;
+            int charCount = 1;
+            if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                cp = Character.toCodePoint(ch, s.charAt(i + 1));
+                charCount = 2;
+            } else if (Character.isSurrogate(ch)) {
+                // same as String.getBytes(UTF_8)
+                cp = '?';
+            } else {
+                cp = ch;
+            }
+            int n = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+            while (written < n) {
+                if (!dest.hasRemaining()) {
+                    sub.stage = i;
+                    sub.pending = written;
+                    return false;
+                }
+                dest.put(utf8Byte(cp, n, written));
+                written++;
+            }
+            written = 0;
+            i += charCount;
+        }
+        sub.stage = EncodeContext.STAGE_END;
+        sub.pending = 0;
+        return true;
+    }
+
+    private static byte utf8Byte(int cp, int n, int index) {
+        if (n == 1) {
+            return (byte) cp;
+        }
+        if (index == 0) {
+            // 110xxxxx, 1110xxxx, 11110xxx
+            return (byte) ((0xF00 >> n) | (cp >> (6 * (n - 1))));
+        }
+        return (byte) (0x80 | ((cp >> (6 * (n - 1 - index))) & 0x3F));
+    }
+
+    public static int actualSizeOfStrs(int pbIndex, List<String> list) {
+        if (list == null || list.isEmpty()) {
+            return 0;
+        }
+        int size = 0;
+        for (int len = list.size(), i = 0; i < len; i++) {
+            size += actualSize(pbIndex, list.get(i));
+        }
+        return size;
+    }
+
+    public static boolean encodeStrs(EncodeContext c, ByteBuffer dest, int pbIndex, List<String> list) {
+        if (list == null || list.isEmpty()) {
+            return true;
+        }
+        EncodeContext sub;
+        if (c.pending == 0) {
+            sub = c.createOrGetNestedContext(true);
+            c.pending = 1;
+        } else if (c.pending == 1) {
+            sub = c.createOrGetNestedContext(false);
+        } else {
+            throw new CodecException(c);
+        }
+        int count = list.size();
+        int i = sub.stage;
+        for (; i < count; i++) {
+            if (!encode(sub, dest, pbIndex, list.get(i))) {
+                sub.stage = i;
+                return false;
+            }
+        }
+        sub.stage = EncodeContext.STAGE_END;
+        c.pending = 0;
+        return true;
+    }
+
     public static int actualSizeOfBytes(int pbIndex, List<byte[]> list) {
         if (list == null || list.isEmpty()) {
             return 0;
@@ -0,0 +1,42 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark a field of PbMessage. Supported types: int, long, boolean, byte[], String, and the class annotated with
+ * PbMessage (which should implement Encodable). The repeated field is declared as List or ArrayList of String,
+ * byte[] or PbMessage class, repeated number is not supported.
+ *
+ * @author huangli
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface PbField {
+    /**
+     * the protobuf field index.
+     */
+    int index();
+
+    /**
+     * use fix32/fix64 instead of var int for int/long field.
+     */
+    boolean fixed() default false;
+}
@@ -17,6 +17,7 @@ package com.github.dtprj.dongting.codec;
 
 import com.github.dtprj.dongting.common.DtUtil;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.Objects;
 
@@ -124,6 +125,10 @@ public class PbParser {
                     }
                     break;
                 case STATUS_PARSE_TAG:
+                    if (pendingBytes == 0 && remain >= size - parsedBytes) {
+                        // the rest of the message is all in the buffer
+                        return parseRest(buf, callback);
+                    }
                 case STATUS_PARSE_FILED_LEN:
                     remain = parseVarInt(buf, remain);
                     if (status != STATUS_PARSE_FILED_BODY || fieldLen > 0) {
@@ -155,6 +160,110 @@ public class PbParser {
         }
     }
 
+    /**
+     * The fast path used when the rest of the message is all in the buffer (most small packets arrive whole).
+     * It's not resumable, so there is no need to save state for each field. The limit of the buffer is set
+     * to the end of the message, so read beyond it will throw BufferUnderflowException.
+     */
+    private Object parseRest(ByteBuffer buf, PbCallback<?> callback) {
+        int end = buf.position() + size - parsedBytes;
+        int oldLimit = buf.limit();
+        buf.limit(end);
+        boolean success = true;
+        try {
+            while (buf.hasRemaining()) {
+                int tag = readVarInt32(buf);
+                int index = tag >>> 3;
+                if (index == 0) {
+                    throw new PbException("bad index:" + index);
+                }
+                this.fieldIndex = index;
+                boolean r;
+                switch (tag & 0x07) {
+                    case PbUtil.TYPE_VAR_INT:
+                        r = callback.readVarNumber(index, readVarInt64(buf));
+                        break;
+                    case PbUtil.TYPE_FIX64:
+                        r = callback.readFix64(index, Long.reverseBytes(buf.getLong()));
+                        break;
+                    case PbUtil.TYPE_FIX32:
+                        r = callback.readFix32(index, Integer.reverseBytes(buf.getInt()));
+                        break;
+                    case PbUtil.TYPE_LENGTH_DELIMITED:
+                        int len = readVarInt32(buf);
+                        if (len < 0) {
+                            throw new PbException("bad field len: " + len);
+                        }
+                        if (len > buf.remaining()) {
+                            throw new PbException("field length overflow. len=" + len + ",index=" + index);
+                        }
+                        int fieldEnd = buf.position() + len;
+                        buf.limit(fieldEnd);
+                        r = callback.readBytes(index, buf, len, 0);
+                        buf.limit(end);
+                        buf.position(fieldEnd);
+                        break;
+                    default:
+                        throw new PbException("type not support:" + (tag & 0x07));
+                }
+                if (!r) {
+                    buf.position(end);
+                    this.status = STATUS_SKIP_REST;
+                    success = false;
+                    break;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new PbException("size exceed " + size);
+        } finally {
+            buf.limit(oldLimit);
+        }
+        this.parsedBytes = size;
+        return callEnd(callback, success);
+    }
+
+    private static int readVarInt32(ByteBuffer buf) {
+        int x = buf.get();
+        if (x >= 0) {
+            return x;
+        }
+        int v = x & 0x7F;
+        if ((x = buf.get()) >= 0) {
+            return v | x << 7;
+        }
+        v |= (x & 0x7F) << 7;
+        if ((x = buf.get()) >= 0) {
+            return v | x << 14;
+        }
+        v |= (x & 0x7F) << 14;
+        if ((x = buf.get()) >= 0) {
+            return v | x << 21;
+        }
+        v |= (x & 0x7F) << 21;
+        if ((x = buf.get()) >= 0) {
+            return v | x << 28;
+        }
+        // max 5 bytes for 32bit number in proto buffer
+        throw new PbException("var int too long: 6");
+    }
+
+    private static long readVarInt64(ByteBuffer buf) {
+        int x = buf.get();
+        if (x >= 0) {
+            return x;
+        }
+        long v = x & 0x7F;
+        for (int shift = 7; shift < 70; shift += 7) {
+            x = buf.get();
+            v |= (x & 0x7FL) << shift;
+            if (x >= 0) {
+                return v;
+            }
+        }
+        // max 10 bytes for 64bit number in proto buffer
+        throw new PbException("var long too long: 11");
+    }
+
     private Object callEnd(PbCallback<?> callback, boolean success) {
         if (this.status > STATUS_END_SKIP) {
             try {
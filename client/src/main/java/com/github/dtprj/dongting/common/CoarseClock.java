@@ -0,0 +1,70 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Process wide cached clock, a daemon ticker thread publishes System.nanoTime() and System.currentTimeMillis()
+ * every resolution, so reading the time is a volatile read. The resolution can be set by system property
+ * "dt.clock.resolutionMicros" (default 1000), the ticker thread is started when this class is first used.
+ *
+ * <p>The value may be behind the real time by about one resolution (more if the ticker thread is not
+ * scheduled in time), so it's used by the call sites which opt in and tolerate that, such as the timeout of
+ * a rpc or the perf statistics in millis. The threads which have a round loop (NioWorker, Dispatcher) should
+ * use their own Timestamp instead.
+ *
+ * @author huangli
+ */
+public final class CoarseClock {
+
+    private static final long RESOLUTION_NANOS = TimeUnit.MICROSECONDS.toNanos(
+            Math.max(1, Long.parseLong(System.getProperty("dt.clock.resolutionMicros", "1000"))));
+
+    private static volatile long nanoTime = System.nanoTime();
+    private static volatile long wallClockMillis = System.currentTimeMillis();
+
+    static {
+        Thread t = new Thread(CoarseClock::run, "DtCoarseClock");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private CoarseClock() {
+    }
+
+    private static void run() {
+        //noinspection InfiniteLoopStatement
+        while (true) {
+            LockSupport.parkNanos(RESOLUTION_NANOS);
+            nanoTime = System.nanoTime();
+            wallClockMillis = System.currentTimeMillis();
+        }
+    }
+
+    public static long nanoTime() {
+        return nanoTime;
+    }
+
+    public static long currentTimeMillis() {
+        return wallClockMillis;
+    }
+
+    public static long getResolutionNanos() {
+        return RESOLUTION_NANOS;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread safe int key map without boxing. The get/forEach operations are lock free: the nodes are immutable,
+ * a modification builds a new chain prefix of the bucket, stores it to the table, then writes the volatile
+ * table field (the same or a resized table), so the reader which reads the table field first can see it.
+ * The modifications are serialized by a lock, since this map is designed for read-mostly cases
+ * (for example, look up group by id for each request).
+ *
+ * <p>The forEach method is weakly consistent, it may or may not see the modifications during iteration.
+ *
+ * @author huangli
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class ConcurrentIntObjMap<V> {
+    private static final int MAX_ARRAY_SIZE = 1 << 30;
+    private final float loadFactor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Node[] table;
+    private volatile int size;
+    private int resizeThreshold;
+
+    public ConcurrentIntObjMap() {
+        this(8, 0.75f);
+    }
+
+    public ConcurrentIntObjMap(int initSize, float loadFactor) {
+        DtUtil.checkPositive(initSize, "initSize");
+        DtUtil.checkPositive(loadFactor, "loadFactor");
+        int len = BitUtil.nextHighestPowerOfTwo(initSize);
+        this.loadFactor = loadFactor;
+        this.resizeThreshold = (int) (loadFactor * len);
+        this.table = new Node[len];
+    }
+
+    protected int hashCode(int v) {
+        return v;
+    }
+
+    public V get(int key) {
+        Node[] tab = this.table;
+        Node<V> n = tab[hashCode(key) & (tab.length - 1)];
+        while (n != null) {
+            if (n.key == key) {
+                return n.value;
+            }
+            n = n.next;
+        }
+        return null;
+    }
+
+    public V put(int key, V value) {
+        return put(key, value, false);
+    }
+
+    public V putIfAbsent(int key, V value) {
+        return put(key, value, true);
+    }
+
+    private V put(int key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(value);
+        lock.lock();
+        try {
+            Node[] tab = this.table;
+            int idx = hashCode(key) & (tab.length - 1);
+            Node<V> head = tab[idx];
+            for (Node<V> n = head; n != null; n = n.next) {
+                if (n.key == key) {
+                    if (!onlyIfAbsent) {
+                        tab[idx] = replace(head, n, new Node<>(key, value, n.next));
+                        this.table = tab;
+                    }
+                    return n.value;
+                }
+            }
+            tab[idx] = new Node<>(key, value, head);
+            int s = size + 1;
+            size = s;
+            if (s > resizeThreshold) {
+                tab = resize(tab);
+            }
+            this.table = tab;
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public V remove(int key) {
+        lock.lock();
+        try {
+            Node[] tab = this.table;
+            int idx = hashCode(key) & (tab.length - 1);
+            Node<V> head = tab[idx];
+            for (Node<V> n = head; n != null; n = n.next) {
+                if (n.key == key) {
+                    tab[idx] = replace(head, n, n.next);
+                    size = size - 1;
+                    this.table = tab;
+                    return n.value;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // copy the nodes before target, and link the last copied node to replacement
+    private static <V> Node<V> replace(Node<V> head, Node<V> target, Node<V> replacement) {
+        if (head == target) {
+            return replacement;
+        }
+        return new Node<>(head.key, head.value, replace(head.next, target, replacement));
+    }
+
+    private Node[] resize(Node[] tab) {
+        int oldLength = tab.length;
+        if (oldLength >= MAX_ARRAY_SIZE) {
+            return tab;
+        }
+        int newLength = oldLength << 1;
+        int mask = newLength - 1;
+        Node[] newTab = new Node[newLength];
+        for (int i = 0; i < oldLength; i++) {
+            for (Node<V> n = tab[i]; n != null; n = n.next) {
+                int idx = hashCode(n.key) & mask;
+                newTab[idx] = new Node<>(n.key, n.value, newTab[idx]);
+            }
+        }
+        this.resizeThreshold = (int) (loadFactor * newLength);
+        return newTab;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(IntObjMap.ReadOnlyVisitor<V> visitor) {
+        Node[] tab = this.table;
+        for (Node<V> head : tab) {
+            for (Node<V> n = head; n != null; n = n.next) {
+                visitor.visit(n.key, n.value);
+            }
+        }
+    }
+
+    private static final class Node<V> {
+        final int key;
+        final V value;
+        final Node<V> next;
+
+        Node(int key, V value, Node<V> next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
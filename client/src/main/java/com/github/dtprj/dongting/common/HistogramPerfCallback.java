@@ -0,0 +1,377 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import com.github.dtprj.dongting.net.PerfConsts;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A dependency free PerfCallback for production, record the cost time of every PerfConsts type in a HDR style
+ * (log linear) histogram, 8 sub buckets for each power of 2, so the relative error is less than 12.5%.
+ *
+ * <p>Each thread records to its own histograms, the writes are single writer (lazySet without CAS).
+ * The reader merges the histograms of all threads, the histograms of dead threads are merged into a retired
+ * one. The result can be rendered in Prometheus text format, see PerfHttpServer.
+ *
+ * <p>The metric name is prefix + lower case field name of PerfConsts, for example, RAFT_D_LOG_SYNC with prefix
+ * "dt_" is rendered as histogram "dt_raft_d_log_sync_seconds". The types whose name contains "_C_" are
+ * rendered as counters. The count/sum parameters of onEvent are rendered as counters with "_count_total"/
+ * "_sum_total" suffix if they are not zero.
+ *
+ * @author huangli
+ */
+public class HistogramPerfCallback extends PerfCallback {
+
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // values less than 2 * SUB_BUCKET_COUNT are recorded exactly, then 8 buckets for each power of 2
+    static final int BUCKET_COUNT = 2 * SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+    private static final int IDX_EVENTS = 0;
+    private static final int IDX_TIME = 1;
+    private static final int IDX_COUNT = 2;
+    private static final int IDX_SUM = 3;
+    private static final int IDX_MAX = 4;
+    private static final int HEADER_LEN = 5;
+
+    private final String prefix;
+    private final int minType;
+    // perfType - minType -> slot, -1 if not accepted
+    private final int[] slotOfType;
+    private final String[] names;
+    private final boolean[] counterTypes;
+
+    private final ThreadLocal<Recorder> recorder = new ThreadLocal<>();
+    private final CopyOnWriteArrayList<Recorder> recorders = new CopyOnWriteArrayList<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // merged values of dead threads, guarded by lock
+    private final long[][] retired;
+
+    /**
+     * Accept all PerfConsts types except PERF_DEBUG and FIBER_D_EXEC (it enables the fiber profiler which
+     * has more overhead).
+     */
+    public HistogramPerfCallback(boolean useNanos, String prefix) {
+        this(useNanos, prefix, defaultTypes());
+    }
+
+    public HistogramPerfCallback(boolean useNanos, String prefix, int[] acceptTypes) {
+        this(useNanos, false, prefix, acceptTypes);
+    }
+
+    public HistogramPerfCallback(boolean useNanos, boolean coarseClock, String prefix, int[] acceptTypes) {
+        super(useNanos, coarseClock);
+        this.prefix = prefix == null ? "" : prefix;
+        ArrayList<Field> fields = perfConstFields();
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int t : acceptTypes) {
+            min = Math.min(min, t);
+            max = Math.max(max, t);
+        }
+        if (acceptTypes.length == 0) {
+            min = 0;
+            max = -1;
+        }
+        this.minType = min;
+        this.slotOfType = new int[max - min + 1];
+        Arrays.fill(slotOfType, -1);
+        String[] names = new String[acceptTypes.length];
+        boolean[] counterTypes = new boolean[acceptTypes.length];
+        int slot = 0;
+        for (int t : acceptTypes) {
+            if (slotOfType[t - min] >= 0) {
+                continue;
+            }
+            String name = null;
+            for (Field f : fields) {
+                if (getInt(f) == t) {
+                    name = f.getName();
+                    break;
+                }
+            }
+            if (name == null) {
+                throw new IllegalArgumentException("unknown perf type: " + t);
+            }
+            slotOfType[t - min] = slot;
+            names[slot] = name.toLowerCase(Locale.ROOT);
+            counterTypes[slot] = name.contains("_C_");
+            slot++;
+        }
+        this.names = Arrays.copyOf(names, slot);
+        this.counterTypes = Arrays.copyOf(counterTypes, slot);
+        this.retired = new long[slot][HEADER_LEN + BUCKET_COUNT];
+    }
+
+    private static ArrayList<Field> perfConstFields() {
+        ArrayList<Field> list = new ArrayList<>();
+        for (Field f : PerfConsts.class.getFields()) {
+            if (Modifier.isStatic(f.getModifiers()) && f.getType() == int.class) {
+                list.add(f);
+            }
+        }
+        return list;
+    }
+
+    private static int getInt(Field f) {
+        try {
+            return f.getInt(null);
+        } catch (IllegalAccessException e) {
+            throw new DtException(e);
+        }
+    }
+
+    private static int[] defaultTypes() {
+        ArrayList<Field> fields = perfConstFields();
+        int[] types = new int[fields.size()];
+        int count = 0;
+        for (Field f : fields) {
+            int t = getInt(f);
+            if (t != PERF_DEBUG && t != FIBER_D_EXEC) {
+                types[count++] = t;
+            }
+        }
+        return Arrays.copyOf(types, count);
+    }
+
+    private int slot(int perfType) {
+        int i = perfType - minType;
+        if (i < 0 || i >= slotOfType.length) {
+            return -1;
+        }
+        return slotOfType[i];
+    }
+
+    @Override
+    public boolean accept(int perfType) {
+        return slot(perfType) >= 0;
+    }
+
+    @Override
+    public void onEvent(int perfType, long costTime, int count, long sum) {
+        int slot = slot(perfType);
+        if (slot < 0) {
+            return;
+        }
+        Recorder r = recorder.get();
+        if (r == null) {
+            r = new Recorder(names.length);
+            recorder.set(r);
+            recorders.add(r);
+        }
+        AtomicLongArray a = r.slots.get(slot);
+        if (a == null) {
+            a = new AtomicLongArray(HEADER_LEN + BUCKET_COUNT);
+            r.slots.lazySet(slot, a);
+        }
+        if (costTime < 0) {
+            costTime = 0;
+        }
+        // single writer, so lazySet is enough
+        a.lazySet(IDX_EVENTS, a.get(IDX_EVENTS) + 1);
+        a.lazySet(IDX_TIME, a.get(IDX_TIME) + costTime);
+        a.lazySet(IDX_COUNT, a.get(IDX_COUNT) + count);
+        a.lazySet(IDX_SUM, a.get(IDX_SUM) + sum);
+        if (costTime > a.get(IDX_MAX)) {
+            a.lazySet(IDX_MAX, costTime);
+        }
+        int b = HEADER_LEN + bucketIndex(costTime);
+        a.lazySet(b, a.get(b) + 1);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        return 2 * SUB_BUCKET_COUNT + ((exp - SUB_BUCKET_BITS - 1) << SUB_BUCKET_BITS)
+                + (int) ((value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    /**
+     * The max value of the bucket (inclusive).
+     */
+    static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int i = index - 2 * SUB_BUCKET_COUNT;
+        int shift = (i >> SUB_BUCKET_BITS) + 1;
+        long sub = SUB_BUCKET_COUNT + (i & (SUB_BUCKET_COUNT - 1));
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Merge the values of all threads, the values of dead threads are merged into retired values and the
+     * recorders of them are removed.
+     */
+    private long[][] snapshot() {
+        long[][] result = new long[names.length][];
+        lock.lock();
+        try {
+            ArrayList<Recorder> dead = null;
+            for (Recorder r : recorders) {
+                if (r.thread.get() == null) {
+                    // the thread is dead, no more writes
+                    merge(r, retired);
+                    if (dead == null) {
+                        dead = new ArrayList<>();
+                    }
+                    dead.add(r);
+                }
+            }
+            if (dead != null) {
+                recorders.removeAll(dead);
+            }
+            for (int i = 0; i < names.length; i++) {
+                result[i] = retired[i].clone();
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Recorder r : recorders) {
+            merge(r, result);
+        }
+        return result;
+    }
+
+    private static void merge(Recorder r, long[][] dest) {
+        for (int slot = 0; slot < dest.length; slot++) {
+            AtomicLongArray a = r.slots.get(slot);
+            if (a == null) {
+                continue;
+            }
+            long[] d = dest[slot];
+            for (int i = 0; i < d.length; i++) {
+                if (i == IDX_MAX) {
+                    d[i] = Math.max(d[i], a.get(i));
+                } else {
+                    d[i] += a.get(i);
+                }
+            }
+        }
+    }
+
+    private static long quantile(long[] values, double q) {
+        long events = values[IDX_EVENTS];
+        if (events == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * events));
+        long c = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            c += values[HEADER_LEN + i];
+            if (c >= rank) {
+                return Math.min(bucketUpperBound(i), values[IDX_MAX]);
+            }
+        }
+        return values[IDX_MAX];
+    }
+
+    /**
+     * Return the quantile of cost time (in nanos or millis, depends on useNanos) since this callback created,
+     * the result is the upper bound of the bucket, so the relative error is less than 12.5%.
+     */
+    public long getQuantile(int perfType, double q) {
+        int slot = slot(perfType);
+        if (slot < 0) {
+            return 0;
+        }
+        return quantile(snapshot()[slot], q);
+    }
+
+    /**
+     * Return the count of events of the perf type.
+     */
+    public long getEventCount(int perfType) {
+        int slot = slot(perfType);
+        if (slot < 0) {
+            return 0;
+        }
+        return snapshot()[slot][IDX_EVENTS];
+    }
+
+    /**
+     * Render all metrics in Prometheus text format (version 0.0.4). The time is converted to seconds,
+     * the le of histogram buckets are powers of 2 (from 1us or 1ms).
+     */
+    public void render(StringBuilder sb) {
+        long[][] values = snapshot();
+        // 2^10 nanos is about 1us, 2^35 nanos is about 34s
+        int minExp = useNanos ? 10 : 0;
+        int maxExp = useNanos ? 35 : 15;
+        double unit = useNanos ? 1e-9 : 1e-3;
+        for (int slot = 0; slot < values.length; slot++) {
+            long[] v = values[slot];
+            String name = prefix + names[slot];
+            if (counterTypes[slot]) {
+                renderCounter(sb, name + "_total", v[IDX_EVENTS]);
+            } else {
+                String hn = name + "_seconds";
+                sb.append("# TYPE ").append(hn).append(" histogram\n");
+                long cumulative = 0;
+                int bucket = 0;
+                for (int exp = minExp; exp <= maxExp; exp++) {
+                    // buckets are aligned to power of 2, so there is no bucket cross the bound
+                    long bound = 1L << exp;
+                    while (bucket < BUCKET_COUNT && bucketUpperBound(bucket) < bound) {
+                        cumulative += v[HEADER_LEN + bucket];
+                        bucket++;
+                    }
+                    sb.append(hn).append("_bucket{le=\"").append(Double.toString(bound * unit)).append("\"} ")
+                            .append(cumulative).append('\n');
+                }
+                sb.append(hn).append("_bucket{le=\"+Inf\"} ").append(v[IDX_EVENTS]).append('\n');
+                sb.append(hn).append("_sum ").append(Double.toString(v[IDX_TIME] * unit)).append('\n');
+                sb.append(hn).append("_count ").append(v[IDX_EVENTS]).append('\n');
+                sb.append("# TYPE ").append(name).append("_max_seconds gauge\n");
+                sb.append(name).append("_max_seconds ").append(Double.toString(v[IDX_MAX] * unit)).append('\n');
+            }
+            if (v[IDX_COUNT] != 0) {
+                renderCounter(sb, name + "_count_total", v[IDX_COUNT]);
+            }
+            if (v[IDX_SUM] != 0) {
+                renderCounter(sb, name + "_sum_total", v[IDX_SUM]);
+            }
+        }
+    }
+
+    private static void renderCounter(StringBuilder sb, String name, long value) {
+        sb.append("# TYPE ").append(name).append(" counter\n");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static final class Recorder {
+        final WeakReference<Thread> thread = new WeakReference<>(Thread.currentThread());
+        // written by owner thread only
+        final AtomicReferenceArray<AtomicLongArray> slots;
+
+        Recorder(int slotCount) {
+            this.slots = new AtomicReferenceArray<>(slotCount);
+        }
+    }
+}
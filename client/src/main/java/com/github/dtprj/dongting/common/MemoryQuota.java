@@ -0,0 +1,173 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hierarchical memory quota, the bytes reserved in a quota are also reserved in all its ancestors, so the
+ * total of many components (for example, all raft groups of a server, all connections of a NioServer) is
+ * limited by the ancestor quota. ROOT is the process wide quota, its limit can be set by system property
+ * "dt.memory.limit" (bytes) or setLimit().
+ *
+ * <p>tryAcquire is lock free, if any quota in the chain exceeds the limit, the reserved bytes are rolled back
+ * and false is returned, the caller should fail fast (such as FlowControlException or FLOW_CONTROL response).
+ * The limit less than or equal to 0 means no limit, the quota is used for accounting only.
+ *
+ * <p>The quota without limit counts the bytes in a LongAdder, so the threads which share an unlimited ancestor
+ * (such as ROOT) don't contend on one counter. The quota with limit counts the bytes in an AtomicLong to check
+ * the limit.
+ *
+ * @author huangli
+ */
+public final class MemoryQuota {
+
+    public static final MemoryQuota ROOT = new MemoryQuota("process",
+            Long.parseLong(System.getProperty("dt.memory.limit", "0")), null);
+
+    private final String name;
+    private final MemoryQuota parent;
+    private volatile long limit;
+    // used when limit > 0
+    private final AtomicLong used = new AtomicLong();
+    // used when limit <= 0, getUsed() returns the sum of both
+    private final LongAdder unlimitedUsed = new LongAdder();
+    private final LongAdder rejectCount = new LongAdder();
+    private final CopyOnWriteArrayList<MemoryQuota> children = new CopyOnWriteArrayList<>();
+
+    private MemoryQuota(String name, long limit, MemoryQuota parent) {
+        this.name = name;
+        this.limit = limit;
+        this.parent = parent;
+    }
+
+    /**
+     * Create a root quota which is not a child of ROOT, used for test.
+     */
+    public static MemoryQuota newRoot(String name, long limit) {
+        return new MemoryQuota(name, limit, null);
+    }
+
+    public MemoryQuota createChild(String name, long limit) {
+        MemoryQuota q = new MemoryQuota(name, limit, this);
+        children.add(q);
+        return q;
+    }
+
+    /**
+     * Detach this quota from its parent, so it's not included in the stat of parent. The bytes reserved before
+     * can still be released.
+     */
+    public void close() {
+        if (parent != null) {
+            parent.children.remove(this);
+        }
+    }
+
+    public boolean tryAcquire(long bytes) {
+        for (MemoryQuota q = this; q != null; q = q.parent) {
+            long limit = q.limit;
+            if (limit <= 0) {
+                q.unlimitedUsed.add(bytes);
+            } else if (q.used.addAndGet(bytes) + q.unlimitedUsed.sum() > limit) {
+                q.rejectCount.increment();
+                // rollback
+                for (MemoryQuota x = this; x != q.parent; x = x.parent) {
+                    x.add(-bytes);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void release(long bytes) {
+        for (MemoryQuota q = this; q != null; q = q.parent) {
+            q.add(-bytes);
+        }
+    }
+
+    // if the limit is changed, the bytes may be released to the other counter, the sum is still right
+    private void add(long bytes) {
+        if (limit <= 0) {
+            unlimitedUsed.add(bytes);
+        } else {
+            used.addAndGet(bytes);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public void setLimit(long limit) {
+        this.limit = limit;
+    }
+
+    public long getUsed() {
+        return used.get() + unlimitedUsed.sum();
+    }
+
+    /**
+     * The count of tryAcquire failed because this quota exceeds the limit.
+     */
+    public long getRejectCount() {
+        return rejectCount.sum();
+    }
+
+    public List<MemoryQuota> getChildren() {
+        return children;
+    }
+
+    /**
+     * Format the usage of this quota and all its descendants, one line for each quota.
+     */
+    public String formatStat() {
+        StringBuilder sb = new StringBuilder(256);
+        formatStat(sb, 0);
+        return sb.toString();
+    }
+
+    private void formatStat(StringBuilder sb, int level) {
+        for (int i = 0; i < level; i++) {
+            sb.append("  ");
+        }
+        sb.append(name).append(": used=").append(getUsed());
+        if (limit > 0) {
+            sb.append(", limit=").append(limit);
+        }
+        long r = rejectCount.sum();
+        if (r > 0) {
+            sb.append(", reject=").append(r);
+        }
+        sb.append('\n');
+        for (MemoryQuota c : children) {
+            c.formatStat(sb, level + 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "(used=" + getUsed() + ", limit=" + limit + ")";
+    }
+}
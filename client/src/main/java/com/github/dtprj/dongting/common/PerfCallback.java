@@ -23,9 +23,20 @@ import com.github.dtprj.dongting.net.PerfConsts;
 public abstract class PerfCallback implements PerfConsts {
 
     protected final boolean useNanos;
+    protected final boolean coarseClock;
 
     public PerfCallback(boolean useNanos) {
+        this(useNanos, false);
+    }
+
+    /**
+     * @param coarseClock if true, the methods without Timestamp parameter take time from CoarseClock instead of
+     *                    System.nanoTime()/currentTimeMillis(), the cost time has an error of about the
+     *                    resolution of CoarseClock, so it's suitable for millis or slow events.
+     */
+    public PerfCallback(boolean useNanos, boolean coarseClock) {
         this.useNanos = useNanos;
+        this.coarseClock = coarseClock;
     }
 
     public final void refresh(Timestamp ts) {
@@ -51,7 +62,9 @@ public abstract class PerfCallback implements PerfConsts {
     }
 
     private long takeTime0() {
-        if (useNanos) {
+        if (coarseClock) {
+            return useNanos ? CoarseClock.nanoTime() : CoarseClock.currentTimeMillis();
+        } else if (useNanos) {
             return System.nanoTime();
         } else {
             return System.currentTimeMillis();
@@ -90,6 +103,16 @@ public abstract class PerfCallback implements PerfConsts {
         onEvent(perfType, costTime, count, sum);
     }
 
+    /**
+     * fire event with the cost time measured by System.nanoTime() by caller.
+     */
+    public void fireNanos(int perfType, long costNanos) {
+        if (!accept(perfType)) {
+            return;
+        }
+        onEvent(perfType, useNanos ? costNanos : costNanos / 1_000_000, 1, 0);
+    }
+
     public void fire(int perfType, int count, long sum) {
         if (!accept(perfType)) {
             return;
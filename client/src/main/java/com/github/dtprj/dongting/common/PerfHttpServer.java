@@ -0,0 +1,98 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A simple http server to expose the metrics of HistogramPerfCallback in Prometheus text format, the path
+ * is "/metrics". It uses the http server of JDK (module jdk.httpserver), so there is no other dependency.
+ * The requests are processed in the single thread of the http server.
+ *
+ * @author huangli
+ */
+public class PerfHttpServer extends AbstractLifeCircle {
+    private static final DtLog log = DtLogs.getLogger(PerfHttpServer.class);
+
+    public static final String PATH = "/metrics";
+
+    private final InetSocketAddress address;
+    private final HistogramPerfCallback[] callbacks;
+    private HttpServer server;
+
+    public PerfHttpServer(int port, HistogramPerfCallback... callbacks) {
+        this(new InetSocketAddress(port), callbacks);
+    }
+
+    public PerfHttpServer(InetSocketAddress address, HistogramPerfCallback... callbacks) {
+        this.address = address;
+        this.callbacks = callbacks;
+    }
+
+    @Override
+    protected void doStart() {
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            throw new DtException(e);
+        }
+        server.createContext(PATH, this::handle);
+        server.start();
+        log.info("perf http server started: {}", server.getAddress());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder sb = new StringBuilder(16 * 1024);
+            for (HistogramPerfCallback c : callbacks) {
+                c.render(sb);
+            }
+            byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        } catch (RuntimeException e) {
+            log.error("render metrics fail", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * The actual port, useful if the server is created with port 0.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    protected void doStop(DtTime timeout, boolean force) {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+}
@@ -17,9 +17,12 @@ package com.github.dtprj.dongting.common;
 
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
+import com.github.dtprj.dongting.queue.MpscChunkedQueue;
 import com.github.dtprj.dongting.queue.MpscLinkedQueue;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
 
 /**
  * @author huangli
@@ -34,6 +37,8 @@ public abstract class VersionFactory {
 
     public abstract <E> MpscLinkedQueue<E> newMpscLinkedQueue();
 
+    public abstract <E> MpscChunkedQueue<E> newMpscChunkedQueue(int chunkSize);
+
     public abstract void releaseDirectBuffer(ByteBuffer buffer);
 
     public abstract void releaseFence();
@@ -42,6 +47,11 @@ public abstract class VersionFactory {
 
     public abstract void fullFence();
 
+    /**
+     * enable SO_REUSEPORT on the channel, return false if not supported.
+     */
+    public abstract boolean enableReusePort(NetworkChannel channel) throws IOException;
+
 }
 
 class VfHolder {
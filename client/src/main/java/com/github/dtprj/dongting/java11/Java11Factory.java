@@ -17,11 +17,15 @@ package com.github.dtprj.dongting.java11;
 
 import com.github.dtprj.dongting.common.AbstractRefCountUpdater;
 import com.github.dtprj.dongting.common.VersionFactory;
+import com.github.dtprj.dongting.queue.MpscChunkedQueue;
 import com.github.dtprj.dongting.queue.MpscLinkedQueue;
 import com.github.dtprj.dongting.unsafe.DtUnsafe;
 
+import java.io.IOException;
 import java.lang.invoke.VarHandle;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
 
 /**
  * @author huangli
@@ -39,6 +43,11 @@ public class Java11Factory extends VersionFactory {
         return new Java11MpscLinkedQueue<>();
     }
 
+    @Override
+    public <E> MpscChunkedQueue<E> newMpscChunkedQueue(int chunkSize) {
+        return new Java11MpscChunkedQueue<>(chunkSize);
+    }
+
     @Override
     public void releaseDirectBuffer(ByteBuffer buffer) {
         DtUnsafe.freeDirectBuffer(buffer);
@@ -58,4 +67,13 @@ public class Java11Factory extends VersionFactory {
     public void fullFence() {
         VarHandle.fullFence();
     }
+
+    @Override
+    public boolean enableReusePort(NetworkChannel channel) throws IOException {
+        if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            return false;
+        }
+        channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        return true;
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.java11;
+
+import com.github.dtprj.dongting.queue.MpscChunkedQueue;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * @author huangli
+ */
+public class Java11MpscChunkedQueue<E> extends MpscChunkedQueue<E> {
+    private static final VarHandle PRODUCER_INDEX;
+    private static final VarHandle PRODUCER_LIMIT;
+    private static final VarHandle CONSUMER_INDEX;
+    private static final VarHandle ELEMENT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            PRODUCER_INDEX = l.findVarHandle(MpscChunkedQueue.class, "producerIndex", long.class);
+            PRODUCER_LIMIT = l.findVarHandle(MpscChunkedQueue.class, "producerLimit", long.class);
+            CONSUMER_INDEX = l.findVarHandle(MpscChunkedQueue.class, "consumerIndex", long.class);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    public Java11MpscChunkedQueue(int chunkSize) {
+        super(chunkSize);
+    }
+
+    @Override
+    protected boolean casProducerIndex(long expect, long newValue) {
+        return PRODUCER_INDEX.compareAndSet(this, expect, newValue);
+    }
+
+    @Override
+    protected void setProducerIndexRelease(long newValue) {
+        PRODUCER_INDEX.setRelease(this, newValue);
+    }
+
+    @Override
+    protected boolean casProducerLimit(long expect, long newValue) {
+        return PRODUCER_LIMIT.compareAndSet(this, expect, newValue);
+    }
+
+    @Override
+    protected void setProducerLimitRelease(long newValue) {
+        PRODUCER_LIMIT.setRelease(this, newValue);
+    }
+
+    @Override
+    protected void setConsumerIndexRelease(long newValue) {
+        CONSUMER_INDEX.setRelease(this, newValue);
+    }
+
+    @Override
+    protected Object getElementAcquire(Object[] buffer, int index) {
+        return ELEMENT.getAcquire(buffer, index);
+    }
+
+    @Override
+    protected void setElementRelease(Object[] buffer, int index, Object value) {
+        ELEMENT.setRelease(buffer, index, value);
+    }
+}
@@ -20,11 +20,13 @@ import com.github.dtprj.dongting.common.DtException;
 import com.github.dtprj.dongting.common.VersionFactory;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
+import com.github.dtprj.dongting.queue.MpscChunkedQueue;
 import com.github.dtprj.dongting.queue.MpscLinkedQueue;
 import com.github.dtprj.dongting.unsafe.DtUnsafe;
 
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
 
 /**
  * @author huangli
@@ -67,6 +69,11 @@ public class Java8Factory extends VersionFactory {
         return new Java8MpscLinkedQueue<>();
     }
 
+    @Override
+    public <E> MpscChunkedQueue<E> newMpscChunkedQueue(int chunkSize) {
+        return new Java8MpscChunkedQueue<>(chunkSize);
+    }
+
     @Override
     public void releaseDirectBuffer(ByteBuffer buffer) {
         if (!buffer.isDirect()) {
@@ -96,4 +103,10 @@ public class Java8Factory extends VersionFactory {
     public void fullFence() {
         DtUnsafe.fullFence();
     }
+
+    @Override
+    public boolean enableReusePort(NetworkChannel channel) {
+        // StandardSocketOptions.SO_REUSEPORT is added in java 9
+        return false;
+    }
 }
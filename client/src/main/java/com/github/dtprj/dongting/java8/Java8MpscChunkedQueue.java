@@ -0,0 +1,82 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.java8;
+
+import com.github.dtprj.dongting.queue.MpscChunkedQueue;
+import com.github.dtprj.dongting.unsafe.DtUnsafe;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * @author huangli
+ */
+public class Java8MpscChunkedQueue<E> extends MpscChunkedQueue<E> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<MpscChunkedQueue> PRODUCER_INDEX;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<MpscChunkedQueue> PRODUCER_LIMIT;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<MpscChunkedQueue> CONSUMER_INDEX;
+
+    static {
+        PRODUCER_INDEX = AtomicLongFieldUpdater.newUpdater(MpscChunkedQueue.class, "producerIndex");
+        PRODUCER_LIMIT = AtomicLongFieldUpdater.newUpdater(MpscChunkedQueue.class, "producerLimit");
+        CONSUMER_INDEX = AtomicLongFieldUpdater.newUpdater(MpscChunkedQueue.class, "consumerIndex");
+    }
+
+    public Java8MpscChunkedQueue(int chunkSize) {
+        super(chunkSize);
+    }
+
+    @Override
+    protected boolean casProducerIndex(long expect, long newValue) {
+        return PRODUCER_INDEX.compareAndSet(this, expect, newValue);
+    }
+
+    @Override
+    protected void setProducerIndexRelease(long newValue) {
+        PRODUCER_INDEX.lazySet(this, newValue);
+    }
+
+    @Override
+    protected boolean casProducerLimit(long expect, long newValue) {
+        return PRODUCER_LIMIT.compareAndSet(this, expect, newValue);
+    }
+
+    @Override
+    protected void setProducerLimitRelease(long newValue) {
+        PRODUCER_LIMIT.lazySet(this, newValue);
+    }
+
+    @Override
+    protected void setConsumerIndexRelease(long newValue) {
+        CONSUMER_INDEX.lazySet(this, newValue);
+    }
+
+    @Override
+    protected Object getElementAcquire(Object[] buffer, int index) {
+        Object o = buffer[index];
+        DtUnsafe.acquireFence();
+        return o;
+    }
+
+    @Override
+    protected void setElementRelease(Object[] buffer, int index, Object value) {
+        DtUnsafe.releaseFence();
+        buffer[index] = value;
+    }
+}
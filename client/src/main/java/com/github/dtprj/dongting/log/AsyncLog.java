@@ -0,0 +1,203 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.log;
+
+/**
+ * @author huangli
+ */
+class AsyncLog implements DtLog {
+    static final int LEVEL_DEBUG = 0;
+    static final int LEVEL_INFO = 1;
+    static final int LEVEL_WARN = 2;
+    static final int LEVEL_ERROR = 3;
+
+    // the format is the message, don't format it
+    static final int ARGS_NONE = -1;
+    static final int ARGS_ARRAY = 3;
+
+    private final AsyncLogFactory factory;
+    private final DtLog delegate;
+
+    AsyncLog(AsyncLogFactory factory, DtLog delegate) {
+        this.factory = factory;
+        this.delegate = delegate;
+    }
+
+    private void submit(int level, String format, Object arg1, Object arg2, Object[] args, int argCount,
+                        Throwable t) {
+        factory.submit(delegate, level, format, arg1, arg2, args, argCount, t);
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return delegate.isDebugEnabled();
+    }
+
+    @Override
+    public void debug(String message) {
+        if (delegate.isDebugEnabled()) {
+            submit(LEVEL_DEBUG, message, null, null, null, ARGS_NONE, null);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object arg) {
+        if (delegate.isDebugEnabled()) {
+            submit(LEVEL_DEBUG, format, arg, null, null, 1, null);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object arg1, Object arg2) {
+        if (delegate.isDebugEnabled()) {
+            submit(LEVEL_DEBUG, format, arg1, arg2, null, 2, null);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object... args) {
+        if (delegate.isDebugEnabled()) {
+            submit(LEVEL_DEBUG, format, null, null, args, ARGS_ARRAY, null);
+        }
+    }
+
+    @Override
+    public void debug(String message, Throwable t) {
+        if (delegate.isDebugEnabled()) {
+            submit(LEVEL_DEBUG, message, null, null, null, ARGS_NONE, t);
+        }
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return delegate.isInfoEnabled();
+    }
+
+    @Override
+    public void info(String message) {
+        if (delegate.isInfoEnabled()) {
+            submit(LEVEL_INFO, message, null, null, null, ARGS_NONE, null);
+        }
+    }
+
+    @Override
+    public void info(String format, Object arg) {
+        if (delegate.isInfoEnabled()) {
+            submit(LEVEL_INFO, format, arg, null, null, 1, null);
+        }
+    }
+
+    @Override
+    public void info(String format, Object arg1, Object arg2) {
+        if (delegate.isInfoEnabled()) {
+            submit(LEVEL_INFO, format, arg1, arg2, null, 2, null);
+        }
+    }
+
+    @Override
+    public void info(String format, Object... args) {
+        if (delegate.isInfoEnabled()) {
+            submit(LEVEL_INFO, format, null, null, args, ARGS_ARRAY, null);
+        }
+    }
+
+    @Override
+    public void info(String message, Throwable t) {
+        if (delegate.isInfoEnabled()) {
+            submit(LEVEL_INFO, message, null, null, null, ARGS_NONE, t);
+        }
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return delegate.isWarnEnabled();
+    }
+
+    @Override
+    public void warn(String message) {
+        if (delegate.isWarnEnabled()) {
+            submit(LEVEL_WARN, message, null, null, null, ARGS_NONE, null);
+        }
+    }
+
+    @Override
+    public void warn(String format, Object arg) {
+        if (delegate.isWarnEnabled()) {
+            submit(LEVEL_WARN, format, arg, null, null, 1, null);
+        }
+    }
+
+    @Override
+    public void warn(String format, Object arg1, Object arg2) {
+        if (delegate.isWarnEnabled()) {
+            submit(LEVEL_WARN, format, arg1, arg2, null, 2, null);
+        }
+    }
+
+    @Override
+    public void warn(String format, Object... args) {
+        if (delegate.isWarnEnabled()) {
+            submit(LEVEL_WARN, format, null, null, args, ARGS_ARRAY, null);
+        }
+    }
+
+    @Override
+    public void warn(String message, Throwable t) {
+        if (delegate.isWarnEnabled()) {
+            submit(LEVEL_WARN, message, null, null, null, ARGS_NONE, t);
+        }
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return delegate.isErrorEnabled();
+    }
+
+    @Override
+    public void error(String message) {
+        if (delegate.isErrorEnabled()) {
+            submit(LEVEL_ERROR, message, null, null, null, ARGS_NONE, null);
+        }
+    }
+
+    @Override
+    public void error(String format, Object arg) {
+        if (delegate.isErrorEnabled()) {
+            submit(LEVEL_ERROR, format, arg, null, null, 1, null);
+        }
+    }
+
+    @Override
+    public void error(String format, Object arg1, Object arg2) {
+        if (delegate.isErrorEnabled()) {
+            submit(LEVEL_ERROR, format, arg1, arg2, null, 2, null);
+        }
+    }
+
+    @Override
+    public void error(String format, Object... args) {
+        if (delegate.isErrorEnabled()) {
+            submit(LEVEL_ERROR, format, null, null, args, ARGS_ARRAY, null);
+        }
+    }
+
+    @Override
+    public void error(String message, Throwable t) {
+        if (delegate.isErrorEnabled()) {
+            submit(LEVEL_ERROR, message, null, null, null, ARGS_NONE, t);
+        }
+    }
+}
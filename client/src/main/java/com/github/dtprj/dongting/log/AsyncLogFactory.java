@@ -0,0 +1,288 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.log;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous log factory, wraps another DtLogFactory (slf4j or jdk). The caller thread only checks the
+ * level and puts the level, format and raw arguments into a preallocated ring buffer, the background thread
+ * formats the message (by MessageFormatter) and writes it to the delegate logger, so the IO threads and
+ * dispatcher threads are not blocked by the log IO.
+ *
+ * <p>The message is prefixed with the name of caller thread, since it is written in the background thread.
+ * The arguments are formatted later, so they should not be modified after the log method returns.
+ *
+ * <p>If the ring buffer is full, the message is dropped (and counted, the dropped count is logged by
+ * the background thread) or the caller is blocked, depends on the blockWhenFull parameter.
+ *
+ * <p>It can be enabled by system property "dt.log.async=true", the "dt.log.async.bufferSize" (default 8192)
+ * and "dt.log.async.block" (default false) properties are used to create the instance.
+ *
+ * @author huangli
+ */
+public class AsyncLogFactory implements DtLogFactory {
+    private final DtLogFactory delegate;
+    private final boolean blockWhenFull;
+    // write to delegate directly
+    private final DtLog log;
+
+    private final LogEvent[] events;
+    // the sequence of each slot, slot i is writable for producer index p if seq == p,
+    // and readable for consumer index c if seq == c + 1
+    private final AtomicLongArray seqs;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private long consumerIndex;
+
+    private final LongAdder droppedCount = new LongAdder();
+    private long reportedDroppedCount;
+
+    private final Thread thread;
+    private volatile boolean waiting;
+    private volatile boolean stopped;
+
+    public AsyncLogFactory(DtLogFactory delegate, int bufferSize, boolean blockWhenFull) {
+        Objects.requireNonNull(delegate);
+        if (bufferSize < 2 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be power of 2: " + bufferSize);
+        }
+        this.delegate = delegate;
+        this.blockWhenFull = blockWhenFull;
+        this.log = delegate.getLogger(AsyncLogFactory.class);
+        this.events = new LogEvent[bufferSize];
+        this.seqs = new AtomicLongArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            events[i] = new LogEvent();
+            seqs.set(i, i);
+        }
+        this.mask = bufferSize - 1;
+        this.thread = new Thread(this::run, "DtAsyncLog");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "DtAsyncLogShutdown"));
+    }
+
+    @Override
+    public DtLog getLogger(String name) {
+        return new AsyncLog(this, delegate.getLogger(name));
+    }
+
+    @Override
+    public DtLog getLogger(Class<?> clazz) {
+        return new AsyncLog(this, delegate.getLogger(clazz));
+    }
+
+    void submit(DtLog target, int level, String format, Object arg1, Object arg2, Object[] args, int argCount,
+                Throwable t) {
+        if (stopped) {
+            write(target, level, format, arg1, arg2, args, argCount, t, null);
+            return;
+        }
+        long p;
+        int index;
+        while (true) {
+            p = producerIndex.get();
+            index = (int) (p & mask);
+            long seq = seqs.get(index);
+            if (seq == p) {
+                if (producerIndex.compareAndSet(p, p + 1)) {
+                    break;
+                }
+            } else if (seq < p) {
+                // full
+                if (!blockWhenFull || stopped) {
+                    droppedCount.increment();
+                    return;
+                }
+                LockSupport.parkNanos(100_000);
+            }
+            // else other producer has claimed the slot, retry
+        }
+        LogEvent e = events[index];
+        e.target = target;
+        e.level = level;
+        e.format = format;
+        e.arg1 = arg1;
+        e.arg2 = arg2;
+        e.args = args;
+        e.argCount = argCount;
+        e.throwable = t;
+        e.threadName = Thread.currentThread().getName();
+        seqs.set(index, p + 1);
+        // read waiting after the seq is updated, see run()
+        if (waiting) {
+            waiting = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            boolean stop = stopped;
+            int count = drain();
+            if (count == 0) {
+                if (stop) {
+                    break;
+                }
+                waiting = true;
+                // check again after set waiting, so either we see the event or the producer see waiting
+                if (!readable()) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                }
+                waiting = false;
+            }
+            reportDropped();
+        }
+        reportDropped();
+    }
+
+    private boolean readable() {
+        return seqs.get((int) (consumerIndex & mask)) == consumerIndex + 1;
+    }
+
+    private int drain() {
+        int count = 0;
+        while (readable()) {
+            int index = (int) (consumerIndex & mask);
+            LogEvent e = events[index];
+            try {
+                write(e.target, e.level, e.format, e.arg1, e.arg2, e.args, e.argCount, e.throwable, e.threadName);
+            } catch (Throwable ex) {
+                log.error("write log fail", ex);
+            }
+            e.clear();
+            seqs.set(index, consumerIndex + events.length);
+            consumerIndex++;
+            count++;
+        }
+        return count;
+    }
+
+    private void reportDropped() {
+        long dropped = droppedCount.sum();
+        if (dropped != reportedDroppedCount) {
+            log.warn("{} log messages are dropped because the ring buffer is full",
+                    dropped - reportedDroppedCount);
+            reportedDroppedCount = dropped;
+        }
+    }
+
+    private static void write(DtLog target, int level, String format, Object arg1, Object arg2, Object[] args,
+                              int argCount, Throwable t, String threadName) {
+        String msg;
+        switch (argCount) {
+            case AsyncLog.ARGS_NONE:
+                msg = format;
+                break;
+            case 1: {
+                FormattingTuple ft = MessageFormatter.format(format, arg1);
+                msg = ft.getMessage();
+                t = ft.getThrowable();
+                break;
+            }
+            case 2: {
+                FormattingTuple ft = MessageFormatter.format(format, arg1, arg2);
+                msg = ft.getMessage();
+                t = ft.getThrowable();
+                break;
+            }
+            default: {
+                FormattingTuple ft = MessageFormatter.arrayFormat(format, args);
+                msg = ft.getMessage();
+                t = ft.getThrowable();
+                break;
+            }
+        }
+        if (threadName != null) {
+            msg = "[" + threadName + "] " + msg;
+        }
+        switch (level) {
+            case AsyncLog.LEVEL_DEBUG:
+                if (t == null) {
+                    target.debug(msg);
+                } else {
+                    target.debug(msg, t);
+                }
+                break;
+            case AsyncLog.LEVEL_INFO:
+                if (t == null) {
+                    target.info(msg);
+                } else {
+                    target.info(msg, t);
+                }
+                break;
+            case AsyncLog.LEVEL_WARN:
+                if (t == null) {
+                    target.warn(msg);
+                } else {
+                    target.warn(msg, t);
+                }
+                break;
+            default:
+                if (t == null) {
+                    target.error(msg);
+                } else {
+                    target.error(msg, t);
+                }
+        }
+    }
+
+    /**
+     * Stop the background thread after all pending messages are written, the messages logged after this
+     * method called are written synchronously.
+     */
+    public void shutdown() {
+        stopped = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    private static final class LogEvent {
+        DtLog target;
+        int level;
+        String format;
+        Object arg1;
+        Object arg2;
+        Object[] args;
+        int argCount;
+        Throwable throwable;
+        String threadName;
+
+        void clear() {
+            target = null;
+            format = null;
+            arg1 = null;
+            arg2 = null;
+            args = null;
+            throwable = null;
+            threadName = null;
+        }
+    }
+}
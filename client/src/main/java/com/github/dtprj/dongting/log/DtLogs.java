@@ -27,6 +27,11 @@ public class DtLogs {
         } else {
             instance = JdkFactory.INSTANCE;
         }
+        if (Boolean.parseBoolean(System.getProperty("dt.log.async", "false"))) {
+            int bufferSize = Integer.parseInt(System.getProperty("dt.log.async.bufferSize", "8192"));
+            boolean block = Boolean.parseBoolean(System.getProperty("dt.log.async.block", "false"));
+            instance = new AsyncLogFactory(instance, bufferSize, block);
+        }
     }
 
     public static DtLog getLogger(String name) {
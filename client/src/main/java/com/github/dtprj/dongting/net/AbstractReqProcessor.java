@@ -0,0 +1,32 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The base of ReqProcessor and StreamReqProcessor, they differ in how the body of the request is decoded.
+ *
+ * @author huangli
+ */
+public abstract class AbstractReqProcessor<T> {
+
+    Executor executor;
+    boolean useDefaultExecutor;
+
+    public abstract WritePacket process(ReadPacket<T> packet, ReqContext reqContext) throws Exception;
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+import com.github.dtprj.dongting.buf.ByteBufferPool;
+import com.github.dtprj.dongting.codec.PbException;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compress/decompress packet body, one instance per io worker, so it's not thread safe.
+ * The buffers are borrowed from the heap pool of the worker.
+ *
+ * @author huangli
+ */
+class BodyCompressor {
+    static final int COMPRESS_NONE = 0;
+    static final int COMPRESS_DEFLATE = 1;
+
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final ByteBufferPool heapPool;
+
+    BodyCompressor(int level, ByteBufferPool heapPool) {
+        this.deflater = new Deflater(level);
+        this.inflater = new Inflater();
+        this.heapPool = heapPool;
+    }
+
+    ByteBuffer borrow(int size) {
+        ByteBuffer buf = heapPool.borrow(size);
+        buf.limit(size);
+        return buf;
+    }
+
+    void release(ByteBuffer buf) {
+        heapPool.release(buf);
+    }
+
+    /**
+     * compress the raw body (in read mode), return the compressed buffer in read mode,
+     * or null if the compressed data is not smaller than the raw data.
+     */
+    ByteBuffer compress(ByteBuffer raw) {
+        int rawSize = raw.remaining();
+        ByteBuffer out = borrow(rawSize);
+        try {
+            deflater.setInput(raw.array(), raw.arrayOffset() + raw.position(), rawSize);
+            deflater.finish();
+            byte[] outArray = out.array();
+            int offset = out.arrayOffset();
+            int len = 0;
+            while (!deflater.finished() && len < rawSize) {
+                len += deflater.deflate(outArray, offset + len, rawSize - len);
+            }
+            if (!deflater.finished()) {
+                release(out);
+                return null;
+            }
+            out.position(len);
+            out.flip();
+            return out;
+        } catch (RuntimeException | Error e) {
+            release(out);
+            throw e;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    /**
+     * decompress the body (in read mode), return the raw body in read mode.
+     */
+    ByteBuffer decompress(ByteBuffer compressed, int rawSize) {
+        ByteBuffer out = borrow(rawSize);
+        try {
+            inflater.setInput(compressed.array(), compressed.arrayOffset() + compressed.position(),
+                    compressed.remaining());
+            byte[] outArray = out.array();
+            int offset = out.arrayOffset();
+            int len = 0;
+            while (!inflater.finished() && len < rawSize) {
+                int n = inflater.inflate(outArray, offset + len, rawSize - len);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                len += n;
+            }
+            if (!inflater.finished() || len != rawSize) {
+                throw new PbException("decompress body fail, expect " + rawSize + " bytes, actual " + len);
+            }
+            out.position(len);
+            out.flip();
+            return out;
+        } catch (DataFormatException e) {
+            release(out);
+            throw new PbException("decompress body fail: " + e.getMessage());
+        } catch (RuntimeException | Error e) {
+            release(out);
+            throw e;
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    void close() {
+        deflater.end();
+        inflater.end();
+    }
+}
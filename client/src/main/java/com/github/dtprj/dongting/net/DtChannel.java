@@ -15,6 +15,7 @@
  */
 package com.github.dtprj.dongting.net;
 
+import javax.net.ssl.SSLSession;
 import java.net.SocketAddress;
 import java.nio.channels.SocketChannel;
 
@@ -29,4 +30,9 @@ public interface DtChannel {
     SocketAddress getLocalAddr();
 
     RespWriter getRespWriter();
+
+    /**
+     * return the TLS session, or null if TLS is not enabled.
+     */
+    SSLSession getSslSession();
 }
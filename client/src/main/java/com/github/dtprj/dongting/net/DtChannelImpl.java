@@ -25,9 +25,11 @@ import com.github.dtprj.dongting.common.Timestamp;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
 
+import javax.net.ssl.SSLSession;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -41,30 +43,47 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
 
     private final NioStatus nioStatus;
     private final NioConfig nioConfig;
-    final WorkerStatus workerStatus;
+    // changed when the channel migrate to another worker
+    volatile WorkerStatus workerStatus;
     private final SocketChannel channel;
-    private final DecodeContext decodeContext;
+    private DecodeContext decodeContext;
     private final RespWriter respWriter;
     final Peer peer; // null in server side
     private final SocketAddress remoteAddr;
     private final SocketAddress localAddr;
 
-    private final int channelIndexInWorker;
+    private int channelIndexInWorker;
     final long createTimeNanos;
 
     int seq = 1;
 
-    private final MultiParser parser;
+    private MultiParser parser;
 
     // read status
     private ReadPacket packet;
     private boolean readBody;
     private WriteData requestForResp;
-    private ReqProcessor processorForRequest;
+    private AbstractReqProcessor processorForRequest;
     private int currentReadPacketSize;
+    // the body of stream request is not held in memory, exclude it in flow control
+    private int currentStreamBodySize;
     private DecoderCallback currentDecoderCallback;
 
-    private final IoChannelQueue subQueue;
+    private IoChannelQueue subQueue;
+    private SelectionKey selectionKey;
+    private StreamReadControl streamReadControl;
+    private TlsHandler tls;
+
+    // negotiated in handshake, compress the body of the outgoing packets
+    boolean compress;
+    // not 0 if the body of current read packet is compressed
+    private int currentRawBodySize;
+    private ByteBuffer compressedBody;
+
+    // traffic stat, accessed in io thread, used by worker load balance
+    long statBytes;
+    int statPackets;
+    long recentLoad;
 
     private boolean running = true;
     private boolean closed;
@@ -81,12 +100,9 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
         this.peer = peer;
         this.createTimeNanos = workerStatus.ts.getNanoTime();
 
-        this.decodeContext = nioConfig.getDecodeContextFactory().get();
-        this.decodeContext.setHeapPool(workerStatus.getHeapPool());
-
-        this.parser = new MultiParser(decodeContext, this, nioConfig.getMaxPacketSize());
+        initDecoder(workerStatus);
 
-        this.respWriter = new RespWriter(workerStatus.getIoQueue(), workerStatus.getWakeupRunnable(), this);
+        this.respWriter = new RespWriter(this);
 
         this.remoteAddr = channel.getRemoteAddress();
         this.localAddr = channel.getLocalAddress();
@@ -95,10 +111,57 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
         this.subQueue = new IoChannelQueue(nioConfig, workerStatus, this, workerStatus.getHeapPool());
     }
 
+    private void initDecoder(WorkerStatus workerStatus) {
+        // the DecodeContext holds thread local buffer, so it should be created in the io thread of owner worker
+        this.decodeContext = nioConfig.getDecodeContextFactory().get();
+        this.decodeContext.setHeapPool(workerStatus.getHeapPool());
+        int maxSize = nioConfig.getMaxPacketSize();
+        if (nioStatus.hasStreamProcessor) {
+            // the size of non-stream packet is checked in initRelatedDataForPacket
+            maxSize = Math.max(maxSize, nioConfig.getMaxStreamPacketSize());
+        }
+        this.parser = new MultiParser(decodeContext, this, maxSize);
+    }
+
+    /**
+     * check if the channel can be moved to another worker, invoke in io thread of current worker.
+     */
+    boolean canMigrate() {
+        if (closed || !handshake || !parser.isIdle()) {
+            return false;
+        }
+        if (streamReadControl != null && streamReadControl.isSuspended()) {
+            return false;
+        }
+        // the TLS buffers are checked by sub queue
+        return subQueue.cleanAndCheckIdle();
+    }
+
+    /**
+     * rebind this channel to the new worker, invoke in io thread of the new worker.
+     */
+    void afterMigrate(WorkerStatus newWorkerStatus, int newChannelIndex) {
+        this.channelIndexInWorker = newChannelIndex;
+        this.workerStatus = newWorkerStatus;
+        initDecoder(newWorkerStatus);
+        this.subQueue = new IoChannelQueue(nioConfig, newWorkerStatus, this, newWorkerStatus.getHeapPool());
+        this.statBytes = 0;
+        this.statPackets = 0;
+    }
+
     public void afterRead(boolean running, ByteBuffer buf) {
         if (!running) {
             this.running = false;
         }
+        if (tls == null) {
+            parser.parse(buf);
+        } else {
+            tls.unwrap(buf);
+        }
+    }
+
+    // invoke by TlsHandler
+    void parsePlain(ByteBuffer buf) {
         parser.parse(buf);
     }
 
@@ -110,6 +173,8 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
     @Override
     protected void begin(int len) {
         this.currentReadPacketSize = len;
+        this.currentStreamBodySize = 0;
+        this.currentRawBodySize = 0;
         packet = new ReadPacket();
         readBody = false;
         requestForResp = null;
@@ -139,6 +204,7 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
             }
         }
         currentDecoderCallback = null;
+        statPackets++;
 
         if (packet.getPacketType() == PacketType.TYPE_RESP) {
             processIncomingResponse(packet, requestForResp);
@@ -167,6 +233,16 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
             case Packet.IDX_BIZ_CODE:
                 packet.bizCode = (int) value;
                 break;
+            case Packet.IDX_RAW_BODY_SIZE:
+                if (workerStatus.compressor == null) {
+                    throw new PbException("compress is not enabled");
+                }
+                if (value < 0 || value > nioConfig.getMaxBodySize()) {
+                    throw new PbException("raw body size exceed: max=" + nioConfig.getMaxBodySize()
+                            + ", actual=" + value);
+                }
+                currentRawBodySize = (int) value;
+                break;
         }
         return true;
     }
@@ -200,10 +276,12 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
         }
         switch (index) {
             case Packet.IDX_MSG: {
+                checkFieldSize(fieldLen);
                 this.packet.msg = parseUTF8(buf, fieldLen, currentPos);
                 return true;
             }
             case Packet.IDX_EXTRA: {
+                checkFieldSize(fieldLen);
                 this.packet.extra = parseBytes(buf, fieldLen, currentPos);
                 return true;
             }
@@ -212,6 +290,9 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
                     throw new IllegalStateException("currentDecoder is not null");
                 }
                 boolean end = buf.remaining() >= fieldLen - currentPos;
+                if (currentRawBodySize > 0) {
+                    return readCompressedBody(buf, fieldLen, currentPos, end);
+                }
                 return readBody(buf, fieldLen, currentPos, end);
             }
             default:
@@ -220,6 +301,12 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
 
     }
 
+    private void checkFieldSize(int fieldLen) {
+        if (fieldLen > nioConfig.getMaxPacketSize()) {
+            throw new PbException("field size exceed: max=" + nioConfig.getMaxPacketSize() + ", actual=" + fieldLen);
+        }
+    }
+
     private boolean readBody(ByteBuffer buf, int fieldLen, int currentPos, boolean end) {
         if (packet.getCommand() <= 0) {
             throw new NetException("command invalid :" + packet.getCommand());
@@ -231,6 +318,9 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
         if (currentDecoderCallback == null) {
             return false;
         }
+        if (currentPos == 0 && currentDecoderCallback instanceof StreamDecoderCallback) {
+            currentStreamBodySize = fieldLen;
+        }
 
         try {
             packet.body = parseNested(buf, fieldLen, currentPos, currentDecoderCallback);
@@ -253,10 +343,42 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
         return true;
     }
 
+    private boolean readCompressedBody(ByteBuffer buf, int fieldLen, int currentPos, boolean end) {
+        BodyCompressor compressor = workerStatus.compressor;
+        if (currentPos == 0) {
+            checkFieldSize(fieldLen);
+            compressedBody = compressor.borrow(fieldLen);
+        }
+        compressedBody.put(buf);
+        if (!end) {
+            return true;
+        }
+        ByteBuffer compressed = compressedBody;
+        compressedBody = null;
+        ByteBuffer raw;
+        try {
+            compressed.flip();
+            raw = compressor.decompress(compressed, currentRawBodySize);
+        } finally {
+            compressor.release(compressed);
+        }
+        try {
+            // the decoder callback should copy the data, so we can release the buffer after decode
+            return readBody(raw, currentRawBodySize, 0, true);
+        } finally {
+            compressor.release(raw);
+        }
+    }
+
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     private boolean initRelatedDataForPacket() {
         ReadPacket packet = this.packet;
+        boolean oversize = currentReadPacketSize > nioConfig.getMaxPacketSize();
         if (packet.getPacketType() == PacketType.TYPE_RESP) {
+            if (oversize) {
+                throw new PbException("maxPacketSize exceed: max=" + nioConfig.getMaxPacketSize()
+                        + ", actual=" + currentReadPacketSize);
+            }
             WriteData requestForResp = this.requestForResp;
             if (requestForResp == null) {
                 requestForResp = this.workerStatus.getPendingRequests().remove(BitUtil.toLong(channelIndexInWorker, packet.getSeq()));
@@ -284,23 +406,43 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
                     return false;
                 }
             }
+            if (oversize && !(processorForRequest instanceof StreamReqProcessor)) {
+                throw new PbException("maxPacketSize exceed: max=" + nioConfig.getMaxPacketSize()
+                        + ", actual=" + currentReadPacketSize);
+            }
             if (currentDecoderCallback == null) {
-                currentDecoderCallback = processorForRequest.createDecoderCallback(packet.getCommand(), decodeContext.createOrGetNestedContext());
+                if (processorForRequest instanceof StreamReqProcessor) {
+                    if (streamReadControl == null) {
+                        streamReadControl = new StreamReadControl(this, nioConfig.getStreamWindowBytes());
+                    }
+                    currentDecoderCallback = new StreamDecoderCallback((StreamReqProcessor) processorForRequest,
+                            packet, streamReadControl);
+                } else {
+                    ReqProcessor p = (ReqProcessor) processorForRequest;
+                    currentDecoderCallback = p.createDecoderCallback(packet.getCommand(),
+                            decodeContext.createOrGetNestedContext());
+                }
             }
         }
         return true;
     }
 
-    void releasePending(int bytes) {
-        nioStatus.pendingLock.lock();
-        try {
-            nioStatus.pendingRequests--;
-            nioStatus.pendingBytes -= bytes;
-        } finally {
-            nioStatus.pendingLock.unlock();
+    private void decrPendingRequests() {
+        if (nioConfig.getMaxInRequests() > 0) {
+            nioStatus.pendingLock.lock();
+            try {
+                nioStatus.pendingRequests--;
+            } finally {
+                nioStatus.pendingLock.unlock();
+            }
         }
     }
 
+    void releasePending(int bytes) {
+        decrPendingRequests();
+        nioStatus.inQuota.release(bytes);
+    }
+
     private void processIncomingResponse(ReadPacket resp, WriteData wo) {
         WritePacket req = wo.getData();
         if (resp.getCommand() != req.getCommand()) {
@@ -310,35 +452,32 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
         wo.callSuccess(resp);
     }
 
-    private void processIncomingRequest(ReadPacket req, ReqProcessor p, Timestamp roundTime) {
+    private void processIncomingRequest(ReadPacket req, AbstractReqProcessor p, Timestamp roundTime) {
+        // the decoder holds the inflated body if the body is compressed
+        int packetSize = currentRawBodySize > 0 ? currentRawBodySize : currentReadPacketSize - currentStreamBodySize;
         int maxReq = nioConfig.getMaxInRequests();
-        long maxBytes = nioConfig.getMaxInBytes();
-        boolean flowControl;
-        if (maxReq <= 0 && maxBytes <= 0) {
-            flowControl = false;
-        } else {
+        if (maxReq > 0) {
             nioStatus.pendingLock.lock();
             try {
-                if (maxReq > 0 && nioStatus.pendingRequests + 1 > maxReq) {
+                if (nioStatus.pendingRequests + 1 > maxReq) {
                     log.debug("pendingRequests({})>maxInRequests({}), write response code FLOW_CONTROL to client",
                             nioStatus.pendingRequests + 1, nioConfig.getMaxInRequests());
                     writeErrorInIoThread(packet, CmdCodes.FLOW_CONTROL,
                             "max incoming request: " + nioConfig.getMaxInRequests());
                     return;
                 }
-                if (maxBytes > 0 && nioStatus.pendingBytes + currentReadPacketSize > maxBytes) {
-                    log.debug("pendingBytes({})>maxInBytes({}), write response code FLOW_CONTROL to client",
-                            nioStatus.pendingBytes + currentReadPacketSize, nioConfig.getMaxInBytes());
-                    writeErrorInIoThread(packet, CmdCodes.FLOW_CONTROL,
-                            "max incoming request bytes: " + nioConfig.getMaxInBytes());
-                    return;
-                }
                 nioStatus.pendingRequests++;
-                nioStatus.pendingBytes += currentReadPacketSize;
             } finally {
                 nioStatus.pendingLock.unlock();
             }
-            flowControl = true;
+        }
+        // the limit of nioStatus.inQuota is maxInBytes, and it's also limited by the ancestor quotas
+        if (!nioStatus.inQuota.tryAcquire(packetSize)) {
+            log.debug("memory quota exceeded, write response code FLOW_CONTROL to client: {}", nioStatus.inQuota);
+            decrPendingRequests();
+            writeErrorInIoThread(packet, CmdCodes.FLOW_CONTROL,
+                    "max incoming request bytes: " + nioConfig.getMaxInBytes());
+            return;
         }
 
         ReqContext reqContext = new ReqContext(this, new DtTime(roundTime, req.getTimeout(), TimeUnit.NANOSECONDS));
@@ -359,9 +498,7 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
                 writeErrorInIoThread(req, CmdCodes.BIZ_ERROR, e.toString(), reqContext.getTimeout());
                 return;
             } finally {
-                if (flowControl) {
-                    releasePending(currentReadPacketSize);
-                }
+                releasePending(packetSize);
             }
             if (resp != null) {
                 resp.setCommand(req.getCommand());
@@ -372,15 +509,13 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
         } else {
             try {
                 p.executor.execute(new ProcessInBizThreadTask(
-                        req, p, currentReadPacketSize, this, flowControl, reqContext));
+                        req, p, packetSize, this, reqContext));
             } catch (RejectedExecutionException e) {
                 log.debug("catch RejectedExecutionException, write response code FLOW_CONTROL to client, maxInRequests={}",
                         nioConfig.getMaxInRequests());
                 writeErrorInIoThread(req, CmdCodes.FLOW_CONTROL,
                         "max incoming request: " + nioConfig.getMaxInRequests(), reqContext.getTimeout());
-                if (flowControl) {
-                    releasePending(currentReadPacketSize);
-                }
+                releasePending(packetSize);
             }
         }
     }
@@ -427,6 +562,14 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
         return channelIndexInWorker;
     }
 
+    SelectionKey getSelectionKey() {
+        return selectionKey;
+    }
+
+    void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
     public IoChannelQueue getSubQueue() {
         return subQueue;
     }
@@ -460,6 +603,17 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
         } catch (Exception e) {
             log.error("channel close error", e);
         }
+        if (compressedBody != null) {
+            workerStatus.compressor.release(compressedBody);
+            compressedBody = null;
+        }
+        if (tls != null) {
+            try {
+                tls.close();
+            } catch (Exception e) {
+                log.error("close tls error", e);
+            }
+        }
     }
 
     // for unit test
@@ -476,25 +630,36 @@ class DtChannelImpl extends PbCallback<Object> implements DtChannel {
     public RespWriter getRespWriter() {
         return respWriter;
     }
+
+    @Override
+    public SSLSession getSslSession() {
+        return tls == null ? null : tls.getSession();
+    }
+
+    TlsHandler getTls() {
+        return tls;
+    }
+
+    void setTls(TlsHandler tls) {
+        this.tls = tls;
+    }
 }
 
 @SuppressWarnings({"rawtypes", "unchecked"})
 class ProcessInBizThreadTask implements Runnable {
     private static final DtLog log = DtLogs.getLogger(ProcessInBizThreadTask.class);
     private final ReadPacket req;
-    private final ReqProcessor processor;
+    private final AbstractReqProcessor processor;
     private final int packetSize;
     private final DtChannelImpl dtc;
-    private final boolean flowControl;
     private final ReqContext reqContext;
 
-    ProcessInBizThreadTask(ReadPacket req, ReqProcessor processor,
-                           int packetSize, DtChannelImpl dtc, boolean flowControl, ReqContext reqContext) {
+    ProcessInBizThreadTask(ReadPacket req, AbstractReqProcessor processor,
+                           int packetSize, DtChannelImpl dtc, ReqContext reqContext) {
         this.req = req;
         this.processor = processor;
         this.packetSize = packetSize;
         this.dtc = dtc;
-        this.flowControl = flowControl;
         this.reqContext = reqContext;
     }
 
@@ -521,9 +686,7 @@ class ProcessInBizThreadTask implements Runnable {
                 resp.setMsg(e.toString());
             }
         } finally {
-            if (flowControl) {
-                dtc.releasePending(packetSize);
-            }
+            dtc.releasePending(packetSize);
         }
         if (resp != null) {
             dtc.getRespWriter().writeRespInBizThreads(req, resp, reqContext.getTimeout());
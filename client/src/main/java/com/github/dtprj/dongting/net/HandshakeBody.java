@@ -31,6 +31,7 @@ public class HandshakeBody {
     int majorVersion;
     int minorVersion;
     ConfigBody config;
+    int compress;
 
     public static class Callback extends PbCallback<HandshakeBody> {
         private final HandshakeBody result = new HandshakeBody();
@@ -66,6 +67,9 @@ public class HandshakeBody {
                 case 4:
                     result.minorVersion = (int) value;
                     break;
+                case 9:
+                    result.compress = (int) value;
+                    break;
             }
             return true;
         }
@@ -96,7 +100,8 @@ public class HandshakeBody {
                     + PbUtil.accurateFix64Size(2, MAGIC2)
                     + PbUtil.accurateUnsignedIntSize(3, v.majorVersion)
                     + PbUtil.accurateUnsignedIntSize(4, v.minorVersion)
-                    + PbUtil.accurateLengthDelimitedSize(8, configBodySize);
+                    + PbUtil.accurateLengthDelimitedSize(8, configBodySize)
+                    + PbUtil.accurateUnsignedIntSize(9, v.compress);
         }
 
         @Override
@@ -109,6 +114,7 @@ public class HandshakeBody {
                 PbUtil.writeLengthDelimitedPrefix(buf, 8, configBodySize);
                 v.config.encodeBody(buf);
             }
+            PbUtil.writeUnsignedInt32(buf, 9, v.compress);
         }
     }
 }
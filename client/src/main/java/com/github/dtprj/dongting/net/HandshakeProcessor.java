@@ -45,6 +45,14 @@ class HandshakeProcessor extends ReqProcessor<HandshakeBody> {
             log.warn("handshake already done: {}", dtc.getChannel());
             return null;
         }
+        if (config.getSslContext() != null) {
+            // the packet is unwrapped by TLS handler, so the TLS handshake should be finished here
+            TlsHandler tls = dtc.getTls();
+            if (tls == null || !tls.isHandshakeFinished()) {
+                log.error("tls handshake not finished: {}", dtc.getChannel());
+                throw new NetException("tls handshake not finished");
+            }
+        }
 
         HandshakeBody hb = new HandshakeBody();
         hb.majorVersion = DtUtil.RPC_MAJOR_VER;
@@ -53,6 +61,12 @@ class HandshakeProcessor extends ReqProcessor<HandshakeBody> {
         if (config.isServerHint()) {
             hb.config = buildServerHint();
         }
+        HandshakeBody req = packet.getBody();
+        if (req != null && req.compress == BodyCompressor.COMPRESS_DEFLATE && dtc.workerStatus.compressor != null) {
+            hb.compress = BodyCompressor.COMPRESS_DEFLATE;
+            dtc.compress = true;
+            log.info("body compress enabled: {}", dtc.getChannel());
+        }
 
         HandshakeBody.WritePacket p = new HandshakeBody.WritePacket(hb);
         p.setRespCode(CmdCodes.SUCCESS);
@@ -41,6 +41,8 @@ class IoChannelQueue {
     private static final int ENCODE_CANCEL = 3;
 
     private static final int MAX_BUFFER_SIZE = 512 * 1024;
+    // poll at most HIGH_PRIORITY_WEIGHT high priority packets continuously if there are normal packets waiting
+    private static final int HIGH_PRIORITY_WEIGHT = 8;
     private final ByteBufferPool directPool;
     private final WorkerStatus workerStatus;
     private final DtChannelImpl dtc;
@@ -50,13 +52,16 @@ class IoChannelQueue {
     private int packetsInBuffer;
 
     private final ArrayDeque<WriteData> subQueue = new ArrayDeque<>();
+    private final ArrayDeque<WriteData> highPriorityQueue = new ArrayDeque<>();
     private int subQueueBytes;
+    private int highPriorityCount;
     private boolean writing;
 
     private WriteData lastWriteData;
     private final EncodeContext encodeContext;
 
     private final PerfCallback perfCallback;
+    private final int compressThreshold;
 
     public IoChannelQueue(NioConfig config, WorkerStatus workerStatus, DtChannelImpl dtc, RefBufferFactory heapPool) {
         this.directPool = workerStatus.getDirectPool();
@@ -64,12 +69,20 @@ class IoChannelQueue {
         this.dtc = dtc;
         this.encodeContext = new EncodeContext(heapPool);
         this.perfCallback = config.getPerfCallback();
+        this.compressThreshold = config.getCompressThreshold();
     }
 
     public void setRegisterForWrite(Runnable registerForWrite) {
         this.registerForWrite = registerForWrite;
     }
 
+    // register OP_WRITE even if the sub queue is empty, used by TLS handshake
+    void requestWrite() {
+        if (registerForWrite != null) {
+            registerForWrite.run();
+        }
+    }
+
     public void enqueue(WriteData writeData) {
         WritePacket wf = writeData.getData();
         if (wf.use) {
@@ -79,12 +92,16 @@ class IoChannelQueue {
         wf.use = true;
 
         writeData.perfTime = perfCallback.takeTime(PerfConsts.RPC_D_CHANNEL_QUEUE);
-        subQueue.addLast(writeData);
+        if (wf.getPriority() == WritePacket.PRIORITY_HIGH) {
+            highPriorityQueue.addLast(writeData);
+        } else {
+            subQueue.addLast(writeData);
+        }
 
         // the subQueueBytes is not accurate
         // can't invoke actualSize() here because seq and timeout field is not set yet
         subQueueBytes += writeData.estimateSize;
-        if (subQueue.size() == 1 && !writing) {
+        if (subQueue.size() + highPriorityQueue.size() == 1 && !writing) {
             registerForWrite.run();
         }
         workerStatus.addPacketsToWrite(1);
@@ -100,32 +117,39 @@ class IoChannelQueue {
         }
 
         if (lastWriteData != null) {
+            releaseCompressBuffer(lastWriteData);
             workerStatus.addPacketsToWrite(-1);
             lastWriteData.callFail(true, new NetException("channel closed, cancel request still in IoChannelQueue. 1"));
         }
         WriteData wd;
-        while ((wd = subQueue.pollFirst()) != null) {
+        while ((wd = subQueue.pollFirst()) != null || (wd = highPriorityQueue.pollFirst()) != null) {
             wd.callFail(true, new NetException("channel closed, cancel request still in IoChannelQueue. 2"));
             workerStatus.addPacketsToWrite(-1);
         }
     }
 
     public ByteBuffer getWriteBuffer(Timestamp roundTime) {
+        TlsHandler tls = dtc.getTls();
+        if (tls == null) {
+            return getPlainWriteBuffer(roundTime);
+        } else {
+            return tls.wrap(this, roundTime);
+        }
+    }
+
+    // return the encoded packets to write (or to wrap if TLS is enabled)
+    ByteBuffer getPlainWriteBuffer(Timestamp roundTime) {
         ByteBuffer writeBuffer = this.writeBuffer;
         if (writeBuffer != null) {
             if (writeBuffer.remaining() > 0) {
                 return writeBuffer;
             } else {
                 // current buffer write finished
-                workerStatus.addPacketsToWrite(-packetsInBuffer);
-                directPool.release(writeBuffer);
-                this.writeBuffer = null;
-                packetsInBuffer = 0;
+                releaseFinishedBuffer(writeBuffer);
             }
         }
         int subQueueBytes = this.subQueueBytes;
-        ArrayDeque<WriteData> subQueue = this.subQueue;
-        if (subQueue.isEmpty() && lastWriteData == null) {
+        if (isQueueEmpty() && lastWriteData == null) {
             // no packet to write
             return null;
         }
@@ -133,10 +157,10 @@ class IoChannelQueue {
 
         WriteData wd = this.lastWriteData;
         try {
-            while (!subQueue.isEmpty() || wd != null) {
+            while (wd != null || !isQueueEmpty()) {
                 int encodeResult;
                 if (wd == null) {
-                    wd = subQueue.pollFirst();
+                    wd = pollNext();
                     perfCallback.fireTime(PerfConsts.RPC_D_CHANNEL_QUEUE, wd.perfTime);
                     encodeResult = encode(buf, wd, roundTime);
                 } else {
@@ -147,6 +171,7 @@ class IoChannelQueue {
                         workerStatus.addPacketsToWrite(-1);
                         subQueueBytes = Math.max(0, subQueueBytes - wd.estimateSize);
                         encodeContext.reset();
+                        releaseCompressBuffer(wd);
                         Throwable ex = new NetException("encode fail when buffer is empty");
                         wd.callFail(true, ex);
                         wd = null;
@@ -180,6 +205,7 @@ class IoChannelQueue {
 
                     subQueueBytes = Math.max(0, subQueueBytes - wd.estimateSize);
                     try {
+                        releaseCompressBuffer(wd);
                         wd.getData().clean();
                     } finally {
                         encodeContext.reset();
@@ -199,6 +225,20 @@ class IoChannelQueue {
         }
     }
 
+    private boolean isQueueEmpty() {
+        return subQueue.isEmpty() && highPriorityQueue.isEmpty();
+    }
+
+    // weighted scheduling, so the control packets not blocked by bulk data, and bulk data not starved
+    private WriteData pollNext() {
+        if (!highPriorityQueue.isEmpty() && (highPriorityCount < HIGH_PRIORITY_WEIGHT || subQueue.isEmpty())) {
+            highPriorityCount++;
+            return highPriorityQueue.pollFirst();
+        }
+        highPriorityCount = 0;
+        return subQueue.pollFirst();
+    }
+
     private ByteBuffer flipAndReturnBuffer(ByteBuffer buf) {
         buf.flip();
         if (buf.remaining() == 0) {
@@ -233,15 +273,46 @@ class IoChannelQueue {
             f.setSeq(seq);
             f.setTimeout(rest);
         }
+        if (dtc.compress && f.actualBodySize() >= compressThreshold && !(f instanceof StreamWritePacket)) {
+            f.compressBody(encodeContext, workerStatus.compressor);
+        }
         encodeContext.reset();
         return doEncode(buf, wd);
     }
 
+    private void releaseCompressBuffer(WriteData wd) {
+        if (workerStatus.compressor != null) {
+            wd.getData().releaseCompressBuffer(workerStatus.compressor);
+        }
+    }
+
     private int doEncode(ByteBuffer buf, WriteData wd) {
         WritePacket wf = wd.getData();
         return wf.encode(encodeContext, buf) ? ENCODE_FINISH : ENCODE_NOT_FINISH;
     }
 
+    private void releaseFinishedBuffer(ByteBuffer writeBuffer) {
+        workerStatus.addPacketsToWrite(-packetsInBuffer);
+        directPool.release(writeBuffer);
+        this.writeBuffer = null;
+        packetsInBuffer = 0;
+    }
+
+    /**
+     * release the write buffer if it's completely written, then return true if nothing to write.
+     */
+    public boolean cleanAndCheckIdle() {
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBuffer != null && writeBuffer.remaining() == 0) {
+            releaseFinishedBuffer(writeBuffer);
+        }
+        if (this.writeBuffer != null || lastWriteData != null || !isQueueEmpty()) {
+            return false;
+        }
+        TlsHandler tls = dtc.getTls();
+        return tls == null || tls.cleanAndCheckIdle();
+    }
+
     public void setWriting(boolean writing) {
         this.writing = writing;
     }
@@ -19,18 +19,20 @@ import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.PerfCallback;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
-import com.github.dtprj.dongting.queue.MpscLinkedQueue;
+import com.github.dtprj.dongting.queue.MpscChunkedQueue;
 
 import java.util.ArrayList;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * @author huangli
  */
 class IoWorkerQueue {
     private static final DtLog log = DtLogs.getLogger(IoWorkerQueue.class);
-    private final MpscLinkedQueue<Object> queue = MpscLinkedQueue.newInstance();
+    private final MpscChunkedQueue<Object> queue = MpscChunkedQueue.newInstance();
+    private final Consumer<Object> dispatchConsumer = this::dispatch;
     private final NioWorker worker;
     private final PerfCallback perfCallback;
     private int invokeIndex;
@@ -54,13 +56,14 @@ class IoWorkerQueue {
     }
 
     public void dispatchActions() {
-        Object data;
-        while ((data = queue.relaxedPoll()) != null) {
-            if (data instanceof WriteData) {
-                processWriteData((WriteData) data);
-            } else {
-                ((Runnable) data).run();
-            }
+        queue.drain(dispatchConsumer, Integer.MAX_VALUE);
+    }
+
+    private void dispatch(Object data) {
+        if (data instanceof WriteData) {
+            processWriteData((WriteData) data);
+        } else {
+            ((Runnable) data).run();
         }
     }
 
@@ -100,6 +103,9 @@ class IoWorkerQueue {
             } else {
                 if (dtc.isClosed()) {
                     wo.callFail(true, new NetException("channel closed during dispatch"));
+                } else if (dtc.workerStatus.worker != worker) {
+                    // the channel is migrated to another worker
+                    dtc.workerStatus.worker.writeReqInBizThreads(wo);
                 } else {
                     dtc.getSubQueue().enqueue(wo);
                 }
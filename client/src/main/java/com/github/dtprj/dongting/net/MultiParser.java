@@ -90,6 +90,13 @@ class MultiParser {
         }
     }
 
+    /**
+     * return true if the parser is at packet boundary, no partial packet is pending.
+     */
+    public boolean isIdle() {
+        return parseLen && pendingLenBytes == 0;
+    }
+
     public PbParser getParser() {
         return parser;
     }
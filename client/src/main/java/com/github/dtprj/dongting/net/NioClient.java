@@ -195,6 +195,7 @@ public class NioClient extends NioNet {
 
     @Override
     protected void doStop(DtTime timeout, boolean force) {
+        nioStatus.inQuota.close();
         if (!force) {
             CompletableFuture<Void> pf = worker.prepareStop(timeout);
             try {
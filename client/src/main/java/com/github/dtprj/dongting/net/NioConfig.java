@@ -18,9 +18,11 @@ package com.github.dtprj.dongting.net;
 import com.github.dtprj.dongting.buf.DefaultPoolFactory;
 import com.github.dtprj.dongting.buf.PoolFactory;
 import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.common.MemoryQuota;
 import com.github.dtprj.dongting.common.NoopPerfCallback;
 import com.github.dtprj.dongting.common.PerfCallback;
 
+import javax.net.ssl.SSLContext;
 import java.util.function.Supplier;
 
 /**
@@ -40,6 +42,8 @@ public abstract class NioConfig {
     private long maxOutBytes;
     private int maxInRequests;
     private long maxInBytes;
+    // the parent of the quota of incoming request bytes (limited by maxInBytes)
+    private MemoryQuota memoryQuota = MemoryQuota.ROOT;
 
     private long selectTimeout = 50;
     private long cleanInterval = 100;
@@ -47,6 +51,18 @@ public abstract class NioConfig {
     private int maxPacketSize = 5 * 1024 * 1024;
     private int maxBodySize = 4 * 1024 * 1024;
 
+    // for StreamReqProcessor and StreamWritePacket
+    private int maxStreamPacketSize = 1024 * 1024 * 1024;
+    private long streamWindowBytes = 4 * 1024 * 1024;
+
+    // enable TLS if not null
+    private SSLContext sslContext;
+
+    // compress the packet body if both sides enable it
+    private boolean compress;
+    private int compressThreshold = 2048;
+    private int compressLevel = 1;
+
     private PoolFactory poolFactory = new DefaultPoolFactory();
 
     private int readBufferSize = 128 * 1024;
@@ -138,6 +154,54 @@ public abstract class NioConfig {
         this.maxBodySize = maxBodySize;
     }
 
+    public int getMaxStreamPacketSize() {
+        return maxStreamPacketSize;
+    }
+
+    public void setMaxStreamPacketSize(int maxStreamPacketSize) {
+        this.maxStreamPacketSize = maxStreamPacketSize;
+    }
+
+    public long getStreamWindowBytes() {
+        return streamWindowBytes;
+    }
+
+    public void setStreamWindowBytes(long streamWindowBytes) {
+        this.streamWindowBytes = streamWindowBytes;
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    public void setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    public void setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    public int getCompressLevel() {
+        return compressLevel;
+    }
+
+    public void setCompressLevel(int compressLevel) {
+        this.compressLevel = compressLevel;
+    }
+
     public int getReadBufferSize() {
         return readBufferSize;
     }
@@ -170,6 +234,14 @@ public abstract class NioConfig {
         this.maxOutBytes = maxOutBytes;
     }
 
+    public MemoryQuota getMemoryQuota() {
+        return memoryQuota;
+    }
+
+    public void setMemoryQuota(MemoryQuota memoryQuota) {
+        this.memoryQuota = memoryQuota;
+    }
+
     public Supplier<DecodeContext> getDecodeContextFactory() {
         return decodeContextFactory;
     }
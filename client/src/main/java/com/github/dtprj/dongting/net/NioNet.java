@@ -29,6 +29,7 @@ import com.github.dtprj.dongting.log.DtLogs;
 import java.util.Objects;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -54,7 +55,8 @@ public abstract class NioNet extends AbstractLifeCircle {
 
     public NioNet(NioConfig config) {
         this.config = config;
-        this.nioStatus = new NioStatus();
+        this.nioStatus = new NioStatus(config.getMemoryQuota().createChild(
+                config.getName() + "In", config.getMaxInBytes()));
         this.perfCallback = config.getPerfCallback();
         if (config.getMaxPacketSize() < config.getMaxBodySize() + 128 * 1024) {
             throw new IllegalArgumentException("maxPacketSize should greater than maxBodySize plus 128KB.");
@@ -64,7 +66,7 @@ public abstract class NioNet extends AbstractLifeCircle {
     /**
      * register processor use default executor.
      */
-    public void register(int cmd, ReqProcessor<?> processor) {
+    public void register(int cmd, AbstractReqProcessor<?> processor) {
         if (status != STATUS_NOT_START) {
             throw new DtException("processor should register before start");
         }
@@ -75,7 +77,7 @@ public abstract class NioNet extends AbstractLifeCircle {
     /**
      * register processor use specific executor, if executorService is null, run in io thread.
      */
-    public void register(int cmd, ReqProcessor<?> processor, Executor executor) {
+    public void register(int cmd, AbstractReqProcessor<?> processor, Executor executor) {
         if (status != STATUS_NOT_START) {
             throw new DtException("processor should register before start");
         }
@@ -170,6 +172,13 @@ public abstract class NioNet extends AbstractLifeCircle {
 
         // can't invoke actualSize() here because seq and timeout field is not set yet
         int estimateSize = request.calcMaxPacketSize();
+        if (request instanceof StreamWritePacket) {
+            if (estimateSize > config.getMaxStreamPacketSize() || estimateSize < 0) {
+                throw new NetException("estimateSize overflow");
+            }
+            // the body is produced incrementally when encode, so it's not counted in pending bytes
+            return estimateSize - request.actualBodySize();
+        }
         if (estimateSize > config.getMaxPacketSize() || estimateSize < 0) {
             throw new NetException("estimateSize overflow");
         }
@@ -221,6 +230,8 @@ public abstract class NioNet extends AbstractLifeCircle {
                     1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
                     new DtThreadFactory(config.getName() + "Biz", false));
         }
+        // the delegated tasks of TLS handshake should not block the io thread
+        nioStatus.tlsTaskExecutor = bizExecutor != null ? bizExecutor : ForkJoinPool.commonPool();
         nioStatus.getProcessors().forEach((command, p) -> {
             if (p.useDefaultExecutor) {
                 if (bizExecutor != null) {
@@ -21,6 +21,7 @@ import com.github.dtprj.dongting.codec.DecoderCallback;
 import com.github.dtprj.dongting.codec.DecoderCallbackCreator;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.common.VersionFactory;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
 
@@ -43,14 +44,16 @@ import java.util.concurrent.TimeoutException;
  * @author huangli
  */
 @SuppressWarnings("Convert2Diamond")
-public class NioServer extends NioNet implements Runnable {
+public class NioServer extends NioNet {
     private static final DtLog log = DtLogs.getLogger(NioServer.class);
 
+    // don't migrate channels if the busiest worker is not busy enough
+    private static final long MIN_REBALANCE_LOAD = 1024 * 1024;
+
     private final NioServerConfig config;
-    private ServerSocketChannel ssc;
-    private Selector selector;
     private volatile boolean stop;
-    private final Thread acceptThread;
+    private final Acceptor[] acceptors;
+    private int startedAcceptors;
     final NioWorker[] workers;
 
     public NioServer(NioServerConfig config) {
@@ -59,8 +62,12 @@ public class NioServer extends NioNet implements Runnable {
         if (config.getPort() <= 0) {
             throw new IllegalArgumentException("no port");
         }
-        acceptThread = new Thread(this);
-        acceptThread.setName(config.getName() + "IoAccept");
+        int acceptThreads = Math.max(1, config.getAcceptThreads());
+        acceptors = new Acceptor[acceptThreads];
+        for (int i = 0; i < acceptThreads; i++) {
+            String name = acceptThreads == 1 ? config.getName() + "IoAccept" : config.getName() + "IoAccept" + i;
+            acceptors[i] = new Acceptor(name, i == 0);
+        }
         workers = new NioWorker[config.getIoThreads()];
         for (int i = 0; i < workers.length; i++) {
             workers[i] = new NioWorker(nioStatus, config.getName() + "IoWorker" + i, config, null);
@@ -72,67 +79,197 @@ public class NioServer extends NioNet implements Runnable {
     @Override
     public void doStart() {
         try {
-            ssc = ServerSocketChannel.open();
-            ssc.configureBlocking(false);
-            ssc.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-            ssc.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
-            selector = SelectorProvider.provider().openSelector();
-            ssc.register(selector, SelectionKey.OP_ACCEPT);
+            boolean reusePort = acceptors.length > 1;
+            for (Acceptor acceptor : acceptors) {
+                if (!acceptor.open(reusePort)) {
+                    log.warn("SO_REUSEPORT is not supported, use single accept thread");
+                    break;
+                }
+                startedAcceptors++;
+            }
 
-            log.info("{} listen at port {}", config.getName(), config.getPort());
+            log.info("{} listen at port {}, acceptThreads={}", config.getName(), config.getPort(), startedAcceptors);
 
             initBizExecutor();
             for (NioWorker worker : workers) {
                 worker.start();
             }
-            acceptThread.start();
+            for (int i = 0; i < startedAcceptors; i++) {
+                acceptors[i].thread.start();
+            }
         } catch (IOException e) {
             throw new NetException(e);
         }
     }
 
-    public void run() {
-        while (!stop) {
-            select();
+    private class Acceptor implements Runnable {
+        private final Thread thread;
+        private final boolean rebalance;
+        private ServerSocketChannel ssc;
+        private Selector selector;
+        private long lastRebalanceNanos;
+
+        Acceptor(String name, boolean rebalance) {
+            this.thread = new Thread(this);
+            this.thread.setName(name);
+            this.rebalance = rebalance;
         }
-        try {
-            selector.close();
-            ssc.close();
-            log.info("accept thread finished: {}", config.getName());
-        } catch (Exception e) {
-            log.error("close error. name={}, port={}", config.getName(), config.getPort(), e);
+
+        boolean open(boolean reusePort) throws IOException {
+            ssc = ServerSocketChannel.open();
+            ssc.configureBlocking(false);
+            ssc.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (reusePort && !VersionFactory.getInstance().enableReusePort(ssc)) {
+                if (startedAcceptors > 0) {
+                    ssc.close();
+                    ssc = null;
+                    return false;
+                }
+            }
+            ssc.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
+            selector = SelectorProvider.provider().openSelector();
+            ssc.register(selector, SelectionKey.OP_ACCEPT);
+            return true;
         }
-    }
 
-    private void select() {
-        try {
-            selector.select();
-            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
-            while (iterator.hasNext()) {
-                SelectionKey key = iterator.next();
-                iterator.remove();
-                if (!key.isValid()) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Accept SelectionKey is invalid, name={}, port= {}"
-                                , config.getName(), config.getPort());
+        @Override
+        public void run() {
+            while (!stop) {
+                select();
+            }
+            try {
+                selector.close();
+                ssc.close();
+                log.info("accept thread finished: {}", thread.getName());
+            } catch (Exception e) {
+                log.error("close error. name={}, port={}", config.getName(), config.getPort(), e);
+            }
+        }
+
+        private void select() {
+            try {
+                long rebalanceInterval = config.getRebalanceInterval();
+                if (rebalance && rebalanceInterval > 0 && workers.length > 1) {
+                    selector.select(rebalanceInterval);
+                    long now = System.nanoTime();
+                    if (now - lastRebalanceNanos >= rebalanceInterval * 1000 * 1000) {
+                        lastRebalanceNanos = now;
+                        rebalance();
                     }
-                    continue;
+                } else {
+                    selector.select();
                 }
-                if (key.isAcceptable()) {
-                    SocketChannel sc = ssc.accept();
-                    log.debug("accept new socket: {}", sc);
-                    workers[sc.hashCode() % workers.length].newChannelAccept(sc);
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (!key.isValid()) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Accept SelectionKey is invalid, name={}, port= {}"
+                                    , config.getName(), config.getPort());
+                        }
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        SocketChannel sc = ssc.accept();
+                        if (sc == null) {
+                            // other acceptor may accept it if SO_REUSEPORT is used
+                            continue;
+                        }
+                        log.debug("accept new socket: {}", sc);
+                        selectWorker().newChannelAccept(sc);
+                    }
                 }
+            } catch (ClosedSelectorException e) {
+                log.warn("selector closed. name={}, port={}", config.getName(), config.getPort());
+            } catch (Throwable e) {
+                log.error("accept thread failed. name={}, port={}", config.getName(), config.getPort(), e);
             }
-        } catch (ClosedSelectorException e) {
-            log.warn("selector closed. name={}, port={}", config.getName(), config.getPort());
-        } catch (Throwable e) {
-            log.error("accept thread failed. name={}, port={}", config.getName(), config.getPort(), e);
         }
+
+        void forceClose() {
+            if (ssc != null && ssc.isOpen()) {
+                try {
+                    if (selector != null) {
+                        selector.close();
+                    }
+                    ssc.close();
+                } catch (IOException e) {
+                    log.error("", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * select the worker with the least estimated load for a new channel, the load of the new channel is
+     * estimated as the average load of existing channels.
+     */
+    NioWorker selectWorker() {
+        NioWorker[] workers = this.workers;
+        if (workers.length == 1) {
+            return workers[0];
+        }
+        long totalLoad = 0;
+        long totalChannels = 0;
+        for (NioWorker w : workers) {
+            totalLoad += w.workerStatus.recentLoad;
+            totalChannels += w.workerStatus.channelCount.get();
+        }
+        long avgLoad = totalChannels == 0 ? 1 : Math.max(1, totalLoad / totalChannels);
+        NioWorker best = null;
+        long bestScore = 0;
+        for (NioWorker w : workers) {
+            long score = w.workerStatus.recentLoad + w.workerStatus.channelCount.get() * avgLoad;
+            if (best == null || score < bestScore) {
+                best = w;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    // run in accept thread
+    private void rebalance() {
+        NioWorker max = null;
+        NioWorker min = null;
+        for (NioWorker w : workers) {
+            if (max == null || w.workerStatus.recentLoad > max.workerStatus.recentLoad) {
+                max = w;
+            }
+            if (min == null || w.workerStatus.recentLoad < min.workerStatus.recentLoad) {
+                min = w;
+            }
+        }
+        if (max == null || max == min) {
+            return;
+        }
+        long maxLoad = max.workerStatus.recentLoad;
+        long minLoad = min.workerStatus.recentLoad;
+        if (maxLoad < MIN_REBALANCE_LOAD || maxLoad <= minLoad * config.getRebalanceRatio()
+                || max.workerStatus.channelCount.get() <= 1) {
+            return;
+        }
+        // move a channel which load is less than the difference, so the imbalance is reduced
+        max.migrateHotChannel(min, maxLoad - minLoad);
+    }
+
+    /**
+     * move the channel to the specified worker, the future complete with false if the channel can't be
+     * moved now (not at packet boundary, has pending data to write, etc.).
+     */
+    CompletableFuture<Boolean> migrate(DtChannel dtc, int workerIndex) {
+        DtChannelImpl dtci = (DtChannelImpl) dtc;
+        NioWorker target = workers[workerIndex];
+        CompletableFuture<Boolean> f = new CompletableFuture<>();
+        NioWorker source = dtci.workerStatus.worker;
+        source.doInIoThread(() -> f.complete(source.migrateOut(dtci, target)), f);
+        return f;
     }
 
     @Override
     public void doStop(DtTime timeout, boolean force) {
+        nioStatus.inQuota.close();
         if (force) {
             forceStop(timeout);
             return;
@@ -180,30 +317,33 @@ public class NioServer extends NioNet implements Runnable {
 
     private void stopAcceptThread() {
         stop = true;
-        if (selector != null) {
-            selector.wakeup();
+        for (Acceptor acceptor : acceptors) {
+            if (acceptor.selector != null) {
+                acceptor.selector.wakeup();
+            }
         }
-        try {
-            acceptThread.join(100);
-        } catch (InterruptedException e) {
-            DtUtil.restoreInterruptStatus();
+        for (Acceptor acceptor : acceptors) {
+            try {
+                acceptor.thread.join(100);
+            } catch (InterruptedException e) {
+                DtUtil.restoreInterruptStatus();
+                return;
+            }
         }
     }
 
     private void forceStop(DtTime timeout) {
         log.warn("force stop begin");
-        if (acceptThread.isAlive()) {
+        boolean alive = false;
+        for (Acceptor acceptor : acceptors) {
+            alive |= acceptor.thread.isAlive();
+        }
+        if (alive) {
             stopAcceptThread();
-        } else {
-            if (ssc != null && ssc.isOpen()) {
-                try {
-                    if (selector != null) {
-                        selector.close();
-                    }
-                    ssc.close();
-                } catch (IOException e) {
-                    log.error("", e);
-                }
+        }
+        for (Acceptor acceptor : acceptors) {
+            if (!acceptor.thread.isAlive()) {
+                acceptor.forceClose();
             }
         }
         for (NioWorker worker : workers) {
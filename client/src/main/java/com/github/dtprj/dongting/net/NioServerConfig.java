@@ -23,6 +23,14 @@ public class NioServerConfig extends NioConfig {
     private int ioThreads;
     private int backlog = 4096;
 
+    // more than 1 acceptor requires SO_REUSEPORT, the kernel balance connections among acceptors
+    private int acceptThreads = 1;
+    // check and migrate channels between io workers, 0 to disable
+    private long rebalanceInterval = 0;
+    // migrate channel only when the load of the busiest worker is greater than the idlest one multiply this ratio
+    private double rebalanceRatio = 2.0;
+    private boolean sslNeedClientAuth;
+
     public NioServerConfig() {
         setIoThreads(calcIoThreads());
         int bizThreads = Runtime.getRuntime().availableProcessors() * 4;
@@ -81,4 +89,36 @@ public class NioServerConfig extends NioConfig {
     public void setBacklog(int backlog) {
         this.backlog = backlog;
     }
+
+    public int getAcceptThreads() {
+        return acceptThreads;
+    }
+
+    public void setAcceptThreads(int acceptThreads) {
+        this.acceptThreads = acceptThreads;
+    }
+
+    public long getRebalanceInterval() {
+        return rebalanceInterval;
+    }
+
+    public void setRebalanceInterval(long rebalanceInterval) {
+        this.rebalanceInterval = rebalanceInterval;
+    }
+
+    public double getRebalanceRatio() {
+        return rebalanceRatio;
+    }
+
+    public void setRebalanceRatio(double rebalanceRatio) {
+        this.rebalanceRatio = rebalanceRatio;
+    }
+
+    public boolean isSslNeedClientAuth() {
+        return sslNeedClientAuth;
+    }
+
+    public void setSslNeedClientAuth(boolean sslNeedClientAuth) {
+        this.sslNeedClientAuth = sslNeedClientAuth;
+    }
 }
@@ -16,32 +16,41 @@
 package com.github.dtprj.dongting.net;
 
 import com.github.dtprj.dongting.common.IntObjMap;
+import com.github.dtprj.dongting.common.MemoryQuota;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author huangli
  */
 class NioStatus {
-    private final IntObjMap<ReqProcessor<?>> processors = new IntObjMap<>();
+    private final IntObjMap<AbstractReqProcessor<?>> processors = new IntObjMap<>();
     ChannelListener channelListener;
+    boolean hasStreamProcessor;
+    // run the delegated tasks of TLS engine, set before workers started
+    Executor tlsTaskExecutor;
 
     final ReentrantLock pendingLock = new ReentrantLock();
     int pendingRequests;
-    long pendingBytes;
+    final MemoryQuota inQuota;
 
-    NioStatus() {
+    NioStatus(MemoryQuota inQuota) {
+        this.inQuota = inQuota;
     }
 
-    public ReqProcessor<?> getProcessor(int cmd) {
+    public AbstractReqProcessor<?> getProcessor(int cmd) {
         return processors.get(cmd);
     }
 
-    public void registerProcessor(int cmd, ReqProcessor<?> processor) {
+    public void registerProcessor(int cmd, AbstractReqProcessor<?> processor) {
         processors.put(cmd, processor);
+        if (processor instanceof StreamReqProcessor) {
+            hasStreamProcessor = true;
+        }
     }
 
-    public IntObjMap<ReqProcessor<?>> getProcessors() {
+    public IntObjMap<AbstractReqProcessor<?>> getProcessors() {
         return processors;
     }
 
@@ -30,6 +30,7 @@ import com.github.dtprj.dongting.log.BugLog;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
 
+import javax.net.ssl.SSLEngine;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.StandardSocketOptions;
@@ -58,6 +59,9 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
 
     static long incomingConnectTimeout = 5 * 1000 * 1000 * 1000L;
 
+    // a packet is counted as this bytes in load stat, since it has decode and dispatch cost
+    private static final int PACKET_LOAD = 1024;
+
     private final String workerName;
     private final Thread thread;
     private final NioStatus nioStatus;
@@ -128,6 +132,9 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
         workerStatus.setDirectPool(directPool);
         workerStatus.setHeapPool(refBufferFactory);
         workerStatus.setTs(timestamp);
+        if (config.isCompress()) {
+            workerStatus.compressor = new BodyCompressor(config.getCompressLevel(), heapPool);
+        }
     }
 
     private ByteBufferPool createReleaseSafePool(TwoLevelPool heapPool, IoWorkerQueue ioWorkerQueue) {
@@ -172,6 +179,9 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
                 releaseReadBuffer();
             }
 
+            if (workerStatus.compressor != null) {
+                workerStatus.compressor.close();
+            }
             config.getPoolFactory().destroyPool(directPool);
             config.getPoolFactory().destroyPool(heapPool);
 
@@ -217,6 +227,7 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
                     cleanOutgoingTimeoutConnect(ts);
                 } else {
                     cleanIncomingConnects(ts);
+                    updateLoadStat();
                 }
                 if (status == STATUS_RUNNING) {
                     tryReconnect(ts);
@@ -312,6 +323,11 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
         String stage = "check selection key valid";
         try {
             if (!key.isValid()) {
+                Object att = key.attachment();
+                if (att instanceof DtChannelImpl && ((DtChannelImpl) att).workerStatus != workerStatus) {
+                    // the key is cancelled because the channel migrated to another worker
+                    return;
+                }
                 log.info("socket may closed, remove it: {}", key.channel());
                 closeChannelBySelKey(key);
                 return;
@@ -324,6 +340,10 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
 
             stage = "process socket read";
             DtChannelImpl dtc = (DtChannelImpl) key.attachment();
+            if (dtc.workerStatus != workerStatus) {
+                // the key is cancelled because the channel migrated to another worker
+                return;
+            }
             if (key.isReadable()) {
                 prepareReadBuffer(roundTime);
                 long startTime = perfCallback.takeTime(PerfConsts.RPC_D_READ);
@@ -334,6 +354,7 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
                     return;
                 }
                 perfCallback.fireTime(PerfConsts.RPC_D_READ, startTime, 1, readBytes);
+                dtc.statBytes += readBytes;
                 readBuffer.flip();
                 dtc.afterRead(status == STATUS_RUNNING, readBuffer);
             }
@@ -348,10 +369,11 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
                     sc.write(buf);
                     x = x - buf.remaining();
                     perfCallback.fireTime(PerfConsts.RPC_D_WRITE, startTime, 1, x);
+                    dtc.statBytes += x;
                 } else {
                     // no data to write
                     subQueue.setWriting(false);
-                    key.interestOps(SelectionKey.OP_READ);
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
                     perfCallback.fire(PerfConsts.RPC_C_MARK_READ);
                 }
             }
@@ -378,18 +400,44 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
         sc.setOption(StandardSocketOptions.SO_KEEPALIVE, false);
         sc.setOption(StandardSocketOptions.TCP_NODELAY, true);
 
-        // 32 bit channelIndex may overflow, use channels map to keep it unique in every worker
-        while (channels.get(channelIndex) != null) {
-            channelIndex++;
-        }
-        DtChannelImpl dtc = new DtChannelImpl(nioStatus, workerStatus, config, peer, sc, channelIndex++);
+        DtChannelImpl dtc = new DtChannelImpl(nioStatus, workerStatus, config, peer, sc, nextChannelIndex());
         SelectionKey selectionKey = sc.register(selector, SelectionKey.OP_READ, dtc);
+        dtc.setSelectionKey(selectionKey);
         dtc.getSubQueue().setRegisterForWrite(new RegWriteRunner(selectionKey));
+        if (config.getSslContext() != null) {
+            initTls(dtc, peer);
+        }
 
         log.info("new DtChannel init: {}", sc);
         return dtc;
     }
 
+    private void initTls(DtChannelImpl dtc, Peer peer) {
+        SSLEngine engine;
+        if (peer == null) {
+            engine = config.getSslContext().createSSLEngine();
+            engine.setUseClientMode(false);
+            engine.setNeedClientAuth(((NioServerConfig) config).isSslNeedClientAuth());
+        } else {
+            HostPort hp = peer.getEndPoint();
+            engine = config.getSslContext().createSSLEngine(hp.getHost(), hp.getPort());
+            engine.setUseClientMode(true);
+        }
+        TlsHandler tls = new TlsHandler(engine, dtc, nioStatus.tlsTaskExecutor);
+        dtc.setTls(tls);
+        tls.begin();
+        // client side should send the hello message first
+        dtc.getSubQueue().requestWrite();
+    }
+
+    private int nextChannelIndex() {
+        // 32 bit channelIndex may overflow, use channels map to keep it unique in every worker
+        while (channels.get(channelIndex) != null) {
+            channelIndex++;
+        }
+        return channelIndex++;
+    }
+
     private class RegWriteRunner implements Runnable {
         SelectionKey key;
 
@@ -399,7 +447,8 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
 
         @Override
         public void run() {
-            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            // keep OP_READ status, it may be removed by stream flow control
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
             perfCallback.fire(PerfConsts.RPC_C_MARK_WRITE);
         }
     }
@@ -414,9 +463,12 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
 
     // invoke by NioServer accept thread
     public void newChannelAccept(SocketChannel sc) {
+        // increase before the channel is really registered, so the accept thread can see it immediately
+        workerStatus.channelCount.incrementAndGet();
         doInIoThread(() -> {
             if (status >= STATUS_STOPPING) {
                 log.info("accept new channel while worker closed, ignore it: {}", sc);
+                workerStatus.channelCount.decrementAndGet();
                 closeChannel0(sc);
                 return;
             }
@@ -425,6 +477,7 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
                 dtc = initNewChannel(sc, null);
             } catch (Throwable e) {
                 log.warn("accept channel fail: {}, {}", sc, e.toString());
+                workerStatus.channelCount.decrementAndGet();
                 closeChannel0(sc);
                 return;
             }
@@ -433,6 +486,104 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
         }, null);
     }
 
+    // server side only, invoke in io thread
+    private void updateLoadStat() {
+        long[] total = new long[1];
+        channels.forEach((index, dtc) -> {
+            long load = dtc.statBytes + (long) dtc.statPackets * PACKET_LOAD;
+            // exponential decay, so the old traffic has less weight
+            dtc.recentLoad = (dtc.recentLoad >> 1) + load;
+            dtc.statBytes = 0;
+            dtc.statPackets = 0;
+            total[0] += dtc.recentLoad;
+        });
+        workerStatus.recentLoad = total[0];
+    }
+
+    /**
+     * Move the hottest channel which load is less than maxLoad to the target worker.
+     * Invoke by other threads, the migration is executed in io thread of this worker.
+     */
+    void migrateHotChannel(NioWorker target, long maxLoad) {
+        doInIoThread(() -> {
+            DtChannelImpl[] hottest = new DtChannelImpl[1];
+            channels.forEach((index, dtc) -> {
+                if (dtc.recentLoad > 0 && dtc.recentLoad < maxLoad && dtc.canMigrate()
+                        && (hottest[0] == null || dtc.recentLoad > hottest[0].recentLoad)) {
+                    hottest[0] = dtc;
+                }
+            });
+            if (hottest[0] != null) {
+                migrateOut(hottest[0], target);
+            }
+        }, null);
+    }
+
+    /**
+     * Move the channel to target worker, invoke in io thread of this worker.
+     * The channel is only moved when it is at a packet boundary and has nothing to write, so the
+     * read/write status need not transfer. Return false if the channel can't be moved now.
+     */
+    boolean migrateOut(DtChannelImpl dtc, NioWorker target) {
+        if (target == this || status >= STATUS_PREPARE_STOP || dtc.workerStatus != workerStatus
+                || !dtc.canMigrate() || hasPendingRequest(dtc)) {
+            return false;
+        }
+        int index = dtc.getChannelIndexInWorker();
+        SelectionKey key = dtc.getChannel().keyFor(selector);
+        try {
+            target.ioWorkerQueue.scheduleFromBizThread(() -> target.migrateIn(dtc));
+        } catch (NetException e) {
+            log.warn("migrate channel fail: {}", e.toString());
+            return false;
+        }
+        // after this, the data sent to this worker will be forwarded to the target worker by IoWorkerQueue
+        dtc.workerStatus = target.workerStatus;
+        target.wakeup();
+        if (key != null) {
+            key.cancel();
+        }
+        channels.remove(index);
+        workerStatus.channelCount.decrementAndGet();
+        workerStatus.recentLoad = Math.max(0, workerStatus.recentLoad - dtc.recentLoad);
+        log.info("channel {} migrate from {} to {}", dtc.getChannel(), workerName, target.workerName);
+        return true;
+    }
+
+    private void migrateIn(DtChannelImpl dtc) {
+        workerStatus.channelCount.incrementAndGet();
+        int index = nextChannelIndex();
+        dtc.afterMigrate(workerStatus, index);
+        channels.put(index, dtc);
+        if (status >= STATUS_STOPPING) {
+            log.info("channel migrated while worker closed, close it: {}", dtc.getChannel());
+            close(dtc);
+            return;
+        }
+        try {
+            SelectionKey selectionKey = dtc.getChannel().register(selector, SelectionKey.OP_READ, dtc);
+            dtc.setSelectionKey(selectionKey);
+            dtc.getSubQueue().setRegisterForWrite(new RegWriteRunner(selectionKey));
+            workerStatus.recentLoad += dtc.recentLoad;
+        } catch (Throwable e) {
+            log.warn("register migrated channel fail: {}, {}", dtc.getChannel(), e.toString());
+            close(dtc);
+        }
+    }
+
+    private boolean hasPendingRequest(DtChannelImpl dtc) {
+        if (pendingOutgoingRequests.size() == 0) {
+            return false;
+        }
+        boolean[] found = new boolean[1];
+        pendingOutgoingRequests.forEach((key, wd) -> {
+            if (wd.getDtc() == dtc) {
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
     void finishHandshake(DtChannelImpl dtc) {
         dtc.handshake = true;
         if (incomingConnects != null) {
@@ -576,6 +727,10 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
                     close(dtc);
                     return;
                 }
+                if (resp.getBody().compress == BodyCompressor.COMPRESS_DEFLATE && workerStatus.compressor != null) {
+                    dtc.compress = true;
+                    log.info("body compress enabled: {}", dtc.getChannel());
+                }
                 ConfigBody cb = resp.getBody().config;
                 if (config != null && config.isServerHint()) {
                     client.processServerConfigHint(dtc.peer, cb);
@@ -606,9 +761,14 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
         cb.maxInPending = config.getMaxInRequests();
         cb.maxInPendingBytes = config.getMaxInBytes();
         hb.config = cb;
+        if (workerStatus.compressor != null) {
+            hb.compress = BodyCompressor.COMPRESS_DEFLATE;
+        }
         HandshakeBody.WritePacket p = new HandshakeBody.WritePacket(hb);
         p.packetType = PacketType.TYPE_REQ;
         p.command = Commands.CMD_HANDSHAKE;
+        // pending high priority packets are enqueued after it, they should not be sent before handshake
+        p.setPriority(WritePacket.PRIORITY_HIGH);
 
         WriteData wd = new WriteData(dtc, p, ci.deadline, rpcCallback,
                 ctx -> ctx.toDecoderCallback(new HandshakeBody.Callback()));
@@ -679,7 +839,9 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
             peer.dtChannel = null;
             peer.markNotConnect(config, workerStatus, false);
         }
-        channels.remove(dtc.getChannelIndexInWorker());
+        if (channels.remove(dtc.getChannelIndexInWorker()) != null && client == null) {
+            workerStatus.channelCount.decrementAndGet();
+        }
         if (channelsList != null) {
             // O(n) in client side
             channelsList.remove(dtc);
@@ -27,6 +27,7 @@ public abstract class Packet {
     public static final int IDX_MSG = 6;
     public static final int IDX_TIMEOUT = 7;
     public static final int IDX_EXTRA = 8;
+    public static final int IDX_RAW_BODY_SIZE = 9;
     public static final int IDX_BODY = 15;
 
     int packetType;
@@ -33,6 +33,9 @@ public interface PerfConsts {
 
     int FIBER_D_POLL = 100;
     int FIBER_D_WORK = 101;
+    int FIBER_C_GROUP_MIGRATE = 102;
+    int FIBER_D_EXEC = 103;
+    int FIBER_D_WAIT = 104;
 
     int RAFT_D_LEADER_RUNNER_FIBER_LATENCY = 200;
     int RAFT_D_ENCODE_AND_WRITE = 201;
@@ -48,4 +51,7 @@ public interface PerfConsts {
     int RAFT_D_IDX_FORCE = 211;
     int RAFT_D_REPLICATE_RPC = 212;
     int RAFT_D_STATE_MACHINE_EXEC = 213;
+
+    int POOL_C_ALLOCATE = 300;
+    int POOL_C_DISCARD = 301;
 }
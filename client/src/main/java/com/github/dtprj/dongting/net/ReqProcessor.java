@@ -18,17 +18,12 @@ package com.github.dtprj.dongting.net;
 import com.github.dtprj.dongting.codec.DecodeContext;
 import com.github.dtprj.dongting.codec.DecoderCallback;
 
-import java.util.concurrent.Executor;
-
 /**
+ * Processor for requests whose body is decoded by the DecoderCallback.
+ *
  * @author huangli
  */
-public abstract class ReqProcessor<T> {
-
-    Executor executor;
-    boolean useDefaultExecutor;
-
-    public abstract WritePacket process(ReadPacket<T> packet, ReqContext reqContext) throws Exception;
+public abstract class ReqProcessor<T> extends AbstractReqProcessor<T> {
 
     public abstract DecoderCallback<T> createDecoderCallback(int command, DecodeContext context);
 
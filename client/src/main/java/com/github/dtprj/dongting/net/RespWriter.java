@@ -22,13 +22,9 @@ import com.github.dtprj.dongting.common.DtTime;
  */
 public class RespWriter {
 
-    private final IoWorkerQueue ioWorkerQueue;
-    private final Runnable wakeupRunnable;
     private final DtChannelImpl dtc;
 
-    RespWriter(IoWorkerQueue ioWorkerQueue, Runnable wakeupRunnable, DtChannelImpl dtc) {
-        this.ioWorkerQueue = ioWorkerQueue;
-        this.wakeupRunnable = wakeupRunnable;
+    RespWriter(DtChannelImpl dtc) {
         this.dtc = dtc;
     }
 
@@ -49,7 +45,9 @@ public class RespWriter {
 
         resp.setPacketType(PacketType.TYPE_RESP);
         WriteData data = new WriteData(dtc, resp, timeout);
-        ioWorkerQueue.writeFromBizThread(data);
-        wakeupRunnable.run();
+        // the channel may migrate to another worker, if the old worker is used, it will forward the data
+        WorkerStatus ws = dtc.workerStatus;
+        ws.getIoQueue().writeFromBizThread(data);
+        ws.getWakeupRunnable().run();
     }
 }
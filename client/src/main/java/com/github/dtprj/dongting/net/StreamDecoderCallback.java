@@ -0,0 +1,74 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.codec.DecoderCallback;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author huangli
+ */
+class StreamDecoderCallback<T> extends DecoderCallback<T> {
+
+    private final StreamReqProcessor<T> processor;
+    private final ReadPacket<T> packet;
+    private final StreamReadControl readControl;
+
+    private StreamHandler<T> handler;
+
+    StreamDecoderCallback(StreamReqProcessor<T> processor, ReadPacket<T> packet, StreamReadControl readControl) {
+        this.processor = processor;
+        this.packet = packet;
+        this.readControl = readControl;
+    }
+
+    @Override
+    protected void begin(int len) {
+        handler = processor.createStreamHandler(packet, len);
+        handler.readControl = readControl;
+    }
+
+    @Override
+    protected boolean doDecode(ByteBuffer buffer, int bodyLen, int currentPos) {
+        int len = buffer.remaining();
+        if (len == 0) {
+            return true;
+        }
+        // the read buffer is reused by the io worker, so copy it
+        RefBuffer slice = context.getHeapPool().create(len);
+        ByteBuffer bb = slice.getBuffer();
+        bb.put(buffer);
+        bb.flip();
+        readControl.afterRead(len);
+        handler.onData(slice);
+        return true;
+    }
+
+    @Override
+    protected boolean end(boolean success) {
+        if (handler != null) {
+            handler.onEnd(success);
+        }
+        return success;
+    }
+
+    @Override
+    protected T getResult() {
+        return handler == null ? null : handler.getResult();
+    }
+}
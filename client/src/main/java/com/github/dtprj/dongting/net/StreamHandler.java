@@ -0,0 +1,55 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+
+/**
+ * Receive the body of a stream request incrementally. All callback methods are invoked in io thread,
+ * so they should not block.
+ *
+ * @author huangli
+ */
+public abstract class StreamHandler<T> {
+
+    StreamReadControl readControl;
+
+    /**
+     * a slice of the body arrived. The handler should release the slice after use, and call ack()
+     * when the bytes are consumed, the channel stop reading if too many bytes are not acknowledged.
+     */
+    protected abstract void onData(RefBuffer slice);
+
+    /**
+     * invoke after the last slice, or when the channel is closed (success is false).
+     */
+    protected void onEnd(boolean success) {
+    }
+
+    /**
+     * the result is set as the body of the ReadPacket passed to StreamReqProcessor.process().
+     */
+    protected T getResult() {
+        return null;
+    }
+
+    /**
+     * acknowledge the consumed bytes, can be invoked in any thread.
+     */
+    public final void ack(int bytes) {
+        readControl.ack(bytes);
+    }
+}
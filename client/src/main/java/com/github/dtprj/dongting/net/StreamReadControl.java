@@ -0,0 +1,76 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flow control of stream requests in one channel. If the bytes delivered to StreamHandler but not
+ * acknowledged exceed the window, the channel stop reading until enough bytes are acknowledged.
+ * The bytes already read into the read buffer are still delivered, so the memory is bounded by
+ * streamWindowBytes plus readBufferSize.
+ *
+ * @author huangli
+ */
+class StreamReadControl {
+
+    private final DtChannelImpl dtc;
+    private final long window;
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    // accessed in io thread
+    private boolean suspended;
+
+    StreamReadControl(DtChannelImpl dtc, long window) {
+        this.dtc = dtc;
+        this.window = window;
+    }
+
+    // invoke in io thread
+    void afterRead(int bytes) {
+        if (pendingBytes.addAndGet(bytes) > window && !suspended) {
+            suspended = true;
+            SelectionKey key = dtc.getSelectionKey();
+            if (key != null && key.isValid()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    void ack(int bytes) {
+        long newValue = pendingBytes.addAndGet(-bytes);
+        if (newValue <= window && newValue + bytes > window) {
+            dtc.workerStatus.worker.doInIoThread(this::resume, null);
+        }
+    }
+
+    // invoke in io thread
+    private void resume() {
+        if (!suspended || pendingBytes.get() > window || dtc.isClosed()) {
+            return;
+        }
+        suspended = false;
+        SelectionKey key = dtc.getSelectionKey();
+        if (key != null && key.isValid()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    boolean isSuspended() {
+        return suspended;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+/**
+ * Processor for requests with large body. The body is not materialised, it's delivered to the
+ * StreamHandler as RefBuffer slices as soon as the bytes arrive, and the process method is invoked
+ * after the whole body is received, with the result of the StreamHandler as the body of the packet.
+ *
+ * <p>The packet size of stream request is limited by NioConfig.maxStreamPacketSize instead of
+ * maxPacketSize. The channel stop reading if the unacknowledged bytes of the handler exceed
+ * NioConfig.streamWindowBytes.
+ *
+ * @author huangli
+ */
+public abstract class StreamReqProcessor<T> extends AbstractReqProcessor<T> {
+
+    /**
+     * create handler for a new request, invoke in io thread. The header fields of the packet
+     * (command, seq, timeout, etc.) are available, but the body is null.
+     */
+    public abstract StreamHandler<T> createStreamHandler(ReadPacket<T> packet, int bodyLen);
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+/**
+ * The packet with large body, the size is limited by NioConfig.maxStreamPacketSize instead of maxPacketSize.
+ * The encodeBody method is invoked repeatedly with the io buffer (at most 512KB), so the subclass can
+ * produce the body incrementally (for example read from file) instead of materialising the whole body.
+ * The receiver should register a StreamReqProcessor for the command.
+ *
+ * @author huangli
+ */
+public abstract class StreamWritePacket extends WritePacket {
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+import com.github.dtprj.dongting.buf.ByteBufferPool;
+import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The TLS stage of a channel, all methods are invoked in io thread. The cipher text read from socket is
+ * unwrapped and passed to the parser, and the plain text produced by IoChannelQueue is wrapped before write.
+ * The buffers are borrowed from the direct pool of the io worker and returned when they are empty, so idle
+ * channels hold no buffers. The delegated tasks of the engine (which may be slow, such as certificate
+ * validation) run in the task executor, and the handshake resumes in io thread after they finished.
+ *
+ * @author huangli
+ */
+class TlsHandler {
+    private static final DtLog log = DtLogs.getLogger(TlsHandler.class);
+
+    private final SSLEngine engine;
+    private final DtChannelImpl dtc;
+    private final Executor taskExecutor;
+
+    // incomplete TLS record, in write mode
+    private ByteBuffer netIn;
+    // cipher text to write, in read mode
+    private ByteBuffer netOut;
+
+    private boolean handshakeFinished;
+    private boolean taskRunning;
+
+    TlsHandler(SSLEngine engine, DtChannelImpl dtc, Executor taskExecutor) {
+        this.engine = engine;
+        this.dtc = dtc;
+        this.taskExecutor = taskExecutor;
+    }
+
+    void begin() {
+        try {
+            engine.beginHandshake();
+        } catch (SSLException e) {
+            throw new NetException(e);
+        }
+    }
+
+    private ByteBufferPool pool() {
+        // the channel may migrate to another worker, so don't keep the pool
+        return dtc.workerStatus.getDirectPool();
+    }
+
+    /**
+     * unwrap cipher text read from socket, and pass the plain text to the parser.
+     */
+    void unwrap(ByteBuffer buf) {
+        if (engine.isInboundDone()) {
+            // close_notify received, discard the rest, the channel is closed when the peer closes the socket
+            buf.position(buf.limit());
+            return;
+        }
+        ByteBuffer src = buf;
+        if (netIn != null) {
+            netIn = ensureCapacity(netIn, buf.remaining());
+            netIn.put(buf);
+            netIn.flip();
+            src = netIn;
+        }
+        ByteBuffer appBuf = appBuffer();
+        try {
+            while (true) {
+                SSLEngineResult r = engine.unwrap(src, appBuf);
+                SSLEngineResult.Status st = r.getStatus();
+                SSLEngineResult.HandshakeStatus hs = r.getHandshakeStatus();
+                if (st != SSLEngineResult.Status.CLOSED) {
+                    // the application data may follow the last handshake message, so finish handshake first
+                    hs = processHandshakeStatus(hs);
+                }
+                if (appBuf.position() > 0) {
+                    appBuf.flip();
+                    dtc.parsePlain(appBuf);
+                    appBuf.clear();
+                }
+                if (st == SSLEngineResult.Status.CLOSED) {
+                    if (engine.isInboundDone()) {
+                        src.position(src.limit());
+                        break;
+                    }
+                    throw new NetException("ssl engine closed");
+                }
+                if (st == SSLEngineResult.Status.BUFFER_UNDERFLOW
+                        || hs == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                    // if need task, continue unwrap after the delegated tasks finished
+                    break;
+                }
+                if (st == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                    // the application buffer size of the session may change after handshake
+                    appBuf = appBuffer();
+                    continue;
+                }
+                if (!src.hasRemaining() || hs == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                    // if still need wrap, the net out buffer is full, continue unwrap after write
+                    break;
+                }
+            }
+        } catch (SSLException e) {
+            throw new NetException(e);
+        } finally {
+            appBuf.clear();
+            keepRemain(src, buf);
+        }
+    }
+
+    private ByteBuffer appBuffer() {
+        // shared by all channels in the worker, since the plain text is consumed by parser immediately
+        WorkerStatus ws = dtc.workerStatus;
+        int size = engine.getSession().getApplicationBufferSize();
+        ByteBuffer appBuf = ws.tlsAppBuffer;
+        if (appBuf == null || appBuf.capacity() < size) {
+            appBuf = ByteBuffer.allocateDirect(size);
+            ws.tlsAppBuffer = appBuf;
+        }
+        appBuf.clear();
+        return appBuf;
+    }
+
+    private void keepRemain(ByteBuffer src, ByteBuffer readBuffer) {
+        if (src.hasRemaining()) {
+            if (src == readBuffer) {
+                // the read buffer is shared by all channels in the worker
+                netIn = pool().borrow(Math.max(engine.getSession().getPacketBufferSize(), src.remaining()));
+                netIn.put(src);
+            } else {
+                netIn.compact();
+            }
+        } else if (netIn != null) {
+            pool().release(netIn);
+            netIn = null;
+        }
+    }
+
+    private ByteBuffer ensureCapacity(ByteBuffer buf, int addBytes) {
+        if (buf.remaining() >= addBytes) {
+            return buf;
+        }
+        ByteBuffer newBuf = pool().borrow(buf.position() + addBytes);
+        buf.flip();
+        newBuf.put(buf);
+        pool().release(buf);
+        return newBuf;
+    }
+
+    private SSLEngineResult.HandshakeStatus processHandshakeStatus(SSLEngineResult.HandshakeStatus hs)
+            throws SSLException {
+        while (true) {
+            switch (hs) {
+                case NEED_TASK:
+                    if (runDelegatedTasks()) {
+                        return hs;
+                    }
+                    hs = engine.getHandshakeStatus();
+                    break;
+                case NEED_WRAP:
+                    wrapHandshake();
+                    SSLEngineResult.HandshakeStatus newStatus = engine.getHandshakeStatus();
+                    if (newStatus == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                        // net out buffer is full
+                        return newStatus;
+                    }
+                    hs = newStatus;
+                    break;
+                case FINISHED:
+                    onHandshakeFinished();
+                    hs = engine.getHandshakeStatus();
+                    if (hs == SSLEngineResult.HandshakeStatus.FINISHED) {
+                        return hs;
+                    }
+                    break;
+                default:
+                    // NOT_HANDSHAKING, NEED_UNWRAP
+                    if (hs == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING && !handshakeFinished) {
+                        onHandshakeFinished();
+                    }
+                    return hs;
+            }
+        }
+    }
+
+    /**
+     * return true if the tasks run asynchronously, the handshake resumes in afterDelegatedTasks().
+     */
+    private boolean runDelegatedTasks() {
+        if (taskRunning) {
+            return true;
+        }
+        taskRunning = true;
+        // the channel can't migrate when the task is running (see cleanAndCheckIdle), so the worker not change
+        WorkerStatus ws = dtc.workerStatus;
+        Runnable r = () -> {
+            try {
+                Runnable task;
+                while ((task = engine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+            } catch (Throwable e) {
+                // the engine will report the error in next wrap/unwrap
+                log.warn("tls delegated task failed: {}", e.toString());
+            }
+            ws.worker.doInIoThread(this::afterDelegatedTasks, null);
+        };
+        try {
+            taskExecutor.execute(r);
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("tls task executor rejected, run delegated task in io thread");
+            taskRunning = false;
+            Runnable task;
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+            return false;
+        }
+    }
+
+    private void afterDelegatedTasks() {
+        taskRunning = false;
+        if (dtc.isClosed()) {
+            return;
+        }
+        try {
+            if (netIn != null) {
+                // the pending data is not unwrapped because delegated tasks were running
+                unwrap(SimpleByteBufferPool.EMPTY_BUFFER);
+            }
+            dtc.getSubQueue().requestWrite();
+        } catch (Exception e) {
+            log.warn("tls handshake error, channel will close: {}", e.toString());
+            dtc.workerStatus.worker.close(dtc);
+        }
+    }
+
+    private void onHandshakeFinished() {
+        if (!handshakeFinished) {
+            handshakeFinished = true;
+            SSLSession s = engine.getSession();
+            log.info("tls handshake finished: {}, protocol={}, cipher={}", dtc.getChannel(),
+                    s.getProtocol(), s.getCipherSuite());
+        }
+        // flush pending packets
+        dtc.getSubQueue().requestWrite();
+    }
+
+    // return net out buffer in write mode
+    private ByteBuffer prepareNetOut() {
+        ByteBuffer netOut = this.netOut;
+        if (netOut == null) {
+            netOut = pool().borrow(engine.getSession().getPacketBufferSize() << 2);
+            netOut.clear();
+        } else {
+            netOut.compact();
+        }
+        return netOut;
+    }
+
+    private void wrapHandshake() throws SSLException {
+        ByteBuffer out = prepareNetOut();
+        try {
+            while (engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                SSLEngineResult r = engine.wrap(SimpleByteBufferPool.EMPTY_BUFFER, out);
+                if (r.getStatus() != SSLEngineResult.Status.OK) {
+                    checkClosed(r);
+                    break;
+                }
+                if (r.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+                    onHandshakeFinished();
+                }
+            }
+        } finally {
+            out.flip();
+            this.netOut = out;
+        }
+        dtc.getSubQueue().requestWrite();
+    }
+
+    private void checkClosed(SSLEngineResult r) {
+        if (r.getStatus() == SSLEngineResult.Status.CLOSED) {
+            throw new NetException("ssl engine closed");
+        }
+    }
+
+    /**
+     * return cipher text to write, or null if nothing to write.
+     */
+    ByteBuffer wrap(IoChannelQueue queue, Timestamp roundTime) {
+        ByteBuffer netOut = this.netOut;
+        if (netOut != null && netOut.hasRemaining()) {
+            return netOut;
+        }
+        netOut = prepareNetOut();
+        int packetSize = engine.getSession().getPacketBufferSize();
+        try {
+            while (netOut.remaining() >= packetSize) {
+                SSLEngineResult.HandshakeStatus hs = engine.getHandshakeStatus();
+                ByteBuffer src;
+                if (hs == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                    if (processHandshakeStatus(hs) == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                        // resume after the delegated tasks finished
+                        break;
+                    }
+                    continue;
+                } else if (hs == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                    src = SimpleByteBufferPool.EMPTY_BUFFER;
+                } else if (hs == SSLEngineResult.HandshakeStatus.NEED_UNWRAP) {
+                    // wait peer
+                    break;
+                } else {
+                    if (!handshakeFinished) {
+                        onHandshakeFinished();
+                    }
+                    src = queue.getPlainWriteBuffer(roundTime);
+                    if (src == null) {
+                        break;
+                    }
+                }
+                SSLEngineResult r = engine.wrap(src, netOut);
+                if (r.getStatus() != SSLEngineResult.Status.OK) {
+                    checkClosed(r);
+                    break;
+                }
+                if (r.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+                    onHandshakeFinished();
+                }
+            }
+        } catch (SSLException e) {
+            throw new NetException(e);
+        } finally {
+            netOut.flip();
+            this.netOut = netOut;
+        }
+        if (netIn != null && engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_UNWRAP) {
+            // the pending data is not unwrapped because net out buffer was full
+            unwrap(SimpleByteBufferPool.EMPTY_BUFFER);
+        }
+        if (!this.netOut.hasRemaining()) {
+            pool().release(this.netOut);
+            this.netOut = null;
+            return null;
+        }
+        return this.netOut;
+    }
+
+    /**
+     * release the empty buffers, then return true if no buffer is held, so the channel can migrate.
+     */
+    boolean cleanAndCheckIdle() {
+        if (netOut != null && !netOut.hasRemaining()) {
+            pool().release(netOut);
+            netOut = null;
+        }
+        return handshakeFinished && !taskRunning && netIn == null && netOut == null;
+    }
+
+    SSLSession getSession() {
+        return engine.getSession();
+    }
+
+    boolean isHandshakeFinished() {
+        return handshakeFinished;
+    }
+
+    /**
+     * called before the socket closed, send close_notify to peer in best effort.
+     */
+    void close() {
+        engine.closeOutbound();
+        try {
+            flushCloseNotify();
+        } catch (Exception e) {
+            log.debug("send tls close_notify failed: {}", e.toString());
+        }
+        if (netIn != null) {
+            pool().release(netIn);
+            netIn = null;
+        }
+        if (netOut != null) {
+            pool().release(netOut);
+            netOut = null;
+        }
+    }
+
+    private void flushCloseNotify() throws IOException {
+        ByteBuffer out = prepareNetOut();
+        try {
+            while (!engine.isOutboundDone()) {
+                SSLEngineResult r = engine.wrap(SimpleByteBufferPool.EMPTY_BUFFER, out);
+                if (r.getStatus() != SSLEngineResult.Status.OK && r.getStatus() != SSLEngineResult.Status.CLOSED) {
+                    // BUFFER_OVERFLOW, the pending cipher text is not written, give up
+                    break;
+                }
+                if (r.bytesProduced() == 0) {
+                    break;
+                }
+            }
+        } finally {
+            out.flip();
+            this.netOut = out;
+        }
+        // non-blocking, the rest is dropped if the socket buffer is full
+        dtc.getChannel().write(out);
+    }
+}
@@ -20,6 +20,9 @@ import com.github.dtprj.dongting.buf.RefBufferFactory;
 import com.github.dtprj.dongting.common.LongObjMap;
 import com.github.dtprj.dongting.common.Timestamp;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * @author huangli
  */
@@ -32,9 +35,17 @@ class WorkerStatus {
     RefBufferFactory heapPool;
     int packetsToWrite;
     Timestamp ts;
+    // plain text buffer for TLS unwrap, shared by all channels in the worker
+    ByteBuffer tlsAppBuffer;
+    // null if compress is not enabled
+    BodyCompressor compressor;
 
     int retryConnect;
 
+    // read by other threads (for example the accept thread of server), updated per clean interval
+    final AtomicInteger channelCount = new AtomicInteger();
+    volatile long recentLoad;
+
     public WorkerStatus(NioWorker worker) {
         this.worker = worker;
     }
@@ -31,6 +31,12 @@ import java.nio.charset.StandardCharsets;
 public abstract class WritePacket extends Packet implements Encodable {
     private static final DtLog log = DtLogs.getLogger(WritePacket.class);
 
+    /**
+     * for control packets such as raft vote and ping, they are written before the normal packets in the queue.
+     */
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+
     static final int STATUS_INIT = 0;
     private static final int STATUS_HEADER_ENCODE_FINISHED = 1;
     private static final int STATUS_ENCODE_FINISHED = 2;
@@ -43,6 +49,12 @@ public abstract class WritePacket extends Packet implements Encodable {
     boolean use;
     private boolean cleaned;
 
+    private int priority = PRIORITY_NORMAL;
+
+    // the materialized (and compressed if rawBodySize > 0) body, encode it instead of invoke encodeBody
+    private ByteBuffer replacedBody;
+    private int rawBodySize;
+
     private static final int MAX_HEADER_SIZE = 4 // length
             + 1 + 1 // uint32 packet_type = 1;
             + 1 + 5 // uint32 command = 2;
@@ -50,8 +62,9 @@ public abstract class WritePacket extends Packet implements Encodable {
             + 1 + 5 // uint32 resp_code = 4;
             + 1 + 5 // string biz_code = 5;
             // string resp_msg = 6;
-            + 1 + 8; // fixed32 timeout_millis = 7;
-    // string extra = 8;
+            + 1 + 8 // fixed32 timeout_millis = 7;
+            // string extra = 8;
+            + 1 + 5; // uint32 raw_body_size = 9;
 
 
     protected abstract int calcActualBodySize();
@@ -95,6 +108,7 @@ public abstract class WritePacket extends Packet implements Encodable {
                     + PbUtil.accurateLengthDelimitedSize(IDX_MSG, msgBytes == null ? 0 : msgBytes.length) // string resp_msg = 6;
                     + PbUtil.accurateFix64Size(IDX_TIMEOUT, timeout) // fixed64 timeout = 7;
                     + PbUtil.accurateLengthDelimitedSize(IDX_EXTRA, extra == null ? 0 : extra.length) // bytes extra = 8;
+                    + PbUtil.accurateUnsignedIntSize(IDX_RAW_BODY_SIZE, rawBodySize) // uint32 raw_body_size = 9;
                     + PbUtil.accurateLengthDelimitedSize(IDX_BODY, actualBodySize()); // bytes body = 15;
             this.dumpSize = dumpSize;
         }
@@ -119,6 +133,7 @@ public abstract class WritePacket extends Packet implements Encodable {
                 PbUtil.writeUTF8(buf, IDX_MSG, msg);
                 PbUtil.writeFix64(buf, IDX_TIMEOUT, timeout);
                 PbUtil.writeBytes(buf, IDX_EXTRA, extra);
+                PbUtil.writeUnsignedInt32(buf, IDX_RAW_BODY_SIZE, rawBodySize);
                 if (bodySize > 0) {
                     PbUtil.writeLengthDelimitedPrefix(buf, Packet.IDX_BODY, bodySize);
                 }
@@ -129,7 +144,11 @@ public abstract class WritePacket extends Packet implements Encodable {
         if (step == STATUS_HEADER_ENCODE_FINISHED) {
             try {
                 if (bodySize > 0) {
-                    finish = encodeBody(context, buf);
+                    if (replacedBody == null) {
+                        finish = encodeBody(context, buf);
+                    } else {
+                        finish = ByteBufferWritePacket.encodeBody(context, replacedBody, buf);
+                    }
                 } else {
                     finish = true;
                 }
@@ -145,6 +164,59 @@ public abstract class WritePacket extends Packet implements Encodable {
         return finish;
     }
 
+    /**
+     * materialize the body and compress it, invoke in io thread before encode.
+     */
+    final void compressBody(EncodeContext context, BodyCompressor compressor) {
+        int size = actualBodySize();
+        ByteBuffer raw = compressor.borrow(size);
+        try {
+            context.reset();
+            int lastPos = -1;
+            while (!encodeBody(context, raw)) {
+                if (!raw.hasRemaining() || raw.position() == lastPos) {
+                    throw new NetException("encode body fail, body size: " + size);
+                }
+                lastPos = raw.position();
+            }
+            if (raw.hasRemaining()) {
+                throw new NetException("body size not match: " + size);
+            }
+            raw.flip();
+            ByteBuffer compressed = compressor.compress(raw);
+            if (compressed == null) {
+                // can't encode body again, so use the materialized body
+                replacedBody = raw;
+                raw = null;
+            } else {
+                replacedBody = compressed;
+                rawBodySize = size;
+                bodySize = compressed.remaining();
+                dumpSize = 0;
+            }
+        } finally {
+            context.reset();
+            if (raw != null) {
+                compressor.release(raw);
+            }
+        }
+    }
+
+    /**
+     * release the buffer allocated by compressBody, invoke in io thread.
+     */
+    final void releaseCompressBuffer(BodyCompressor compressor) {
+        if (replacedBody != null) {
+            compressor.release(replacedBody);
+            replacedBody = null;
+            if (rawBodySize > 0) {
+                bodySize = rawBodySize;
+                rawBodySize = 0;
+                dumpSize = 0;
+            }
+        }
+    }
+
     public final void clean() {
         if (cleaned) {
             BugLog.getLog().error("already cleaned {}", this);
@@ -174,4 +246,12 @@ public abstract class WritePacket extends Packet implements Encodable {
         return false;
     }
 
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
 }
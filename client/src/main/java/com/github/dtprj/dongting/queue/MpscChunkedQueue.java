@@ -0,0 +1,274 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.queue;
+
+import com.github.dtprj.dongting.common.VersionFactory;
+import com.github.dtprj.dongting.unsafe.DtUnsafe;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Unbounded multi producer single consumer queue, the elements are stored in array chunks.
+ *
+ * <p>The chunk is used as a ring buffer while the consumer keeps up with producers, so there is no allocation
+ * in offer. If the chunk is full, a new chunk is linked (the last slot of the old chunk points to it).
+ * The index of producer/consumer is increased by 2 for each element, the producer set the lowest bit of the
+ * producer index while it's linking a new chunk. The design is the same as MpscUnboundedArrayQueue of JCTools.
+ *
+ * <p>The methods relaxedPoll, drain, anyMatch, isEmpty and shutdownByConsumer can only be called by the
+ * consumer thread.
+ *
+ * @author huangli
+ */
+@SuppressWarnings({"unused"})
+public abstract class MpscChunkedQueue<E> {
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private static final Object JUMP = new Object();
+    private static final Object SHUTDOWN = new Object();
+    // the element offered after shutdown, the consumer just skip it
+    private static final Object DROPPED = new Object();
+
+    private static final int CONTINUE_TO_CAS = 0;
+    private static final int RETRY = 1;
+    private static final int NEW_CHUNK = 2;
+
+    // 128 bytes padding to avoid false share
+    long p00, p01, p02, p03, p04, p05, p06, p07, p08, p09, p0a, p0b, p0c, p0d, p0e, p0f;
+
+    protected volatile long producerIndex;
+    protected volatile long producerLimit;
+    private Object[] producerBuffer;
+    private volatile boolean shutdown;
+
+    long p10, p11, p12, p13, p14, p15, p16, p17, p18, p19, p1a, p1b, p1c, p1d, p1e, p1f;
+
+    protected volatile long consumerIndex;
+    private Object[] consumerBuffer;
+
+    long p20, p21, p22, p23, p24, p25, p26, p27, p28, p29, p2a, p2b, p2c, p2d, p2e, p2f;
+
+    private final long mask;
+
+    protected MpscChunkedQueue(int chunkSize) {
+        if (chunkSize < 2 || Integer.bitCount(chunkSize) != 1) {
+            throw new IllegalArgumentException("chunkSize must be power of 2: " + chunkSize);
+        }
+        this.mask = (chunkSize - 1L) << 1;
+        // the last slot is used to link next chunk
+        Object[] buffer = new Object[chunkSize + 1];
+        this.producerBuffer = buffer;
+        this.consumerBuffer = buffer;
+        this.producerLimit = mask;
+        DtUnsafe.releaseFence();
+    }
+
+    public static <E> MpscChunkedQueue<E> newInstance() {
+        return VersionFactory.getInstance().newMpscChunkedQueue(DEFAULT_CHUNK_SIZE);
+    }
+
+    public static <E> MpscChunkedQueue<E> newInstance(int chunkSize) {
+        return VersionFactory.getInstance().newMpscChunkedQueue(chunkSize);
+    }
+
+    private static int offset(long index, long mask) {
+        return (int) ((index & mask) >> 1);
+    }
+
+    public boolean offer(E value) {
+        Objects.requireNonNull(value);
+        return offer0(value);
+    }
+
+    private boolean offer0(Object value) {
+        long mask = this.mask;
+        long pIndex;
+        Object[] buffer;
+        while (true) {
+            long limit = producerLimit;
+            pIndex = producerIndex;
+            if ((pIndex & 1) == 1) {
+                // other producer is linking a new chunk
+                continue;
+            }
+            buffer = producerBuffer;
+            if (limit <= pIndex) {
+                int r = offerSlowPath(pIndex, limit);
+                if (r == RETRY) {
+                    continue;
+                } else if (r == NEW_CHUNK) {
+                    return newChunk(buffer, pIndex, value);
+                }
+            }
+            if (casProducerIndex(pIndex, pIndex + 2)) {
+                break;
+            }
+        }
+        // read shutdown after the index is claimed, see shutdownByConsumer
+        if (shutdown && value != SHUTDOWN) {
+            setElementRelease(buffer, offset(pIndex, mask), DROPPED);
+            return false;
+        }
+        setElementRelease(buffer, offset(pIndex, mask), value);
+        return true;
+    }
+
+    private int offerSlowPath(long pIndex, long limit) {
+        long cIndex = consumerIndex;
+        if (cIndex + mask > pIndex) {
+            // the consumer is not far behind, reuse current chunk as ring buffer
+            return casProducerLimit(limit, cIndex + mask) ? CONTINUE_TO_CAS : RETRY;
+        } else {
+            // current chunk is full, claim the index and set the lowest bit
+            return casProducerIndex(pIndex, pIndex + 1) ? NEW_CHUNK : RETRY;
+        }
+    }
+
+    private boolean newChunk(Object[] oldBuffer, long pIndex, Object value) {
+        boolean result = true;
+        if (shutdown && value != SHUTDOWN) {
+            value = DROPPED;
+            result = false;
+        }
+        int len = oldBuffer.length;
+        Object[] newBuffer = new Object[len];
+        producerBuffer = newBuffer;
+        int offset = offset(pIndex, mask);
+        setElementRelease(newBuffer, offset, value);
+        setElementRelease(oldBuffer, len - 1, newBuffer);
+        setProducerLimitRelease(pIndex + mask);
+        // other producers can continue
+        setProducerIndexRelease(pIndex + 2);
+        // the consumer jump to new chunk when it read this
+        setElementRelease(oldBuffer, offset, JUMP);
+        return result;
+    }
+
+    /**
+     * Poll an element, return null if the queue is empty, or the producer has claimed the slot but not
+     * finished writing.
+     */
+    @SuppressWarnings("unchecked")
+    public E relaxedPoll() {
+        while (true) {
+            Object[] buffer = consumerBuffer;
+            long cIndex = consumerIndex;
+            int offset = offset(cIndex, mask);
+            Object e = getElementAcquire(buffer, offset);
+            if (e == null) {
+                return null;
+            }
+            if (e == JUMP) {
+                buffer = nextBuffer(buffer);
+                consumerBuffer = buffer;
+                // written before JUMP
+                e = getElementAcquire(buffer, offset);
+            }
+            if (e == SHUTDOWN) {
+                // don't move the consumer index, the elements after it are dropped
+                return null;
+            }
+            buffer[offset] = null;
+            setConsumerIndexRelease(cIndex + 2);
+            if (e != DROPPED) {
+                return (E) e;
+            }
+        }
+    }
+
+    private Object[] nextBuffer(Object[] buffer) {
+        int nextIndex = buffer.length - 1;
+        Object[] next = (Object[]) getElementAcquire(buffer, nextIndex);
+        buffer[nextIndex] = null;
+        return next;
+    }
+
+    /**
+     * Poll elements and pass them to the consumer, until the queue is empty or the limit is reached.
+     *
+     * @return the count of drained elements
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int count = 0;
+        E e;
+        while (count < limit && (e = relaxedPoll()) != null) {
+            count++;
+            consumer.accept(e);
+        }
+        return count;
+    }
+
+    /**
+     * Test the elements in queue without removing them. If some producers have claimed the slots but not
+     * finished writing, wait them.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean anyMatch(Predicate<? super E> predicate) {
+        long pIndex;
+        while (((pIndex = producerIndex) & 1) == 1) {
+            Thread.yield();
+        }
+        Object[] buffer = consumerBuffer;
+        for (long i = consumerIndex; i < pIndex; i += 2) {
+            int offset = offset(i, mask);
+            Object e;
+            while ((e = getElementAcquire(buffer, offset)) == null) {
+                Thread.yield();
+            }
+            if (e == JUMP) {
+                buffer = (Object[]) getElementAcquire(buffer, buffer.length - 1);
+                e = getElementAcquire(buffer, offset);
+            }
+            if (e == SHUTDOWN) {
+                return false;
+            }
+            if (e != DROPPED && predicate.test((E) e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return consumerIndex == producerIndex;
+    }
+
+    /**
+     * After this method is called, offer returns false, and the elements offered before it can still be polled.
+     */
+    public void shutdownByConsumer() {
+        // the producer read shutdown after claim index, so if a producer claimed the index after the
+        // SHUTDOWN element, it must see the shutdown flag.
+        shutdown = true;
+        offer0(SHUTDOWN);
+    }
+
+    protected abstract boolean casProducerIndex(long expect, long newValue);
+
+    protected abstract void setProducerIndexRelease(long newValue);
+
+    protected abstract boolean casProducerLimit(long expect, long newValue);
+
+    protected abstract void setProducerLimitRelease(long newValue);
+
+    protected abstract void setConsumerIndexRelease(long newValue);
+
+    protected abstract Object getElementAcquire(Object[] buffer, int index);
+
+    protected abstract void setElementRelease(Object[] buffer, int index, Object value);
+}
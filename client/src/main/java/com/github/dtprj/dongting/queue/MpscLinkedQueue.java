@@ -67,6 +67,14 @@ public abstract class MpscLinkedQueue<E> {
         return null;
     }
 
+    /**
+     * Can only be called by consumer, the value offered concurrently may not be seen.
+     */
+    public boolean isEmpty() {
+        LinkedNode<E> next = head.getNextAcquire();
+        return next == null || next == SHUTDOWN_NODE;
+    }
+
     public boolean offer(E value) {
         Objects.requireNonNull(value);
         // set plain
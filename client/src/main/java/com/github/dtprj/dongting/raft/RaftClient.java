@@ -17,10 +17,10 @@ package com.github.dtprj.dongting.raft;
 
 import com.github.dtprj.dongting.codec.DecoderCallbackCreator;
 import com.github.dtprj.dongting.common.AbstractLifeCircle;
+import com.github.dtprj.dongting.common.ConcurrentIntObjMap;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.DtUtil;
 import com.github.dtprj.dongting.common.IntObjMap;
-import com.github.dtprj.dongting.common.Pair;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
 import com.github.dtprj.dongting.net.CmdCodes;
@@ -55,7 +55,7 @@ public class RaftClient extends AbstractLifeCircle {
     // key is nodeId
     private final IntObjMap<NodeInfo> allNodes = new IntObjMap<>();
     // key is groupId
-    private volatile IntObjMap<GroupInfo> groups = new IntObjMap<>();
+    private final ConcurrentIntObjMap<GroupInfo> groups = new ConcurrentIntObjMap<>();
 
     private final ReentrantLock lock = new ReentrantLock();
     private long nextEpoch = 0;
@@ -146,8 +146,7 @@ public class RaftClient extends AbstractLifeCircle {
         } else {
             gi = new GroupInfo(groupId, generateNextEpoch(), nodeInfoList, leader, false);
         }
-        //noinspection NonAtomicOperationOnVolatileField
-        this.groups = IntObjMap.copyOnWritePut(groups, groupId, gi).getRight();
+        groups.put(groupId, gi);
     }
 
     private long generateNextEpoch() {
@@ -169,9 +168,7 @@ public class RaftClient extends AbstractLifeCircle {
     public void removeGroup(int groupId) throws NetException {
         lock.lock();
         try {
-            Pair<GroupInfo, IntObjMap<GroupInfo>> pair = IntObjMap.copyOnWriteRemove(groups, groupId);
-            this.groups = pair.getRight();
-            GroupInfo oldGroupInfo = pair.getLeft();
+            GroupInfo oldGroupInfo = groups.remove(groupId);
             if (oldGroupInfo != null) {
                 if (oldGroupInfo.leaderFuture != null) {
                     oldGroupInfo.leaderFuture.completeExceptionally(new RaftException("group removed " + groupId));
@@ -1,6 +1,7 @@
 module dongting.client {
     requires static java.logging;
     requires static org.slf4j;
+    requires static jdk.httpserver;
     requires jdk.unsupported;
     exports com.github.dtprj.dongting.buf;
     exports com.github.dtprj.dongting.common;
@@ -0,0 +1,243 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+import com.github.dtprj.dongting.common.DtException;
+import com.github.dtprj.dongting.common.Timestamp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class MagazineBufferPoolTest {
+
+    private MagazineBufferPool pool;
+
+    @AfterEach
+    public void tearDown() {
+        if (pool != null) {
+            assertNotNull(pool.formatStat());
+            pool = null;
+        }
+    }
+
+    // magazine capacity is 4 for 1024 bytes buffer, 1 (no thread cache) for 512KB buffer
+    private static MagazineBufferPool create(int minCount, int maxCount) {
+        SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(null, false, 64, true);
+        c.setBufSizes(new int[]{1024, 512 * 1024});
+        c.setMinCount(new int[]{minCount, minCount});
+        c.setMaxCount(new int[]{maxCount, maxCount});
+        c.setTimeoutMillis(1000);
+        return new MagazineBufferPool(c);
+    }
+
+    private void plus(long millis) {
+        Timestamp ts = new Timestamp();
+        pool.setTs(new Timestamp(ts.getNanoTime() + millis * 1000 * 1000, ts.getWallClockMillis() + millis));
+    }
+
+    @Test
+    public void testConstructor() {
+        SimpleByteBufferPoolConfig c1 = new SimpleByteBufferPoolConfig(null, false);
+        c1.setMinCount(null);
+        assertThrows(NullPointerException.class, () -> new MagazineBufferPool(c1));
+
+        SimpleByteBufferPoolConfig c2 = new SimpleByteBufferPoolConfig(null, false);
+        c2.setMinCount(new int[]{100});
+        assertThrows(IllegalArgumentException.class, () -> new MagazineBufferPool(c2));
+
+        SimpleByteBufferPoolConfig c3 = new SimpleByteBufferPoolConfig(null, false);
+        c3.setTimeoutMillis(0);
+        assertThrows(IllegalArgumentException.class, () -> new MagazineBufferPool(c3));
+
+        SimpleByteBufferPoolConfig c4 = new SimpleByteBufferPoolConfig(null, false);
+        c4.setBufSizes(new int[]{1024});
+        c4.setMinCount(new int[]{2});
+        c4.setMaxCount(new int[]{1});
+        assertThrows(IllegalArgumentException.class, () -> new MagazineBufferPool(c4));
+    }
+
+    @Test
+    public void testBorrowAndRelease() {
+        pool = create(0, 32);
+        ByteBuffer small = pool.borrow(64);
+        assertEquals(64, small.capacity());
+        pool.release(small);
+
+        ByteBuffer large = pool.borrow(1024 * 1024);
+        assertEquals(1024 * 1024, large.capacity());
+        pool.release(large);
+
+        ByteBuffer b1 = pool.borrow(65);
+        assertEquals(1024, b1.capacity());
+        pool.release(b1);
+        ByteBuffer b2 = pool.borrow(1024);
+        assertSame(b1, b2);
+        assertEquals(0, b2.position());
+        assertEquals(1024, b2.limit());
+        pool.release(b2);
+
+        ByteBuffer b3 = pool.borrow(1025);
+        assertEquals(512 * 1024, b3.capacity());
+        pool.release(b3);
+        assertEquals(1, pool.depotSize(1));
+        assertSame(b3, pool.borrow(2000));
+        assertEquals(0, pool.depotSize(1));
+
+        assertThrows(DtException.class, () -> pool.release(ByteBuffer.allocateDirect(1024)));
+    }
+
+    @Test
+    public void testExchangeWithDepot() throws Exception {
+        pool = create(0, 32);
+        ArrayList<ByteBuffer> list = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            list.add(pool.borrow(1024));
+        }
+        // 8 buffers in 2 magazines of current thread, 12 buffers in 3 full magazines of depot
+        for (ByteBuffer buf : list) {
+            pool.release(buf);
+        }
+        assertEquals(3, pool.depotSize(0));
+        PoolStat stat = pool.getStat();
+        assertEquals(20, stat.getBorrowCount(0));
+        assertEquals(20, stat.getReleaseCount(0));
+        assertEquals(0, stat.getOutstandingCount(0));
+        assertEquals(12, stat.getCachedCount(0));
+        assertEquals(32, stat.getMaxCount(0));
+
+        HashSet<ByteBuffer> set = new HashSet<>();
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        try {
+            es.submit(() -> {
+                for (int i = 0; i < 13; i++) {
+                    set.add(pool.borrow(1024));
+                }
+            }).get();
+        } finally {
+            es.shutdown();
+        }
+        assertEquals(0, pool.depotSize(0));
+        int reused = 0;
+        for (ByteBuffer buf : list) {
+            if (set.contains(buf)) {
+                reused++;
+            }
+        }
+        assertEquals(12, reused);
+    }
+
+    @Test
+    public void testDepotFull() {
+        // 8 magazines of capacity 1
+        pool = create(0, 8);
+        ArrayList<ByteBuffer> list = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            list.add(pool.borrow(512 * 1024));
+        }
+        for (ByteBuffer buf : list) {
+            pool.release(buf);
+        }
+        assertEquals(8, pool.depotSize(1));
+    }
+
+    @Test
+    public void testClean() {
+        pool = create(1, 8);
+        ByteBuffer b1 = pool.borrow(512 * 1024);
+        ByteBuffer b2 = pool.borrow(512 * 1024);
+        ByteBuffer b3 = pool.borrow(512 * 1024);
+        pool.release(b1);
+        pool.release(b2);
+        plus(500);
+        pool.release(b3);
+        pool.clean();
+        assertEquals(3, pool.depotSize(1));
+
+        plus(1200);
+        pool.clean();
+        assertEquals(1, pool.depotSize(1));
+
+        plus(5000);
+        pool.clean();
+        // keep min count
+        assertEquals(1, pool.depotSize(1));
+        assertSame(b3, pool.borrow(512 * 1024));
+        ByteBuffer b4 = pool.borrow(512 * 1024);
+        assertNotSame(b1, b4);
+        assertNotSame(b2, b4);
+    }
+
+    @Test
+    public void testThreadSafe() throws Exception {
+        SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(null, false, 0, true);
+        c.setBufSizes(new int[]{16, 32, 64, 128});
+        c.setMaxCount(new int[]{20, 20, 20, 20});
+        c.setMinCount(new int[]{1, 1, 1, 1});
+        c.setTimeoutMillis(1000);
+        pool = new MagazineBufferPool(c);
+        SimpleByteBufferPoolTest.threadSafeTest(pool, 128);
+    }
+
+    @Test
+    public void testDeadThreadStat() throws Exception {
+        pool = create(0, 32);
+        Thread t = new Thread(() -> pool.release(pool.borrow(1000)));
+        t.start();
+        t.join();
+        pool.release(pool.borrow(1000));
+        assertEquals(2, pool.threadStatCount());
+        assertEquals(2, pool.getStat().getBorrowCount(0));
+
+        // after the thread is gc, its stats are merged into retired stats and removed
+        t = null;
+        for (int i = 0; i < 100 && pool.threadStatCount() > 1; i++) {
+            System.gc();
+            TimeUnit.MILLISECONDS.sleep(10);
+            assertEquals(2, pool.getStat().getBorrowCount(0));
+        }
+        assertEquals(1, pool.threadStatCount());
+        PoolStat stat = pool.getStat();
+        assertEquals(2, stat.getBorrowCount(0));
+        assertEquals(2, stat.getReleaseCount(0));
+    }
+
+    @Test
+    public void testBadUsage() {
+        pool = create(0, 32);
+        ByteBuffer buf1 = pool.borrow(400);
+        pool.release(buf1);
+        assertThrows(DtException.class, () -> pool.release(buf1));
+        ByteBuffer buf2 = pool.borrow(400);
+        pool.release(buf2);
+        buf2.putInt(0, buf2.getInt(0) + 1);
+        assertThrows(DtException.class, () -> pool.borrow(400));
+        ByteBuffer buf3 = pool.borrow(400);
+        // buf2 is dropped
+        assertNotSame(buf2, buf3);
+        pool.release(buf3);
+    }
+}
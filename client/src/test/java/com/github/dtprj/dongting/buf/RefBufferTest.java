@@ -20,6 +20,10 @@ import com.github.dtprj.dongting.common.Timestamp;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 /**
  * @author huangli
  */
@@ -66,4 +70,32 @@ public class RefBufferTest {
         refBuffer.release();
         Assertions.assertThrows(DtException.class, refBuffer::release);
     }
+
+    @Test
+    public void testTracker() {
+        SimpleByteBufferPool pool = new SimpleByteBufferPool(new Timestamp(), false);
+        RefBufferTracker.setTrackEnabled(true);
+        try {
+            long count = RefBufferTracker.getLiveCount();
+            long bytes = RefBufferTracker.getLiveBytes();
+            RefBuffer rb1 = new RefBuffer(false, pool, 2048, 128);
+            RefBuffer rb2 = new RefBuffer(true, pool, 1024, 128);
+            // small heap buffer is not tracked since it needs not release
+            new RefBuffer(false, pool, 127, 128);
+            RefBuffer slice = rb1.slice(0, 100);
+            assertEquals(count + 2, RefBufferTracker.getLiveCount());
+            assertEquals(bytes + 2048 + 1024, RefBufferTracker.getLiveBytes());
+            List<String> suspects = RefBufferTracker.findLeakSuspects(0, 100);
+            assertTrue(suspects.stream().anyMatch(s -> s.startsWith("size=2048, direct=false")));
+            assertTrue(RefBufferTracker.findLeakSuspects(100_000, 100).isEmpty());
+
+            slice.release();
+            rb2.release();
+            assertEquals(count, RefBufferTracker.getLiveCount());
+            assertEquals(bytes, RefBufferTracker.getLiveBytes());
+            assertTrue(RefBufferTracker.findLeakSuspects(0, 100).stream().noneMatch(s -> s.startsWith("size=2048")));
+        } finally {
+            RefBufferTracker.setTrackEnabled(false);
+        }
+    }
 }
@@ -4,12 +4,15 @@
 package com.github.dtprj.dongting.buf;
 
 import com.github.dtprj.dongting.common.DtException;
+import com.github.dtprj.dongting.common.PerfCallback;
 import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.net.PerfConsts;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -287,6 +290,33 @@ public class SimpleByteBufferPoolTest {
         assertSame(buf3, pool.borrow(200));
     }
 
+    @Test
+    public void testShareSizeReturned() {
+        SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(TS, false, 0, false);
+        c.setBufSizes(new int[]{1024});
+        c.setMaxCount(new int[]{2});
+        c.setMinCount(new int[]{0});
+        c.setTimeoutMillis(1000);
+        c.setShareSize(2048);
+        c.setAutoTune(true);
+        pool = new SimpleByteBufferPool(c);
+        ArrayList<ByteBuffer> list = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                list.add(pool.borrow(1024));
+            }
+            list.forEach(pool::release);
+            list.clear();
+            // 2 buffers use the share size, the share is returned when they are borrowed again
+            assertEquals(4, pool.getStat().getCachedCount(0));
+        }
+
+        // idle, the tune shrinks the cache and returns the share
+        plus(pool, 1001);
+        pool.clean();
+        assertEquals(0, pool.currentUsedShareSize);
+    }
+
     @Test
     public void testThreadSafe() throws Exception {
         SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(null, false, 0, true);
@@ -347,6 +377,96 @@ public class SimpleByteBufferPoolTest {
         pool.release(buf3);
     }
 
+    @Test
+    public void testStat() {
+        long[] perfCount = new long[2];
+        SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(TS, false, 64, false);
+        c.setBufSizes(new int[]{1024, 2048});
+        c.setMaxCount(new int[]{1, 1});
+        c.setMinCount(new int[]{0, 0});
+        c.setPerfCallback(new PerfCallback(false) {
+            @Override
+            public boolean accept(int perfType) {
+                return true;
+            }
+
+            @Override
+            public void onEvent(int perfType, long costTime, int count, long sum) {
+                perfCount[perfType - PerfConsts.POOL_C_ALLOCATE] += sum;
+            }
+        });
+        pool = new SimpleByteBufferPool(c);
+        pool.borrow(1);
+        pool.borrow(4096);
+        ByteBuffer buf1 = pool.borrow(1024);
+        ByteBuffer buf2 = pool.borrow(1024);
+        pool.borrow(2048);
+        pool.release(buf1);
+
+        PoolStat stat = pool.getStat();
+        assertEquals(2, stat.getSizeClassCount());
+        assertEquals(1, stat.getBorrowTooSmallCount());
+        assertEquals(1, stat.getBorrowTooLargeCount());
+        assertEquals(2, stat.getBorrowCount(0));
+        assertEquals(0, stat.getBorrowHitCount(0));
+        assertEquals(1, stat.getOutstandingCount(0));
+        assertEquals(1, stat.getOutstandingCount(1));
+        assertEquals(1024 + 2048, stat.getTotalOutstandingBytes());
+        assertEquals(1, stat.getCachedCount(0));
+        assertEquals(1024, stat.getTotalCachedBytes());
+        assertEquals(1024 * 2 + 2048, perfCount[0]);
+
+        // pool is full
+        pool.release(buf2);
+        assertEquals(1024, perfCount[1]);
+        stat = pool.getStat();
+        assertEquals(2, stat.getReleaseCount(0));
+        assertEquals(1, stat.getReleaseHitCount(0));
+        assertEquals(0, stat.getOutstandingCount(0));
+    }
+
+    @Test
+    public void testAutoTune() {
+        SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(TS, false, 0, false);
+        c.setBufSizes(new int[]{1024});
+        c.setMaxCount(new int[]{100});
+        c.setMinCount(new int[]{0});
+        c.setTimeoutMillis(1000);
+        c.setAutoTune(true);
+        pool = new SimpleByteBufferPool(c);
+        ArrayList<ByteBuffer> list = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            list.add(pool.borrow(1024));
+        }
+        list.forEach(pool::release);
+        list.clear();
+
+        pool.clean();
+        PoolStat stat = pool.getStat();
+        // demand is 10 * 0.25
+        assertEquals(3, stat.getMinCount(0));
+        assertEquals(10, stat.getMaxCount(0));
+        assertEquals(10, stat.getCachedCount(0));
+
+        // idle, demand is 2.5 * 0.75
+        plus(pool, 1001);
+        pool.clean();
+        stat = pool.getStat();
+        assertEquals(2, stat.getMinCount(0));
+        assertEquals(4, stat.getMaxCount(0));
+        assertEquals(2, stat.getCachedCount(0));
+
+        // the configured max count is the upper bound
+        for (int i = 0; i < 200; i++) {
+            list.add(pool.borrow(1024));
+        }
+        list.forEach(pool::release);
+        pool.clean();
+        stat = pool.getStat();
+        assertTrue(stat.getMinCount(0) < 100);
+        assertEquals(100, stat.getMaxCount(0));
+    }
+
     public static void main(String[] args) {
         System.out.println("default SimpleByteBufferPool");
         System.out.printf("max:%,d\nmin:%,d\n\n",
@@ -0,0 +1,72 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class EncodeUtilTest {
+
+    private static final String[] STRS = {"abc", "中文abc", "aéb", "x😀y", "a\uD83Db", "\uDE00", "߿ࠀ"};
+
+    private static byte[] expect(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        assertTrue(EncodeUtil.encode(new EncodeContext(null), buf, 1, bytes));
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    @Test
+    public void testStr() {
+        for (String s : STRS) {
+            byte[] expect = expect(s);
+            assertEquals(expect.length, EncodeUtil.actualSize(1, s));
+            ByteBuffer buf = ByteBuffer.allocate(64);
+            assertTrue(EncodeUtil.encode(new EncodeContext(null), buf, 1, s));
+            assertArrayEquals(expect, Arrays.copyOf(buf.array(), buf.position()), s);
+        }
+    }
+
+    @Test
+    public void testStrSmallBuffer() {
+        for (String s : STRS) {
+            byte[] expect = expect(s);
+            EncodeContext c = new EncodeContext(null);
+            ByteBuffer buf = ByteBuffer.allocate(64);
+            // one more byte every time, so the multi-bytes char is split
+            buf.limit(0);
+            while (true) {
+                buf.limit(buf.limit() + 1);
+                if (EncodeUtil.encode(c, buf, 1, s)) {
+                    break;
+                }
+                if (c.pending != 0) {
+                    // the prefix is written, then every byte of the buffer is used
+                    assertEquals(buf.limit(), buf.position());
+                }
+            }
+            assertArrayEquals(expect, Arrays.copyOf(buf.array(), buf.position()), s);
+        }
+    }
+}
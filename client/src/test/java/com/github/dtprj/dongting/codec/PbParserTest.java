@@ -465,6 +465,38 @@ public class PbParserTest {
         }
     }
 
+    @Test
+    public void testFastPath() {
+        Callback callback = new Callback(100, 200, "msg", "body", 100, 200, new NestedMsg(30000, "abc"));
+        byte[] bs = callback.buildPacket().array();
+        PbParser parser = new PbParser();
+        // the first part use the resumable path, the rest use the fast path
+        for (int i = 1; i < bs.length; i++) {
+            callback.reset(100, 200, "msg", "body", 100, 200, new NestedMsg(30000, "abc"));
+            callback.buildPacket();
+            parser.prepareNext(context, callback, bs.length);
+            assertNull(parser.parse(ByteBuffer.wrap(bs, 0, i)));
+            assertNotNull(parser.parse(ByteBuffer.wrap(bs, i, bs.length - i)));
+            assertEquals(1, callback.beginCount);
+            assertEquals(1, callback.endSuccessCount);
+            assertEquals(0, callback.endFailCount);
+        }
+
+        // there are bytes of next message in the buffer
+        ByteBuffer buf = ByteBuffer.allocate(bs.length + 10);
+        buf.put(bs);
+        buf.flip();
+        buf.limit(buf.capacity());
+        callback.reset(100, 200, "msg", "body", 100, 200, new NestedMsg(30000, "abc"));
+        callback.buildPacket();
+        parser.prepareNext(context, callback, bs.length);
+        assertNotNull(parser.parse(buf));
+        assertEquals(bs.length, buf.position());
+        assertEquals(bs.length + 10, buf.limit());
+        assertEquals(1, callback.endSuccessCount);
+        assertEquals(0, callback.endFailCount);
+    }
+
     @Test
     public void testCallbackFail() {
 
@@ -0,0 +1,64 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import com.github.dtprj.dongting.net.PerfConsts;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class CoarseClockTest {
+
+    @Test
+    public void testTick() throws Exception {
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), CoarseClock.getResolutionNanos());
+        long n1 = CoarseClock.nanoTime();
+        long m1 = CoarseClock.currentTimeMillis();
+        assertTrue(n1 - System.nanoTime() <= 0);
+        assertTrue(m1 <= System.currentTimeMillis());
+
+        long start = System.nanoTime();
+        TestUtil.waitUtil(() -> CoarseClock.nanoTime() - start >= 0);
+        TestUtil.waitUtil(() -> CoarseClock.currentTimeMillis() > m1);
+        assertTrue(CoarseClock.nanoTime() - n1 > 0);
+    }
+
+    @Test
+    public void testPerfCallback() throws Exception {
+        long[] cost = new long[1];
+        PerfCallback c = new PerfCallback(false, true) {
+            @Override
+            public boolean accept(int perfType) {
+                return true;
+            }
+
+            @Override
+            public void onEvent(int perfType, long costTime, int count, long sum) {
+                cost[0] = costTime;
+            }
+        };
+        long t = c.takeTime(PerfConsts.RPC_D_READ);
+        assertTrue(t <= CoarseClock.currentTimeMillis());
+        TestUtil.waitUtil(() -> CoarseClock.currentTimeMillis() - t >= 2);
+        c.fireTime(PerfConsts.RPC_D_READ, t);
+        assertTrue(cost[0] >= 2);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class ConcurrentIntObjMapTest {
+    @Test
+    public void simpleTest() {
+        ConcurrentIntObjMap<String> m = new ConcurrentIntObjMap<>();
+        assertNull(m.get(1));
+        assertNull(m.remove(1));
+        assertNull(m.put(1, "123"));
+        assertEquals(1, m.size());
+        assertEquals("123", m.get(1));
+        assertNull(m.get(2));
+        assertEquals("123", m.put(1, "456"));
+        assertEquals("456", m.putIfAbsent(1, "789"));
+        assertEquals("456", m.get(1));
+        assertNull(m.putIfAbsent(2, "789"));
+
+        MutableInt count = new MutableInt(0);
+        m.forEach((k, v) -> {
+            assertEquals(k == 1 ? "456" : "789", v);
+            count.increment();
+        });
+        assertEquals(2, count.getValue());
+        assertEquals("456", m.remove(1));
+        assertEquals(1, m.size());
+        assertThrows(NullPointerException.class, () -> m.put(3, null));
+    }
+
+    @Test
+    public void fullTest() {
+        ConcurrentIntObjMap<Integer> m = new ConcurrentIntObjMap<>(2, 0.9f) {
+            @Override
+            protected int hashCode(int v) {
+                // make more collisions
+                return v >> 2;
+            }
+        };
+        HashMap<Integer, Integer> expect = new HashMap<>();
+        Random r = new Random();
+        for (int i = 0; i < 20000; i++) {
+            int key = r.nextInt(2000);
+            if (r.nextInt(3) == 0) {
+                assertEquals(expect.remove(key), m.remove(key));
+            } else {
+                assertEquals(expect.put(key, i), m.put(key, i));
+            }
+            assertEquals(expect.size(), m.size());
+        }
+        for (int key = 0; key < 2000; key++) {
+            assertEquals(expect.get(key), m.get(key));
+        }
+        MutableInt count = new MutableInt(0);
+        m.forEach((k, v) -> {
+            assertEquals(expect.get(k), v);
+            count.increment();
+        });
+        assertEquals(expect.size(), count.getValue());
+    }
+
+    @Test
+    public void concurrentReadTest() throws Exception {
+        ConcurrentIntObjMap<Integer> m = new ConcurrentIntObjMap<>();
+        // the keys less than 100 are never removed
+        for (int i = 0; i < 100; i++) {
+            m.put(i, i);
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<String> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!stop.get()) {
+                for (int i = 0; i < 100; i++) {
+                    Integer v = m.get(i);
+                    if (v == null || v % 100 != i) {
+                        error.set("key " + i + ", value " + v);
+                        return;
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int loop = 0; loop < 200; loop++) {
+            for (int i = 100; i < 1000; i++) {
+                m.put(i, i);
+            }
+            for (int i = 0; i < 100; i++) {
+                m.put(i, i + loop * 100);
+            }
+            for (int i = 100; i < 1000; i++) {
+                m.remove(i);
+            }
+        }
+        stop.set(true);
+        reader.join();
+        assertNull(error.get());
+        assertEquals(100, m.size());
+    }
+}
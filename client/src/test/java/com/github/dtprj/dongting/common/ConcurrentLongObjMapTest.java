@@ -0,0 +1,65 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class ConcurrentLongObjMapTest {
+    @Test
+    public void simpleTest() {
+        ConcurrentLongObjMap<String> m = new ConcurrentLongObjMap<>();
+        assertNull(m.get(1));
+        assertNull(m.put(1, "123"));
+        assertNull(m.put(Long.MAX_VALUE, "max"));
+        assertEquals(2, m.size());
+        assertEquals("123", m.get(1));
+        assertEquals("max", m.get(Long.MAX_VALUE));
+        assertEquals("123", m.putIfAbsent(1, "456"));
+        assertEquals("max", m.remove(Long.MAX_VALUE));
+        assertNull(m.remove(Long.MAX_VALUE));
+        assertEquals(1, m.size());
+    }
+
+    @Test
+    public void fullTest() {
+        ConcurrentLongObjMap<Long> m = new ConcurrentLongObjMap<>(2, 0.75f);
+        HashMap<Long, Long> expect = new HashMap<>();
+        Random r = new Random();
+        for (int i = 0; i < 20000; i++) {
+            long key = r.nextInt(2000) + ((long) r.nextInt(2) << 40);
+            if (r.nextInt(3) == 0) {
+                assertEquals(expect.remove(key), m.remove(key));
+            } else {
+                assertEquals(expect.put(key, (long) i), m.put(key, (long) i));
+            }
+        }
+        assertEquals(expect.size(), m.size());
+        MutableInt count = new MutableInt(0);
+        m.forEach((k, v) -> {
+            assertEquals(expect.get(k), v);
+            count.increment();
+        });
+        assertEquals(expect.size(), count.getValue());
+    }
+}
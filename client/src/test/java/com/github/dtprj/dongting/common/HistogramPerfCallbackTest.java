@@ -0,0 +1,140 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import com.github.dtprj.dongting.net.PerfConsts;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class HistogramPerfCallbackTest {
+
+    @Test
+    public void testBucket() {
+        assertEquals(HistogramPerfCallback.BUCKET_COUNT - 1, HistogramPerfCallback.bucketIndex(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, HistogramPerfCallback.bucketUpperBound(HistogramPerfCallback.BUCKET_COUNT - 1));
+        long last = -1;
+        for (int i = 0; i < HistogramPerfCallback.BUCKET_COUNT; i++) {
+            long upper = HistogramPerfCallback.bucketUpperBound(i);
+            assertTrue(upper > last);
+            assertEquals(i, HistogramPerfCallback.bucketIndex(last + 1));
+            assertEquals(i, HistogramPerfCallback.bucketIndex(upper));
+            // relative error is less than 12.5%
+            assertTrue(upper - last - 1 <= (last + 1) / 8);
+            last = upper;
+        }
+    }
+
+    @Test
+    public void testQuantile() throws Exception {
+        HistogramPerfCallback c = new HistogramPerfCallback(true, "dt_");
+        assertFalse(c.accept(PerfConsts.PERF_DEBUG));
+        assertFalse(c.accept(PerfConsts.FIBER_D_EXEC));
+        assertTrue(c.accept(PerfConsts.RAFT_D_LOG_SYNC));
+        for (int i = 1; i <= 1000; i++) {
+            c.fireNanos(PerfConsts.RAFT_D_LOG_SYNC, i * 1000L);
+        }
+        // record in other thread, and the thread is dead
+        Thread t = new Thread(() -> {
+            for (int i = 1; i <= 1000; i++) {
+                c.fireNanos(PerfConsts.RAFT_D_LOG_SYNC, i * 1000L);
+            }
+        });
+        t.start();
+        t.join();
+        assertEquals(2000, c.getEventCount(PerfConsts.RAFT_D_LOG_SYNC));
+        long p50 = c.getQuantile(PerfConsts.RAFT_D_LOG_SYNC, 0.5);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 9 / 8, String.valueOf(p50));
+        long p99 = c.getQuantile(PerfConsts.RAFT_D_LOG_SYNC, 0.99);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000, String.valueOf(p99));
+        assertEquals(1_000_000, c.getQuantile(PerfConsts.RAFT_D_LOG_SYNC, 1.0));
+        assertEquals(0, c.getEventCount(PerfConsts.RAFT_D_IDX_FORCE));
+
+        // after the thread is gc, its values are merged into retired values
+        t = null;
+        System.gc();
+        TimeUnit.MILLISECONDS.sleep(10);
+        assertEquals(2000, c.getEventCount(PerfConsts.RAFT_D_LOG_SYNC));
+        assertEquals(2000, c.getEventCount(PerfConsts.RAFT_D_LOG_SYNC));
+    }
+
+    @Test
+    public void testRender() {
+        HistogramPerfCallback c = new HistogramPerfCallback(true, "dt_",
+                new int[]{PerfConsts.RAFT_D_LOG_WRITE1, PerfConsts.RPC_C_MARK_READ});
+        assertFalse(c.accept(PerfConsts.RAFT_D_LOG_SYNC));
+        c.onEvent(PerfConsts.RAFT_D_LOG_WRITE1, 1500, 3, 300);
+        c.onEvent(PerfConsts.RAFT_D_LOG_WRITE1, 3000, 2, 200);
+        c.fire(PerfConsts.RPC_C_MARK_READ);
+        c.fire(PerfConsts.RAFT_D_LOG_SYNC);
+        StringBuilder sb = new StringBuilder();
+        c.render(sb);
+        String s = sb.toString();
+        assertTrue(s.contains("# TYPE dt_raft_d_log_write1_seconds histogram\n"));
+        assertTrue(s.contains("dt_raft_d_log_write1_seconds_bucket{le=\"1.024E-6\"} 0\n"));
+        assertTrue(s.contains("dt_raft_d_log_write1_seconds_bucket{le=\"2.048E-6\"} 1\n"));
+        assertTrue(s.contains("dt_raft_d_log_write1_seconds_bucket{le=\"4.096E-6\"} 2\n"));
+        assertTrue(s.contains("dt_raft_d_log_write1_seconds_bucket{le=\"+Inf\"} 2\n"));
+        assertTrue(s.contains("dt_raft_d_log_write1_seconds_count 2\n"));
+        assertTrue(s.contains("dt_raft_d_log_write1_seconds_sum 4.5E-6\n"));
+        assertTrue(s.contains("dt_raft_d_log_write1_max_seconds 3.0E-6\n"));
+        assertTrue(s.contains("dt_raft_d_log_write1_count_total 5\n"));
+        assertTrue(s.contains("dt_raft_d_log_write1_sum_total 500\n"));
+        assertTrue(s.contains("# TYPE dt_rpc_c_mark_read_total counter\ndt_rpc_c_mark_read_total 1\n"));
+        assertFalse(s.contains("raft_d_log_sync"));
+
+        assertThrows(IllegalArgumentException.class, () -> new HistogramPerfCallback(true, "", new int[]{12345}));
+    }
+
+    @Test
+    public void testHttpServer() throws Exception {
+        HistogramPerfCallback c1 = new HistogramPerfCallback(false, "a_");
+        HistogramPerfCallback c2 = new HistogramPerfCallback(false, "b_");
+        c1.fire(PerfConsts.FIBER_C_GROUP_MIGRATE);
+        PerfHttpServer server = new PerfHttpServer(0, c1, c2);
+        server.start();
+        try {
+            URL url = new URL("http://127.0.0.1:" + server.getPort() + PerfHttpServer.PATH);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            assertEquals(200, conn.getResponseCode());
+            assertTrue(conn.getContentType().startsWith("text/plain"));
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (InputStream in = conn.getInputStream()) {
+                byte[] buf = new byte[4096];
+                int len;
+                while ((len = in.read(buf)) > 0) {
+                    bos.write(buf, 0, len);
+                }
+            }
+            String s = bos.toString(StandardCharsets.UTF_8.name());
+            assertTrue(s.contains("a_fiber_c_group_migrate_total 1\n"));
+            assertTrue(s.contains("b_fiber_c_group_migrate_total 0\n"));
+            assertTrue(s.contains("b_raft_d_log_sync_seconds_count 0\n"));
+        } finally {
+            server.stop(new DtTime(1, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class MemoryQuotaTest {
+
+    @Test
+    public void testAcquire() {
+        MemoryQuota root = MemoryQuota.newRoot("root", 100);
+        MemoryQuota c1 = root.createChild("c1", 60);
+        MemoryQuota c2 = root.createChild("c2", 0);
+        MemoryQuota c11 = c1.createChild("c11", 0);
+
+        assertTrue(c11.tryAcquire(50));
+        assertEquals(50, c11.getUsed());
+        assertEquals(50, c1.getUsed());
+        assertEquals(50, root.getUsed());
+
+        // exceeds the limit of c1
+        assertFalse(c11.tryAcquire(20));
+        assertEquals(50, c11.getUsed());
+        assertEquals(50, c1.getUsed());
+        assertEquals(50, root.getUsed());
+        assertEquals(1, c1.getRejectCount());
+        assertEquals(0, root.getRejectCount());
+
+        // exceeds the limit of root
+        assertTrue(c2.tryAcquire(50));
+        assertFalse(c2.tryAcquire(1));
+        assertEquals(50, c2.getUsed());
+        assertEquals(100, root.getUsed());
+        assertEquals(1, root.getRejectCount());
+
+        c11.release(50);
+        assertEquals(0, c1.getUsed());
+        assertEquals(50, root.getUsed());
+        assertTrue(c2.tryAcquire(1));
+
+        root.setLimit(0);
+        assertTrue(c2.tryAcquire(1000));
+        assertEquals(1051, root.getUsed());
+    }
+
+    @Test
+    public void testChangeLimit() {
+        MemoryQuota root = MemoryQuota.newRoot("root", 0);
+        MemoryQuota c1 = root.createChild("c1", 0);
+        assertTrue(c1.tryAcquire(100));
+        assertEquals(100, root.getUsed());
+
+        // the bytes reserved without limit are counted in the check
+        root.setLimit(150);
+        assertFalse(c1.tryAcquire(60));
+        assertEquals(100, c1.getUsed());
+        assertEquals(100, root.getUsed());
+        assertTrue(c1.tryAcquire(50));
+        assertEquals(150, root.getUsed());
+
+        c1.release(150);
+        assertEquals(0, c1.getUsed());
+        assertEquals(0, root.getUsed());
+        root.setLimit(0);
+        assertTrue(c1.tryAcquire(1000));
+        assertEquals(1000, root.getUsed());
+    }
+
+    @Test
+    public void testStat() {
+        MemoryQuota root = MemoryQuota.newRoot("root", 100);
+        MemoryQuota c1 = root.createChild("c1", 60);
+        MemoryQuota c2 = root.createChild("c2", 0);
+        assertTrue(c1.tryAcquire(10));
+        assertFalse(c1.tryAcquire(60));
+        assertTrue(c2.tryAcquire(5));
+        assertEquals("root: used=15, limit=100\n  c1: used=10, limit=60, reject=1\n  c2: used=5\n",
+                root.formatStat());
+
+        c1.close();
+        assertEquals(1, root.getChildren().size());
+        // the bytes reserved before close can still be released
+        c1.release(10);
+        assertEquals(5, root.getUsed());
+    }
+}
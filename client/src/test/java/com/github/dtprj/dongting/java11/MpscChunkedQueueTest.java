@@ -0,0 +1,217 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.java11;
+
+import com.github.dtprj.dongting.queue.MpscChunkedQueue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class MpscChunkedQueueTest {
+
+    protected <E> MpscChunkedQueue<E> create(int chunkSize) {
+        return MpscChunkedQueue.newInstance(chunkSize);
+    }
+
+    @Test
+    public void simpleTest() {
+        assertThrows(IllegalArgumentException.class, () -> create(3));
+        MpscChunkedQueue<String> q = create(4);
+        assertNull(q.relaxedPoll());
+        assertTrue(q.isEmpty());
+        assertTrue(q.offer("1"));
+        q.offer("2");
+        assertFalse(q.isEmpty());
+        assertEquals("1", q.relaxedPoll());
+        q.offer("3");
+        assertEquals("2", q.relaxedPoll());
+        assertEquals("3", q.relaxedPoll());
+        assertNull(q.relaxedPoll());
+        assertTrue(q.isEmpty());
+        q.shutdownByConsumer();
+        assertFalse(q.offer("4"));
+        assertNull(q.relaxedPoll());
+    }
+
+    @Test
+    public void testNewChunk() {
+        MpscChunkedQueue<Integer> q = create(4);
+        // reuse the chunk as ring buffer
+        for (int i = 0; i < 100; i++) {
+            q.offer(i);
+            assertEquals(i, q.relaxedPoll());
+        }
+        // link new chunks
+        for (int i = 0; i < 100; i++) {
+            q.offer(i);
+        }
+        assertTrue(q.anyMatch(x -> x == 99));
+        assertFalse(q.anyMatch(x -> x == 100));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, q.relaxedPoll());
+        }
+        assertNull(q.relaxedPoll());
+        assertFalse(q.anyMatch(x -> true));
+    }
+
+    @Test
+    public void testDrain() {
+        MpscChunkedQueue<Integer> q = create(8);
+        for (int i = 0; i < 20; i++) {
+            q.offer(i);
+        }
+        ArrayList<Integer> list = new ArrayList<>();
+        assertEquals(5, q.drain(list::add, 5));
+        assertEquals(15, q.drain(list::add, Integer.MAX_VALUE));
+        assertEquals(0, q.drain(list::add, Integer.MAX_VALUE));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, list.get(i));
+        }
+    }
+
+    @Test
+    public void testShutdown() {
+        MpscChunkedQueue<Integer> q = create(4);
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+        }
+        q.shutdownByConsumer();
+        assertFalse(q.offer(10));
+        assertTrue(q.anyMatch(x -> x == 9));
+        assertFalse(q.anyMatch(x -> x == 10));
+        ArrayList<Integer> list = new ArrayList<>();
+        assertEquals(10, q.drain(list::add, Integer.MAX_VALUE));
+        assertEquals(9, list.get(9));
+        assertNull(q.relaxedPoll());
+        assertFalse(q.offer(11));
+        assertNull(q.relaxedPoll());
+    }
+
+    @Test
+    @Timeout(30)
+    public void testConcurrentShutdown() throws Exception {
+        MpscChunkedQueue<Integer> q = create(16);
+        int threads = 8;
+        AtomicInteger offered = new AtomicInteger();
+        Thread[] ts = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            ts[i] = new Thread(() -> {
+                while (q.offer(1)) {
+                    offered.incrementAndGet();
+                }
+            });
+            ts[i].start();
+        }
+        int polled = 0;
+        while (polled < 100000) {
+            if (q.relaxedPoll() != null) {
+                polled++;
+            }
+        }
+        q.shutdownByConsumer();
+        for (Thread t : ts) {
+            t.join();
+        }
+        // every element offered successfully can be polled
+        polled += q.drain(x -> {
+        }, Integer.MAX_VALUE);
+        assertEquals(offered.get(), polled);
+    }
+
+    @Test
+    @Timeout(30)
+    public void multiThreadTest() throws Throwable {
+        // small chunk to test linking new chunk concurrently
+        multiThreadTest(16);
+        multiThreadTest(1024);
+    }
+
+    private void multiThreadTest(int chunkSize) throws Throwable {
+        int threads = 100;
+        int loop = 20000;
+        MpscChunkedQueue<Long> q = create(chunkSize);
+        CountDownLatch readyLatch = new CountDownLatch(threads);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch endLatch = new CountDownLatch(threads);
+        AtomicReference<Throwable> ex = new AtomicReference<>();
+        AtomicInteger threadId = new AtomicInteger(0);
+        Runnable producer = () -> {
+            try {
+                long id = (long) threadId.getAndIncrement() << 32;
+                readyLatch.countDown();
+                startLatch.await();
+                for (int i = 1; i <= loop; i++) {
+                    q.offer(id | i);
+                }
+            } catch (Throwable e) {
+                ex.set(e);
+            } finally {
+                endLatch.countDown();
+            }
+        };
+        Runnable consumer = () -> {
+            try {
+                readyLatch.countDown();
+                startLatch.await();
+                consume(threads - 1, loop, q);
+            } catch (Throwable e) {
+                ex.set(e);
+            } finally {
+                endLatch.countDown();
+            }
+        };
+        for (int i = 0; i < threads - 1; i++) {
+            Thread t = new Thread(producer);
+            t.start();
+        }
+        Thread ct = new Thread(consumer);
+        ct.start();
+        readyLatch.await();
+        startLatch.countDown();
+        endLatch.await();
+
+        if (ex.get() != null) {
+            throw ex.get();
+        }
+        assertTrue(q.isEmpty());
+    }
+
+    private void consume(int producerThreads, int loop, MpscChunkedQueue<Long> q) {
+        int[] status = new int[producerThreads];
+        long[] total = new long[]{(long) producerThreads * loop};
+        while (total[0] > 0) {
+            q.drain(v -> {
+                total[0]--;
+                int thread = (int) (v >>> 32);
+                int count = (int) v.longValue();
+                if (status[thread] < count) {
+                    status[thread] = count;
+                } else {
+                    throw new AssertionError();
+                }
+            }, 100);
+        }
+    }
+}
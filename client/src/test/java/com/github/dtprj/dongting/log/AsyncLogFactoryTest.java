@@ -0,0 +1,192 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.log;
+
+import com.github.dtprj.dongting.common.TestUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class AsyncLogFactoryTest {
+
+    private AsyncLogFactory factory;
+
+    @AfterEach
+    public void tearDown() {
+        if (factory != null) {
+            factory.shutdown();
+        }
+    }
+
+    @Test
+    public void testJdkLog() {
+        Logger.getLogger(AsyncLogFactoryTest.class.getName()).setLevel(Level.ALL);
+        factory = new AsyncLogFactory(JdkFactory.INSTANCE, 1024, false);
+        JdkLogTest.testLog(factory.getLogger(AsyncLogFactoryTest.class));
+    }
+
+    @Test
+    public void testFormat() throws Exception {
+        MockLogFactory mock = new MockLogFactory(null);
+        factory = new AsyncLogFactory(mock, 1024, false);
+        DtLog log = factory.getLogger("test");
+        String tn = "[" + Thread.currentThread().getName() + "] ";
+        log.info("msg {}");
+        log.info("msg {}", 1);
+        log.warn("msg {} {}", 1, 2);
+        log.error("msg {} {} {}", 1, 2, 3);
+        Exception ex = new Exception();
+        log.error("msg {}", 1, ex);
+        log.debug("msg", ex);
+        TestUtil.waitUtil(() -> mock.messages.size() == 6);
+        assertEquals("INFO " + tn + "msg {}", mock.messages.get(0));
+        assertEquals("INFO " + tn + "msg 1", mock.messages.get(1));
+        assertEquals("WARN " + tn + "msg 1 2", mock.messages.get(2));
+        assertEquals("ERROR " + tn + "msg 1 2 3", mock.messages.get(3));
+        assertEquals("ERROR " + tn + "msg 1", mock.messages.get(4));
+        assertEquals("DEBUG " + tn + "msg", mock.messages.get(5));
+        assertSame(ex, mock.throwables.get(4));
+        assertSame(ex, mock.throwables.get(5));
+
+        // write synchronously after shutdown
+        factory.shutdown();
+        log.info("msg {}", 2);
+        assertEquals("INFO msg 2", mock.messages.get(6));
+        factory = null;
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        MockLogFactory mock = new MockLogFactory(latch);
+        factory = new AsyncLogFactory(mock, 4, false);
+        DtLog log = factory.getLogger("test");
+        log.info("block");
+        // the background thread is blocked by the first message
+        TestUtil.waitUtil(() -> mock.blocked);
+        for (int i = 0; i < 10; i++) {
+            log.info("msg {}", i);
+        }
+        // the slot of first message is not released until it's written
+        assertEquals(7, factory.getDroppedCount());
+        latch.countDown();
+        // 4 messages, and the message of dropped count (it's logged by delegate logger directly)
+        TestUtil.waitUtil(() -> mock.messages.size() == 5);
+        assertTrue(mock.messages.get(4).contains("7 log messages are dropped"));
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        MockLogFactory mock = new MockLogFactory(latch);
+        factory = new AsyncLogFactory(mock, 4, true);
+        DtLog log = factory.getLogger("test");
+        log.info("block");
+        TestUtil.waitUtil(() -> mock.blocked);
+        Thread t = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                log.info("msg {}", i);
+            }
+        });
+        t.start();
+        t.join(50);
+        assertTrue(t.isAlive());
+        latch.countDown();
+        t.join();
+        TestUtil.waitUtil(() -> mock.messages.size() == 11);
+        assertEquals(0, factory.getDroppedCount());
+    }
+
+    private static class MockLogFactory implements DtLogFactory {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        final List<Throwable> throwables = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch latch;
+        volatile boolean blocked;
+
+        MockLogFactory(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        private synchronized void add(String level, String msg, Throwable t) {
+            messages.add(level + " " + msg);
+            throwables.add(t);
+        }
+
+        private void write(String level, String msg, Throwable t) {
+            if (latch != null && msg.endsWith("block")) {
+                blocked = true;
+                try {
+                    assertTrue(latch.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            add(level, msg, t);
+        }
+
+        @Override
+        public DtLog getLogger(Class<?> clazz) {
+            return getLogger(clazz.getName());
+        }
+
+        @Override
+        public DtLog getLogger(String name) {
+            return new DtLog() {
+                // @formatter:off
+                @Override public boolean isDebugEnabled() { return true; }
+                @Override public void debug(String message) { write("DEBUG", message, null); }
+                @Override public void debug(String format, Object arg) { fail(); }
+                @Override public void debug(String format, Object arg1, Object arg2) { fail(); }
+                @Override public void debug(String format, Object... args) { fail(); }
+                @Override public void debug(String message, Throwable t) { write("DEBUG", message, t); }
+                @Override public boolean isInfoEnabled() { return true; }
+                @Override public void info(String message) { write("INFO", message, null); }
+                @Override public void info(String format, Object arg) { fail(); }
+                @Override public void info(String format, Object arg1, Object arg2) { fail(); }
+                @Override public void info(String format, Object... args) { fail(); }
+                @Override public void info(String message, Throwable t) { write("INFO", message, t); }
+                @Override public boolean isWarnEnabled() { return true; }
+                @Override public void warn(String message) { write("WARN", message, null); }
+                @Override public void warn(String format, Object arg) {
+                    // the dropped count message
+                    write("WARN", MessageFormatter.format(format, arg).getMessage(), null);
+                }
+                @Override public void warn(String format, Object arg1, Object arg2) { fail(); }
+                @Override public void warn(String format, Object... args) { fail(); }
+                @Override public void warn(String message, Throwable t) { write("WARN", message, t); }
+                @Override public boolean isErrorEnabled() { return true; }
+                @Override public void error(String message) { write("ERROR", message, null); }
+                @Override public void error(String format, Object arg) { fail(); }
+                @Override public void error(String format, Object arg1, Object arg2) { fail(); }
+                @Override public void error(String format, Object... args) { fail(); }
+                @Override public void error(String message, Throwable t) { write("ERROR", message, t); }
+                // @formatter:on
+            };
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.codec.RefBufferDecoderCallback;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.TestUtil;
+import com.github.dtprj.dongting.common.Timestamp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class CompressTest {
+
+    private NioServer server;
+    private NioClient client;
+    private volatile DtChannelImpl serverSideChannel;
+
+    @AfterEach
+    public void teardown() {
+        TestUtil.stop(client, server);
+    }
+
+    private void setup(boolean serverCompress, boolean clientCompress) {
+        NioServerConfig serverConfig = new NioServerConfig();
+        serverConfig.setPort(9000);
+        serverConfig.setCompress(serverCompress);
+        server = new NioServer(serverConfig);
+        server.setChannelListener(new ChannelListener() {
+            @Override
+            public void onConnected(DtChannel dtc) {
+                serverSideChannel = (DtChannelImpl) dtc;
+            }
+
+            @Override
+            public void onDisconnected(DtChannel dtc) {
+            }
+        });
+        NioClientConfig clientConfig = new NioClientConfig();
+        clientConfig.setHostPorts(Collections.singletonList(new HostPort("127.0.0.1", 9000)));
+        clientConfig.setCompress(clientCompress);
+        client = new NioClient(clientConfig);
+        server.start();
+        client.start();
+        client.waitStart();
+    }
+
+    private static ByteBuffer createBody(Random r, int len, boolean compressible) {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        if (compressible) {
+            for (int i = 0; i < len; i++) {
+                buf.put(i, (byte) ('a' + (i / 7) % 5));
+            }
+        } else {
+            r.nextBytes(buf.array());
+        }
+        return buf;
+    }
+
+    private void pingAndCheck() throws Exception {
+        Random r = new Random();
+        List<ByteBuffer> bufs = new ArrayList<>();
+        List<CompletableFuture<ReadPacket<RefBuffer>>> futures = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            int len = i % 3 == 0 ? r.nextInt(100) : r.nextInt(300 * 1024);
+            ByteBuffer buf = createBody(r, len, i % 2 == 0);
+            bufs.add(buf);
+            ByteBufferWritePacket wf = new ByteBufferWritePacket(buf);
+            wf.setCommand(Commands.CMD_PING);
+            futures.add(client.sendRequest(wf, ctx -> new RefBufferDecoderCallback(),
+                    new DtTime(5, TimeUnit.SECONDS)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            ReadPacket<RefBuffer> rp = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals(CmdCodes.SUCCESS, rp.getRespCode());
+            RefBuffer rc = rp.getBody();
+            if (rc == null) {
+                assertEquals(0, bufs.get(i).remaining());
+            } else {
+                assertEquals(bufs.get(i), rc.getBuffer());
+                rc.release();
+            }
+        }
+    }
+
+    @Test
+    public void testCompress() throws Exception {
+        setup(true, true);
+        pingAndCheck();
+        TestUtil.waitUtil(() -> serverSideChannel != null);
+        assertTrue(serverSideChannel.compress);
+        assertTrue(client.getPeers().get(0).dtChannel.compress);
+    }
+
+    @Test
+    public void testNotNegotiated() throws Exception {
+        setup(false, true);
+        pingAndCheck();
+        TestUtil.waitUtil(() -> serverSideChannel != null);
+        assertFalse(serverSideChannel.compress);
+        assertFalse(client.getPeers().get(0).dtChannel.compress);
+    }
+
+    @Test
+    public void testCompressBody() {
+        BodyCompressor c = new BodyCompressor(1, new SimpleByteBufferPool(new Timestamp(), false));
+        try {
+            ByteBuffer raw = createBody(new Random(), 10000, true);
+            ByteBuffer compressed = c.compress(raw);
+            assertNotNull(compressed);
+            assertTrue(compressed.remaining() < raw.remaining() / 10);
+            ByteBuffer decompressed = c.decompress(compressed, raw.remaining());
+            assertEquals(raw, decompressed);
+
+            raw = createBody(new Random(), 10000, false);
+            assertNull(c.compress(raw));
+        } finally {
+            c.close();
+        }
+    }
+}
@@ -38,6 +38,7 @@ public class HandshakeBodyTest {
                 .setConfig(DtPacket.Config.newBuilder()
                         .setMaxPacketSize(100)
                         .build())
+                .setCompress(BodyCompressor.COMPRESS_DEFLATE)
                 .build();
         byte[] bs = h.toByteArray();
         HandshakeBody.Callback callback = new HandshakeBody.Callback();
@@ -52,6 +53,7 @@ public class HandshakeBodyTest {
         Assertions.assertEquals(h.getMajorVersion(), result.majorVersion);
         Assertions.assertEquals(h.getMinorVersion(), result.minorVersion);
         Assertions.assertEquals(h.getConfig().getMaxPacketSize(), result.config.maxPacketSize);
+        Assertions.assertEquals(h.getCompress(), result.compress);
     }
 
     @Test
@@ -61,6 +63,7 @@ public class HandshakeBodyTest {
         h.minorVersion = 2;
         h.config = new ConfigBody();
         h.config.maxPacketSize = 100;
+        h.compress = BodyCompressor.COMPRESS_DEFLATE;
 
         HandshakeBody.WritePacket p = new HandshakeBody.WritePacket(h);
         ByteBuffer buf = ByteBuffer.allocate(128);
@@ -74,5 +77,6 @@ public class HandshakeBodyTest {
         Assertions.assertEquals(h.majorVersion, result.getMajorVersion());
         Assertions.assertEquals(h.minorVersion, result.getMinorVersion());
         Assertions.assertEquals(h.config.maxPacketSize, result.getConfig().getMaxPacketSize());
+        Assertions.assertEquals(h.compress, result.getCompress());
     }
 }
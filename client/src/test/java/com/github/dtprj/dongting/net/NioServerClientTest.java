@@ -17,18 +17,24 @@ package com.github.dtprj.dongting.net;
 
 import com.github.dtprj.dongting.buf.RefBuffer;
 import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.DecoderCallback;
 import com.github.dtprj.dongting.codec.RefBufferDecoderCallback;
 import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.PerfCallback;
 import com.github.dtprj.dongting.common.TestUtil;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -56,6 +62,91 @@ public class NioServerClientTest {
         }
     }
 
+    /**
+     * Count the clock reads of the perf timing methods without Timestamp parameter, the methods with
+     * Timestamp parameter read the Timestamp refreshed by the round loop of the thread.
+     */
+    static class ClockCountPerfCallback extends PerfCallback {
+        final AtomicLong clockCalls = new AtomicLong();
+
+        ClockCountPerfCallback(boolean coarseClock) {
+            super(true, coarseClock);
+        }
+
+        private void count() {
+            if (!coarseClock) {
+                clockCalls.incrementAndGet();
+            }
+        }
+
+        @Override
+        public long takeTime(int perfType) {
+            count();
+            return super.takeTime(perfType);
+        }
+
+        @Override
+        public void fireTime(int perfType, long startTime) {
+            count();
+            super.fireTime(perfType, startTime);
+        }
+
+        @Override
+        public void fireTime(int perfType, long startTime, int count, long sum) {
+            count();
+            super.fireTime(perfType, startTime, count, sum);
+        }
+
+        @Override
+        public boolean accept(int perfType) {
+            return true;
+        }
+
+        @Override
+        public void onEvent(int perfType, long costTime, int count, long sum) {
+        }
+    }
+
+    private static double clockCallsPerRequest(boolean coarseClock) throws Exception {
+        ClockCountPerfCallback serverPerf = new ClockCountPerfCallback(coarseClock);
+        ClockCountPerfCallback clientPerf = new ClockCountPerfCallback(coarseClock);
+        NioServerConfig serverConfig = new NioServerConfig();
+        serverConfig.setPort(9000);
+        serverConfig.setPerfCallback(serverPerf);
+        NioServer server = new NioServer(serverConfig);
+        NioClientConfig clientConfig = new NioClientConfig();
+        clientConfig.setHostPorts(Collections.singletonList(new HostPort("127.0.0.1", 9000)));
+        clientConfig.setPerfCallback(clientPerf);
+        NioClient client = new NioClient(clientConfig);
+        try {
+            server.start();
+            client.start();
+            client.waitStart();
+            invoke(client);
+            serverPerf.clockCalls.set(0);
+            clientPerf.clockCalls.set(0);
+            int count = 100;
+            for (int i = 0; i < count; i++) {
+                invoke(client);
+            }
+            long clientCalls = clientPerf.clockCalls.get();
+            // the client send stages: acquire, worker queue, channel queue, each has a start and an end
+            assertTrue(coarseClock || clientCalls >= 6L * count, String.valueOf(clientCalls));
+            return (double) (clientCalls + serverPerf.clockCalls.get()) / count;
+        } finally {
+            TestUtil.stop(client, server);
+        }
+    }
+
+    @Test
+    public void testPerfClockCalls() throws Exception {
+        double before = clockCallsPerRequest(false);
+        double after = clockCallsPerRequest(true);
+        System.out.println("clock calls per rpc request of perf timing: " + before + " -> " + after);
+        assertTrue(before > 0);
+        assertEquals(0, after);
+    }
+
     static void invoke(NioClient client) throws Exception {
         Random r = new Random();
         int len = (r.nextInt(10) == 0) ? 0 : r.nextInt(3000);
@@ -137,4 +228,52 @@ public class NioServerClientTest {
         }
     }
 
+    @Test
+    public void testPriority() throws Exception {
+        int bulkCmd = 12346;
+        int controlCmd = 12347;
+        // createDecoderCallback is invoked in io thread by the order of arrival
+        List<Integer> arrival = Collections.synchronizedList(new ArrayList<>());
+        NioServerConfig serverConfig = new NioServerConfig();
+        serverConfig.setPort(9000);
+        NioServer server = new NioServer(serverConfig);
+        NioServer.PingProcessor p = new NioServer.PingProcessor() {
+            @Override
+            public DecoderCallback<RefBuffer> createDecoderCallback(int cmd, DecodeContext c) {
+                arrival.add(cmd);
+                return super.createDecoderCallback(cmd, c);
+            }
+        };
+        server.register(bulkCmd, p);
+        server.register(controlCmd, p);
+
+        NioClientConfig clientConfig = new NioClientConfig();
+        clientConfig.setHostPorts(Collections.singletonList(new HostPort("127.0.0.1", 9000)));
+        NioClient client = new NioClient(clientConfig);
+        try {
+            server.start();
+            client.start();
+            client.waitStart();
+
+            int bulkCount = 20;
+            List<CompletableFuture<ReadPacket<RefBuffer>>> futures = new ArrayList<>();
+            for (int i = 0; i < bulkCount; i++) {
+                ByteBufferWritePacket wf = new ByteBufferWritePacket(ByteBuffer.allocate(1024 * 1024));
+                wf.setCommand(bulkCmd);
+                futures.add(client.sendRequest(wf, ctx -> new RefBufferDecoderCallback(), new DtTime(5, TimeUnit.SECONDS)));
+            }
+            ByteBufferWritePacket wf = new ByteBufferWritePacket(ByteBuffer.allocate(16));
+            wf.setCommand(controlCmd);
+            wf.setPriority(WritePacket.PRIORITY_HIGH);
+            futures.add(client.sendRequest(wf, ctx -> new RefBufferDecoderCallback(), new DtTime(5, TimeUnit.SECONDS)));
+            for (CompletableFuture<ReadPacket<RefBuffer>> f : futures) {
+                f.get(5, TimeUnit.SECONDS).getBody().release();
+            }
+            assertEquals(bulkCount + 1, arrival.size());
+            // the control packet is not queued behind all bulk packets
+            assertTrue(arrival.indexOf(controlCmd) < bulkCount / 2, "arrival order: " + arrival);
+        } finally {
+            TestUtil.stop(client, server);
+        }
+    }
 }
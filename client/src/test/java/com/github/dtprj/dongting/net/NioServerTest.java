@@ -687,4 +687,90 @@ public class NioServerTest {
             DtUtil.close(s);
         }
     }
+
+    @Test
+    public void balanceTest() throws Exception {
+        setupServer(c -> c.setIoThreads(2));
+        server.start();
+        Socket[] sockets = new Socket[4];
+        try {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i] = new Socket("127.0.0.1", PORT);
+                sockets[i].setSoTimeout(3000);
+                handshake(new DataInputStream(sockets[i].getInputStream()),
+                        new DataOutputStream(sockets[i].getOutputStream()));
+            }
+            assertEquals(2, server.workers[0].workerStatus.channelCount.get());
+            assertEquals(2, server.workers[1].workerStatus.channelCount.get());
+        } finally {
+            for (Socket s : sockets) {
+                DtUtil.close(s);
+            }
+        }
+        TestUtil.waitUtil(() -> server.workers[0].workerStatus.channelCount.get() == 0
+                && server.workers[1].workerStatus.channelCount.get() == 0);
+    }
+
+    @Test
+    public void migrateTest() throws Exception {
+        setupServer(c -> c.setIoThreads(2));
+        DtChannel[] channel = new DtChannel[1];
+        server.setChannelListener(new ChannelListener() {
+            @Override
+            public void onConnected(DtChannel dtc) {
+                channel[0] = dtc;
+            }
+
+            @Override
+            public void onDisconnected(DtChannel dtc) {
+            }
+        });
+        server.start();
+        Socket s = new Socket("127.0.0.1", PORT);
+        try {
+            s.setSoTimeout(3000);
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            DataOutputStream out = new DataOutputStream(s.getOutputStream());
+            handshake(in, out);
+            simpleTest(CMD_IO_PING, in, out, 2);
+            TestUtil.waitUtil(() -> channel[0] != null);
+
+            DtChannelImpl dtc = (DtChannelImpl) channel[0];
+            int oldIndex = dtc.workerStatus.worker == server.workers[0] ? 0 : 1;
+            int newIndex = 1 - oldIndex;
+            assertTrue(server.migrate(dtc, newIndex).get(1, TimeUnit.SECONDS));
+            assertSame(server.workers[newIndex], dtc.workerStatus.worker);
+            TestUtil.waitUtil(() -> server.workers[newIndex].workerStatus.channelCount.get() == 1);
+            assertEquals(0, server.workers[oldIndex].workerStatus.channelCount.get());
+
+            simpleTest(CMD_IO_PING, in, out, 3);
+            simpleTest(CMD_BIZ_PING1, in, out, 4);
+            simpleTest(CMD_BIZ_PING2, in, out, 5);
+
+            // migrate to self is not allowed
+            assertFalse(server.migrate(dtc, newIndex).get(1, TimeUnit.SECONDS));
+            assertTrue(server.migrate(dtc, oldIndex).get(1, TimeUnit.SECONDS));
+            simpleTest(CMD_BIZ_PING1, in, out, 6);
+        } finally {
+            DtUtil.close(s);
+        }
+    }
+
+    @Test
+    public void multiAcceptorTest() throws Exception {
+        setupServer(c -> c.setAcceptThreads(2));
+        server.start();
+        for (int i = 0; i < 4; i++) {
+            Socket s = new Socket("127.0.0.1", PORT);
+            try {
+                s.setSoTimeout(3000);
+                DataInputStream in = new DataInputStream(s.getInputStream());
+                DataOutputStream out = new DataOutputStream(s.getOutputStream());
+                handshake(in, out);
+                simpleTest(CMD_BIZ_PING1, in, out, 2);
+            } finally {
+                DtUtil.close(s);
+            }
+        }
+    }
 }
@@ -6,6 +6,7 @@ package com.github.dtprj.dongting.net;
 import com.github.dtprj.dongting.codec.CodecTestUtil;
 import com.github.dtprj.dongting.codec.DtPacket;
 import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.common.MemoryQuota;
 import com.github.dtprj.dongting.common.Timestamp;
 import com.google.protobuf.ByteString;
 import org.junit.jupiter.api.Test;
@@ -109,7 +110,7 @@ public class PacketPbTest {
         workerStatus.setTs(new Timestamp());
         workerStatus.setHeapPool(CodecTestUtil.createContext().getHeapPool());
 
-        DtChannelImpl dtc = new DtChannelImpl(new NioStatus(), workerStatus,
+        DtChannelImpl dtc = new DtChannelImpl(new NioStatus(MemoryQuota.newRoot("test", 0)), workerStatus,
                 new NioClientConfig(), null, SocketChannel.open(), 0) {
 
             @Override
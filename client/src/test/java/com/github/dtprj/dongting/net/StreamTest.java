@@ -0,0 +1,182 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.PbLongCallback;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.TestUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class StreamTest {
+
+    private static final int CMD_STREAM = 3100;
+    private static final int BODY_SIZE = 20 * 1024 * 1024;
+
+    private NioServer server;
+    private NioClient client;
+    private final ExecutorService consumer = Executors.newSingleThreadExecutor();
+    private volatile int firstDataBeforeEnd = -1;
+
+    @AfterEach
+    public void teardown() {
+        TestUtil.stop(client, server);
+        consumer.shutdownNow();
+    }
+
+    private static byte expectByte(long pos) {
+        return (byte) (pos * 31 + 7);
+    }
+
+    private class CountHandler extends StreamHandler<Long> {
+        private final int bodyLen;
+        private long received;
+        private long checked;
+        private boolean error;
+
+        CountHandler(int bodyLen) {
+            this.bodyLen = bodyLen;
+        }
+
+        @Override
+        protected void onData(RefBuffer slice) {
+            if (received == 0) {
+                firstDataBeforeEnd = slice.getBuffer().remaining() < bodyLen ? 1 : 0;
+            }
+            received += slice.getBuffer().remaining();
+            // consume in another thread, so the flow control works
+            consumer.execute(() -> {
+                ByteBuffer bb = slice.getBuffer();
+                int len = bb.remaining();
+                while (bb.hasRemaining()) {
+                    if (bb.get() != expectByte(checked++)) {
+                        error = true;
+                    }
+                }
+                slice.release();
+                ack(len);
+            });
+        }
+
+        @Override
+        protected Long getResult() {
+            return received;
+        }
+
+        boolean checkResult() throws Exception {
+            // wait the consumer thread to check all bytes
+            consumer.submit(() -> {
+            }).get();
+            return !error && checked == bodyLen;
+        }
+    }
+
+    private class CountProcessor extends StreamReqProcessor<Long> {
+        private CountHandler handler;
+
+        @Override
+        public StreamHandler<Long> createStreamHandler(ReadPacket<Long> packet, int bodyLen) {
+            handler = new CountHandler(bodyLen);
+            return handler;
+        }
+
+        @Override
+        public WritePacket process(ReadPacket<Long> packet, ReqContext reqContext) throws Exception {
+            long v = handler.checkResult() ? packet.getBody() : -1;
+            return new PbLongWritePacket(CMD_STREAM, v);
+        }
+    }
+
+    private static class GenWritePacket extends StreamWritePacket {
+        private final int size;
+        private int pos;
+
+        GenWritePacket(int size) {
+            this.size = size;
+        }
+
+        @Override
+        protected int calcActualBodySize() {
+            return size;
+        }
+
+        @Override
+        protected boolean encodeBody(EncodeContext context, ByteBuffer dest) {
+            while (pos < size && dest.hasRemaining()) {
+                dest.put(expectByte(pos++));
+            }
+            return pos == size;
+        }
+    }
+
+    private void setup(long window) {
+        NioServerConfig serverConfig = new NioServerConfig();
+        serverConfig.setPort(9000);
+        serverConfig.setStreamWindowBytes(window);
+        server = new NioServer(serverConfig);
+        server.register(CMD_STREAM, new CountProcessor());
+        NioClientConfig clientConfig = new NioClientConfig();
+        clientConfig.setHostPorts(Collections.singletonList(new HostPort("127.0.0.1", 9000)));
+        client = new NioClient(clientConfig);
+        server.start();
+        client.start();
+        client.waitStart();
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        setup(256 * 1024);
+        for (int i = 0; i < 2; i++) {
+            GenWritePacket wp = new GenWritePacket(BODY_SIZE);
+            wp.setCommand(CMD_STREAM);
+            ReadPacket<Long> rp = client.sendRequest(wp, ctx -> ctx.toDecoderCallback(new PbLongCallback()),
+                    new DtTime(10, TimeUnit.SECONDS)).get(10, TimeUnit.SECONDS);
+            assertEquals(CmdCodes.SUCCESS, rp.getRespCode());
+            assertEquals(BODY_SIZE, rp.getBody());
+            assertEquals(1, firstDataBeforeEnd);
+        }
+        // normal request still works on the same channel
+        NioServerClientTest.invoke(client);
+    }
+
+    @Test
+    public void testNotStreamPacketTooLarge() throws Exception {
+        setup(256 * 1024);
+        GenWritePacket wp = new GenWritePacket(BODY_SIZE);
+        wp.setCommand(Commands.CMD_PING);
+        try {
+            client.sendRequest(wp, ctx -> ctx.toDecoderCallback(new PbLongCallback()),
+                    new DtTime(10, TimeUnit.SECONDS)).get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertInstanceOf(NetException.class, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.net;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.codec.RefBufferDecoderCallback;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.TestUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class TlsTest {
+
+    private NioServer server;
+    private NioClient client;
+    private volatile DtChannel serverSideChannel;
+
+    @AfterEach
+    public void teardown() {
+        TestUtil.stop(client, server);
+    }
+
+    static SSLContext createSslContext() throws Exception {
+        char[] pwd = "123456".toCharArray();
+        KeyStore ks = KeyStore.getInstance("PKCS12");
+        try (InputStream in = TlsTest.class.getResourceAsStream("/dt-test.p12")) {
+            ks.load(in, pwd);
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, pwd);
+        // the self-signed certificate is used as trust store too
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(ks);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+        return sslContext;
+    }
+
+    private void setup(boolean needClientAuth) throws Exception {
+        SSLContext sslContext = createSslContext();
+        NioServerConfig serverConfig = new NioServerConfig();
+        serverConfig.setPort(9000);
+        serverConfig.setSslContext(sslContext);
+        serverConfig.setSslNeedClientAuth(needClientAuth);
+        server = new NioServer(serverConfig);
+        server.setChannelListener(new ChannelListener() {
+            @Override
+            public void onConnected(DtChannel dtc) {
+                serverSideChannel = dtc;
+            }
+
+            @Override
+            public void onDisconnected(DtChannel dtc) {
+            }
+        });
+        NioClientConfig clientConfig = new NioClientConfig();
+        clientConfig.setHostPorts(Collections.singletonList(new HostPort("127.0.0.1", 9000)));
+        clientConfig.setSslContext(sslContext);
+        client = new NioClient(clientConfig);
+        server.start();
+        client.start();
+        client.waitStart();
+    }
+
+    private static CompletableFuture<ReadPacket<RefBuffer>> ping(NioClient client, ByteBuffer buf) {
+        ByteBufferWritePacket wf = new ByteBufferWritePacket(buf);
+        wf.setCommand(Commands.CMD_PING);
+        return client.sendRequest(wf, ctx -> new RefBufferDecoderCallback(), new DtTime(5, TimeUnit.SECONDS));
+    }
+
+    private static void check(ByteBuffer expect, ReadPacket<RefBuffer> rp) {
+        assertEquals(CmdCodes.SUCCESS, rp.getRespCode());
+        RefBuffer rc = rp.getBody();
+        if (rc != null) {
+            assertEquals(expect, rc.getBuffer());
+            rc.release();
+        } else {
+            assertEquals(0, expect.remaining());
+        }
+    }
+
+    @Test
+    public void testPing() throws Exception {
+        setup(true);
+        for (int i = 0; i < 20; i++) {
+            NioServerClientTest.invoke(client);
+        }
+        TestUtil.waitUtil(() -> serverSideChannel != null);
+        assertNotNull(serverSideChannel.getSslSession());
+        assertTrue(serverSideChannel.getSslSession().getProtocol().startsWith("TLS"));
+    }
+
+    @Test
+    public void testLargeAndConcurrent() throws Exception {
+        setup(false);
+        Random r = new Random();
+        List<ByteBuffer> bufs = new ArrayList<>();
+        List<CompletableFuture<ReadPacket<RefBuffer>>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            // some packets are larger than the TLS record and the net buffer
+            int len = i % 10 == 0 ? 1024 * 1024 + r.nextInt(1024) : r.nextInt(40000);
+            ByteBuffer buf = ByteBuffer.allocate(len);
+            r.nextBytes(buf.array());
+            bufs.add(buf);
+            futures.add(ping(client, buf));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            check(bufs.get(i), futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,579 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generate XxxCodec class for the class annotated with PbMessage. The generated code has the same contract
+ * as the hand-written Encodable/PbCallback: encode() is resumable by EncodeContext.stage and
+ * EncodeContext.pending, and returns false if the dest buffer is not enough.
+ * <p>
+ * This module has no dependency on dongting-client, the annotations are referenced by name.
+ *
+ * @author huangli
+ */
+public class PbCodecProcessor extends AbstractProcessor {
+
+    static final String PB_MESSAGE = "com.github.dtprj.dongting.codec.PbMessage";
+    static final String PB_FIELD = "com.github.dtprj.dongting.codec.PbField";
+
+    private static final int KIND_INT = 1;
+    private static final int KIND_FIX32 = 2;
+    private static final int KIND_LONG = 3;
+    private static final int KIND_FIX64 = 4;
+    private static final int KIND_BOOL = 5;
+    private static final int KIND_BYTES = 6;
+    private static final int KIND_MSG = 7;
+    private static final int KIND_STRING = 8;
+    // repeated fields, declared as List or ArrayList
+    private static final int KIND_LIST_STRING = 9;
+    private static final int KIND_LIST_BYTES = 10;
+    private static final int KIND_LIST_MSG = 11;
+
+    private static class FieldInfo {
+        String name;
+        int index;
+        int kind;
+        // for KIND_MSG and KIND_LIST_MSG
+        String typeName;
+        String codecName;
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(PB_MESSAGE);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (e.getKind() != ElementKind.CLASS) {
+                    error(e, "PbMessage should be used on class");
+                    continue;
+                }
+                TypeElement te = (TypeElement) e;
+                List<FieldInfo> fields = parseFields(te);
+                if (fields != null) {
+                    generate(te, fields);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void error(Element e, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, e);
+    }
+
+    private static AnnotationMirror findAnnotation(Element e, String name) {
+        for (AnnotationMirror am : e.getAnnotationMirrors()) {
+            if (((TypeElement) am.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) {
+                return am;
+            }
+        }
+        return null;
+    }
+
+    private static Object annotationValue(AnnotationMirror am, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> en : am.getElementValues().entrySet()) {
+            if (en.getKey().getSimpleName().contentEquals(name)) {
+                return en.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    static String codecSimpleName(TypeElement te) {
+        StringBuilder sb = new StringBuilder(te.getSimpleName());
+        Element e = te.getEnclosingElement();
+        while (e.getKind() != ElementKind.PACKAGE) {
+            sb.insert(0, e.getSimpleName() + "_");
+            e = e.getEnclosingElement();
+        }
+        return sb.append("Codec").toString();
+    }
+
+    private String packageName(TypeElement te) {
+        PackageElement pe = processingEnv.getElementUtils().getPackageOf(te);
+        return pe.isUnnamed() ? "" : pe.getQualifiedName().toString();
+    }
+
+    private List<FieldInfo> parseFields(TypeElement te) {
+        ArrayList<FieldInfo> list = new ArrayList<>();
+        HashSet<Integer> indexes = new HashSet<>();
+        boolean ok = true;
+        for (Element e : te.getEnclosedElements()) {
+            if (e.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+            AnnotationMirror am = findAnnotation(e, PB_FIELD);
+            if (am == null) {
+                continue;
+            }
+            VariableElement ve = (VariableElement) e;
+            if (ve.getModifiers().contains(Modifier.PRIVATE) || ve.getModifiers().contains(Modifier.STATIC)
+                    || ve.getModifiers().contains(Modifier.FINAL)) {
+                error(e, "PbField should not be private, static or final");
+                ok = false;
+                continue;
+            }
+            FieldInfo fi = new FieldInfo();
+            fi.name = ve.getSimpleName().toString();
+            fi.index = (Integer) annotationValue(am, "index");
+            Boolean fixed = (Boolean) annotationValue(am, "fixed");
+            if (fi.index <= 0 || fi.index > 536870911) {
+                error(e, "bad pb index: " + fi.index);
+                ok = false;
+                continue;
+            }
+            if (!indexes.add(fi.index)) {
+                error(e, "duplicate pb index: " + fi.index);
+                ok = false;
+                continue;
+            }
+            TypeMirror t = ve.asType();
+            boolean isFixed = fixed != null && fixed;
+            if (t.getKind() == TypeKind.INT) {
+                fi.kind = isFixed ? KIND_FIX32 : KIND_INT;
+            } else if (t.getKind() == TypeKind.LONG) {
+                fi.kind = isFixed ? KIND_FIX64 : KIND_LONG;
+            } else if (t.getKind() == TypeKind.BOOLEAN && !isFixed) {
+                fi.kind = KIND_BOOL;
+            } else if (t.getKind() == TypeKind.ARRAY
+                    && ((ArrayType) t).getComponentType().getKind() == TypeKind.BYTE && !isFixed) {
+                fi.kind = KIND_BYTES;
+            } else if (t.getKind() == TypeKind.DECLARED && !isFixed) {
+                DeclaredType dt = (DeclaredType) t;
+                TypeElement fieldType = (TypeElement) dt.asElement();
+                String typeName = fieldType.getQualifiedName().toString();
+                if ("java.lang.String".equals(typeName)) {
+                    fi.kind = KIND_STRING;
+                } else if ("java.util.List".equals(typeName) || "java.util.ArrayList".equals(typeName)) {
+                    // the callback creates ArrayList
+                    if (dt.getTypeArguments().size() != 1 || !parseElementType(fi, dt.getTypeArguments().get(0))) {
+                        error(e, "unsupported field type: " + t);
+                        ok = false;
+                        continue;
+                    }
+                } else if (findAnnotation(fieldType, PB_MESSAGE) != null) {
+                    fi.kind = KIND_MSG;
+                    setMsgType(fi, fieldType);
+                } else {
+                    error(e, "unsupported field type: " + t);
+                    ok = false;
+                    continue;
+                }
+            } else {
+                error(e, "unsupported field type: " + t);
+                ok = false;
+                continue;
+            }
+            list.add(fi);
+        }
+        return ok ? list : null;
+    }
+
+    /**
+     * Repeated number is not supported, since PbUtil skips the zero values.
+     */
+    private boolean parseElementType(FieldInfo fi, TypeMirror t) {
+        if (t.getKind() == TypeKind.ARRAY && ((ArrayType) t).getComponentType().getKind() == TypeKind.BYTE) {
+            fi.kind = KIND_LIST_BYTES;
+            return true;
+        }
+        if (t.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        TypeElement elementType = (TypeElement) ((DeclaredType) t).asElement();
+        if (elementType.getQualifiedName().contentEquals("java.lang.String")) {
+            fi.kind = KIND_LIST_STRING;
+            return true;
+        }
+        if (findAnnotation(elementType, PB_MESSAGE) != null) {
+            fi.kind = KIND_LIST_MSG;
+            setMsgType(fi, elementType);
+            return true;
+        }
+        return false;
+    }
+
+    private void setMsgType(FieldInfo fi, TypeElement msgType) {
+        fi.typeName = msgType.getQualifiedName().toString();
+        String pkg = packageName(msgType);
+        fi.codecName = pkg.isEmpty() ? codecSimpleName(msgType) : pkg + "." + codecSimpleName(msgType);
+    }
+
+    private void generate(TypeElement te, List<FieldInfo> fields) {
+        String pkg = packageName(te);
+        String codecName = codecSimpleName(te);
+        String fullName = pkg.isEmpty() ? codecName : pkg + "." + codecName;
+        String code = new CodeWriter(pkg, codecName, te.getQualifiedName().toString(), fields).write();
+        try {
+            JavaFileObject f = processingEnv.getFiler().createSourceFile(fullName, te);
+            try (Writer w = f.openWriter()) {
+                w.write(code);
+            }
+        } catch (IOException e) {
+            error(te, "write " + fullName + " fail: " + e);
+        }
+    }
+
+    private static int varIntSize(long v) {
+        int size = 1;
+        while ((v >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static class CodeWriter {
+        private final String pkg;
+        private final String codecName;
+        private final String type;
+        private final List<FieldInfo> fields;
+        private final StringBuilder sb = new StringBuilder(4096);
+
+        CodeWriter(String pkg, String codecName, String type, List<FieldInfo> fields) {
+            this.pkg = pkg;
+            this.codecName = codecName;
+            this.type = type;
+            this.fields = fields;
+        }
+
+        private CodeWriter line(String s) {
+            sb.append(s).append('\n');
+            return this;
+        }
+
+        private boolean has(int... kinds) {
+            for (FieldInfo f : fields) {
+                for (int k : kinds) {
+                    if (f.kind == k) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static String sizeExpr(FieldInfo f) {
+            String v = "o." + f.name;
+            switch (f.kind) {
+                case KIND_INT:
+                    return "PbUtil.accurateUnsignedIntSize(" + f.index + ", " + v + ")";
+                case KIND_FIX32:
+                    return "PbUtil.accurateFix32Size(" + f.index + ", " + v + ")";
+                case KIND_LONG:
+                    return "PbUtil.accurateUnsignedLongSize(" + f.index + ", " + v + ")";
+                case KIND_FIX64:
+                    return "PbUtil.accurateFix64Size(" + f.index + ", " + v + ")";
+                case KIND_BOOL:
+                    return "PbUtil.accurateUnsignedIntSize(" + f.index + ", " + v + " ? 1 : 0)";
+                case KIND_LIST_STRING:
+                    return "EncodeUtil.actualSizeOfStrs(" + f.index + ", " + v + ")";
+                case KIND_LIST_BYTES:
+                    return "EncodeUtil.actualSizeOfBytes(" + f.index + ", " + v + ")";
+                case KIND_LIST_MSG:
+                    return "EncodeUtil.actualSizeOfObjs(" + f.index + ", " + v + ")";
+                default:
+                    return "EncodeUtil.actualSize(" + f.index + ", " + v + ")";
+            }
+        }
+
+        private static String writeStatement(FieldInfo f) {
+            String v = "o." + f.name;
+            switch (f.kind) {
+                case KIND_INT:
+                    return "PbUtil.writeUnsignedInt32(buf, " + f.index + ", " + v + ");";
+                case KIND_FIX32:
+                    return "PbUtil.writeFix32(buf, " + f.index + ", " + v + ");";
+                case KIND_LONG:
+                    return "PbUtil.writeUnsignedInt64(buf, " + f.index + ", " + v + ");";
+                case KIND_FIX64:
+                    return "PbUtil.writeFix64(buf, " + f.index + ", " + v + ");";
+                case KIND_BOOL:
+                    return "PbUtil.writeUnsignedInt32(buf, " + f.index + ", " + v + " ? 1 : 0);";
+                default:
+                    throw new IllegalArgumentException();
+            }
+        }
+
+        private static String encodeMethod(FieldInfo f) {
+            switch (f.kind) {
+                case KIND_BYTES:
+                case KIND_MSG:
+                case KIND_STRING:
+                    return "encode";
+                case KIND_LIST_STRING:
+                    return "encodeStrs";
+                case KIND_LIST_BYTES:
+                    return "encodeBytes";
+                case KIND_LIST_MSG:
+                    return "encodeObjs";
+                default:
+                    return null;
+            }
+        }
+
+        private static int maxSize(FieldInfo f) {
+            int tagSize = varIntSize((long) f.index << 3);
+            switch (f.kind) {
+                case KIND_INT:
+                    return tagSize + 5;
+                case KIND_FIX32:
+                    return tagSize + 4;
+                case KIND_LONG:
+                    return tagSize + 10;
+                case KIND_FIX64:
+                    return tagSize + 8;
+                case KIND_BOOL:
+                    return tagSize + 1;
+                default:
+                    throw new IllegalArgumentException();
+            }
+        }
+
+        String write() {
+            boolean allPrimitive = !has(KIND_BYTES, KIND_MSG, KIND_STRING, KIND_LIST_STRING, KIND_LIST_BYTES,
+                    KIND_LIST_MSG);
+            if (!pkg.isEmpty()) {
+                line("package " + pkg + ";").line("");
+            }
+            line("import com.github.dtprj.dongting.codec.CodecException;");
+            line("import com.github.dtprj.dongting.codec.EncodeContext;");
+            line("import com.github.dtprj.dongting.codec.EncodeUtil;");
+            line("import com.github.dtprj.dongting.codec.PbCallback;");
+            line("import com.github.dtprj.dongting.codec.PbUtil;");
+            line("");
+            line("import java.nio.ByteBuffer;");
+            line("");
+            line("/**");
+            line(" * Generated by " + PbCodecProcessor.class.getName() + ", don't modify.");
+            line(" */");
+            line("@SuppressWarnings(\"unused\")");
+            line("public final class " + codecName + " {");
+            if (allPrimitive && !fields.isEmpty()) {
+                int max = 0;
+                for (FieldInfo f : fields) {
+                    max += maxSize(f);
+                }
+                line("    private static final int MAX_SIZE = " + max + ";");
+                line("");
+            }
+            line("    private " + codecName + "() {");
+            line("    }");
+            line("");
+            writeActualSize();
+            writeEncode(allPrimitive);
+            writeCallback();
+            line("}");
+            return sb.toString();
+        }
+
+        private void writeActualSize() {
+            line("    public static int actualSize(" + type + " o) {");
+            if (fields.isEmpty()) {
+                line("        return 0;");
+            } else {
+                for (int i = 0; i < fields.size(); i++) {
+                    String prefix = i == 0 ? "        return " : "                + ";
+                    String suffix = i == fields.size() - 1 ? ";" : "";
+                    line(prefix + sizeExpr(fields.get(i)) + suffix);
+                }
+            }
+            line("    }");
+            line("");
+        }
+
+        private void writeEncode(boolean allPrimitive) {
+            line("    public static boolean encode(EncodeContext c, ByteBuffer buf, " + type + " o) {");
+            if (allPrimitive && !fields.isEmpty()) {
+                line("        if (c.stage == EncodeContext.STAGE_BEGIN && buf.remaining() >= MAX_SIZE) {");
+                line("            // fast path, no remaining check for each field");
+                for (FieldInfo f : fields) {
+                    line("            " + writeStatement(f));
+                }
+                line("            c.stage = EncodeContext.STAGE_END;");
+                line("            return true;");
+                line("        }");
+            }
+            line("        switch (c.stage) {");
+            for (int i = 0; i < fields.size(); i++) {
+                FieldInfo f = fields.get(i);
+                line("            case " + i + ":");
+                String encodeMethod = encodeMethod(f);
+                if (encodeMethod != null) {
+                    line("                if (!EncodeUtil." + encodeMethod + "(c, buf, " + f.index + ", o." + f.name + ")) {");
+                } else {
+                    line("                if (buf.remaining() < " + sizeExpr(f) + ") {");
+                }
+                line("                    c.stage = " + i + ";");
+                line("                    return false;");
+                line("                }");
+                if (encodeMethod == null) {
+                    line("                " + writeStatement(f));
+                }
+                line("                // fall through");
+            }
+            line("            case " + fields.size() + ":");
+            line("                c.stage = EncodeContext.STAGE_END;");
+            line("                return true;");
+            line("            default:");
+            line("                throw new CodecException(c);");
+            line("        }");
+            line("    }");
+            line("");
+        }
+
+        private void writeCallback() {
+            line("    public static class Callback extends PbCallback<" + type + "> {");
+            line("        private " + type + " result;");
+            for (FieldInfo f : fields) {
+                if (f.kind == KIND_MSG || f.kind == KIND_LIST_MSG) {
+                    line("        private " + f.codecName + ".Callback " + f.name + "Callback;");
+                }
+            }
+            line("");
+            line("        @Override");
+            line("        protected void begin(int len) {");
+            line("            result = new " + type + "();");
+            line("        }");
+            if (has(KIND_INT, KIND_LONG, KIND_BOOL)) {
+                line("");
+                line("        @Override");
+                line("        public boolean readVarNumber(int index, long value) {");
+                line("            switch (index) {");
+                for (FieldInfo f : fields) {
+                    String v;
+                    if (f.kind == KIND_INT) {
+                        v = "(int) value";
+                    } else if (f.kind == KIND_LONG) {
+                        v = "value";
+                    } else if (f.kind == KIND_BOOL) {
+                        v = "value != 0";
+                    } else {
+                        continue;
+                    }
+                    line("                case " + f.index + ":");
+                    line("                    result." + f.name + " = " + v + ";");
+                    line("                    break;");
+                }
+                line("            }");
+                line("            return true;");
+                line("        }");
+            }
+            writeFixCallback(KIND_FIX32, "readFix32", "int");
+            writeFixCallback(KIND_FIX64, "readFix64", "long");
+            if (has(KIND_BYTES, KIND_MSG, KIND_STRING, KIND_LIST_STRING, KIND_LIST_BYTES, KIND_LIST_MSG)) {
+                line("");
+                line("        @Override");
+                line("        public boolean readBytes(int index, ByteBuffer buf, int fieldLen, int currentPos) {");
+                line("            switch (index) {");
+                for (FieldInfo f : fields) {
+                    if (f.kind == KIND_BYTES || f.kind == KIND_LIST_BYTES) {
+                        line("                case " + f.index + ": {");
+                        line("                    byte[] v = parseBytes(buf, fieldLen, currentPos);");
+                    } else if (f.kind == KIND_STRING || f.kind == KIND_LIST_STRING) {
+                        line("                case " + f.index + ": {");
+                        line("                    String v = parseUTF8(buf, fieldLen, currentPos);");
+                    } else if (f.kind == KIND_MSG || f.kind == KIND_LIST_MSG) {
+                        String cb = f.name + "Callback";
+                        line("                case " + f.index + ": {");
+                        line("                    if (" + cb + " == null) {");
+                        line("                        " + cb + " = new " + f.codecName + ".Callback();");
+                        line("                    }");
+                        line("                    " + f.typeName + " v = parseNested(buf, fieldLen, currentPos, " + cb + ");");
+                    } else {
+                        continue;
+                    }
+                    line("                    if (v != null) {");
+                    if (f.kind == KIND_LIST_STRING || f.kind == KIND_LIST_BYTES || f.kind == KIND_LIST_MSG) {
+                        line("                        if (result." + f.name + " == null) {");
+                        line("                            result." + f.name + " = new java.util.ArrayList<>();");
+                        line("                        }");
+                        line("                        result." + f.name + ".add(v);");
+                    } else {
+                        line("                        result." + f.name + " = v;");
+                    }
+                    line("                    }");
+                    line("                    break;");
+                    line("                }");
+                }
+                line("            }");
+                line("            return true;");
+                line("        }");
+            }
+            line("");
+            line("        @Override");
+            line("        protected " + type + " getResult() {");
+            line("            return result;");
+            line("        }");
+            line("    }");
+        }
+
+        private void writeFixCallback(int kind, String method, String valueType) {
+            if (!has(kind)) {
+                return;
+            }
+            line("");
+            line("        @Override");
+            line("        public boolean " + method + "(int index, " + valueType + " value) {");
+            line("            switch (index) {");
+            for (FieldInfo f : fields) {
+                if (f.kind == kind) {
+                    line("                case " + f.index + ":");
+                    line("                    result." + f.name + " = value;");
+                    line("                    break;");
+                }
+            }
+            line("            }");
+            line("            return true;");
+            line("        }");
+        }
+    }
+}
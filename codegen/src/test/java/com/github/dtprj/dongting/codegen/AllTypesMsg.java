@@ -0,0 +1,69 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import com.github.dtprj.dongting.codec.Encodable;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.PbField;
+import com.github.dtprj.dongting.codec.PbMessage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author huangli
+ */
+@PbMessage
+public class AllTypesMsg implements Encodable {
+    @PbField(index = 1)
+    int i1;
+    @PbField(index = 2, fixed = true)
+    int f2;
+    @PbField(index = 3)
+    long l3;
+    @PbField(index = 4, fixed = true)
+    long f4;
+    @PbField(index = 5)
+    boolean b5;
+    @PbField(index = 6)
+    byte[] bs6;
+    @PbField(index = 7)
+    NestedMsg n7;
+    @PbField(index = 8)
+    String s8;
+    @PbField(index = 9)
+    List<String> ls9;
+    @PbField(index = 10)
+    List<byte[]> lbs10;
+    @PbField(index = 11)
+    ArrayList<NestedMsg> ln11;
+    @PbField(index = 200)
+    int i200;
+
+    // not encoded
+    int other;
+
+    @Override
+    public boolean encode(EncodeContext context, ByteBuffer destBuffer) {
+        return AllTypesMsgCodec.encode(context, destBuffer, this);
+    }
+
+    @Override
+    public int actualSize() {
+        return AllTypesMsgCodec.actualSize(this);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import com.github.dtprj.dongting.codec.Encodable;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.PbField;
+import com.github.dtprj.dongting.codec.PbMessage;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The same wire format as com.github.dtprj.dongting.dtkv.KvReq.
+ *
+ * @author huangli
+ */
+@PbMessage
+public class KvReqMsg implements Encodable {
+    @PbField(index = 1)
+    int groupId;
+    @PbField(index = 2)
+    byte[] key;
+    @PbField(index = 3)
+    byte[] value;
+    @PbField(index = 4)
+    int keysSize;
+    @PbField(index = 5)
+    List<byte[]> keys;
+    @PbField(index = 6)
+    int valuesSize;
+    @PbField(index = 7)
+    List<byte[]> values;
+    @PbField(index = 8)
+    byte[] expectValue;
+
+    @Override
+    public boolean encode(EncodeContext context, ByteBuffer destBuffer) {
+        return KvReqMsgCodec.encode(context, destBuffer, this);
+    }
+
+    @Override
+    public int actualSize() {
+        return KvReqMsgCodec.actualSize(this);
+    }
+}
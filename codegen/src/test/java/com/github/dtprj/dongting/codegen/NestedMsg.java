@@ -0,0 +1,46 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import com.github.dtprj.dongting.codec.Encodable;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.PbField;
+import com.github.dtprj.dongting.codec.PbMessage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author huangli
+ */
+@PbMessage
+public class NestedMsg implements Encodable {
+    @PbField(index = 1)
+    int i1;
+    @PbField(index = 2, fixed = true)
+    long f2;
+    @PbField(index = 3)
+    boolean b3;
+
+    @Override
+    public boolean encode(EncodeContext context, ByteBuffer destBuffer) {
+        return NestedMsgCodec.encode(context, destBuffer, this);
+    }
+
+    @Override
+    public int actualSize() {
+        return NestedMsgCodec.actualSize(this);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import com.github.dtprj.dongting.buf.ByteBufferPool;
+import com.github.dtprj.dongting.buf.DefaultPoolFactory;
+import com.github.dtprj.dongting.buf.RefBufferFactory;
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.Encodable;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.PbCallback;
+import com.github.dtprj.dongting.codec.PbParser;
+import com.github.dtprj.dongting.codec.PbUtil;
+import com.github.dtprj.dongting.common.ByteArray;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.dtkv.KvReq;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class PbCodecProcessorTest {
+
+    private static AllTypesMsg createMsg() {
+        AllTypesMsg m = new AllTypesMsg();
+        m.i1 = -1;
+        m.f2 = 100;
+        m.l3 = Long.MAX_VALUE;
+        m.f4 = -2;
+        m.b5 = true;
+        m.bs6 = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        m.n7 = new NestedMsg();
+        m.n7.i1 = 300;
+        m.n7.f2 = 12345678901L;
+        m.n7.b3 = true;
+        m.s8 = "abc\u00e9\u4e2d\ud83d\ude00";
+        m.ls9 = List.of("x", "\u4e2d\u6587");
+        m.lbs10 = List.of(new byte[]{1}, new byte[300]);
+        m.ln11 = new ArrayList<>();
+        NestedMsg n = new NestedMsg();
+        n.i1 = 1;
+        m.ln11.add(n);
+        n = new NestedMsg();
+        n.b3 = true;
+        m.ln11.add(n);
+        m.i200 = 7;
+        m.other = 1;
+        return m;
+    }
+
+    private static ByteBuffer encode(Encodable m, int bufSize) {
+        ByteBuffer result = ByteBuffer.allocate(m.actualSize());
+        EncodeContext c = new EncodeContext(null);
+        ByteBuffer buf = ByteBuffer.allocate(bufSize);
+        while (true) {
+            boolean finish = m.encode(c, buf);
+            buf.flip();
+            result.put(buf);
+            buf.clear();
+            if (finish) {
+                break;
+            }
+        }
+        assertEquals(EncodeContext.STAGE_END, c.stage);
+        assertEquals(0, result.remaining());
+        result.flip();
+        return result;
+    }
+
+    private static AllTypesMsg decode(ByteBuffer buf, int step) {
+        return (AllTypesMsg) decode(buf, step, new AllTypesMsgCodec.Callback());
+    }
+
+    private static Object decode(ByteBuffer buf, int step, PbCallback<?> callback) {
+        ByteBufferPool pool = new DefaultPoolFactory().createPool(new Timestamp(), false);
+        DecodeContext context = new DecodeContext();
+        context.setHeapPool(new RefBufferFactory(pool, 128));
+        PbParser parser = new PbParser();
+        parser.prepareNext(context, callback, buf.remaining());
+        Object result = null;
+        while (buf.hasRemaining()) {
+            ByteBuffer slice = buf.slice();
+            slice.limit(Math.min(step, buf.remaining()));
+            result = parser.parse(slice);
+            buf.position(buf.position() + slice.position());
+        }
+        assertTrue(parser.isFinished());
+        return result;
+    }
+
+    private static void check(AllTypesMsg expect, AllTypesMsg m) {
+        assertEquals(expect.i1, m.i1);
+        assertEquals(expect.f2, m.f2);
+        assertEquals(expect.l3, m.l3);
+        assertEquals(expect.f4, m.f4);
+        assertEquals(expect.b5, m.b5);
+        assertArrayEquals(expect.bs6, m.bs6);
+        assertEquals(expect.n7.i1, m.n7.i1);
+        assertEquals(expect.n7.f2, m.n7.f2);
+        assertEquals(expect.n7.b3, m.n7.b3);
+        assertEquals(expect.s8, m.s8);
+        assertEquals(expect.ls9, m.ls9);
+        assertEquals(expect.lbs10.size(), m.lbs10.size());
+        for (int i = 0; i < expect.lbs10.size(); i++) {
+            assertArrayEquals(expect.lbs10.get(i), m.lbs10.get(i));
+        }
+        assertEquals(expect.ln11.size(), m.ln11.size());
+        for (int i = 0; i < expect.ln11.size(); i++) {
+            assertEquals(expect.ln11.get(i).i1, m.ln11.get(i).i1);
+            assertEquals(expect.ln11.get(i).f2, m.ln11.get(i).f2);
+            assertEquals(expect.ln11.get(i).b3, m.ln11.get(i).b3);
+        }
+        assertEquals(expect.i200, m.i200);
+        assertEquals(0, m.other);
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        AllTypesMsg m = createMsg();
+        // the primitive field is not split, so the buffer should not smaller than the max size of one field
+        for (int bufSize : new int[]{13, 16, 30, 1024}) {
+            ByteBuffer buf = encode(m, bufSize);
+            check(m, decode(buf.duplicate(), 1));
+            check(m, decode(buf.duplicate(), 5));
+            check(m, decode(buf, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testSameAsHandWritten() {
+        NestedMsg n = new NestedMsg();
+        n.i1 = 300;
+        n.f2 = 12345678901L;
+        n.b3 = true;
+        ByteBuffer expect = ByteBuffer.allocate(64);
+        PbUtil.writeUnsignedInt32(expect, 1, n.i1);
+        PbUtil.writeFix64(expect, 2, n.f2);
+        PbUtil.writeUnsignedInt32(expect, 3, 1);
+        expect.flip();
+        assertEquals(expect.remaining(), n.actualSize());
+
+        // fast path
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        assertTrue(n.encode(new EncodeContext(null), buf));
+        buf.flip();
+        assertEquals(expect, buf);
+
+        // slow path
+        buf = ByteBuffer.allocate(64);
+        buf.limit(3);
+        EncodeContext c = new EncodeContext(null);
+        assertFalse(n.encode(c, buf));
+        buf.limit(64);
+        assertTrue(n.encode(c, buf));
+        buf.flip();
+        assertEquals(expect, buf);
+    }
+
+    @Test
+    public void testSameAsKvReq() {
+        ArrayList<byte[]> keys = new ArrayList<>(List.of("k1".getBytes(), "k2".getBytes()));
+        ArrayList<ByteArray> values = new ArrayList<>(List.of(new ByteArray("v1".getBytes()),
+                new ByteArray(new byte[200])));
+        KvReq req = new KvReq(5, "key".getBytes(), new ByteArray("value".getBytes()), keys, values,
+                new ByteArray("expect".getBytes()));
+        KvReqMsg m = new KvReqMsg();
+        m.groupId = 5;
+        m.key = "key".getBytes();
+        m.value = "value".getBytes();
+        m.keysSize = 2;
+        m.keys = keys;
+        m.valuesSize = 2;
+        m.values = List.of("v1".getBytes(), new byte[200]);
+        m.expectValue = "expect".getBytes();
+
+        assertEquals(req.actualSize(), m.actualSize());
+        ByteBuffer expect = encode(req, 1024);
+        for (int bufSize : new int[]{5, 17, 1024}) {
+            assertEquals(expect, encode(m, bufSize));
+        }
+
+        KvReqMsg m2 = (KvReqMsg) decode(expect, 3, new KvReqMsgCodec.Callback());
+        assertEquals(5, m2.groupId);
+        assertArrayEquals(m.key, m2.key);
+        assertArrayEquals(m.value, m2.value);
+        assertEquals(2, m2.keysSize);
+        assertArrayEquals(m.keys.get(1), m2.keys.get(1));
+        assertEquals(2, m2.valuesSize);
+        assertArrayEquals(m.values.get(1), m2.values.get(1));
+        assertArrayEquals(m.expectValue, m2.expectValue);
+    }
+
+    @Test
+    public void testEmpty() {
+        AllTypesMsg m = new AllTypesMsg();
+        assertEquals(0, m.actualSize());
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        assertTrue(m.encode(new EncodeContext(null), buf));
+        assertEquals(0, buf.position());
+    }
+}
@@ -96,7 +96,7 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
 
     @Override
     public FiberFuture<Object> exec(long index, RaftInput input) {
-        FiberFuture<Object> f = mainFiberGroup.newFuture("dtkv-exec");
+        FiberFuture<Object> f = mainFiberGroup.newRecyclableFuture("dtkv-exec");
         if (useSeparateExecutor) {
             dtkvExecutor.execute(() -> {
                 try {
@@ -55,7 +55,7 @@ class KvImpl {
 
     // When iterating over this map, we need to divide the process into multiple steps,
     // with each step only accessing a portion of the map. Therefore, ConcurrentHashMap is needed here.
-    final ConcurrentHashMap<ByteArray, KvNodeHolder> map;
+    final ConcurrentHashMap<KvKey, KvNodeHolder> map;
 
 
     // for fast access root dir
@@ -76,8 +76,8 @@ class KvImpl {
         this.groupId = groupId;
         this.map = new ConcurrentHashMap<>(initCapacity, loadFactor);
         KvNodeEx n = new KvNodeEx(0, 0, 0, 0, true, null);
-        this.root = new KvNodeHolder(ByteArray.EMPTY, ByteArray.EMPTY, n, null);
-        this.map.put(ByteArray.EMPTY, root);
+        this.root = new KvNodeHolder(KvKey.EMPTY, n, null);
+        this.map.put(KvKey.EMPTY, root);
         ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
         readLock = lock.readLock();
         writeLock = lock.writeLock();
@@ -115,10 +115,10 @@ class KvImpl {
         readLock.lock();
         try {
             KvNodeHolder h;
-            if (key == null || key.getData().length == 0) {
+            if (key == null || key.actualSize() == 0) {
                 h = root;
             } else {
-                h = map.get(key);
+                h = map.get(new KvKey(key.getData()));
             }
             if (h == null) {
                 return KvResult.NOT_FOUND;
@@ -149,10 +149,10 @@ class KvImpl {
         List<KvResult> list;
         try {
             KvNodeHolder h;
-            if (key == null || key.getData().length == 0) {
+            if (key == null || key.actualSize() == 0) {
                 h = root;
             } else {
-                h = map.get(key);
+                h = map.get(new KvKey(key.getData()));
             }
             if (h == null) {
                 return new Pair<>(KvCodes.CODE_NOT_FOUND, null);
@@ -173,7 +173,7 @@ class KvImpl {
             }
             for (KvNodeHolder child : kvNode.children.values()) {
                 if (!child.latest.removed) {
-                    list.add(new KvResult(KvCodes.CODE_SUCCESS, child.latest, child.keyInDir));
+                    list.add(new KvResult(KvCodes.CODE_SUCCESS, child.latest, child.key.keyInDir()));
                 }
             }
         } finally {
@@ -202,11 +202,12 @@ class KvImpl {
         if (ck != KvCodes.CODE_SUCCESS) {
             return new KvResult(ck);
         }
+        byte[] bs = key.getData();
+        KvKey k = new KvKey(bs);
         KvNodeHolder parent;
-        int lastIndexOfSep = key.lastIndexOf(SEPARATOR);
+        int lastIndexOfSep = k.lastIndexOfSep();
         if (lastIndexOfSep > 0) {
-            ByteArray dirKey = key.sub(0, lastIndexOfSep);
-            parent = map.get(dirKey);
+            parent = map.get(new KvKey(bs, lastIndexOfSep));
             if (parent == null || parent.latest.removed) {
                 return new KvResult(KvCodes.CODE_PARENT_DIR_NOT_EXISTS);
             }
@@ -216,18 +217,18 @@ class KvImpl {
         } else {
             parent = root;
         }
-        KvNodeHolder h = map.get(key);
+        KvNodeHolder h = map.get(k);
         writeLock.lock();
         KvResult result;
         try {
             long timestamp = ts.getWallClockMillis();
             boolean newValueIsDir = data == null || data.length == 0;
             if (h == null) {
-                ByteArray keyInDir = key.sub(lastIndexOfSep + 1);
+                KvKey storeKey = k.toStoreKey(parent.key, lastIndexOfSep, newValueIsDir);
                 KvNodeEx newKvNode = new KvNodeEx(index, timestamp, index, timestamp, newValueIsDir, data);
-                h = new KvNodeHolder(key, keyInDir, newKvNode, parent);
-                map.put(key, h);
-                parent.latest.children.put(keyInDir, h);
+                h = new KvNodeHolder(storeKey, newKvNode, parent);
+                map.put(storeKey, h);
+                parent.latest.children.put(storeKey, h);
                 result = KvResult.SUCCESS;
             } else {
                 KvNodeEx oldNode = h.latest;
@@ -314,7 +315,7 @@ class KvImpl {
 
     private void removeFromMap(KvNodeHolder h) {
         map.remove(h.key);
-        h.parent.latest.children.remove(h.keyInDir);
+        h.parent.latest.children.remove(h.key);
     }
 
     void installSnapshotPut(EncodeStatus encodeStatus) {
@@ -326,19 +327,16 @@ class KvImpl {
             root.latest = n;
         } else {
             KvNodeHolder parent;
-            ByteArray key = new ByteArray(encodeStatus.keyBytes);
-            ByteArray keyInDir;
-            int lastIndexOfSep = key.lastIndexOf(SEPARATOR);
+            KvKey key = new KvKey(encodeStatus.keyBytes);
+            int lastIndexOfSep = key.lastIndexOfSep();
             if (lastIndexOfSep == -1) {
                 parent = root;
-                keyInDir = key;
             } else {
-                ByteArray dirKey = key.sub(0, lastIndexOfSep);
-                parent = map.get(dirKey);
-                keyInDir = key.sub(lastIndexOfSep + 1);
+                parent = map.get(new KvKey(encodeStatus.keyBytes, lastIndexOfSep));
             }
-            KvNodeHolder h = new KvNodeHolder(key, keyInDir, n, parent);
-            parent.latest.children.put(keyInDir, h);
+            key = key.toStoreKey(parent.key, lastIndexOfSep, n.isDir());
+            KvNodeHolder h = new KvNodeHolder(key, n, parent);
+            parent.latest.children.put(key, h);
             map.put(key, h);
         }
     }
@@ -373,7 +371,7 @@ class KvImpl {
         if (ck != KvCodes.CODE_SUCCESS) {
             return new KvResult(ck);
         }
-        KvNodeHolder h = map.get(key);
+        KvNodeHolder h = map.get(new KvKey(key.getData()));
         if (h == null) {
             return KvResult.NOT_FOUND;
         }
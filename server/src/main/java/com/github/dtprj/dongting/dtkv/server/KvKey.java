@@ -0,0 +1,207 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import com.github.dtprj.dongting.common.ByteArray;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The key of KvImpl.
+ * <p>
+ * The key created from request (flat key) contains all bytes of the key. The key of a value stored in KvImpl
+ * only contains the bytes after the last separator, and shares the prefix with the key of parent dir, so the keys
+ * do not duplicate their parents' bytes. The keys of dirs (far fewer than values) and top level keys are stored as
+ * flat keys, so the equality check of a stored key only walks one level in most cases. Flat keys and stored keys
+ * with same bytes are equal, and have same hash.
+ * <p>
+ * The 64-bit hash is computed once (8 bytes at a time), and the equality check compares the hash first, then
+ * compares the bytes with Arrays.equals() which is vectorized by JIT.
+ *
+ * @author huangli
+ */
+final class KvKey {
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long M = 0x9E3779B97F4A7C15L;
+
+    static final KvKey EMPTY = new KvKey(new byte[0]);
+
+    // null for flat keys
+    final KvKey parent;
+    // all bytes of the key for flat keys, or the bytes after the last separator for stored keys
+    private final byte[] bytes;
+    private final int bytesLen;
+    // the total length of the key
+    final int len;
+    final long hash64;
+    private final int hash;
+
+    KvKey(byte[] data) {
+        this(data, data.length);
+    }
+
+    /**
+     * create flat key use first len bytes of data.
+     */
+    KvKey(byte[] data, int len) {
+        this(null, data, len, len, hash64(data, len));
+    }
+
+    private KvKey(KvKey parent, byte[] bytes, int bytesLen, int len, long hash64) {
+        this.parent = parent;
+        this.bytes = bytes;
+        this.bytesLen = bytesLen;
+        this.len = len;
+        this.hash64 = hash64;
+        this.hash = (int) (hash64 ^ (hash64 >>> 32));
+    }
+
+    static long hash64(byte[] b, int len) {
+        long h = len * M;
+        int i = 0;
+        for (; i + 8 <= len; i += 8) {
+            long w = (long) LONG_VIEW.get(b, i);
+            h = Long.rotateLeft(h ^ (w * M), 31) * 0xBF58476D1CE4E5B9L;
+        }
+        long w = 0;
+        for (int shift = 0; i < len; i++, shift += 8) {
+            w |= (b[i] & 0xFFL) << shift;
+        }
+        h ^= w * M;
+        // murmur3 fmix64
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * return the index of last separator of the flat key, or -1 if not found.
+     */
+    int lastIndexOfSep() {
+        byte[] bs = bytes;
+        for (int i = bytesLen - 1; i >= 0; i--) {
+            if (bs[i] == KvImpl.SEPARATOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * create the key to store in KvImpl from the flat key, the prefix bytes of value key are shared with the
+     * parent dir key.
+     */
+    KvKey toStoreKey(KvKey parentKey, int lastIndexOfSep, boolean dir) {
+        if (lastIndexOfSep < 0 || dir) {
+            if (bytesLen == bytes.length) {
+                return this;
+            }
+            return new KvKey(null, Arrays.copyOf(bytes, bytesLen), bytesLen, len, hash64);
+        }
+        byte[] seg = Arrays.copyOfRange(bytes, lastIndexOfSep + 1, bytesLen);
+        return new KvKey(parentKey, seg, seg.length, len, hash64);
+    }
+
+    /**
+     * the key in parent dir of the stored key.
+     */
+    ByteArray keyInDir() {
+        if (parent != null) {
+            return new ByteArray(bytes, 0, bytesLen);
+        }
+        int sep = lastIndexOfSep();
+        return new ByteArray(bytes, sep + 1, bytesLen - sep - 1);
+    }
+
+    byte[] toBytes() {
+        if (parent == null && bytesLen == bytes.length) {
+            return bytes;
+        }
+        byte[] result = new byte[len];
+        int end = len;
+        KvKey k = this;
+        while (true) {
+            int start = end - k.bytesLen;
+            System.arraycopy(k.bytes, 0, result, start, k.bytesLen);
+            k = k.parent;
+            if (k == null) {
+                return result;
+            }
+            end = start - 1;
+            result[end] = KvImpl.SEPARATOR;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof KvKey)) {
+            return false;
+        }
+        KvKey k = (KvKey) obj;
+        if (hash64 != k.hash64 || len != k.len) {
+            return false;
+        }
+        if (parent == null) {
+            if (k.parent == null) {
+                return Arrays.equals(bytes, 0, bytesLen, k.bytes, 0, k.bytesLen);
+            } else {
+                return matchFlat(k, bytes, len);
+            }
+        } else if (k.parent == null) {
+            return matchFlat(this, k.bytes, k.len);
+        } else {
+            return Arrays.equals(bytes, 0, bytesLen, k.bytes, 0, k.bytesLen) && parent.equals(k.parent);
+        }
+    }
+
+    // check whether the stored key k has same bytes as flat[0, end)
+    private static boolean matchFlat(KvKey k, byte[] flat, int end) {
+        while (true) {
+            int start = end - k.bytesLen;
+            if (start < 0 || !Arrays.equals(k.bytes, 0, k.bytesLen, flat, start, end)) {
+                return false;
+            }
+            k = k.parent;
+            if (k == null) {
+                return start == 0;
+            }
+            end = start - 1;
+            if (end < 0 || flat[end] != KvImpl.SEPARATOR) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(toBytes());
+    }
+}
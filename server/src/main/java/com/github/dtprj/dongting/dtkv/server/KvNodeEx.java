@@ -15,7 +15,6 @@
  */
 package com.github.dtprj.dongting.dtkv.server;
 
-import com.github.dtprj.dongting.common.ByteArray;
 import com.github.dtprj.dongting.dtkv.KvNode;
 
 import java.util.HashMap;
@@ -24,7 +23,7 @@ import java.util.HashMap;
  * @author huangli
  */
 final class KvNodeEx extends KvNode {
-    final HashMap<ByteArray, KvNodeHolder> children;
+    final HashMap<KvKey, KvNodeHolder> children;
 
     KvNodeEx previous;
     boolean removed;
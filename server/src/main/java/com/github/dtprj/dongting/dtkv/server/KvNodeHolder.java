@@ -15,21 +15,17 @@
  */
 package com.github.dtprj.dongting.dtkv.server;
 
-import com.github.dtprj.dongting.common.ByteArray;
-
 /**
  * @author huangli
  */
 class KvNodeHolder {
-    final ByteArray key;
-    final ByteArray keyInDir;
+    final KvKey key;
     final KvNodeHolder parent;
 
     KvNodeEx latest;
 
-    public KvNodeHolder(ByteArray key, ByteArray keyInDir, KvNodeEx n, KvNodeHolder parent) {
+    public KvNodeHolder(KvKey key, KvNodeEx n, KvNodeHolder parent) {
         this.key = key;
-        this.keyInDir = keyInDir;
         this.latest = n;
         this.parent = parent;
     }
@@ -15,7 +15,6 @@
  */
 package com.github.dtprj.dongting.dtkv.server;
 
-import com.github.dtprj.dongting.common.ByteArray;
 import com.github.dtprj.dongting.common.IndexedQueue;
 import com.github.dtprj.dongting.dtkv.KvNode;
 import com.github.dtprj.dongting.fiber.FiberFuture;
@@ -42,7 +41,7 @@ class KvSnapshot extends Snapshot {
 
     private final Iterator<KvNodeHolder> iterator;
     private final IndexedQueue<KvNodeHolder> stack = new IndexedQueue<>(16);
-    private final HashSet<ByteArray> processedDirs = new HashSet<>();
+    private final HashSet<KvKey> processedDirs = new HashSet<>();
     private KvNode currentKvNode;
 
     private final EncodeStatus encodeStatus = new EncodeStatus();
@@ -108,7 +107,7 @@ class KvSnapshot extends Snapshot {
             if (Objects.requireNonNull(n).isDir()) {
                 processedDirs.add(h.key);
             }
-            encodeStatus.keyBytes = h.key.getData();
+            encodeStatus.keyBytes = h.key.toBytes();
             encodeStatus.valueBytes = n.getData();
             encodeStatus.createIndex = n.getCreateIndex();
             encodeStatus.createTime = n.getCreateTime();
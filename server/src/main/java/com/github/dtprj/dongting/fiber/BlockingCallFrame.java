@@ -0,0 +1,102 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Run a blocking call out of the dispatcher thread, and resume the fiber with the result.
+ * On JDK 21+ the call runs in a new virtual thread, so the concurrency of blocking io is not limited by the
+ * size of a thread pool. On older JDK the call runs in the fallback executor.
+ *
+ * @author huangli
+ */
+public abstract class BlockingCallFrame<O> extends FiberFrame<O> {
+    private static final DtLog log = DtLogs.getLogger(BlockingCallFrame.class);
+
+    private static final ExecutorService VIRTUAL_THREAD_EXECUTOR = createVirtualThreadExecutor();
+
+    private final Executor fallbackExecutor;
+
+    public BlockingCallFrame(Executor fallbackExecutor) {
+        this.fallbackExecutor = fallbackExecutor;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        if (DtUtil.javaVersion() < 21) {
+            return null;
+        }
+        try {
+            // the project is compiled with JDK 11 api
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Throwable e) {
+            log.warn("can't create virtual thread executor, use fallback executor: {}", e.toString());
+            return null;
+        }
+    }
+
+    public static boolean isVirtualThreadEnabled() {
+        return VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    @Override
+    public final FrameCallResult execute(Void input) {
+        FiberFuture<O> f = call(getFiberGroup(), fallbackExecutor, this::callInBlockingThread);
+        return f.await(this::afterCall);
+    }
+
+    /**
+     * Run the blocking call in the same way as this frame, for callers that need a FiberFuture instead of
+     * a frame (or don't wait the result at all). Should be called in dispatcher thread.
+     */
+    public static <T> FiberFuture<T> call(FiberGroup group, Executor fallbackExecutor, Callable<T> callable) {
+        FiberFuture<T> f = group.newFuture("blockingCall");
+        Executor executor = VIRTUAL_THREAD_EXECUTOR == null ? fallbackExecutor : VIRTUAL_THREAD_EXECUTOR;
+        try {
+            executor.execute(() -> {
+                try {
+                    f.fireComplete(callable.call());
+                } catch (Throwable e) {
+                    f.fireCompleteExceptionally(e);
+                }
+            });
+        } catch (Throwable e) {
+            log.error("submit blocking task fail", e);
+            f.completeExceptionally(e);
+        }
+        return f;
+    }
+
+    /**
+     * run in virtual thread or the fallback executor, should not access the fiber states.
+     */
+    protected abstract O callInBlockingThread() throws Exception;
+
+    /**
+     * run in dispatcher thread after the blocking call finished.
+     */
+    protected FrameCallResult afterCall(O result) {
+        setResult(result);
+        return Fiber.frameReturn();
+    }
+}
@@ -33,9 +33,11 @@ import com.github.dtprj.dongting.net.PerfConsts;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
-import java.util.PriorityQueue;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * @author huangli
@@ -51,9 +53,10 @@ public class Dispatcher extends AbstractLifeCircle {
     private final ArrayList<FiberGroup> groups = new ArrayList<>();
     private final ArrayList<FiberGroup> finishedGroups = new ArrayList<>();
     final IndexedQueue<FiberGroup> readyGroups = new IndexedQueue<>(8);
-    private final PriorityQueue<Fiber> scheduleQueue = new PriorityQueue<>(this::compareFiberByScheduleTime);
 
     final Timestamp ts = new Timestamp();
+    private final TimingWheel timingWheel = new TimingWheel(ts.getNanoTime());
+    private final Consumer<Fiber> expireCallback = this::onScheduleExpired;
 
     final DispatcherThread thread;
 
@@ -68,6 +71,20 @@ public class Dispatcher extends AbstractLifeCircle {
 
     int round;
 
+    private boolean profile;
+    private FiberProfiler profiler;
+
+    DispatcherBalancer balancer;
+    private long lastStealNanos;
+
+    // utilization statistics, updated in dispatcher thread
+    private static final long STAT_WINDOW_NANOS = 100_000_000L;
+    private long statWindowStartNanos;
+    private long statIdleNanos;
+    private volatile float utilization;
+    private volatile long migrateInCount;
+    private volatile long migrateOutCount;
+
     static {
         try {
             MethodHandles.Lookup l = MethodHandles.lookup();
@@ -147,6 +164,8 @@ public class Dispatcher extends AbstractLifeCircle {
         try {
             ArrayList<FiberQueueTask> localData = new ArrayList<>(64);
             ts.refresh();
+            statWindowStartNanos = ts.getNanoTime();
+            lastStealNanos = ts.getNanoTime();
             while (!isShouldStopPlain() || !groups.isEmpty()) {
                 runImpl(localData);
                 if (isShouldStopPlain() && stopTimeout != null && stopTimeout.isTimeout(ts)) {
@@ -161,6 +180,11 @@ public class Dispatcher extends AbstractLifeCircle {
             }
             shareQueue.shutdown();
             runImpl(localData);
+            // a group may be adopted in the last round, see adoptGroup()
+            while (!groups.isEmpty()) {
+                runImpl(localData);
+                round++;
+            }
             log.info("fiber dispatcher exit: {}", thread.getName());
         } catch (Throwable e) {
             SHOULD_STOP.setVolatile(this, true);
@@ -175,14 +199,30 @@ public class Dispatcher extends AbstractLifeCircle {
         fill(ts, localData);
         PerfCallback c = perfCallback;
         long start = c.takeTime(PerfConsts.FIBER_D_WORK, ts);
+        profile = c.accept(PerfConsts.FIBER_D_EXEC);
+        if (profile && profiler == null) {
+            profiler = new FiberProfiler(c);
+        }
         processScheduleFibers();
         for (int len = localData.size(), i = 0; i < len; i++) {
+            FiberQueueTask r = localData.get(i);
+            FiberGroup g = r.ownerGroup;
+            if (g != null && g.dispatcher != this) {
+                forwardTask(g, r);
+                continue;
+            }
             try {
-                FiberQueueTask r = localData.get(i);
                 r.run();
             } catch (Throwable e) {
                 log.error("dispatcher run task fail", e);
             }
+            if (g != null) {
+                g.removePendingTask();
+                if (g.isShouldStopPlain() && !g.finished) {
+                    // the pending task may stop the group from finishing, so check it again
+                    g.makeGroupReady();
+                }
+            }
         }
         localData.clear();
 
@@ -199,6 +239,7 @@ public class Dispatcher extends AbstractLifeCircle {
 
         // 60 seconds clean once
         cleanPool(60_000_000_000L);
+        updateUtilization();
 
         if (c.accept(PerfConsts.FIBER_D_WORK) || c.accept(PerfConsts.FIBER_D_POLL)) {
             perfCallback.refresh(ts);
@@ -209,27 +250,143 @@ public class Dispatcher extends AbstractLifeCircle {
     }
 
     private void processScheduleFibers() {
+        timingWheel.advance(ts.getNanoTime(), expireCallback);
+    }
+
+    private void onScheduleExpired(Fiber f) {
+        if (f.fiberGroup.finished) {
+            if (!f.daemon) {
+                BugLog.getLog().error("group finished, but suspend fiber is not daemon: {}", f.getName());
+            }
+            return;
+        }
+        if (f.source != null) {
+            f.source.removeWaiter(f);
+            f.source.prepare(f, true);
+            f.source = null;
+        }
+        f.cleanSchedule();
+        f.fiberGroup.tryMakeFiberReady(f, false);
+    }
+
+    private void updateUtilization() {
         long now = ts.getNanoTime();
-        PriorityQueue<Fiber> scheduleQueue = this.scheduleQueue;
-        while (true) {
-            Fiber f = scheduleQueue.peek();
-            if (f == null || f.scheduleNanoTime - now > 0) {
-                break;
-            }
-            scheduleQueue.poll();
-            if (f.fiberGroup.finished) {
-                if (!f.daemon) {
-                    BugLog.getLog().error("group finished, but suspend fiber is not daemon: {}", f.getName());
+        long window = now - statWindowStartNanos;
+        if (window >= STAT_WINDOW_NANOS) {
+            utilization = Math.max(0f, 1f - (float) statIdleNanos / window);
+            statWindowStartNanos = now;
+            statIdleNanos = 0;
+        }
+    }
+
+    private void tryStealGroup() {
+        long now = ts.getNanoTime();
+        if (now - lastStealNanos < balancer.getStealIntervalNanos() || isShouldStopPlain()) {
+            return;
+        }
+        lastStealNanos = now;
+        Dispatcher victim = balancer.selectVictim(this);
+        if (victim != null) {
+            victim.shareQueue.offer(new FiberQueueTask(null) {
+                @Override
+                protected void run() {
+                    victim.releaseGroup(Dispatcher.this);
                 }
+            });
+        }
+    }
+
+    private void releaseGroup(Dispatcher thief) {
+        if (isShouldStopPlain() || groups.size() < 2) {
+            return;
+        }
+        FiberGroup g = selectGroupToRelease();
+        if (g == null) {
+            return;
+        }
+        ArrayList<Fiber> timerFibers = new ArrayList<>();
+        g.forEachFiber(f -> {
+            if (f.timerLevel >= 0) {
+                timingWheel.remove(f);
+                timerFibers.add(f);
+            }
+        });
+        boolean ready = g.ready;
+        if (ready) {
+            for (int i = 0, len = readyGroups.size(); i < len; i++) {
+                FiberGroup x = readyGroups.removeFirst();
+                if (x != g) {
+                    readyGroups.addLast(x);
+                }
+            }
+            g.ready = false;
+        }
+        groups.remove(g);
+        // tasks fired after this will be sent to the new dispatcher (see FiberQueue.offer()), and the tasks
+        // in the queue of this dispatcher (include the tasks offered by the producers which read the old
+        // dispatcher) will be forwarded. they are pending tasks of the group, so the group keeps unfinished.
+        g.dispatcher = thief;
+        migrateOutCount++;
+        boolean b = thief.shareQueue.offer(new FiberQueueTask(null) {
+            @Override
+            protected void run() {
+                thief.adoptGroup(g, timerFibers, ready);
+                thief.migrateInCount++;
+                thief.perfCallback.fire(PerfConsts.FIBER_C_GROUP_MIGRATE);
+            }
+        });
+        if (b) {
+            log.info("fiber group {} migrate from {} to {}", g.getName(), thread.getName(), thief.thread.getName());
+        } else {
+            // the thief is stopped
+            g.dispatcher = this;
+            migrateOutCount--;
+            adoptGroup(g, timerFibers, ready);
+        }
+    }
+
+    private void forwardTask(FiberGroup g, FiberQueueTask r) {
+        // the group is migrated to other dispatcher, the task is still a pending task of the group,
+        // so the group keeps unfinished until the task run in the new dispatcher
+        if (!g.dispatcher.shareQueue.offer0(r)) {
+            g.removePendingTask();
+            BugLog.getLog().error("forward task to dispatcher {} failed, group={}, task={}",
+                    g.dispatcher.thread.getName(), g.getName(), r);
+        }
+    }
+
+    private FiberGroup selectGroupToRelease() {
+        FiberGroup result = null;
+        for (int i = 0, len = groups.size(); i < len; i++) {
+            FiberGroup g = groups.get(i);
+            if (!g.isMigratable() || g.finished || g.isShouldStopPlain()) {
                 continue;
             }
-            if (f.source != null) {
-                f.source.removeWaiter(f);
-                f.source.prepare(f, true);
-                f.source = null;
+            if (g.ready) {
+                return g;
+            }
+            if (result == null) {
+                result = g;
             }
-            f.cleanSchedule();
-            f.fiberGroup.tryMakeFiberReady(f, false);
+        }
+        return result;
+    }
+
+    private void adoptGroup(FiberGroup g, ArrayList<Fiber> timerFibers, boolean ready) {
+        groups.add(g);
+        for (int i = 0, len = timerFibers.size(); i < len; i++) {
+            Fiber f = timerFibers.get(i);
+            // the fiber may be signaled (and suspended again) before this task
+            if (f.timerLevel < 0 && f.scheduleTimeoutMillis > 0 && !f.ready && !f.finished) {
+                timingWheel.add(f);
+            }
+        }
+        if (ready) {
+            g.makeGroupReady();
+        }
+        if (isShouldStopPlain()) {
+            // this dispatcher is stopping, the groups are requested to shut down in doStop()
+            g.requestShutdown();
         }
     }
 
@@ -261,7 +418,11 @@ public class Dispatcher extends AbstractLifeCircle {
             }
             Fiber fiber = readyQueue.removeFirst();
             while (fiber != null) {
-                execFiber(g, fiber);
+                if (profile) {
+                    execFiberWithProfile(g, fiber);
+                } else {
+                    execFiber(g, fiber);
+                }
                 fiber = readyQueue.removeFirst();
             }
 
@@ -278,6 +439,14 @@ public class Dispatcher extends AbstractLifeCircle {
         }
     }
 
+    private void execFiberWithProfile(FiberGroup g, Fiber fiber) {
+        FiberProfiler p = profiler;
+        long start = System.nanoTime();
+        p.beforeExec(fiber, start);
+        execFiber(g, fiber);
+        p.afterExec(fiber, start, System.nanoTime());
+    }
+
     private void execFiber(FiberGroup g, Fiber fiber) {
         try {
             g.currentFiber = fiber;
@@ -478,7 +647,7 @@ public class Dispatcher extends AbstractLifeCircle {
     private void addToScheduleQueue(long millis, Fiber fiber) {
         if (millis > 0) {
             fiber.scheduleNanoTime = ts.getNanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
-            scheduleQueue.add(fiber);
+            timingWheel.add(fiber);
         }
     }
 
@@ -522,7 +691,7 @@ public class Dispatcher extends AbstractLifeCircle {
     }
 
     void removeFromScheduleQueue(Fiber f) {
-        scheduleQueue.remove(f);
+        timingWheel.remove(f);
     }
 
     void interrupt(Fiber fiber) {
@@ -545,7 +714,7 @@ public class Dispatcher extends AbstractLifeCircle {
             fiber.interrupted = false;
             fiber.inputEx = new FiberInterruptException("fiber is interrupted during wait " + str);
             if (fiber.scheduleTimeoutMillis > 0) {
-                scheduleQueue.remove(fiber);
+                timingWheel.remove(fiber);
                 fiber.cleanSchedule();
             }
             fiber.fiberGroup.tryMakeFiberReady(fiber, false);
@@ -559,13 +728,15 @@ public class Dispatcher extends AbstractLifeCircle {
             if (!poll || readyGroups.size() > 0) {
                 shareQueue.drainTo(localData);
             } else {
-                Fiber f = scheduleQueue.peek();
                 long t;
-                if (f != null) {
-                    t = Math.min(f.scheduleNanoTime - oldNanos, pollTimeout);
+                if (timingWheel.size() > 0) {
+                    t = Math.min(timingWheel.nextExpireNanos() - oldNanos, pollTimeout);
                 } else {
                     t = pollTimeout;
                 }
+                if (balancer != null) {
+                    tryStealGroup();
+                }
                 if (t > 0) {
                     PerfCallback c = perfCallback;
                     long startTime = c.takeTime(PerfConsts.FIBER_D_POLL, ts);
@@ -578,6 +749,7 @@ public class Dispatcher extends AbstractLifeCircle {
                         ts.refresh(1);
                     }
                     c.fireTime(PerfConsts.FIBER_D_POLL, startTime, 1, 0, ts);
+                    statIdleNanos += ts.getNanoTime() - oldNanos;
                     if (o != null) {
                         localData.add(o);
                     }
@@ -607,15 +779,51 @@ public class Dispatcher extends AbstractLifeCircle {
         }
     }
 
-    private int compareFiberByScheduleTime(Fiber f1, Fiber f2) {
-        long diff = f1.scheduleNanoTime - f2.scheduleNanoTime;
-        return diff < 0 ? -1 : diff > 0 ? 1 : 0;
-    }
-
     public Timestamp getTs() {
         return ts;
     }
 
+    /**
+     * Sample the statistics of fibers and wait sources, the profile is enabled only if the PerfCallback
+     * accepts FIBER_D_EXEC, otherwise the result is empty.
+     *
+     * @param reset reset the statistics after sample
+     */
+    public CompletableFuture<List<FiberStat>> sampleFiberStats(boolean reset) {
+        CompletableFuture<List<FiberStat>> f = new CompletableFuture<>();
+        boolean b = shareQueue.offer(new FiberQueueTask(null) {
+            @Override
+            protected void run() {
+                f.complete(profiler == null ? Collections.emptyList() : profiler.snapshot(reset));
+            }
+        });
+        if (!b) {
+            f.completeExceptionally(new FiberException("dispatcher already stopped"));
+        }
+        return f;
+    }
+
+    /**
+     * the ratio of the time not spent in polling, in the last statistics window (100ms).
+     */
+    public float getUtilization() {
+        return utilization;
+    }
+
+    /**
+     * the count of fiber groups migrated from other dispatchers by work stealing.
+     */
+    public long getMigrateInCount() {
+        return migrateInCount;
+    }
+
+    /**
+     * the count of fiber groups migrated to other dispatchers by work stealing.
+     */
+    public long getMigrateOutCount() {
+        return migrateOutCount;
+    }
+
     private boolean isShouldStopPlain() {
         return (boolean) SHOULD_STOP.get(this);
     }
@@ -0,0 +1,115 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooperative work stealing between dispatchers. When a dispatcher is idle, it checks the utilization of other
+ * dispatchers, and request the busiest one to hand over a fiber group. The group is detached by the victim
+ * between rounds and adopted by the thief, so a group is always executed by one thread at a time.
+ * Only the groups marked as migratable (see FiberGroup.setMigratable()) can be migrated, and the victim always
+ * keeps at least one group.
+ *
+ * <p>The balancer should be created before the dispatchers started, and all dispatchers should be stopped
+ * together.
+ *
+ * <p>This is a library hook for the dispatchers and groups created by the user. RaftServer never creates a
+ * balancer and never marks the raft groups as migratable, because the raft code keeps the pools and the
+ * Timestamp of the DispatcherThread (for example RaftStatusImpl holds the Timestamp of its dispatcher).
+ *
+ * @author huangli
+ */
+public class DispatcherBalancer {
+
+    private final Dispatcher[] dispatchers;
+
+    private volatile float lowWatermark = 0.3f;
+    private volatile float highWatermark = 0.8f;
+    private volatile long stealIntervalNanos = TimeUnit.MILLISECONDS.toNanos(200);
+
+    public DispatcherBalancer(Dispatcher... dispatchers) {
+        this.dispatchers = dispatchers.clone();
+        for (Dispatcher d : dispatchers) {
+            if (d.balancer != null) {
+                throw new FiberException("dispatcher already has a balancer: " + d.thread.getName());
+            }
+            d.balancer = this;
+        }
+    }
+
+    /**
+     * called by idle dispatcher.
+     */
+    Dispatcher selectVictim(Dispatcher thief) {
+        if (thief.getUtilization() > lowWatermark) {
+            return null;
+        }
+        Dispatcher victim = null;
+        float max = highWatermark;
+        for (Dispatcher d : dispatchers) {
+            if (d != thief && d.getUtilization() >= max) {
+                max = d.getUtilization();
+                victim = d;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * the total count of group migrations.
+     */
+    public long getMigrationCount() {
+        long sum = 0;
+        for (Dispatcher d : dispatchers) {
+            sum += d.getMigrateInCount();
+        }
+        return sum;
+    }
+
+    public float getLowWatermark() {
+        return lowWatermark;
+    }
+
+    /**
+     * a dispatcher try to steal group only if its utilization is not higher than this value, default 0.3.
+     */
+    public void setLowWatermark(float lowWatermark) {
+        this.lowWatermark = lowWatermark;
+    }
+
+    public float getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * a dispatcher may be stolen only if its utilization is not lower than this value, default 0.8.
+     */
+    public void setHighWatermark(float highWatermark) {
+        this.highWatermark = highWatermark;
+    }
+
+    long getStealIntervalNanos() {
+        return stealIntervalNanos;
+    }
+
+    /**
+     * the min interval of steal request of each dispatcher, default 200ms.
+     */
+    public void setStealIntervalMillis(long stealIntervalMillis) {
+        this.stealIntervalNanos = TimeUnit.MILLISECONDS.toNanos(stealIntervalMillis);
+    }
+}
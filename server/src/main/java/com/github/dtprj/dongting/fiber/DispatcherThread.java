@@ -28,6 +28,11 @@ public final class DispatcherThread extends Thread {
     private ByteBufferPool directPool;
     private RefBufferFactory heapPool;
 
+    static final int MAX_FREE_FUTURES = 1024;
+    // free list of recyclable futures, only accessed in this thread
+    private FiberFuture<?> freeFutures;
+    private int freeFutureCount;
+
     DispatcherThread(Runnable r, String name) {
         super(r, name);
     }
@@ -48,6 +53,37 @@ public final class DispatcherThread extends Thread {
         return currentDispatcherThread().currentGroup.currentFiber;
     }
 
+    @SuppressWarnings("unchecked")
+    <T> FiberFuture<T> borrowFuture(String name, FiberGroup group) {
+        FiberFuture<T> f = (FiberFuture<T>) freeFutures;
+        if (f == null) {
+            return new FiberFuture<>(name, group, true);
+        }
+        freeFutures = f.nextFree;
+        freeFutureCount--;
+        f.nextFree = null;
+        f.inPool = false;
+        f.generation++;
+        f.name = name;
+        f.fiberGroup = group;
+        return f;
+    }
+
+    void releaseFuture(FiberFuture<?> f) {
+        f.inPool = true;
+        if (freeFutureCount >= MAX_FREE_FUTURES) {
+            // drop it and let gc collect it
+            return;
+        }
+        f.nextFree = freeFutures;
+        freeFutures = f;
+        freeFutureCount++;
+    }
+
+    int getFreeFutureCount() {
+        return freeFutureCount;
+    }
+
     public ByteBufferPool getDirectPool() {
         return directPool;
     }
@@ -32,6 +32,17 @@ public class Fiber extends WaitSource {
     long scheduleTimeoutMillis;
     long scheduleNanoTime;
 
+    // used by TimingWheel
+    Fiber timerPrev;
+    Fiber timerNext;
+    int timerLevel = -1;
+    int timerSlot;
+
+    // used by FiberProfiler
+    FiberStat runStat;
+    FiberStat waitOn;
+    long suspendNanos;
+
     Fiber previousWaiter;
     Fiber nextWaiter;
 
@@ -15,46 +15,249 @@
  */
 package com.github.dtprj.dongting.fiber;
 
+import com.github.dtprj.dongting.common.DtUtil;
 import com.github.dtprj.dongting.common.IndexedQueue;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+import com.github.dtprj.dongting.queue.MpscLinkedQueue;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
- * This queue is unbound and only block consumer.
+ * This queue only block consumer. It is unbound by default.
+ * <p>
+ * The bounded channel (created by FiberGroup.newChannel(int)) limits the count of items in the channel, include
+ * the items offered by other threads but not taken by the consumer. The items offered by other threads are
+ * put into a lock-free staging queue, and moved to the channel in dispatcher thread by one task, so a burst of
+ * offers only wakeup the dispatcher once. If the accepted items can't be delivered because the group is finished
+ * or the dispatcher is stopped, they are passed to the drop callback of the channel.
  *
  * @author huangli
  */
 public class FiberChannel<T> {
+    private static final DtLog log = DtLogs.getLogger(FiberChannel.class);
     private final FiberGroup groupOfConsumer;
-    private final Dispatcher dispatcherOfConsumer;
     final IndexedQueue<T> queue;
     private final FiberCondition notEmptyCondition;
 
+    private final int capacity;
+    private final MpscLinkedQueue<T> stagingQueue;
+    private final FiberQueueTask drainTask;
+    private final Consumer<T> dropCallback;
+
+    @SuppressWarnings("unused")
+    private volatile int count;
+    // the owner of this flag is the only consumer of stagingQueue
+    @SuppressWarnings("unused")
+    private volatile int drainScheduled;
+
+    private static final VarHandle COUNT;
+    private static final VarHandle DRAIN_SCHEDULED;
+
+    public static final int OFFER_SUCCESS = 0;
+    public static final int OFFER_FULL = 1;
+    public static final int OFFER_CLOSED = 2;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            COUNT = lookup.findVarHandle(FiberChannel.class, "count", int.class);
+            DRAIN_SCHEDULED = lookup.findVarHandle(FiberChannel.class, "drainScheduled", int.class);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
     FiberChannel(FiberGroup groupOfConsumer) {
         this(groupOfConsumer, 64);
     }
 
     FiberChannel(FiberGroup groupOfConsumer, int initSize) {
+        this(groupOfConsumer, initSize, 0, null);
+    }
+
+    /**
+     * @param capacity the max item count of the channel, 0 means unbound
+     * @param dropCallback accept the items of bounded channel which can't be delivered, may be null
+     */
+    FiberChannel(FiberGroup groupOfConsumer, int initSize, int capacity, Consumer<T> dropCallback) {
+        DtUtil.checkNotNegative(capacity, "capacity");
         this.groupOfConsumer = groupOfConsumer;
-        this.dispatcherOfConsumer = groupOfConsumer.dispatcher;
         this.queue = new IndexedQueue<>(initSize);
         this.notEmptyCondition = groupOfConsumer.newCondition("FiberChannelNotEmpty");
+        this.capacity = capacity;
+        this.dropCallback = dropCallback;
+        if (capacity > 0) {
+            this.stagingQueue = MpscLinkedQueue.newInstance();
+            this.drainTask = new FiberQueueTask(groupOfConsumer) {
+                @Override
+                protected void run() {
+                    drainStagingQueue();
+                }
+            };
+        } else {
+            this.stagingQueue = null;
+            this.drainTask = null;
+        }
     }
 
+    /**
+     * Offer an item from any thread. Return false if the dispatcher is shutdown, the group is finished,
+     * or the bounded channel is full. For bounded channel, the item accepted may be passed to the drop callback
+     * later, if the group finished before it's taken.
+     */
     public boolean fireOffer(T data) {
-        return dispatcherOfConsumer.doInDispatcherThread(new FiberQueueTask(groupOfConsumer) {
+        return tryOffer(data) == OFFER_SUCCESS;
+    }
+
+    /**
+     * Same as fireOffer, but return OFFER_SUCCESS, OFFER_FULL (only for bounded channel) or OFFER_CLOSED, so the
+     * caller can tell why the item is not accepted.
+     */
+    public int tryOffer(T data) {
+        if (capacity > 0) {
+            if (groupOfConsumer.isFinishedVolatile()) {
+                return OFFER_CLOSED;
+            }
+            if (!tryAcquire()) {
+                return OFFER_FULL;
+            }
+            stagingQueue.offer(data);
+            scheduleDrain();
+            return OFFER_SUCCESS;
+        }
+        boolean b = groupOfConsumer.dispatcher.doInDispatcherThread(new FiberQueueTask(groupOfConsumer) {
             @Override
             protected void run() {
                 offer0(data);
             }
         });
+        return b ? OFFER_SUCCESS : OFFER_CLOSED;
     }
 
+    /**
+     * Offer an item in the consumer group. The item is always accepted, but it is counted in the capacity
+     * of the bounded channel.
+     */
     public void offer(T data) {
         groupOfConsumer.checkGroup();
+        if (capacity > 0) {
+            COUNT.getAndAddRelease(this, 1);
+        }
         offer0(data);
     }
 
+    private boolean tryAcquire() {
+        while (true) {
+            int c = (int) COUNT.getVolatile(this);
+            if (c >= capacity) {
+                return false;
+            }
+            if (COUNT.compareAndSet(this, c, c + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(int n) {
+        COUNT.getAndAddRelease(this, -n);
+    }
+
+    private void scheduleDrain() {
+        // the offer of staging queue is a release store, and the drainer resets the flag then checks the queue.
+        // without the fence this load may be reordered before the store, then the producer sees the flag set
+        // while the drainer sees the queue empty, and the item is stranded.
+        VarHandle.fullFence();
+        if ((int) DRAIN_SCHEDULED.getVolatile(this) == 0 && DRAIN_SCHEDULED.compareAndSet(this, 0, 1)) {
+            if (!groupOfConsumer.dispatcher.doInDispatcherThread(drainTask)) {
+                // the items staged by other producers (they return true since the flag is set) are dropped too
+                dropStaged();
+            }
+        }
+    }
+
+    private void drainStagingQueue() {
+        while (true) {
+            T data;
+            while ((data = stagingQueue.relaxedPoll()) != null) {
+                offer0(data);
+            }
+            // the producers offered before this point and saw the flag is set, then their items can be seen below,
+            // the fence pairs with the one in scheduleDrain()
+            DRAIN_SCHEDULED.setVolatile(this, 0);
+            VarHandle.fullFence();
+            if (stagingQueue.isEmpty() || !DRAIN_SCHEDULED.compareAndSet(this, 0, 1)) {
+                return;
+            }
+        }
+    }
+
+    // should be called with the DRAIN_SCHEDULED flag set
+    private void dropStaged() {
+        while (true) {
+            T data;
+            int n = 0;
+            while ((data = stagingQueue.relaxedPoll()) != null) {
+                drop(data);
+                n++;
+            }
+            if (n > 0) {
+                release(n);
+            }
+            DRAIN_SCHEDULED.setVolatile(this, 0);
+            VarHandle.fullFence();
+            if (stagingQueue.isEmpty() || !DRAIN_SCHEDULED.compareAndSet(this, 0, 1)) {
+                return;
+            }
+        }
+    }
+
+    private void drop(T data) {
+        if (dropCallback == null) {
+            log.warn("item of channel is dropped because the group is finished: {}", data);
+            return;
+        }
+        try {
+            dropCallback.accept(data);
+        } catch (Throwable e) {
+            log.error("drop callback error", e);
+        }
+    }
+
+    /**
+     * Called in dispatcher thread after the group finished, drop the items of bounded channel.
+     */
+    void dropAll() {
+        T data;
+        int n = 0;
+        while ((data = queue.removeFirst()) != null) {
+            drop(data);
+            n++;
+        }
+        if (n > 0) {
+            release(n);
+        }
+        // if the flag is set by a producer, its drain task will be rejected, and it drops the staged items
+        if (DRAIN_SCHEDULED.compareAndSet(this, 0, 1)) {
+            dropStaged();
+        }
+    }
+
+    /**
+     * the item count of the channel (include items offered but not moved into channel yet) if the channel is
+     * bounded, or -1 for unbound channel.
+     */
+    public int size() {
+        return capacity > 0 ? (int) COUNT.getVolatile(this) : -1;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
     void offer0(T data) {
         queue.addLast(data);
         if (queue.size() == 1) {
@@ -77,6 +280,9 @@ public class FiberChannel<T> {
         groupOfConsumer.checkGroup();
         T data = queue.removeFirst();
         if (data != null) {
+            if (capacity > 0) {
+                release(1);
+            }
             return Fiber.resume(data, resumePoint);
         } else {
             if (millis > 0) {
@@ -88,7 +294,11 @@ public class FiberChannel<T> {
     }
 
     private FrameCallResult afterTake(FrameCall<T> resumePoint) {
-        return Fiber.resume(queue.removeFirst(), resumePoint);
+        T data = queue.removeFirst();
+        if (data != null && capacity > 0) {
+            release(1);
+        }
+        return Fiber.resume(data, resumePoint);
     }
 
     /**
@@ -117,8 +327,13 @@ public class FiberChannel<T> {
 
     private FrameCallResult afterTakeAll(Collection<T> c, FrameCall<Void> resumePoint) {
         T data;
+        int n = 0;
         while ((data = queue.removeFirst()) != null) {
             c.add(data);
+            n++;
+        }
+        if (n > 0 && capacity > 0) {
+            release(n);
         }
         return Fiber.resume(null, resumePoint);
     }
@@ -35,10 +35,26 @@ public class FiberFuture<T> extends WaitSource {
     T execResult;
     Throwable execEx;
 
+    // the first simple callback is stored in field directly, to avoid allocation in common case
+    private BiConsumer<T, Throwable> firstSimpleCallback;
     private Callback<T> callbackHead;
 
+    private final boolean recyclable;
+    // increased when the recyclable future is borrowed from or returned to the pool, used to detect stale use
+    int generation;
+    boolean inPool;
+    private boolean completing;
+    private boolean recyclePending;
+    // link of the free list in DispatcherThread
+    FiberFuture<?> nextFree;
+
     FiberFuture(String name, FiberGroup group) {
+        this(name, group, false);
+    }
+
+    FiberFuture(String name, FiberGroup group, boolean recyclable) {
         super(name, group);
+        this.recyclable = recyclable;
     }
 
     @Override
@@ -84,12 +100,14 @@ public class FiberFuture<T> extends WaitSource {
 
     public void complete(T result) {
         fiberGroup.checkGroup();
-        complete0(result, null);
+        checkNotRecycled();
+        complete0(generation, result, null);
     }
 
     public void completeExceptionally(Throwable ex) {
         fiberGroup.checkGroup();
-        complete0(null, ex);
+        checkNotRecycled();
+        complete0(generation, null, ex);
     }
 
     public void fireComplete(T r) {
@@ -101,6 +119,9 @@ public class FiberFuture<T> extends WaitSource {
     }
 
     private void fireComplete0(T r, Throwable ex) {
+        // capture the generation, so the completion of a stale (recycled and reused) future can be detected
+        int gen = generation;
+        FiberGroup fiberGroup = this.fiberGroup;
         DispatcherThread dispatcherThread = fiberGroup.dispatcher.thread;
         if (Thread.currentThread() == dispatcherThread) {
             if (fiberGroup.finished) {
@@ -108,18 +129,22 @@ public class FiberFuture<T> extends WaitSource {
                 return;
             }
             if (dispatcherThread.currentGroup == fiberGroup) {
-                complete0(r, ex);
+                complete0(gen, r, ex);
             } else {
-                fiberGroup.sysChannel.offer0(() -> complete0(r, ex));
+                fiberGroup.sysChannel.offer0(() -> complete0(gen, r, ex));
             }
         } else {
-            if (!fiberGroup.sysChannel.fireOffer(() -> complete0(r, ex))) {
+            if (!fiberGroup.sysChannel.fireOffer(() -> complete0(gen, r, ex))) {
                 log.warn("dispatcher is shutdown, ignore fireComplete");
             }
         }
     }
 
-    private void complete0(T result, Throwable ex) {
+    private void complete0(int gen, T result, Throwable ex) {
+        if (gen != generation || inPool) {
+            log.error("the future is recycled, ignore complete: {}", this);
+            return;
+        }
         if (done) {
             return;
         }
@@ -133,11 +158,65 @@ public class FiberFuture<T> extends WaitSource {
         if (fiberGroup.finished) {
             return;
         }
-        tryRunCallbacks();
-        signalAll0(true);
+        completing = true;
+        try {
+            tryRunCallbacks();
+            signalAll0(true);
+        } finally {
+            completing = false;
+        }
+        if (recyclePending) {
+            recycle0();
+        }
+    }
+
+    private void checkNotRecycled() {
+        if (inPool) {
+            throw new FiberException("the future is recycled: " + this);
+        }
+    }
+
+    /**
+     * Return the future to the pool of current dispatcher thread, so it can be reused by
+     * FiberGroup.newRecyclableFuture(). This method should call in dispatcher thread, and the caller should not
+     * access the future any more. It is no-op if the future is not created by newRecyclableFuture().
+     * <p>
+     * The future should be done and no fiber waits on it. If it is called in the callback of the future,
+     * the future is recycled after all callbacks are invoked and all waiters are signaled.
+     */
+    public void recycle() {
+        if (!recyclable) {
+            return;
+        }
+        fiberGroup.checkGroup();
+        checkNotRecycled();
+        // the waiters are signaled after callbacks, and they get the result in prepare()
+        if (!done || (firstWaiter != null && !completing)) {
+            throw new FiberException("the future is not done or has waiters: " + this);
+        }
+        if (completing) {
+            recyclePending = true;
+        } else {
+            recycle0();
+        }
+    }
+
+    private void recycle0() {
+        generation++;
+        done = false;
+        execResult = null;
+        execEx = null;
+        firstSimpleCallback = null;
+        callbackHead = null;
+        recyclePending = false;
+        waitStat = null;
+        DispatcherThread.currentDispatcherThread().releaseFuture(this);
     }
 
     private void tryRunCallbacks() {
+        if (firstSimpleCallback != null) {
+            runSimpleCallback(firstSimpleCallback);
+        }
         if (callbackHead == null) {
             return;
         }
@@ -164,12 +243,16 @@ public class FiberFuture<T> extends WaitSource {
         }
     }
 
-    private void startCallbackFiber(FiberFrame<Void> ff) {
+    private void startCallbackFiber(FutureCallback<T> ff) {
+        // copy the result, so the future can be recycled before the callback fiber run
+        ff.result = execResult;
+        ff.ex = execEx;
         Fiber f = new Fiber("future-callback", fiberGroup, ff);
         fiberGroup.start(f, true);
     }
 
     public FrameCallResult await(FrameCall<T> resumePoint) {
+        checkNotRecycled();
         if (done) {
             if (execEx == null) {
                 return Fiber.resume(execResult, resumePoint);
@@ -182,6 +265,7 @@ public class FiberFuture<T> extends WaitSource {
 
     public FrameCallResult await(long millis, FrameCall<T> resumePoint) {
         DtUtil.checkPositive(millis, "millis");
+        checkNotRecycled();
         if (done) {
             if (execEx == null) {
                 return Fiber.resume(execResult, resumePoint);
@@ -197,7 +281,7 @@ public class FiberFuture<T> extends WaitSource {
      */
     public void registerCallback(FutureCallback<T> callback) {
         fiberGroup.checkGroup();
-        callback.future = this;
+        checkNotRecycled();
         if (done) {
             startCallbackFiber(callback);
         } else {
@@ -209,11 +293,12 @@ public class FiberFuture<T> extends WaitSource {
 
     public abstract static class FutureCallback<T> extends FiberFrame<Void> {
 
-        private FiberFuture<T> future;
+        private T result;
+        private Throwable ex;
 
         @Override
         public final FrameCallResult execute(Void input) throws Throwable {
-            return afterDone(future.execResult, future.execEx);
+            return afterDone(result, ex);
         }
 
         protected abstract FrameCallResult afterDone(T t, Throwable ex);
@@ -233,8 +318,11 @@ public class FiberFuture<T> extends WaitSource {
 
     public void registerCallback(BiConsumer<T, Throwable> callback) {
         fiberGroup.checkGroup();
+        checkNotRecycled();
         if (done) {
             runSimpleCallback(callback);
+        } else if (firstSimpleCallback == null && callbackHead == null) {
+            firstSimpleCallback = callback;
         } else {
             Callback<T> c = new Callback<>();
             c.simpleCallback = callback;
@@ -243,7 +331,7 @@ public class FiberFuture<T> extends WaitSource {
     }
 
     private static class Callback<T> {
-        FiberFrame<Void> frameCallback;
+        FutureCallback<T> frameCallback;
         BiConsumer<T, Throwable> simpleCallback;
         Callback<T> next;
     }
@@ -257,9 +345,9 @@ public class FiberFuture<T> extends WaitSource {
         FiberFuture<T2> newFuture = new FiberFuture<>(name, fiberGroup);
         registerCallback((r, ex) -> {
             if (ex != null) {
-                newFuture.complete0(null, ex);
+                newFuture.complete0(newFuture.generation, null, ex);
             } else {
-                newFuture.complete0(converter.apply(r), null);
+                newFuture.complete0(newFuture.generation, converter.apply(r), null);
             }
         });
         return newFuture;
@@ -16,6 +16,7 @@
 package com.github.dtprj.dongting.fiber;
 
 import com.github.dtprj.dongting.common.DtException;
+import com.github.dtprj.dongting.common.DtUtil;
 import com.github.dtprj.dongting.common.IndexedQueue;
 import com.github.dtprj.dongting.common.LongObjMap;
 import com.github.dtprj.dongting.log.BugLog;
@@ -25,10 +26,11 @@ import com.github.dtprj.dongting.log.DtLogs;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * @author huangli
@@ -36,7 +38,8 @@ import java.util.concurrent.locks.ReentrantLock;
 public class FiberGroup {
     private static final DtLog log = DtLogs.getLogger(FiberGroup.class);
     private final String name;
-    final Dispatcher dispatcher;
+    // may change if the group is migratable, see DispatcherBalancer
+    volatile Dispatcher dispatcher;
     final CompletableFuture<Void> shutdownFuture = new CompletableFuture<>();
 
     final IndexedQueue<Fiber> readyFibers = new IndexedQueue<>(64);
@@ -48,6 +51,7 @@ public class FiberGroup {
     @SuppressWarnings("FieldMayBeFinal")
     private volatile boolean shouldStop = false;
     private final static VarHandle SHOULD_STOP;
+    private final static VarHandle TASK_STATE;
 
     final FiberChannel<Runnable> sysChannel;
 
@@ -55,6 +59,7 @@ public class FiberGroup {
         try {
             MethodHandles.Lookup l = MethodHandles.lookup();
             SHOULD_STOP = l.findVarHandle(FiberGroup.class, "shouldStop", boolean.class);
+            TASK_STATE = l.findVarHandle(FiberGroup.class, "taskState", long.class);
         } catch (Exception e) {
             throw new Error(e);
         }
@@ -70,6 +75,15 @@ public class FiberGroup {
     final FiberCondition shouldStopCondition;
     private final GroupExecutor executor;
 
+    private boolean migratable;
+    // bounded channels, the items of them are dropped after the group finished
+    private final CopyOnWriteArrayList<FiberChannel<?>> boundedChannels = new CopyOnWriteArrayList<>();
+    // bit 0 is the finished flag, the other bits are the count of tasks offered to the share queue but not run,
+    // include the tasks in the queue of the old dispatcher which will be forwarded to current dispatcher.
+    // the group can finish only if no task is pending, the check and the mark are done in one CAS.
+    @SuppressWarnings("unused")
+    private volatile long taskState;
+
     public FiberGroup(String name, Dispatcher dispatcher) {
         this.name = name;
         this.dispatcher = dispatcher;
@@ -136,10 +150,43 @@ public class FiberGroup {
         return new FiberFuture<>(name, this);
     }
 
+    /**
+     * Create a future which can be returned to the pool of dispatcher thread by FiberFuture.recycle(),
+     * used by high-volume operations to avoid allocation. If called in dispatcher thread the future is taken
+     * from the pool of current thread.
+     */
+    public <T> FiberFuture<T> newRecyclableFuture(String name) {
+        Thread t = Thread.currentThread();
+        if (t instanceof DispatcherThread) {
+            return ((DispatcherThread) t).borrowFuture(name, this);
+        }
+        return new FiberFuture<>(name, this, true);
+    }
+
     public <T> FiberChannel<T> newChannel() {
         return new FiberChannel<>(this);
     }
 
+    /**
+     * create a bounded channel, see FiberChannel.
+     */
+    public <T> FiberChannel<T> newChannel(int capacity) {
+        return newChannel(capacity, null);
+    }
+
+    /**
+     * create a bounded channel, see FiberChannel.
+     *
+     * @param dropCallback accept the items which are accepted by fireOffer but not taken before the group
+     *                     finished, it's called in dispatcher thread or the producer thread.
+     */
+    public <T> FiberChannel<T> newChannel(int capacity, Consumer<T> dropCallback) {
+        DtUtil.checkPositive(capacity, "capacity");
+        FiberChannel<T> c = new FiberChannel<>(this, 64, capacity, dropCallback);
+        boundedChannels.add(c);
+        return c;
+    }
+
     public FiberLock newLock(String name) {
         return new FiberLock(name, this);
     }
@@ -221,7 +268,7 @@ public class FiberGroup {
         }
     }
 
-    private void makeGroupReady() {
+    void makeGroupReady() {
         if (ready) {
             return;
         }
@@ -229,6 +276,15 @@ public class FiberGroup {
         dispatcher.readyGroups.addLast(this);
     }
 
+    void forEachFiber(Consumer<Fiber> c) {
+        normalFibers.forEach((key, f) -> {
+            c.accept(f);
+        });
+        daemonFibers.forEach((key, f) -> {
+            c.accept(f);
+        });
+    }
+
     void updateFinishStatus() {
         boolean ss = (boolean) SHOULD_STOP.get(this);
         if (ss && !finished) {
@@ -238,26 +294,50 @@ public class FiberGroup {
             if (sysChannel.queue.size() > 0) {
                 return;
             }
-            // update finished status in lock, so that other threads can see it in this lock
-            ReentrantLock lock = dispatcher.shareQueue.lock;
-            lock.lock();
-            try {
-                if (!dispatcher.shareQueue.hasTask(this)) {
-                    finished = true;
-                }
-            } finally {
-                lock.unlock();
+            // the pending tasks may make the group ready again, the status is checked again after they run,
+            // see Dispatcher.runImpl()
+            if (!TASK_STATE.compareAndSet(this, 0L, 1L)) {
+                return;
             }
-            if (finished) {
-                shutdownFuture.complete(null);
+            finished = true;
+            for (FiberChannel<?> c : boundedChannels) {
+                c.dropAll();
             }
+            shutdownFuture.complete(null);
         }
     }
 
+    /**
+     * Called by the producer before the task of this group is offered to the share queue, return false if the
+     * group is finished.
+     */
+    boolean tryAddPendingTask() {
+        while (true) {
+            long s = (long) TASK_STATE.getVolatile(this);
+            if ((s & 1) != 0) {
+                return false;
+            }
+            if (TASK_STATE.compareAndSet(this, s, s + 2)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Called after the task is run, or it's not accepted by the share queue.
+     */
+    void removePendingTask() {
+        TASK_STATE.getAndAdd(this, -2L);
+    }
+
     public boolean isShouldStop() {
         return (boolean) SHOULD_STOP.getOpaque(this);
     }
 
+    boolean isFinishedVolatile() {
+        return ((long) TASK_STATE.getVolatile(this) & 1) != 0;
+    }
+
     boolean isShouldStopPlain() {
         return (boolean) SHOULD_STOP.get(this);
     }
@@ -345,10 +425,30 @@ public class FiberGroup {
         return dispatcher;
     }
 
+    /**
+     * return the thread of current dispatcher, if the group is migratable, the result may change.
+     */
     public DispatcherThread getThread() {
         return dispatcher.thread;
     }
 
+    public boolean isMigratable() {
+        return migratable;
+    }
+
+    /**
+     * Allow the group to be migrated to other dispatcher by DispatcherBalancer, should be set before the
+     * group started. The group is always executed by one thread at a time, but the thread may change between
+     * rounds, so a migratable group should not keep the resources bound to the DispatcherThread (such as the
+     * pools), and should not keep the Dispatcher/DispatcherThread obtained from getDispatcher()/getThread().
+     *
+     * <p>RaftServer never sets this flag: the raft groups keep the pools and the Timestamp of the dispatcher,
+     * so they are not migratable. This is only for the user fiber groups which not depend on them.
+     */
+    public void setMigratable(boolean migratable) {
+        this.migratable = migratable;
+    }
+
     public CompletableFuture<Void> getShutdownFuture() {
         return shutdownFuture;
     }
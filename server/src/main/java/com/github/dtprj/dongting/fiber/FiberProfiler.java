@@ -0,0 +1,131 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import com.github.dtprj.dongting.common.PerfCallback;
+import com.github.dtprj.dongting.net.PerfConsts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Collect run time and wait time of fibers and wait sources, all methods are invoked in dispatcher thread.
+ * The statistics object is cached in the fiber (or wait source), so the map lookup only occurs once for each
+ * fiber.
+ *
+ * @author huangli
+ */
+class FiberProfiler {
+    private final PerfCallback perfCallback;
+
+    private final HashMap<String, FiberStat> fiberStats = new HashMap<>();
+    private final HashMap<Class<?>, HashMap<String, FiberStat>> waitStats = new HashMap<>();
+    private final FiberStat sleepStat = new FiberStat(this, FiberStat.TYPE_SLEEP, "sleep");
+
+    FiberProfiler(PerfCallback perfCallback) {
+        this.perfCallback = perfCallback;
+    }
+
+    private FiberStat fiberStat(Fiber f) {
+        FiberStat s = f.runStat;
+        if (s == null || s.owner != this) {
+            s = fiberStats.get(f.name);
+            if (s == null) {
+                s = new FiberStat(this, FiberStat.TYPE_FIBER, f.name);
+                fiberStats.put(f.name, s);
+            }
+            f.runStat = s;
+        }
+        return s;
+    }
+
+    private FiberStat waitStat(WaitSource ws) {
+        FiberStat s = ws.waitStat;
+        if (s == null || s.owner != this) {
+            Class<?> c = ws.getClass();
+            HashMap<String, FiberStat> map = waitStats.get(c);
+            if (map == null) {
+                map = new HashMap<>();
+                waitStats.put(c, map);
+            }
+            s = map.get(ws.name);
+            if (s == null) {
+                s = new FiberStat(this, c.getSimpleName(), ws.name);
+                map.put(ws.name, s);
+            }
+            ws.waitStat = s;
+        }
+        return s;
+    }
+
+    /**
+     * called before the fiber executed.
+     */
+    void beforeExec(Fiber f, long now) {
+        if (f.suspendNanos != 0) {
+            long waitTime = now - f.suspendNanos;
+            f.suspendNanos = 0;
+            fiberStat(f).onWait(waitTime);
+            if (f.waitOn != null) {
+                f.waitOn.onWait(waitTime);
+                f.waitOn = null;
+            }
+            perfCallback.fireNanos(PerfConsts.FIBER_D_WAIT, waitTime);
+        }
+    }
+
+    /**
+     * called after the fiber executed, the fiber may be finished, suspended or ready (yield).
+     */
+    void afterExec(Fiber f, long startTime, long now) {
+        long runTime = now - startTime;
+        fiberStat(f).onRun(runTime);
+        perfCallback.fireNanos(PerfConsts.FIBER_D_EXEC, runTime);
+        if (!f.finished && !f.ready) {
+            f.suspendNanos = now;
+            if (f.source != null) {
+                f.waitOn = waitStat(f.source);
+            } else if (f.scheduleTimeoutMillis > 0) {
+                f.waitOn = sleepStat;
+            }
+        }
+    }
+
+    List<FiberStat> snapshot(boolean reset) {
+        ArrayList<FiberStat> list = new ArrayList<>(fiberStats.size() + 16);
+        for (FiberStat s : fiberStats.values()) {
+            addToSnapshot(list, s, reset);
+        }
+        for (HashMap<String, FiberStat> map : waitStats.values()) {
+            for (FiberStat s : map.values()) {
+                addToSnapshot(list, s, reset);
+            }
+        }
+        addToSnapshot(list, sleepStat, reset);
+        return list;
+    }
+
+    private void addToSnapshot(List<FiberStat> list, FiberStat s, boolean reset) {
+        if (s.resumeCount == 0 && s.waitCount == 0) {
+            return;
+        }
+        list.add(s.copy());
+        if (reset) {
+            s.reset();
+        }
+    }
+}
@@ -17,118 +17,111 @@ package com.github.dtprj.dongting.fiber;
 
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
+import com.github.dtprj.dongting.queue.MpscChunkedQueue;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.LockSupport;
 
 /**
+ * The share queue of dispatcher, offer is lock free. The poll/drainTo/hasTask/shutdown methods can only be called
+ * in dispatcher thread.
+ *
  * @author huangli
  */
 class FiberQueue {
     private static final DtLog log = DtLogs.getLogger(FiberQueue.class);
 
-    private static final FiberQueueTask TAIL = new FiberQueueTask(null) {
-        @Override
-        protected void run() {
+    private static final VarHandle WAITING;
+
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            WAITING = l.findVarHandle(FiberQueue.class, "waiting", boolean.class);
+        } catch (Exception e) {
+            throw new Error(e);
         }
-    };
+    }
 
-    final ReentrantLock lock = new ReentrantLock();
-    private final Condition notEmpty = lock.newCondition();
+    private final MpscChunkedQueue<FiberQueueTask> queue = MpscChunkedQueue.newInstance();
 
-    private FiberQueueTask head = TAIL;
-    private FiberQueueTask tail = TAIL;
-    private boolean shutdown;
+    private volatile boolean waiting;
+    private Thread consumerThread;
 
     public FiberQueue() {
     }
 
     public boolean offer(FiberQueueTask task) {
-        lock.lock();
-        try {
-            if (shutdown) {
-                log.warn("task is not accepted because dispatcher is shutdown: {}", task);
-                return false;
-            }
-            if (task.next != null) {
-                throw new FiberException("FiberQueueTask is already in queue");
-            }
-            if (task.ownerGroup != null && task.ownerGroup.finished) {
-                log.warn("task is not accepted because its group is finished: {}", task);
-                return false;
-            }
-            if (head == TAIL) {
-                head = tail = task;
-                task.next = TAIL;
-                notEmpty.signal();
-            } else {
-                tail.next = task;
-                tail = task;
-                task.next = TAIL;
-            }
-            return true;
-        } finally {
-            lock.unlock();
+        if (task.queued) {
+            throw new FiberException("FiberQueueTask is already in queue");
+        }
+        FiberGroup g = task.ownerGroup;
+        if (g == null) {
+            return offer0(task);
+        }
+        // the group can't finish until the task run, see FiberGroup.updateFinishStatus()
+        if (!g.tryAddPendingTask()) {
+            log.warn("task is not accepted because its group is finished: {}", task);
+            return false;
         }
+        // the group may be migrated after the caller read its dispatcher, so offer to the current one. if the
+        // group is migrated after this read, the task is forwarded by the old dispatcher.
+        if (!g.dispatcher.shareQueue.offer0(task)) {
+            g.removePendingTask();
+            return false;
+        }
+        return true;
     }
 
-    public FiberQueueTask poll(long timeout, TimeUnit timeUnit) throws InterruptedException {
-        lock.lock();
-        try {
-            if (head == TAIL) {
-                if (!notEmpty.await(timeout, timeUnit)) {
-                    return null;
-                }
-            }
-            FiberQueueTask result = head;
-            if (result.next == TAIL) {
-                head = tail = TAIL;
-            } else {
-                head = result.next;
-            }
-            result.next = null;
-            return result;
-        } finally {
-            lock.unlock();
+    boolean offer0(FiberQueueTask task) {
+        task.queued = true;
+        if (!queue.offer(task)) {
+            task.queued = false;
+            log.warn("task is not accepted because dispatcher is shutdown: {}", task);
+            return false;
         }
+        // read waiting after the producer index of queue is updated, see poll()
+        if (waiting && WAITING.compareAndSet(this, true, false)) {
+            LockSupport.unpark(consumerThread);
+        }
+        return true;
     }
 
-    public void drainTo(ArrayList<FiberQueueTask> list) {
-        lock.lock();
-        try {
-            FiberQueueTask task = head;
-            while (task != TAIL) {
-                list.add(task);
-                FiberQueueTask tmp = task;
-                task = task.next;
-                tmp.next = null;
+    public FiberQueueTask poll(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        FiberQueueTask result = queue.relaxedPoll();
+        if (result == null) {
+            if (consumerThread == null) {
+                consumerThread = Thread.currentThread();
+            }
+            waiting = true;
+            // check the queue again after set waiting, so either we see the task or the producer see waiting
+            if (queue.isEmpty()) {
+                LockSupport.parkNanos(this, timeUnit.toNanos(timeout));
+            }
+            waiting = false;
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            result = queue.relaxedPoll();
+            if (result == null) {
+                return null;
             }
-            head = tail = TAIL;
-        } finally {
-            lock.unlock();
         }
+        result.queued = false;
+        return result;
     }
 
-    boolean hasTask(FiberGroup g) {
-        FiberQueueTask task = head;
-        while (task != TAIL) {
-            if (task.ownerGroup == g) {
-                return true;
-            }
-            task = task.next;
+    public void drainTo(ArrayList<FiberQueueTask> list) {
+        FiberQueueTask task;
+        while ((task = queue.relaxedPoll()) != null) {
+            task.queued = false;
+            list.add(task);
         }
-        return false;
     }
 
     public void shutdown() {
-        lock.lock();
-        try {
-            shutdown = true;
-        } finally {
-            lock.unlock();
-        }
+        queue.shutdownByConsumer();
     }
 }
-
@@ -22,7 +22,8 @@ abstract class FiberQueueTask {
 
     final FiberGroup ownerGroup;
 
-    FiberQueueTask next;
+    // set by producer and cleared by dispatcher thread, used to find duplicate offer
+    volatile boolean queued;
 
     public FiberQueueTask(FiberGroup ownerGroup) {
         this.ownerGroup = ownerGroup;
@@ -0,0 +1,120 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+/**
+ * The profile statistics of fibers with same name, or the wait sources with same type and name.
+ * The instance returned by Dispatcher.sampleFiberStats() is a snapshot.
+ *
+ * @author huangli
+ */
+public class FiberStat {
+    public static final String TYPE_FIBER = "Fiber";
+    public static final String TYPE_SLEEP = "Sleep";
+
+    final Object owner;
+    private final String type;
+    private final String name;
+
+    long resumeCount;
+    long runNanos;
+    long maxRunNanos;
+    long waitCount;
+    long waitNanos;
+
+    FiberStat(Object owner, String type, String name) {
+        this.owner = owner;
+        this.type = type;
+        this.name = name;
+    }
+
+    void onRun(long nanos) {
+        resumeCount++;
+        runNanos += nanos;
+        if (nanos > maxRunNanos) {
+            maxRunNanos = nanos;
+        }
+    }
+
+    void onWait(long nanos) {
+        waitCount++;
+        waitNanos += nanos;
+    }
+
+    FiberStat copy() {
+        FiberStat s = new FiberStat(null, type, name);
+        s.resumeCount = resumeCount;
+        s.runNanos = runNanos;
+        s.maxRunNanos = maxRunNanos;
+        s.waitCount = waitCount;
+        s.waitNanos = waitNanos;
+        return s;
+    }
+
+    void reset() {
+        resumeCount = 0;
+        runNanos = 0;
+        maxRunNanos = 0;
+        waitCount = 0;
+        waitNanos = 0;
+    }
+
+    /**
+     * TYPE_FIBER for fibers, TYPE_SLEEP for sleep, or the simple class name of the wait source.
+     */
+    public String getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * the count of fiber executions (include the first run and the resumptions).
+     */
+    public long getResumeCount() {
+        return resumeCount;
+    }
+
+    public long getRunNanos() {
+        return runNanos;
+    }
+
+    public long getMaxRunNanos() {
+        return maxRunNanos;
+    }
+
+    /**
+     * for fibers, the count of suspensions; for wait sources, the count of fibers waited on it.
+     */
+    public long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * the time from the fiber suspended to resumed (include the time in ready queue).
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    @Override
+    public String toString() {
+        return type + ":" + name + ", resume=" + resumeCount + ", run=" + runNanos / 1000 + "us, maxRun="
+                + maxRunNanos / 1000 + "us, wait=" + waitCount + "/" + waitNanos / 1000 + "us";
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for the suspended fibers with timeout, all methods are invoked in dispatcher thread.
+ * The tick is 1ms, level 0 has 256 slots, level 1~3 has 64 slots each, so it covers about 18.6 hours, the
+ * fibers beyond that are put to the last slot and re-calculated when cascade.
+ * The fibers are linked by their timerPrev/timerNext fields, so add and remove is O(1) without allocation.
+ * The fiber never expires before its scheduleNanoTime, but may be delayed at most 1 tick.
+ *
+ * @author huangli
+ */
+class TimingWheel {
+    static final long TICK_NANOS = 1_000_000L;
+
+    private static final int LEVEL0_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVELS = 4;
+    private static final int LEVEL0_MASK = (1 << LEVEL0_BITS) - 1;
+    private static final int LEVEL_MASK = (1 << LEVEL_BITS) - 1;
+    // max ticks (exclusive) of the fibers can be put to each level
+    private static final long[] LEVEL_RANGE = {
+            1L << LEVEL0_BITS,
+            1L << (LEVEL0_BITS + LEVEL_BITS),
+            1L << (LEVEL0_BITS + LEVEL_BITS * 2),
+            1L << (LEVEL0_BITS + LEVEL_BITS * 3)};
+    private static final int[] LEVEL_SHIFT = {
+            0,
+            LEVEL0_BITS,
+            LEVEL0_BITS + LEVEL_BITS,
+            LEVEL0_BITS + LEVEL_BITS * 2};
+
+    private final Fiber[][] heads = new Fiber[LEVELS][];
+    private final Fiber[][] tails = new Fiber[LEVELS][];
+    private final int[] levelCount = new int[LEVELS];
+    private int size;
+
+    private final long baseNanos;
+    // all ticks <= currentTick are processed
+    private long currentTick;
+
+    TimingWheel(long baseNanos) {
+        this.baseNanos = baseNanos;
+        for (int i = 0; i < LEVELS; i++) {
+            int slots = i == 0 ? 1 << LEVEL0_BITS : 1 << LEVEL_BITS;
+            heads[i] = new Fiber[slots];
+            tails[i] = new Fiber[slots];
+        }
+    }
+
+    void add(Fiber f) {
+        // round up, so the fiber never expires early
+        long expireTick = (f.scheduleNanoTime - baseNanos + TICK_NANOS - 1) / TICK_NANOS;
+        if (expireTick <= currentTick) {
+            expireTick = currentTick + 1;
+        }
+        long delta = expireTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta > LEVEL_RANGE[level]) {
+            level++;
+        }
+        if (delta > LEVEL_RANGE[LEVELS - 1]) {
+            // too far, re-calculate when cascade
+            expireTick = currentTick + LEVEL_RANGE[LEVELS - 1];
+        }
+        int mask = level == 0 ? LEVEL0_MASK : LEVEL_MASK;
+        int slot = (int) (expireTick >>> LEVEL_SHIFT[level]) & mask;
+        f.timerLevel = level;
+        f.timerSlot = slot;
+        f.timerNext = null;
+        Fiber tail = tails[level][slot];
+        f.timerPrev = tail;
+        if (tail == null) {
+            heads[level][slot] = f;
+        } else {
+            tail.timerNext = f;
+        }
+        tails[level][slot] = f;
+        levelCount[level]++;
+        size++;
+    }
+
+    void remove(Fiber f) {
+        int level = f.timerLevel;
+        if (level < 0) {
+            return;
+        }
+        int slot = f.timerSlot;
+        Fiber prev = f.timerPrev;
+        Fiber next = f.timerNext;
+        if (prev == null) {
+            heads[level][slot] = next;
+        } else {
+            prev.timerNext = next;
+        }
+        if (next == null) {
+            tails[level][slot] = prev;
+        } else {
+            next.timerPrev = prev;
+        }
+        f.timerPrev = null;
+        f.timerNext = null;
+        f.timerLevel = -1;
+        levelCount[level]--;
+        size--;
+    }
+
+    /**
+     * process all ticks before nowNanos, the expired fibers are removed from the wheel and passed to the callback.
+     */
+    void advance(long nowNanos, Consumer<Fiber> expireCallback) {
+        long targetTick = (nowNanos - baseNanos) / TICK_NANOS;
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+            int level = 0;
+            while (levelCount[level] == 0) {
+                level++;
+            }
+            if (level > 0) {
+                // lower levels are empty, skip to the tick before next cascade of this level
+                long skipTo = ((currentTick >>> LEVEL_SHIFT[level]) + 1 << LEVEL_SHIFT[level]) - 1;
+                if (skipTo >= targetTick) {
+                    currentTick = targetTick;
+                    return;
+                }
+                currentTick = skipTo;
+            }
+            long tick = currentTick + 1;
+            if ((tick & LEVEL0_MASK) == 0) {
+                // cascade from higher level, currentTick is not updated, so the fibers expire at this tick
+                // are put to level 0
+                cascadeIfNeeded(tick, 1);
+            }
+            currentTick = tick;
+            int slot = (int) tick & LEVEL0_MASK;
+            Fiber f;
+            while ((f = heads[0][slot]) != null) {
+                remove(f);
+                expireCallback.accept(f);
+            }
+        }
+    }
+
+    private void cascadeIfNeeded(long tick, int level) {
+        if (level >= LEVELS) {
+            return;
+        }
+        int slot = (int) (tick >>> LEVEL_SHIFT[level]) & LEVEL_MASK;
+        if (slot == 0) {
+            cascadeIfNeeded(tick, level + 1);
+        }
+        if (levelCount[level] == 0) {
+            return;
+        }
+        Fiber f = heads[level][slot];
+        heads[level][slot] = null;
+        tails[level][slot] = null;
+        while (f != null) {
+            Fiber next = f.timerNext;
+            levelCount[level]--;
+            size--;
+            add(f);
+            f = next;
+        }
+    }
+
+    /**
+     * return the nano time of the next tick may have expired fibers, the caller should check size() first.
+     * For fibers in higher levels, return the next cascade time.
+     */
+    long nextExpireNanos() {
+        long c = currentTick;
+        if (levelCount[0] > 0) {
+            Fiber[] level0 = heads[0];
+            for (long tick = c + 1, end = c + LEVEL_RANGE[0]; tick <= end; tick++) {
+                if (level0[(int) tick & LEVEL0_MASK] != null) {
+                    return baseNanos + tick * TICK_NANOS;
+                }
+            }
+        }
+        long nextCascadeTick = (c | LEVEL0_MASK) + 1;
+        return baseNanos + nextCascadeTick * TICK_NANOS;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -19,10 +19,13 @@ package com.github.dtprj.dongting.fiber;
  * @author huangli
  */
 abstract class WaitSource {
-    protected final String name;
+    // not final, the recyclable future is reused by other groups
+    protected String name;
     private Fiber lastWaiter;
     Fiber firstWaiter;
-    protected final FiberGroup fiberGroup;
+    protected FiberGroup fiberGroup;
+    // used by FiberProfiler
+    FiberStat waitStat;
 
     public WaitSource(String name, FiberGroup group) {
         this.fiberGroup = group;
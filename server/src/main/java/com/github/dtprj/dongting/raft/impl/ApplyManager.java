@@ -185,9 +185,12 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<L
                     if (execEx != null) {
                         afterExec(index, rt, null, execEx);
                     } else if (f != null) {
-                        f.registerCallback((result, ex) -> {
+                        FiberFuture<Object> execFuture = f;
+                        execFuture.registerCallback((result, ex) -> {
                             perfCallback.fireTime(PerfConsts.RAFT_D_STATE_MACHINE_EXEC, t);
                             afterExec(index, rt, result, ex);
+                            // no-op if the state machine not returns a recyclable future
+                            execFuture.recycle();
                         });
                     } else {
                         throw Fiber.fatal(new RaftException("statemachine exec return null future"));
@@ -16,6 +16,7 @@
 package com.github.dtprj.dongting.raft.impl;
 
 import com.github.dtprj.dongting.common.IntObjMap;
+import com.github.dtprj.dongting.common.MemoryQuota;
 import com.github.dtprj.dongting.fiber.FiberChannel;
 import com.github.dtprj.dongting.fiber.FiberGroup;
 import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
@@ -43,6 +44,7 @@ public class GroupComponents {
 
     private NodeManager nodeManager;
     private PendingStat serverStat;
+    private MemoryQuota pendingTaskQuota;
 
     private RaftLog raftLog;
     private StateMachine stateMachine;
@@ -147,6 +149,14 @@ public class GroupComponents {
         this.serverStat = serverStat;
     }
 
+    public MemoryQuota getPendingTaskQuota() {
+        return pendingTaskQuota;
+    }
+
+    public void setPendingTaskQuota(MemoryQuota pendingTaskQuota) {
+        this.pendingTaskQuota = pendingTaskQuota;
+    }
+
     public RaftLog getRaftLog() {
         return raftLog;
     }
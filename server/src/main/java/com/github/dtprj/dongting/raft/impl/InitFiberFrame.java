@@ -72,7 +72,8 @@ public class InitFiberFrame extends FiberFrame<Void> {
             processor.startProcessFiber(channel);
         }
 
-        gc.getLinearTaskRunner().init(fg.newChannel());
+        LinearTaskRunner ltr = gc.getLinearTaskRunner();
+        ltr.init(fg.newChannel(gc.getGroupConfig().getMaxPendingRaftTasks(), ltr::dropTask));
 
         return Fiber.call(gc.getStatusManager().initStatusFile(), this::afterInitStatusFile);
     }
@@ -16,6 +16,7 @@
 package com.github.dtprj.dongting.raft.impl;
 
 import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.FlowControlException;
 import com.github.dtprj.dongting.common.PerfCallback;
 import com.github.dtprj.dongting.common.Timestamp;
 import com.github.dtprj.dongting.fiber.Fiber;
@@ -121,12 +122,24 @@ public class LinearTaskRunner {
         int type = input.isReadOnly() ? LogItem.TYPE_LOG_READ : LogItem.TYPE_NORMAL;
         RaftTask t = new RaftTask(raftStatus.getTs(), type, input, callback);
         input.setPerfTime(perfCallback.takeTime(PerfConsts.RAFT_D_LEADER_RUNNER_FIBER_LATENCY));
-        if (!taskChannel.fireOffer(t)) {
+        int r = taskChannel.tryOffer(t);
+        if (r != FiberChannel.OFFER_SUCCESS) {
             RaftUtil.release(input);
-            t.callFail(new RaftException("submit raft task failed"));
+            if (r == FiberChannel.OFFER_FULL) {
+                t.callFail(new FlowControlException("submit raft task failed: task channel is full, capacity="
+                        + taskChannel.getCapacity()));
+            } else {
+                t.callFail(new RaftException("submit raft task failed"));
+            }
         }
     }
 
+    // called by the task channel if the task is accepted but not taken before the group finished
+    void dropTask(RaftTask t) {
+        RaftUtil.release(t.getInput());
+        t.callFail(new RaftException("raft group is shutdown"));
+    }
+
     public static long lastIndex(RaftStatusImpl raftStatus) {
         TailCache tailCache = raftStatus.getTailCache();
         if (tailCache.size() == 0) {
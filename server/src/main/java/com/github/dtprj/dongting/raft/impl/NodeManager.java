@@ -16,6 +16,7 @@
 package com.github.dtprj.dongting.raft.impl;
 
 import com.github.dtprj.dongting.common.AbstractLifeCircle;
+import com.github.dtprj.dongting.common.ConcurrentIntObjMap;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.DtUtil;
 import com.github.dtprj.dongting.common.IntObjMap;
@@ -28,6 +29,7 @@ import com.github.dtprj.dongting.net.NioClient;
 import com.github.dtprj.dongting.net.PeerStatus;
 import com.github.dtprj.dongting.net.ReadPacket;
 import com.github.dtprj.dongting.net.SimpleWritePacket;
+import com.github.dtprj.dongting.net.WritePacket;
 import com.github.dtprj.dongting.raft.RaftException;
 import com.github.dtprj.dongting.raft.RaftNode;
 import com.github.dtprj.dongting.raft.rpc.NodePing;
@@ -40,7 +42,6 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -99,7 +100,7 @@ public class NodeManager extends AbstractLifeCircle {
         }
     }
 
-    public void initNodes(ConcurrentHashMap<Integer, RaftGroupImpl> raftGroups) {
+    public void initNodes(ConcurrentIntObjMap<RaftGroupImpl> raftGroups) {
         ArrayList<CompletableFuture<RaftNodeEx>> futures = new ArrayList<>();
         for (RaftNode n : allRaftNodesOnlyForInit) {
             futures.add(addToNioClient(n));
@@ -200,6 +201,7 @@ public class NodeManager extends AbstractLifeCircle {
         DtTime timeout = new DtTime(config.getRpcTimeout(), TimeUnit.MILLISECONDS);
         SimpleWritePacket packet = new SimpleWritePacket(new NodePing(selfNodeId, uuid));
         packet.setCommand(Commands.NODE_PING);
+        packet.setPriority(WritePacket.PRIORITY_HIGH);
         CompletableFuture<ReadPacket<NodePing>> f = client.sendRequest(nodeEx.getPeer(),
                 packet,ctx -> ctx.toDecoderCallback(new NodePing()), timeout);
         return f.thenAccept(rf -> whenRpcFinish(rf, nodeEx));
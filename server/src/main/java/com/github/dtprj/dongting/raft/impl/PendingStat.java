@@ -24,38 +24,28 @@ import java.lang.invoke.VarHandle;
 public class PendingStat {
     @SuppressWarnings("unused")
     private volatile int pendingRequests;
-    @SuppressWarnings("unused")
-    private volatile long pendingBytes;
 
     static final VarHandle PENDING_REQUESTS;
-    static final VarHandle PENDING_BYTES;
 
     static {
         try {
             MethodHandles.Lookup lookup = MethodHandles.lookup();
             PENDING_REQUESTS = lookup.findVarHandle(PendingStat.class, "pendingRequests", int.class);
-            PENDING_BYTES = lookup.findVarHandle(PendingStat.class, "pendingBytes", long.class);
         } catch (Exception e) {
             throw new Error(e);
         }
     }
 
-    public void incrPlain(int requests, long bytes) {
+    public void incrPlain(int requests) {
         PENDING_REQUESTS.set(this, requests + (int) PENDING_REQUESTS.get(this));
-        PENDING_BYTES.set(this, bytes + (long) PENDING_BYTES.get(this));
     }
 
-    public void decrPlain(int requests, long bytes) {
+    public void decrPlain(int requests) {
         PENDING_REQUESTS.set(this, (int) PENDING_REQUESTS.get(this) - requests);
-        PENDING_BYTES.set(this, (long) PENDING_BYTES.get(this) - bytes);
     }
 
     public int getPendingRequestsPlain() {
         return (int) PENDING_REQUESTS.get(this);
     }
 
-    public long getPendingBytesPlain() {
-        return (long) PENDING_BYTES.get(this);
-    }
-
 }
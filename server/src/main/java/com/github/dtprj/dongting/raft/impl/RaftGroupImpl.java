@@ -17,6 +17,7 @@ package com.github.dtprj.dongting.raft.impl;
 
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.FlowControlException;
+import com.github.dtprj.dongting.common.MemoryQuota;
 import com.github.dtprj.dongting.common.Timestamp;
 import com.github.dtprj.dongting.fiber.FiberFrame;
 import com.github.dtprj.dongting.fiber.FiberFuture;
@@ -96,27 +97,26 @@ public class RaftGroupImpl extends RaftGroup {
             throw new FlowControlException(msg);
         }
         long size = input.getFlowControlSize();
-        long currentPendingWriteBytes = (long) PendingStat.PENDING_BYTES.getAndAddRelease(serverStat, size);
-        if (currentPendingWriteBytes >= groupConfig.getMaxPendingTaskBytes()) {
+        MemoryQuota quota = gc.getPendingTaskQuota();
+        if (!quota.tryAcquire(size)) {
             RaftUtil.release(input);
-            String msg = "too many pending write bytes,currentPendingWriteBytes="
-                    + currentPendingWriteBytes + ", currentRequestBytes=" + size;
+            PendingStat.PENDING_REQUESTS.getAndAddRelease(serverStat, -1);
+            String msg = "too many pending write bytes, quota=" + quota + ", currentRequestBytes=" + size;
             log.warn(msg);
-            PendingStat.PENDING_BYTES.getAndAddRelease(serverStat, -size);
             throw new FlowControlException(msg);
         }
         RaftCallback wrapper = new RaftCallback() {
             @Override
             public void success(long raftIndex, Object result) {
                 PendingStat.PENDING_REQUESTS.getAndAddRelease(serverStat, -1);
-                PendingStat.PENDING_BYTES.getAndAddRelease(serverStat, -size);
+                quota.release(size);
                 RaftCallback.callSuccess(callback, raftIndex, result);
             }
 
             @Override
             public void fail(Throwable ex) {
                 PendingStat.PENDING_REQUESTS.getAndAddRelease(serverStat, -1);
-                PendingStat.PENDING_BYTES.getAndAddRelease(serverStat, -size);
+                quota.release(size);
                 RaftCallback.callFail(callback, ex);
             }
         };
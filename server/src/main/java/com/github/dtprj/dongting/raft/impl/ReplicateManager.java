@@ -18,6 +18,7 @@ package com.github.dtprj.dongting.raft.impl;
 import com.github.dtprj.dongting.buf.RefBuffer;
 import com.github.dtprj.dongting.buf.RefBufferFactory;
 import com.github.dtprj.dongting.codec.DecoderCallbackCreator;
+import com.github.dtprj.dongting.common.CoarseClock;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.DtUtil;
 import com.github.dtprj.dongting.common.Pair;
@@ -369,7 +370,7 @@ class LeaderRepFrame extends AbstractLeaderRepFrame {
         member.setNextIndex(prevLogIndex + 1 + items.size());
 
         DtTime timeout = new DtTime(ts.getNanoTime(), serverConfig.getRpcTimeout(), TimeUnit.MILLISECONDS);
-        long perfStartTime = perfCallback.takeTime(PerfConsts.RAFT_D_REPLICATE_RPC);
+        long perfStartTime = perfCallback.takeTime(PerfConsts.RAFT_D_REPLICATE_RPC, ts);
         // release in AppendReqWritePacket
         CompletableFuture<ReadPacket<AppendResp>> f = client.sendRequest(member.getNode().getPeer(),
                 req, APPEND_RESP_DECODER_CALLBACK_CREATOR, timeout);
@@ -391,7 +392,7 @@ class LeaderRepFrame extends AbstractLeaderRepFrame {
 
     void afterAppendRpc(ReadPacket<AppendResp> rf, Throwable ex, long prevLogIndex, int prevLogTerm,
                         long leaseStartNanos, int itemCount, long bytes, long perfStartTime) {
-        perfCallback.fireTime(PerfConsts.RAFT_D_REPLICATE_RPC, perfStartTime, itemCount, bytes);
+        perfCallback.fireTime(PerfConsts.RAFT_D_REPLICATE_RPC, perfStartTime, itemCount, bytes, ts);
         repCondition.signalAll();
         if (epochChange()) {
             log.info("receive outdated append result, replicateEpoch not match. ignore.");
@@ -701,7 +702,7 @@ class LeaderInstallFrame extends AbstractLeaderRepFrame {
         // data buffer released in WritePacket
         InstallSnapshotReq.InstallReqWritePacket wf = new InstallSnapshotReq.InstallReqWritePacket(req);
         wf.setCommand(Commands.RAFT_INSTALL_SNAPSHOT);
-        DtTime timeout = new DtTime(serverConfig.getRpcTimeout(), TimeUnit.MILLISECONDS);
+        DtTime timeout = new DtTime(CoarseClock.nanoTime(), serverConfig.getRpcTimeout(), TimeUnit.MILLISECONDS);
         CompletableFuture<ReadPacket<AppendResp>> future = client.sendRequest(
                 member.getNode().getPeer(), wf, APPEND_RESP_DECODER_CALLBACK_CREATOR, timeout);
         int bytes = data == null ? 0 : data.getBuffer().remaining();
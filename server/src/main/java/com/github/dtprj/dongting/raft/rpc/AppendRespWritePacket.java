@@ -36,6 +36,11 @@ public class AppendRespWritePacket extends SmallNoCopyWritePacket {
     private int suggestTerm;
     private long suggestIndex;
 
+    public AppendRespWritePacket() {
+        // the leader's lease depends on the response, don't block it by bulk data
+        setPriority(PRIORITY_HIGH);
+    }
+
     @Override
     protected int calcActualBodySize() {
         return PbUtil.accurateUnsignedIntSize(1, term)
@@ -43,6 +43,7 @@ public class NodePingProcessor extends ReqProcessor<NodePing> {
     public WritePacket process(ReadPacket<NodePing> packet, ReqContext reqContext) {
         SimpleWritePacket r = new SimpleWritePacket(new NodePing(selfNodeId, uuid));
         r.setCommand(Commands.NODE_PING);
+        r.setPriority(WritePacket.PRIORITY_HIGH);
         return r;
     }
 
@@ -34,6 +34,7 @@ public class RaftPingWritePacket extends SmallNoCopyWritePacket {
 
     public RaftPingWritePacket(int groupId, int nodeId, Set<Integer> nodeIdOfMembers, Set<Integer> nodeIdOfObservers) {
         setCommand(Commands.RAFT_PING);
+        setPriority(PRIORITY_HIGH);
         this.groupId = groupId;
         this.nodeId = nodeId;
         this.nodeIdOfMembers = nodeIdOfMembers;
@@ -75,6 +75,7 @@ public class TransferLeaderReq {
 
         public TransferLeaderReqWritePacket(TransferLeaderReq req) {
             setCommand(Commands.RAFT_LEADER_TRANSFER);
+            setPriority(PRIORITY_HIGH);
             this.req = req;
         }
 
@@ -84,6 +84,7 @@ public class VoteReq {
 
         public VoteReqWritePacket(VoteReq data) {
             setCommand(Commands.RAFT_REQUEST_VOTE);
+            setPriority(PRIORITY_HIGH);
             this.data = data;
         }
 
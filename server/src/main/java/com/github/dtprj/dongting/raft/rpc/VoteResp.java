@@ -58,6 +58,7 @@ public class VoteResp {
 
         public VoteRespWritePacket(VoteResp data) {
             this.data = data;
+            setPriority(PRIORITY_HIGH);
         }
 
         @Override
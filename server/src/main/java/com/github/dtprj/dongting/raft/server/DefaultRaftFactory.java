@@ -25,6 +25,7 @@ import com.github.dtprj.dongting.raft.sm.SnapshotManager;
 import com.github.dtprj.dongting.raft.sm.StateMachine;
 import com.github.dtprj.dongting.raft.store.DefaultRaftLog;
 import com.github.dtprj.dongting.raft.store.RaftLog;
+import com.github.dtprj.dongting.raft.store.SharedLogStore;
 import com.github.dtprj.dongting.raft.store.StatusManager;
 
 import java.util.concurrent.ExecutorService;
@@ -38,6 +39,7 @@ public abstract class DefaultRaftFactory implements RaftFactory {
 
     private ExecutorService ioExecutor;
     protected PoolFactory poolFactory;
+    private SharedLogStore sharedLogStore;
 
     public DefaultRaftFactory() {
         this.poolFactory = createPoolFactory();
@@ -64,9 +66,20 @@ public abstract class DefaultRaftFactory implements RaftFactory {
 
     @Override
     public RaftLog createRaftLog(RaftGroupConfigEx groupConfig, StatusManager statusManager, RaftCodecFactory codecFactory) {
+        if (sharedLogStore != null) {
+            return sharedLogStore.createRaftLog(groupConfig, codecFactory);
+        }
         return new DefaultRaftLog(groupConfig, statusManager, codecFactory);
     }
 
+    /**
+     * Let all groups write to the shared log store instead of their own log files, it's useful when a node
+     * has many groups. The caller should close the store after the RaftServer stopped.
+     */
+    public void setSharedLogStore(SharedLogStore sharedLogStore) {
+        this.sharedLogStore = sharedLogStore;
+    }
+
     @Override
     public SnapshotManager createSnapshotManager(RaftGroupConfigEx groupConfig, StateMachine stateMachine) {
         return new DefaultSnapshotManager(groupConfig, stateMachine);
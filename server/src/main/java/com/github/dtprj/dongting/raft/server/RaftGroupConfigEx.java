@@ -17,6 +17,7 @@ package com.github.dtprj.dongting.raft.server;
 
 import com.github.dtprj.dongting.common.Timestamp;
 import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.raft.store.ForceCoordinator;
 
 import java.util.concurrent.ExecutorService;
 
@@ -29,6 +30,7 @@ public class RaftGroupConfigEx extends RaftGroupConfig {
     private RaftStatus raftStatus;
     private ExecutorService blockIoExecutor;
     private FiberGroup fiberGroup;
+    private ForceCoordinator forceCoordinator;
 
     public RaftGroupConfigEx(int groupId, String nodeIdOfMembers, String nodeIdOfObservers) {
         super(groupId, nodeIdOfMembers, nodeIdOfObservers);
@@ -65,4 +67,12 @@ public class RaftGroupConfigEx extends RaftGroupConfig {
     public void setBlockIoExecutor(ExecutorService blockIoExecutor) {
         this.blockIoExecutor = blockIoExecutor;
     }
+
+    public ForceCoordinator getForceCoordinator() {
+        return forceCoordinator;
+    }
+
+    public void setForceCoordinator(ForceCoordinator forceCoordinator) {
+        this.forceCoordinator = forceCoordinator;
+    }
 }
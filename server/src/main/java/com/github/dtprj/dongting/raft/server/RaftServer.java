@@ -16,8 +16,10 @@
 package com.github.dtprj.dongting.raft.server;
 
 import com.github.dtprj.dongting.common.AbstractLifeCircle;
+import com.github.dtprj.dongting.common.ConcurrentIntObjMap;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.common.MemoryQuota;
 import com.github.dtprj.dongting.fiber.Dispatcher;
 import com.github.dtprj.dongting.fiber.Fiber;
 import com.github.dtprj.dongting.fiber.FiberChannel;
@@ -60,6 +62,7 @@ import com.github.dtprj.dongting.raft.rpc.RaftSequenceProcessor;
 import com.github.dtprj.dongting.raft.rpc.TransferLeaderProcessor;
 import com.github.dtprj.dongting.raft.rpc.VoteProcessor;
 import com.github.dtprj.dongting.raft.sm.StateMachine;
+import com.github.dtprj.dongting.raft.store.ForceCoordinator;
 import com.github.dtprj.dongting.raft.store.RaftLog;
 import com.github.dtprj.dongting.raft.store.StatusManager;
 
@@ -70,7 +73,6 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
@@ -86,7 +88,7 @@ public class RaftServer extends AbstractLifeCircle {
     private final NioClient replicateNioClient;
     private final NioServer serviceNioServer;
 
-    private final ConcurrentHashMap<Integer, RaftGroupImpl> raftGroups = new ConcurrentHashMap<>();
+    private final ConcurrentIntObjMap<RaftGroupImpl> raftGroups = new ConcurrentIntObjMap<>();
 
     private final RaftServerConfig serverConfig;
 
@@ -95,6 +97,10 @@ public class RaftServer extends AbstractLifeCircle {
     private final ReentrantLock changeLock = new ReentrantLock();
 
     private final PendingStat serverStat = new PendingStat();
+    // parent of the pending task bytes quota of all groups
+    private final MemoryQuota serverQuota;
+    // merge the force requests of all groups, null if disabled
+    private final ForceCoordinator forceCoordinator;
 
     // indicate each group has enough members (>= elect quorum) raft ping ok
     private final CompletableFuture<Void> allMemberReadyFuture = new CompletableFuture<>();
@@ -110,6 +116,10 @@ public class RaftServer extends AbstractLifeCircle {
         Objects.requireNonNull(raftFactory);
         this.serverConfig = serverConfig;
         this.raftFactory = raftFactory;
+        this.serverQuota = MemoryQuota.ROOT.createChild("raftServer" + serverConfig.getNodeId(),
+                serverConfig.getMaxPendingTaskBytes());
+        this.forceCoordinator = serverConfig.getForceMaxDelayMicros() >= 0 ?
+                new ForceCoordinator(serverConfig.getForceMaxDelayMicros()) : null;
 
         Objects.requireNonNull(serverConfig.getServers());
         DtUtil.checkPositive(serverConfig.getNodeId(), "id");
@@ -230,6 +240,7 @@ public class RaftServer extends AbstractLifeCircle {
         }
 
         Dispatcher dispatcher = raftFactory.createDispatcher(rgc);
+        // not migratable, the raft group keeps the Timestamp and the pools of the dispatcher thread
         FiberGroup fiberGroup = new FiberGroup("group-" + rgc.getGroupId(), dispatcher);
         RaftStatusImpl raftStatus = new RaftStatusImpl(fiberGroup.getDispatcher().getTs());
         raftStatus.setTailCache(new TailCache(rgc, raftStatus));
@@ -264,6 +275,7 @@ public class RaftServer extends AbstractLifeCircle {
         gc.setApplyManager(applyManager);
         gc.setNodeManager(nodeManager);
         gc.setServerStat(serverStat);
+        gc.setPendingTaskQuota(serverQuota.createChild("group" + rgc.getGroupId(), rgc.getMaxPendingTaskBytes()));
         gc.setSnapshotManager(raftFactory.createSnapshotManager(rgcEx, stateMachine));
         gc.setStatusManager(statusManager);
         gc.setLinearTaskRunner(linearTaskRunner);
@@ -289,6 +301,7 @@ public class RaftServer extends AbstractLifeCircle {
         rgcEx.setTs(raftStatus.getTs());
         rgcEx.setRaftStatus(raftStatus);
         rgcEx.setBlockIoExecutor(raftFactory.createBlockIoExecutor(serverConfig));
+        rgcEx.setForceCoordinator(forceCoordinator);
         rgcEx.setFiberGroup(fiberGroup);
         return rgcEx;
     }
@@ -484,7 +497,12 @@ public class RaftServer extends AbstractLifeCircle {
                 if (replicateNioClient != null) {
                     replicateNioClient.stop(timeout, true);
                 }
+                if (forceCoordinator != null) {
+                    // the coordinator forces the pending requests in the block io executor
+                    forceCoordinator.shutdown();
+                }
                 raftFactory.shutdownBlockIoExecutor();
+                serverQuota.close();
             }
         } catch (RuntimeException | Error e) {
             log.error("stop raft server failed", e);
@@ -529,7 +547,10 @@ public class RaftServer extends AbstractLifeCircle {
             // the group shutdown is not finished, but it's ok to call afterGroupShutdown(to shutdown dispatcher)
             raftFactory.stopDispatcher(fiberGroup.getDispatcher(), timeout);
 
-            CompletableFuture<Void> f = g.getFiberGroup().getShutdownFuture().thenRun(() -> raftGroups.remove(g.getGroupId()));
+            CompletableFuture<Void> f = g.getFiberGroup().getShutdownFuture().thenRun(() -> {
+                raftGroups.remove(g.getGroupId());
+                gc.getPendingTaskQuota().close();
+            });
             g.setShutdownFuture(f);
             return f;
         }
@@ -666,6 +687,10 @@ public class RaftServer extends AbstractLifeCircle {
         return raftGroups.get(groupId);
     }
 
+    public ForceCoordinator getForceCoordinator() {
+        return forceCoordinator;
+    }
+
     public NioServer getServiceNioServer() {
         return serviceNioServer;
     }
@@ -34,6 +34,13 @@ public class RaftServerConfig {
 
     private boolean checkSelf = true;
 
+    // total pending task bytes of all groups, 0 means no limit
+    private long maxPendingTaskBytes = 0;
+
+    // merge the force requests of all groups in this window, negative value means each group force its files
+    // independently
+    private long forceMaxDelayMicros = -1;
+
     private int blockIoThreads = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4);
 
     private PoolFactory poolFactory = new DefaultPoolFactory();
@@ -118,6 +125,22 @@ public class RaftServerConfig {
         this.poolFactory = poolFactory;
     }
 
+    public long getMaxPendingTaskBytes() {
+        return maxPendingTaskBytes;
+    }
+
+    public void setMaxPendingTaskBytes(long maxPendingTaskBytes) {
+        this.maxPendingTaskBytes = maxPendingTaskBytes;
+    }
+
+    public long getForceMaxDelayMicros() {
+        return forceMaxDelayMicros;
+    }
+
+    public void setForceMaxDelayMicros(long forceMaxDelayMicros) {
+        this.forceMaxDelayMicros = forceMaxDelayMicros;
+    }
+
     public int getBlockIoThreads() {
         return blockIoThreads;
     }
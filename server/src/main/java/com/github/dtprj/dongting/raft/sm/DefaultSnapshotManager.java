@@ -21,6 +21,7 @@ import com.github.dtprj.dongting.buf.RefBufferFactory;
 import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
 import com.github.dtprj.dongting.common.DtUtil;
 import com.github.dtprj.dongting.common.Pair;
+import com.github.dtprj.dongting.fiber.BlockingCallFrame;
 import com.github.dtprj.dongting.fiber.Fiber;
 import com.github.dtprj.dongting.fiber.FiberCondition;
 import com.github.dtprj.dongting.fiber.FiberFrame;
@@ -37,7 +38,7 @@ import com.github.dtprj.dongting.raft.impl.SnapshotReader;
 import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
 import com.github.dtprj.dongting.raft.store.AsyncIoTask;
 import com.github.dtprj.dongting.raft.store.DtFile;
-import com.github.dtprj.dongting.raft.store.ForceFrame;
+import com.github.dtprj.dongting.raft.store.ForceCoordinator;
 import com.github.dtprj.dongting.raft.store.StatusFile;
 
 import java.io.File;
@@ -124,15 +125,15 @@ public class DefaultSnapshotManager implements SnapshotManager {
                 File dataFile = new File(snapshotDir, baseName + DATA_SUFFIX);
                 if (f.length() == 0) {
                     log.warn("empty status file: {}", f.getPath());
-                    deleteInIoExecutor(f);
-                    deleteInIoExecutor(dataFile);
+                    deleteInBlockingThread(f);
+                    deleteInBlockingThread(dataFile);
                     continue;
                 }
                 if (dataFile.exists()) {
                     snapshotFiles.addFirst(new Pair<>(f, dataFile));
                 } else {
                     log.error("missing data file: {}", f.getPath());
-                    deleteInIoExecutor(f);
+                    deleteInBlockingThread(f);
                 }
             }
             if (snapshotFiles.isEmpty()) {
@@ -175,14 +176,16 @@ public class DefaultSnapshotManager implements SnapshotManager {
         return new RecoverFiberFrame(groupConfig, stateMachine, (FileSnapshot) snapshot);
     }
 
-    private void deleteInIoExecutor(File f) {
-        ioExecutor.submit(() -> {
+    private void deleteInBlockingThread(File f) {
+        // not wait the result, failure is logged in the blocking thread
+        BlockingCallFrame.call(groupConfig.getFiberGroup(), ioExecutor, () -> {
             if (f != null && f.exists()) {
                 log.info("delete file: {}", f.getPath());
                 if (!f.delete()) {
                     log.error("delete file failed: {}", f.getPath());
                 }
             }
+            return null;
         });
     }
 
@@ -242,8 +245,8 @@ public class DefaultSnapshotManager implements SnapshotManager {
         private void deleteOldFiles() {
             while (snapshotFiles.size() > KEEP) {
                 Pair<File, File> p = snapshotFiles.removeFirst();
-                deleteInIoExecutor(p.getLeft());
-                deleteInIoExecutor(p.getRight());
+                deleteInBlockingThread(p.getLeft());
+                deleteInBlockingThread(p.getRight());
             }
         }
     }
@@ -309,10 +312,10 @@ public class DefaultSnapshotManager implements SnapshotManager {
                     complete(new RaftCancelException("save snapshot task is cancelled"));
                 }
                 if (newDataFile != null) {
-                    deleteInIoExecutor(newDataFile.getFile());
+                    deleteInBlockingThread(newDataFile.getFile());
                 }
                 if (newIdxFile != null) {
-                    deleteInIoExecutor(newIdxFile);
+                    deleteInBlockingThread(newIdxFile);
                 }
             } else {
                 complete(null);
@@ -391,7 +394,7 @@ public class DefaultSnapshotManager implements SnapshotManager {
             if (checkCancel()) {
                 return Fiber.frameReturn();
             }
-            ForceFrame ff = new ForceFrame(newDataFile.getChannel(), ioExecutor, true);
+            FiberFrame<Void> ff = ForceCoordinator.createForceFrame(groupConfig, newDataFile.getChannel(), true);
             return Fiber.call(ff, this::writeIdxFile);
         }
 
@@ -16,26 +16,28 @@
 package com.github.dtprj.dongting.raft.sm;
 
 import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.fiber.BlockingCallFrame;
 import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.fiber.FiberGroup;
 import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
-import com.github.dtprj.dongting.raft.store.AsyncIoTask;
-import com.github.dtprj.dongting.raft.store.DtFile;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
-import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
 
 /**
  * @author huangli
  */
 public class FileSnapshot extends Snapshot {
 
-    private final DtFile dtFile;
+    private final File dataFile;
+    private final FileChannel channel;
     private final FiberGroup fiberGroup;
+    private final ExecutorService ioExecutor;
     private final long fileSize;
 
     private long filePos;
@@ -45,14 +47,11 @@ public class FileSnapshot extends Snapshot {
     public FileSnapshot(RaftGroupConfigEx groupConfig, SnapshotInfo si, File dataFile, int bufferSize) throws IOException {
         super(si);
         this.fiberGroup = groupConfig.getFiberGroup();
+        this.ioExecutor = groupConfig.getBlockIoExecutor();
+        this.dataFile = dataFile;
         this.fileSize = dataFile.length();
         this.bufferSize = bufferSize;
-
-        HashSet<StandardOpenOption> options = new HashSet<>();
-        options.add(StandardOpenOption.READ);
-        AsynchronousFileChannel channel = AsynchronousFileChannel.open(dataFile.toPath(), options,
-                groupConfig.getBlockIoExecutor());
-        this.dtFile = new DtFile(dataFile, channel, groupConfig.getFiberGroup());
+        this.channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
     }
 
     @Override
@@ -65,16 +64,26 @@ public class FileSnapshot extends Snapshot {
         if (rest < copy.remaining()) {
             copy.limit(copy.position() + (int) rest);
         }
-        AsyncIoTask t = new AsyncIoTask(fiberGroup, dtFile);
         int readBytes = copy.remaining();
-        FiberFuture<Void> f = t.read(copy, filePos);
+        long pos = filePos;
         filePos += readBytes;
-        return f.convert("FileSnapshotReadNext", v -> readBytes);
+        return BlockingCallFrame.call(fiberGroup, ioExecutor, () -> readFully(copy, pos, readBytes));
+    }
+
+    private int readFully(ByteBuffer buf, long pos, int readBytes) throws IOException {
+        while (buf.hasRemaining()) {
+            int x = channel.read(buf, pos);
+            if (x < 0) {
+                throw new EOFException("unexpected end of snapshot file: " + dataFile.getPath());
+            }
+            pos += x;
+        }
+        return readBytes;
     }
 
     @Override
     protected void doClose() {
-        DtUtil.close(dtFile.getChannel());
+        DtUtil.close(channel);
     }
 
     public int getBufferSize() {
@@ -30,6 +30,10 @@ public interface StateMachine extends LifeCircle, RaftCodecFactory {
 
     /**
      * this method is called in raft thread.
+     *
+     * <p>If the returned future is created by FiberGroup.newRecyclableFuture(), its ownership is handed to the
+     * raft framework, which recycles it after it's complete. The state machine may await it, but should not
+     * access it after it's complete.
      */
     FiberFuture<Object> exec(long index, RaftInput input);
 
@@ -69,13 +69,23 @@ public class AsyncIoTask implements CompletionHandler<Integer, Void>, BiConsumer
 
     public AsyncIoTask(FiberGroup fiberGroup, DtFile dtFile, int[] retryInterval, boolean retryForever,
                        Supplier<Boolean> cancelRetryIndicator) {
+        this(fiberGroup, dtFile, retryInterval, retryForever, cancelRetryIndicator, false);
+    }
+
+    /**
+     * If recyclableFuture is true, the owner should call getFuture().recycle() after the task finished
+     * and the future is no longer used.
+     */
+    protected AsyncIoTask(FiberGroup fiberGroup, DtFile dtFile, int[] retryInterval, boolean retryForever,
+                          Supplier<Boolean> cancelRetryIndicator, boolean recyclableFuture) {
         this.fiberGroup = fiberGroup;
         Objects.requireNonNull(dtFile);
         this.dtFile = dtFile;
         this.retryInterval = retryInterval;
         this.retryForever = retryForever;
         this.cancelRetryIndicator = cancelRetryIndicator;
-        this.future = fiberGroup.newFuture("asyncIoTaskFuture");
+        this.future = recyclableFuture ? fiberGroup.newRecyclableFuture("asyncIoTaskFuture")
+                : fiberGroup.newFuture("asyncIoTaskFuture");
         this.future.registerCallback(this);
     }
 
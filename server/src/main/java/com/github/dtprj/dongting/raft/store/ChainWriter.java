@@ -109,7 +109,7 @@ public abstract class ChainWriter {
         public WriteTask(FiberGroup fiberGroup, DtFile dtFile, int[] retryInterval, boolean retryForever,
                          Supplier<Boolean> cancelIndicator, ByteBuffer buf, long posInFile, boolean force,
                          int perfItemCount, long lastRaftIndex) {
-            super(fiberGroup, dtFile, retryInterval, retryForever, cancelIndicator);
+            super(fiberGroup, dtFile, retryInterval, retryForever, cancelIndicator, true);
             this.posInFile = posInFile;
             this.force = force;
             this.buf = buf;
@@ -176,6 +176,8 @@ public abstract class ChainWriter {
             FiberFuture<Void> f = t.getFuture();
             if (f.isDone()) {
                 writeTasks.removeFirst();
+                // the future is not used after the task removed from writeTasks
+                f.recycle();
                 if (t.force) {
                     lastTaskNeedCallback = t;
                     forceTasks.add(t);
@@ -239,7 +241,7 @@ public abstract class ChainWriter {
                         break;
                     }
                 }
-                ForceFrame ff = new ForceFrame(task.getDtFile().getChannel(), config.getBlockIoExecutor(), false);
+                FiberFrame<Void> ff = ForceCoordinator.createForceFrame(config, task.getDtFile().getChannel(), false);
                 RetryFrame<Void> rf = new RetryFrame<>(ff, config.getIoRetryInterval(), true);
                 WriteTask finalTask = task;
                 long perfStartTime = perfCallback.takeTime(forcePerfType);
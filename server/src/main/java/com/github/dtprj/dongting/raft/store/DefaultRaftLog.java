@@ -240,6 +240,10 @@ public class DefaultRaftLog implements RaftLog {
 
     @Override
     public FiberFrame<Void> finishInstall(long nextLogIndex, long nextLogPos) {
+        if (nextLogPos < 0) {
+            throw new RaftException("the raft log of leader has no log position, can't install snapshot: nextLogIndex="
+                    + nextLogIndex + ", nextLogPos=" + nextLogPos);
+        }
         logFiles.finishInstall(nextLogIndex, nextLogPos);
         return new FiberFrame<>() {
             @Override
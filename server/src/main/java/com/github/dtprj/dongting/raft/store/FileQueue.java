@@ -18,6 +18,7 @@ package com.github.dtprj.dongting.raft.store;
 import com.github.dtprj.dongting.common.BitUtil;
 import com.github.dtprj.dongting.common.DtUtil;
 import com.github.dtprj.dongting.common.IndexedQueue;
+import com.github.dtprj.dongting.fiber.BlockingCallFrame;
 import com.github.dtprj.dongting.fiber.DoInLockFrame;
 import com.github.dtprj.dongting.fiber.Fiber;
 import com.github.dtprj.dongting.fiber.FiberFrame;
@@ -246,31 +247,33 @@ abstract class FileQueue {
             fileStartPos = queueEndPosition;
             String fileName = String.format("%020d", fileStartPos);
             file = new File(dir, fileName);
-            FiberFuture<Void> createFileFuture = getFiberGroup().newFuture("createFile");
-            ioExecutor.execute(() -> {
-                long startTime = System.currentTimeMillis();
-                try {
-                    RandomAccessFile raf = new RandomAccessFile(file, "rw");
-                    raf.setLength(getFileSize());
-                    raf.getFD().sync();
-                    raf.close();
-                    HashSet<OpenOption> openOptions = new HashSet<>();
-                    openOptions.add(StandardOpenOption.READ);
-                    openOptions.add(StandardOpenOption.WRITE);
-                    openOptions.add(StandardOpenOption.CREATE);
-                    ExecutorService executor = groupConfig.isIoCallbackUseGroupExecutor() ?
-                            groupConfig.getFiberGroup().getExecutor() : ioExecutor;
-                    channel = AsynchronousFileChannel.open(file.toPath(), openOptions, executor);
-                    long time = System.currentTimeMillis() - startTime;
-                    createFileFuture.fireComplete(null);
-                    log.info("allocate file done, cost {} ms: {}", time, file.getPath());
-                } catch (Throwable e) {
-                    long time = System.currentTimeMillis() - startTime;
-                    createFileFuture.fireCompleteExceptionally(e);
-                    log.info("allocate file failed, cost {} ms: {}", time, file, e);
+            ExecutorService executor = groupConfig.isIoCallbackUseGroupExecutor() ?
+                    groupConfig.getFiberGroup().getExecutor() : ioExecutor;
+            BlockingCallFrame<Void> createFileFrame = new BlockingCallFrame<>(ioExecutor) {
+                @Override
+                protected Void callInBlockingThread() throws Exception {
+                    long startTime = System.currentTimeMillis();
+                    try {
+                        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                        raf.setLength(getFileSize());
+                        raf.getFD().sync();
+                        raf.close();
+                        HashSet<OpenOption> openOptions = new HashSet<>();
+                        openOptions.add(StandardOpenOption.READ);
+                        openOptions.add(StandardOpenOption.WRITE);
+                        openOptions.add(StandardOpenOption.CREATE);
+                        channel = AsynchronousFileChannel.open(file.toPath(), openOptions, executor);
+                        long time = System.currentTimeMillis() - startTime;
+                        log.info("allocate file done, cost {} ms: {}", time, file.getPath());
+                        return null;
+                    } catch (Exception e) {
+                        long time = System.currentTimeMillis() - startTime;
+                        log.info("allocate file failed, cost {} ms: {}", time, file, e);
+                        throw e;
+                    }
                 }
-            });
-            return createFileFuture.await(this::afterCreateFile);
+            };
+            return Fiber.call(createFileFrame, this::afterCreateFile);
         }
 
         private FrameCallResult afterCreateFile(Void v) {
@@ -316,26 +319,22 @@ abstract class FileQueue {
                 logFile.getNoRwCond().await(this);
             }
             logFile.deleted = true;
-            FiberFuture<Void> deleteFuture = groupConfig.getFiberGroup().newFuture("deleteFile");
-            try {
-                ioExecutor.execute(() -> {
+            BlockingCallFrame<Void> deleteFrame = new BlockingCallFrame<>(ioExecutor) {
+                @Override
+                protected Void callInBlockingThread() throws Exception {
                     try {
                         log.debug("close log file: {}", logFile.getFile().getPath());
                         DtUtil.close(logFile.getChannel());
                         log.info("delete log file: {}", logFile.getFile().getPath());
                         Files.delete(logFile.getFile().toPath());
-
-                        deleteFuture.fireComplete(null);
-                    } catch (Throwable e) {
+                        return null;
+                    } catch (Exception e) {
                         log.error("delete file fail: ", logFile.getFile().getPath(), e);
-                        deleteFuture.fireCompleteExceptionally(e);
+                        throw e;
                     }
-                });
-            } catch (Throwable e) {
-                log.error("submit delete task fail: ", e);
-                deleteFuture.completeExceptionally(e);
-            }
-            return deleteFuture.await(this::doAfterDelete);
+                }
+            };
+            return Fiber.call(deleteFrame, this::doAfterDelete);
         }
 
         private FrameCallResult doAfterDelete(Void unused) {
@@ -0,0 +1,321 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+import com.github.dtprj.dongting.raft.RaftException;
+import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Node level force coordinator, merges the force requests of all groups. The first request of a batch waits
+ * at most maxDelay for other requests, then each distinct file of the batch is forced once, and all the waiting
+ * futures are completed together. The requests on the same file in a batch share one force.
+ *
+ * <p>The distinct files of a batch are forced in parallel, one in the coordinator thread and the others in the
+ * executor of their requests (the block io executor of the group), so the batch costs about one fsync instead of
+ * one per file. Java has no syncfs, so each file still needs its own fdatasync. Use SharedLogStore if the groups
+ * should share one fsync stream.
+ *
+ * @author huangli
+ */
+public class ForceCoordinator {
+    private static final DtLog log = DtLogs.getLogger(ForceCoordinator.class);
+
+    private final long maxDelayNanos;
+    private final Thread thread;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition cond = lock.newCondition();
+    private ArrayList<Request> queue = new ArrayList<>();
+    private long batchStartNanos;
+    private boolean stop;
+
+    // updated with lock, volatile read by stat getters
+    private volatile long requestCount;
+    // written by the coordinator thread only (single writer), volatile read by stat getters
+    private volatile long forceCount;
+    private volatile long parallelForceCount;
+    private volatile long batchCount;
+
+    private static final class Request {
+        final AsynchronousFileChannel channel;
+        final boolean meta;
+        final Executor executor;
+        final FiberFuture<Void> future;
+
+        Request(AsynchronousFileChannel channel, boolean meta, Executor executor, FiberFuture<Void> future) {
+            this.channel = channel;
+            this.meta = meta;
+            this.executor = executor;
+            this.future = future;
+        }
+    }
+
+    private final class ForceTask implements Runnable {
+        final AsynchronousFileChannel channel;
+        boolean meta;
+        Executor executor;
+        CountDownLatch latch;
+        Throwable ex;
+
+        ForceTask(AsynchronousFileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            try {
+                force(channel, meta);
+            } catch (Throwable e) {
+                log.error("force file failed: {}", channel, e);
+                ex = e;
+            } finally {
+                if (latch != null) {
+                    latch.countDown();
+                }
+            }
+        }
+    }
+
+    public ForceCoordinator(long maxDelayMicros) {
+        DtUtil.checkNotNegative(maxDelayMicros, "maxDelayMicros");
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.thread = new Thread(this::run, "DtForceCoordinator");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Submit a force request, should be called in the dispatcher thread of the fiber group.
+     *
+     * @param executor the executor to force the file in parallel with other files of the batch, if it's null
+     *                 the file is forced in the coordinator thread
+     */
+    public FiberFuture<Void> submit(FiberGroup fiberGroup, AsynchronousFileChannel channel, boolean meta,
+                                    Executor executor) {
+        FiberFuture<Void> f = fiberGroup.newFuture("coordinatedForce");
+        lock.lock();
+        try {
+            if (stop) {
+                f.completeExceptionally(new RaftException("force coordinator stopped"));
+                return f;
+            }
+            if (queue.isEmpty()) {
+                batchStartNanos = System.nanoTime();
+                cond.signal();
+            }
+            queue.add(new Request(channel, meta, executor, f));
+            requestCount++;
+        } finally {
+            lock.unlock();
+        }
+        return f;
+    }
+
+    /**
+     * Create a frame which submits a force request and waits it, can be used in place of ForceFrame.
+     */
+    public FiberFrame<Void> createForceFrame(AsynchronousFileChannel channel, boolean meta, Executor executor) {
+        return new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return submit(getFiberGroup(), channel, meta, executor).await(this::justReturn);
+            }
+        };
+    }
+
+    /**
+     * Create a frame to force the file, use the force coordinator of the group if it's set.
+     */
+    public static FiberFrame<Void> createForceFrame(RaftGroupConfigEx config, AsynchronousFileChannel channel,
+                                                    boolean meta) {
+        ForceCoordinator fc = config.getForceCoordinator();
+        if (fc == null) {
+            return new ForceFrame(channel, config.getBlockIoExecutor(), meta);
+        } else {
+            return fc.createForceFrame(channel, meta, config.getBlockIoExecutor());
+        }
+    }
+
+    private void run() {
+        ArrayList<Request> list = new ArrayList<>();
+        IdentityHashMap<AsynchronousFileChannel, ForceTask> tasks = new IdentityHashMap<>();
+        ArrayList<ForceTask> taskList = new ArrayList<>();
+        while (true) {
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !stop) {
+                    cond.await();
+                }
+                if (queue.isEmpty()) {
+                    break;
+                }
+                long rest;
+                while (!stop && (rest = maxDelayNanos - (System.nanoTime() - batchStartNanos)) > 0) {
+                    //noinspection ResultOfMethodCallIgnored
+                    cond.awaitNanos(rest);
+                }
+                ArrayList<Request> tmp = queue;
+                queue = list;
+                list = tmp;
+            } catch (InterruptedException e) {
+                log.warn("force coordinator interrupted");
+                break;
+            } finally {
+                lock.unlock();
+            }
+            forceBatch(list, tasks, taskList);
+            list.clear();
+            tasks.clear();
+            taskList.clear();
+        }
+        log.info("force coordinator exit");
+    }
+
+    private void forceBatch(ArrayList<Request> list, IdentityHashMap<AsynchronousFileChannel, ForceTask> tasks,
+                            ArrayList<ForceTask> taskList) {
+        for (int size = list.size(), i = 0; i < size; i++) {
+            Request r = list.get(i);
+            ForceTask t = tasks.get(r.channel);
+            if (t == null) {
+                t = new ForceTask(r.channel);
+                tasks.put(r.channel, t);
+                taskList.add(t);
+            }
+            // meta is true if any request of the file need it
+            t.meta |= r.meta;
+            if (t.executor == null) {
+                t.executor = r.executor;
+            }
+        }
+        int count = taskList.size();
+        int parallelCount = 0;
+        CountDownLatch latch = count > 1 ? new CountDownLatch(count - 1) : null;
+        for (int i = 0; i < count - 1; i++) {
+            ForceTask t = taskList.get(i);
+            t.latch = latch;
+            if (t.executor != null) {
+                try {
+                    t.executor.execute(t);
+                    parallelCount++;
+                    continue;
+                } catch (RejectedExecutionException e) {
+                    log.warn("force executor rejected, force in coordinator thread: {}", t.channel);
+                }
+            }
+            t.run();
+        }
+        // the coordinator thread is idle during the batch, so the last file is forced here
+        taskList.get(count - 1).run();
+        if (latch != null) {
+            awaitUninterruptibly(latch);
+        }
+        forceCount += count;
+        parallelForceCount += parallelCount;
+        batchCount++;
+        for (int size = list.size(), i = 0; i < size; i++) {
+            Request r = list.get(i);
+            Throwable ex = tasks.get(r.channel).ex;
+            if (ex != null) {
+                r.future.fireCompleteExceptionally(ex);
+            } else {
+                r.future.fireComplete(null);
+            }
+        }
+    }
+
+    // the futures can't be completed before all the forces of the batch finished
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            DtUtil.restoreInterruptStatus();
+        }
+    }
+
+    // visible for test
+    void force(AsynchronousFileChannel channel, boolean meta) throws IOException {
+        channel.force(meta);
+    }
+
+    /**
+     * Stop the coordinator thread after the pending requests are forced.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            stop = true;
+            cond.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            DtUtil.restoreInterruptStatus();
+        }
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public long getForceCount() {
+        return forceCount;
+    }
+
+    /**
+     * The count of forces run in the executors, in parallel with the force of the coordinator thread.
+     */
+    public long getParallelForceCount() {
+        return parallelForceCount;
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * The count of force calls saved by merging the requests on the same file.
+     */
+    public long getForcesSaved() {
+        return getRequestCount() - forceCount;
+    }
+}
@@ -15,9 +15,8 @@
  */
 package com.github.dtprj.dongting.raft.store;
 
+import com.github.dtprj.dongting.fiber.BlockingCallFrame;
 import com.github.dtprj.dongting.fiber.Fiber;
-import com.github.dtprj.dongting.fiber.FiberFrame;
-import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.fiber.FrameCallResult;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
@@ -28,33 +27,33 @@ import java.util.concurrent.Executor;
 /**
  * @author huangli
  */
-public class ForceFrame extends FiberFrame<Void> {
+public class ForceFrame extends BlockingCallFrame<Void> {
 
     private static final DtLog log = DtLogs.getLogger(ForceFrame.class);
 
     private final AsynchronousFileChannel channel;
-    private final Executor ioExecutor;
     private final boolean meta;
 
     public ForceFrame(AsynchronousFileChannel channel, Executor ioExecutor, boolean meta) {
+        super(ioExecutor);
         this.channel = channel;
-        this.ioExecutor = ioExecutor;
         this.meta = meta;
     }
 
     @Override
-    public final FrameCallResult execute(Void input) throws Throwable {
-        FiberFuture<Void> f = getFiberGroup().newFuture("forceFile");
-        ioExecutor.execute(() -> {
-            try {
-                channel.force(meta);
-                f.fireComplete(null);
-            } catch (Throwable e) {
-                log.error("force file failed: {}", channel);
-                f.fireCompleteExceptionally(e);
-            }
-        });
-        return f.await(this::afterForce);
+    protected final Void callInBlockingThread() throws Exception {
+        try {
+            channel.force(meta);
+            return null;
+        } catch (Exception e) {
+            log.error("force file failed: {}", channel);
+            throw e;
+        }
+    }
+
+    @Override
+    protected final FrameCallResult afterCall(Void v) {
+        return afterForce(v);
     }
 
     protected FrameCallResult afterForce(Void v) {
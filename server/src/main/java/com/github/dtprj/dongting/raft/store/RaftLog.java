@@ -30,6 +30,11 @@ import java.util.function.Supplier;
  */
 public interface RaftLog {
 
+    /**
+     * returned by loadNextItemPos() if the implementation has no log position.
+     */
+    long NO_POS = -1;
+
     /**
      * @return term and index of persisted last item
      */
@@ -67,8 +72,15 @@ public interface RaftLog {
 
     FiberFrame<Void> beginInstall() throws Exception;
 
+    /**
+     * @param nextLogPos the position loaded by loadNextItemPos() of the leader, may be NO_POS
+     */
     FiberFrame<Void> finishInstall(long nextLogIndex, long nextLogPos) throws Exception;
 
+    /**
+     * load the position of the item after the index, the leader send it to the follower when install snapshot.
+     * @return the position, or NO_POS if the implementation has no log position
+     */
     FiberFrame<Long> loadNextItemPos(long index);
 
     FiberFuture<Void> close();
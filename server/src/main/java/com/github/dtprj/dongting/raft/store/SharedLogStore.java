@@ -0,0 +1,613 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.common.ConcurrentIntObjMap;
+import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+import com.github.dtprj.dongting.raft.RaftException;
+import com.github.dtprj.dongting.raft.impl.FileUtil;
+import com.github.dtprj.dongting.raft.impl.RaftUtil;
+import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
+import com.github.dtprj.dongting.raft.sm.RaftCodecFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * A write-ahead log shared by all raft groups of a node. The groups append group-tagged records to the same
+ * segment files, a single writer thread writes the records of all groups submitted in a round, then calls
+ * fsync once for the round (group commit), so a node with many groups has one fsync stream instead of one
+ * for each group. Each group keeps an in-memory index (raft index to the record position) rebuilt by replaying
+ * the segments when the store is started.
+ *
+ * <p>A sealed segment is deleted when no group has live records in it. If there are more than keepSegments
+ * sealed segments, the small groups (live bytes less than a segment size) which have live records in the old
+ * segments are asked to rewrite them to the head of the log, so a slow group does not hold many segments. The
+ * big groups should truncate their logs after snapshot.
+ *
+ * <p>Use it by returning createRaftLog() in RaftFactory.createRaftLog(). All members of a raft group should
+ * use the same RaftLog implementation, because the log position sent in install snapshot is meaningless to
+ * the other implementation. The store is started by the first group init, and the owner should call close()
+ * after the RaftServer stopped.
+ *
+ * @author huangli
+ */
+public class SharedLogStore {
+    private static final DtLog log = DtLogs.getLogger(SharedLogStore.class);
+
+    static final int TYPE_ITEM = 1;
+    static final int TYPE_TRUNCATE = 2;
+    static final int TYPE_INSTALL = 3;
+
+    // total len 4 bytes
+    // group id 4 bytes
+    // type 1 byte
+    // index 8 bytes
+    // term 4 bytes
+    // prefix crc 4 bytes
+    static final int PREFIX_SIZE = 4 + 4 + 1 + 8 + 4 + 4;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("^(\\d{20})$");
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_KEEP_SEGMENTS = 16;
+
+    private final File dir;
+    private final long segmentSize;
+    private final int keepSegments;
+
+    long compactIntervalMillis = 10 * 1000;
+    long groupCheckIntervalMillis = 1000;
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentIntObjMap<SharedRaftLog> groups = new ConcurrentIntObjMap<>();
+
+    // the indexes restored but not claimed by groups, guarded by this
+    private final HashMap<Integer, WalIndex> restoredIndexes = new HashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmptyCond = lock.newCondition();
+    private ArrayList<WriteBatch> queue = new ArrayList<>();
+    private boolean closing;
+    private volatile IOException error;
+
+    private boolean started;
+    private Thread writerThread;
+
+    // accessed by writer thread only, after started
+    private Segment current;
+    private long writePos;
+    private long lastCompactNanos;
+    private final CRC32C crc32c = new CRC32C();
+    // the batches written but the owner may not update its index yet
+    private final ArrayDeque<WriteBatch> unapplied = new ArrayDeque<>();
+
+    private volatile long forceCount;
+    private volatile long batchCount;
+    private volatile long rewriteRequestCount;
+
+    public SharedLogStore(String dir) {
+        this(dir, DEFAULT_SEGMENT_SIZE, DEFAULT_KEEP_SEGMENTS);
+    }
+
+    public SharedLogStore(String dir, long segmentSize, int keepSegments) {
+        DtUtil.checkPositive(segmentSize, "segmentSize");
+        DtUtil.checkPositive(keepSegments, "keepSegments");
+        this.dir = new File(dir);
+        this.segmentSize = segmentSize;
+        this.keepSegments = keepSegments;
+    }
+
+    public RaftLog createRaftLog(RaftGroupConfigEx groupConfig, RaftCodecFactory codecFactory) {
+        return new SharedRaftLog(this, groupConfig, codecFactory, groupCheckIntervalMillis);
+    }
+
+    static final class Segment {
+        final long startPos;
+        final File file;
+        final FileChannel channel;
+        volatile long endPos;
+
+        Segment(long startPos, File file, FileChannel channel) {
+            this.startPos = startPos;
+            this.file = file;
+            this.channel = channel;
+        }
+    }
+
+    static final class WriteBatch {
+        static final int APPEND = 1;
+        static final int REWRITE = 2;
+        static final int MARK = 3;
+
+        final SharedRaftLog owner;
+        final int type;
+        final ByteBuffer buf;
+        final int epoch;
+        // released by owner after force if not null
+        RefBuffer refBuf;
+
+        // the items, used by APPEND and REWRITE
+        long[] indexes;
+        int[] offsets;
+        int[] lens;
+        int[] terms;
+        long[] timestamps;
+        // the position before rewrite
+        long[] oldPos;
+
+        // complete after force if not null
+        FiberFuture<Void> future;
+
+        // set by writer thread
+        long startPos;
+        // set by owner after the index updated
+        volatile boolean applied;
+
+        WriteBatch(SharedRaftLog owner, int type, ByteBuffer buf, int epoch) {
+            this.owner = owner;
+            this.type = type;
+            this.buf = buf;
+            this.epoch = epoch;
+        }
+    }
+
+    static void writePrefix(CRC32C crc, ByteBuffer buf, int totalLen, int groupId, int type, long index, int term) {
+        int start = buf.position();
+        buf.putInt(totalLen);
+        buf.putInt(groupId);
+        buf.put((byte) type);
+        buf.putLong(index);
+        buf.putInt(term);
+        crc.reset();
+        RaftUtil.updateCrc(crc, buf, start, PREFIX_SIZE - 4);
+        buf.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Restore the segments and start the writer thread, called by the group init in blocking io thread.
+     */
+    synchronized void start() throws IOException {
+        if (started) {
+            if (error != null) {
+                throw error;
+            }
+            return;
+        }
+        FileUtil.ensureDir(dir);
+        File[] files = dir.listFiles(f -> f.isFile() && SEGMENT_NAME.matcher(f.getName()).matches());
+        ArrayList<Segment> list = new ArrayList<>();
+        if (files != null) {
+            for (File f : files) {
+                long startPos = Long.parseLong(f.getName());
+                FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                list.add(new Segment(startPos, f, channel));
+            }
+        }
+        list.sort((s1, s2) -> Long.compare(s1.startPos, s2.startPos));
+        for (int i = 0; i < list.size(); i++) {
+            Segment s = list.get(i);
+            if (i > 0 && list.get(i - 1).endPos != s.startPos) {
+                throw new RaftException("segment not continuous: " + s.file.getPath());
+            }
+            new SegmentScanner(s, i == list.size() - 1).scan();
+            segments.put(s.startPos, s);
+        }
+        for (WalIndex idx : restoredIndexes.values()) {
+            idx.removeGap();
+        }
+        if (list.isEmpty()) {
+            current = createSegment(0);
+        } else {
+            current = list.get(list.size() - 1);
+        }
+        writePos = current.endPos;
+        log.info("shared log store started, dir={}, segments={}, groups={}, writePos={}",
+                dir.getPath(), segments.size(), restoredIndexes.size(), writePos);
+
+        lastCompactNanos = System.nanoTime();
+        writerThread = new Thread(this::run, "shared-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        started = true;
+    }
+
+    private Segment createSegment(long startPos) throws IOException {
+        File f = new File(dir, String.format("%020d", startPos));
+        FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment s = new Segment(startPos, f, channel);
+        s.endPos = startPos;
+        segments.put(startPos, s);
+        return s;
+    }
+
+    private class SegmentScanner {
+        private final Segment segment;
+        private final boolean last;
+        private final LogHeader header = new LogHeader();
+        private ByteBuffer buf = ByteBuffer.allocate(1024 * 1024);
+        // the file position of next read
+        private long readPos;
+
+        SegmentScanner(Segment segment, boolean last) {
+            this.segment = segment;
+            this.last = last;
+            buf.limit(0);
+        }
+
+        private boolean fill(int len) throws IOException {
+            if (buf.remaining() >= len) {
+                return true;
+            }
+            if (buf.capacity() < len) {
+                ByteBuffer newBuf = ByteBuffer.allocate(len);
+                newBuf.put(buf);
+                buf = newBuf;
+            } else {
+                buf.compact();
+            }
+            while (buf.position() < len) {
+                int x = segment.channel.read(buf, readPos);
+                if (x == -1) {
+                    break;
+                }
+                readPos += x;
+            }
+            buf.flip();
+            return buf.remaining() >= len;
+        }
+
+        void scan() throws IOException {
+            long recordPos = 0;
+            while (true) {
+                if (!fill(PREFIX_SIZE)) {
+                    break;
+                }
+                int start = buf.position();
+                int totalLen = buf.getInt(start);
+                crc32c.reset();
+                RaftUtil.updateCrc(crc32c, buf, start, PREFIX_SIZE - 4);
+                if ((int) crc32c.getValue() != buf.getInt(start + PREFIX_SIZE - 4) || totalLen < PREFIX_SIZE) {
+                    break;
+                }
+                if (!fill(totalLen)) {
+                    break;
+                }
+                start = buf.position();
+                if (!apply(start, totalLen, segment.startPos + recordPos)) {
+                    break;
+                }
+                buf.position(start + totalLen);
+                recordPos += totalLen;
+            }
+            segment.endPos = segment.startPos + recordPos;
+            long fileSize = segment.channel.size();
+            if (recordPos < fileSize) {
+                if (last) {
+                    log.warn("truncate the tail of segment {} from {} to {}", segment.file.getPath(),
+                            fileSize, recordPos);
+                    segment.channel.truncate(recordPos);
+                } else {
+                    throw new RaftException("segment corrupted: " + segment.file.getPath() + ", pos=" + recordPos);
+                }
+            }
+        }
+
+        private boolean apply(int start, int totalLen, long pos) {
+            int groupId = buf.getInt(start + 4);
+            int type = buf.get(start + 8);
+            long index = buf.getLong(start + 9);
+            int term = buf.getInt(start + 17);
+            WalIndex idx = restoredIndexes.computeIfAbsent(groupId, k -> new WalIndex());
+            if (type == TYPE_TRUNCATE) {
+                idx.truncateTail(index);
+            } else if (type == TYPE_INSTALL) {
+                idx.reset(index, term);
+                idx.setAnchorPos(pos);
+            } else if (type == TYPE_ITEM) {
+                if (totalLen < PREFIX_SIZE + LogHeader.ITEM_HEADER_SIZE) {
+                    return false;
+                }
+                buf.position(start + PREFIX_SIZE);
+                header.read(buf);
+                if (!header.crcMatch() || header.index != index
+                        || header.totalLen != totalLen - PREFIX_SIZE || !checkData()) {
+                    return false;
+                }
+                idx.put(index, pos, totalLen, header.term, header.timestamp);
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private boolean checkData() {
+            // the position is after the item header
+            return checkData(header.bizHeaderLen) && checkData(header.bodyLen);
+        }
+
+        private boolean checkData(int len) {
+            if (len == 0) {
+                return true;
+            }
+            int p = buf.position();
+            crc32c.reset();
+            RaftUtil.updateCrc(crc32c, buf, p, len);
+            buf.position(p + len);
+            return (int) crc32c.getValue() == buf.getInt();
+        }
+    }
+
+    /**
+     * Take the restored index of the group and register the group, so the compaction knows its live records.
+     */
+    synchronized WalIndex claimIndex(SharedRaftLog raftLog) {
+        if (groups.get(raftLog.getGroupId()) != null) {
+            throw new RaftException("group already registered: " + raftLog.getGroupId());
+        }
+        WalIndex idx = restoredIndexes.remove(raftLog.getGroupId());
+        if (idx == null) {
+            idx = new WalIndex();
+        }
+        raftLog.initLiveStatus(idx);
+        groups.put(raftLog.getGroupId(), raftLog);
+        return idx;
+    }
+
+    /**
+     * Unregister the group after it's closed, and keep its index for re-init.
+     */
+    synchronized void releaseIndex(SharedRaftLog raftLog, WalIndex idx) {
+        if (groups.get(raftLog.getGroupId()) == raftLog) {
+            groups.remove(raftLog.getGroupId());
+            if (idx != null) {
+                restoredIndexes.put(raftLog.getGroupId(), idx);
+            }
+        }
+    }
+
+    void submit(WriteBatch batch) {
+        lock.lock();
+        try {
+            if (closing) {
+                throw new RaftException("shared log store closed");
+            }
+            if (error != null) {
+                batch.owner.fireError(batch, error);
+                return;
+            }
+            queue.add(batch);
+            notEmptyCond.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read the records at pos into buf, called in blocking io thread.
+     */
+    void read(long pos, ByteBuffer buf) throws IOException {
+        Map.Entry<Long, Segment> en = segments.floorEntry(pos);
+        if (en == null) {
+            throw new RaftException("segment not found: " + pos);
+        }
+        Segment s = en.getValue();
+        long filePos = pos - s.startPos;
+        while (buf.hasRemaining()) {
+            int x = s.channel.read(buf, filePos);
+            if (x == -1) {
+                throw new RaftException("read beyond the end of segment " + s.file.getPath() + ": " + pos);
+            }
+            filePos += x;
+        }
+    }
+
+    private void run() {
+        ArrayList<WriteBatch> list = new ArrayList<>();
+        while (true) {
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closing) {
+                    if (!notEmptyCond.await(compactIntervalMillis, TimeUnit.MILLISECONDS)) {
+                        break;
+                    }
+                }
+                if (queue.isEmpty() && closing) {
+                    break;
+                }
+                ArrayList<WriteBatch> tmp = queue;
+                queue = list;
+                list = tmp;
+            } catch (InterruptedException e) {
+                log.warn("shared log writer interrupted");
+                break;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                if (!list.isEmpty()) {
+                    writeAndForce(list);
+                }
+                compact();
+            } catch (IOException e) {
+                log.error("shared log store write failed", e);
+                lock.lock();
+                try {
+                    error = e;
+                    list.addAll(queue);
+                    queue.clear();
+                } finally {
+                    lock.unlock();
+                }
+                for (WriteBatch b : list) {
+                    b.owner.fireError(b, e);
+                }
+                list.clear();
+                break;
+            }
+            list.clear();
+        }
+        log.info("shared log writer exit");
+    }
+
+    private void writeAndForce(ArrayList<WriteBatch> list) throws IOException {
+        for (int size = list.size(), i = 0; i < size; i++) {
+            WriteBatch b = list.get(i);
+            int len = b.buf.remaining();
+            if (writePos > current.startPos && writePos + len - current.startPos > segmentSize) {
+                current.channel.force(false);
+                Segment s = createSegment(writePos);
+                log.info("shared log roll to new segment {}", s.file.getPath());
+                current = s;
+            }
+            b.startPos = writePos;
+            unapplied.add(b);
+            long filePos = writePos - current.startPos;
+            while (b.buf.hasRemaining()) {
+                filePos += current.channel.write(b.buf, filePos);
+            }
+            writePos += len;
+            current.endPos = writePos;
+        }
+        for (int size = list.size(), i = 0; i < size; i++) {
+            WriteBatch b = list.get(i);
+            b.owner.fireWriteFinish(b);
+        }
+        current.channel.force(false);
+        forceCount++;
+        batchCount += list.size();
+        for (int size = list.size(), i = 0; i < size; i++) {
+            WriteBatch b = list.get(i);
+            b.owner.fireForceFinish(b);
+        }
+    }
+
+    private void compact() throws IOException {
+        long now = System.nanoTime();
+        if (now - lastCompactNanos < TimeUnit.MILLISECONDS.toNanos(compactIntervalMillis)) {
+            return;
+        }
+        lastCompactNanos = now;
+        WriteBatch b;
+        while ((b = unapplied.peek()) != null && (b.applied || groups.get(b.owner.getGroupId()) != b.owner)) {
+            unapplied.poll();
+        }
+        long[] minPos = new long[]{b == null ? Long.MAX_VALUE : b.startPos};
+        synchronized (this) {
+            groups.forEach((groupId, g) -> minPos[0] = Math.min(minPos[0], g.getMinLivePos()));
+            for (WalIndex idx : restoredIndexes.values()) {
+                minPos[0] = Math.min(minPos[0], idx.minPos());
+            }
+        }
+        for (Segment s : segments.values()) {
+            if (s == current || s.endPos > minPos[0]) {
+                break;
+            }
+            segments.remove(s.startPos);
+            s.channel.close();
+            if (s.file.delete()) {
+                log.info("shared log segment deleted: {}", s.file.getPath());
+            } else {
+                log.warn("delete shared log segment failed: {}", s.file.getPath());
+            }
+        }
+        int sealedCount = segments.size() - 1;
+        if (sealedCount > keepSegments) {
+            int i = 0;
+            long target = 0;
+            for (Segment s : segments.values()) {
+                if (i++ == sealedCount - keepSegments) {
+                    target = s.startPos;
+                    break;
+                }
+            }
+            long finalTarget = target;
+            groups.forEach((groupId, g) -> {
+                if (g.getMinLivePos() < finalTarget && g.getLiveBytes() < segmentSize) {
+                    rewriteRequestCount++;
+                    g.requestRewrite(finalTarget);
+                }
+            });
+        }
+    }
+
+    /**
+     * Wait the writer thread to write all submitted records, and close the segments.
+     */
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            t = writerThread;
+        }
+        lock.lock();
+        try {
+            closing = true;
+            notEmptyCond.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                DtUtil.restoreInterruptStatus();
+            }
+        }
+        for (Segment s : segments.values()) {
+            DtUtil.close(s.channel);
+        }
+    }
+
+    /**
+     * The count of fsync issued by the writer thread.
+     */
+    public long getForceCount() {
+        return forceCount;
+    }
+
+    /**
+     * The count of batches (append, rewrite, truncate, install) written, the batches of a round share an fsync.
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public long getRewriteRequestCount() {
+        return rewriteRequestCount;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+}
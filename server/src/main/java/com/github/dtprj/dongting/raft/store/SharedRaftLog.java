@@ -0,0 +1,757 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.Decoder;
+import com.github.dtprj.dongting.codec.DecoderCallback;
+import com.github.dtprj.dongting.codec.Encodable;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.common.ByteArray;
+import com.github.dtprj.dongting.common.Pair;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.fiber.BlockingCallFrame;
+import com.github.dtprj.dongting.fiber.DispatcherThread;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+import com.github.dtprj.dongting.raft.RaftException;
+import com.github.dtprj.dongting.raft.impl.DecodeContextEx;
+import com.github.dtprj.dongting.raft.impl.RaftCancelException;
+import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
+import com.github.dtprj.dongting.raft.impl.RaftTask;
+import com.github.dtprj.dongting.raft.impl.RaftUtil;
+import com.github.dtprj.dongting.raft.impl.TailCache;
+import com.github.dtprj.dongting.raft.server.ChecksumException;
+import com.github.dtprj.dongting.raft.server.LogItem;
+import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
+import com.github.dtprj.dongting.raft.sm.RaftCodecFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * The RaftLog of a group in the SharedLogStore. The items are encoded in the raft thread and written by the
+ * writer thread of the store, the index is updated in the raft thread after the write finished. The head of the
+ * index is truncated by a daemon fiber, and the fiber also rewrites the live items in the old segments when the
+ * store asks.
+ *
+ * <p>The log position is not used by this implementation, loadNextItemPos() returns NO_POS and the nextLogPos of
+ * finishInstall() is ignored. So a follower using DefaultRaftLog refuses the snapshot installed by a leader using
+ * this implementation, instead of writing its log at a wrong position.
+ *
+ * @author huangli
+ */
+class SharedRaftLog implements RaftLog {
+    private static final DtLog log = DtLogs.getLogger(SharedRaftLog.class);
+
+    private static final int REWRITE_CHUNK_BYTES = 4 * 1024 * 1024;
+
+    private final SharedLogStore store;
+    private final RaftGroupConfigEx groupConfig;
+    private final int groupId;
+    private final Timestamp ts;
+    private final RaftStatusImpl raftStatus;
+    private final FiberGroup fiberGroup;
+    private final RaftCodecFactory codecFactory;
+    private final TailCache tailCache;
+    private final CRC32C crc32c = new CRC32C();
+    private final EncodeContext encodeContext;
+    private final Fiber checkFiber;
+
+    // accessed in raft thread
+    private WalIndex index;
+    // changed when the index is truncated or reset, so the in-flight rewrite is discarded
+    private int epoch;
+    private int pendingBatches;
+    private boolean closed;
+    private FiberFuture<Void> closeFuture;
+
+    private long deleteIndexBound;
+    private long deleteTimestampBound;
+    private long deleteDeadline;
+
+    // written in raft thread, read by writer thread of store
+    private volatile long minLivePos = Long.MAX_VALUE;
+    private volatile long liveBytes;
+    // written by writer thread of store, read in raft thread
+    private volatile long rewriteTarget;
+
+    SharedRaftLog(SharedLogStore store, RaftGroupConfigEx groupConfig, RaftCodecFactory codecFactory,
+                  long checkIntervalMillis) {
+        this.store = store;
+        this.groupConfig = groupConfig;
+        this.groupId = groupConfig.getGroupId();
+        this.ts = groupConfig.getTs();
+        this.raftStatus = (RaftStatusImpl) groupConfig.getRaftStatus();
+        this.fiberGroup = groupConfig.getFiberGroup();
+        this.codecFactory = codecFactory;
+        this.tailCache = raftStatus.getTailCache();
+        this.encodeContext = new EncodeContext(fiberGroup.getThread().getHeapPool());
+        this.checkFiber = new Fiber("sharedLogCheck-" + groupId, fiberGroup,
+                new CheckFrame(checkIntervalMillis), true);
+    }
+
+    int getGroupId() {
+        return groupId;
+    }
+
+    long getMinLivePos() {
+        return minLivePos;
+    }
+
+    long getLiveBytes() {
+        return liveBytes;
+    }
+
+    void initLiveStatus(WalIndex idx) {
+        this.minLivePos = idx.minPos();
+        this.liveBytes = idx.totalLen();
+    }
+
+    private void updateLiveStatus() {
+        initLiveStatus(index);
+    }
+
+    void requestRewrite(long target) {
+        if (target > rewriteTarget) {
+            rewriteTarget = target;
+        }
+    }
+
+    @Override
+    public FiberFrame<Pair<Integer, Long>> init() {
+        return new BlockingCallFrame<>(groupConfig.getBlockIoExecutor()) {
+            @Override
+            protected Pair<Integer, Long> callInBlockingThread() throws Exception {
+                store.start();
+                WalIndex idx = store.claimIndex(SharedRaftLog.this);
+                index = idx;
+                if (idx.isEmpty()) {
+                    return new Pair<>(idx.getPrevTerm(), idx.getLastIndex());
+                } else {
+                    return new Pair<>(idx.getTerm(idx.getLastIndex()), idx.getLastIndex());
+                }
+            }
+
+            @Override
+            protected FrameCallResult afterCall(Pair<Integer, Long> result) {
+                log.info("shared raft log init, groupId={}, firstIndex={}, lastIndex={}",
+                        groupId, index.getFirstIndex(), index.getLastIndex());
+                checkFiber.start();
+                return super.afterCall(result);
+            }
+        };
+    }
+
+    @Override
+    public void append(List<LogItem> inputs) {
+        int count = inputs.size();
+        if (count == 0) {
+            return;
+        }
+        if (closed) {
+            throw new RaftException("raft log closed");
+        }
+        int totalLen = 0;
+        for (int i = 0; i < count; i++) {
+            totalLen += SharedLogStore.PREFIX_SIZE + itemLen(inputs.get(i));
+        }
+        RefBuffer rb = fiberGroup.getThread().getHeapPool().create(totalLen);
+        ByteBuffer buf = rb.getBuffer();
+        SharedLogStore.WriteBatch b = new SharedLogStore.WriteBatch(this, SharedLogStore.WriteBatch.APPEND,
+                buf, epoch);
+        b.refBuf = rb;
+        b.indexes = new long[count];
+        b.offsets = new int[count];
+        b.lens = new int[count];
+        b.terms = new int[count];
+        b.timestamps = new long[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                LogItem li = inputs.get(i);
+                int len = SharedLogStore.PREFIX_SIZE + itemLen(li);
+                b.indexes[i] = li.getIndex();
+                b.offsets[i] = buf.position();
+                b.lens[i] = len;
+                b.terms[i] = li.getTerm();
+                b.timestamps[i] = li.getTimestamp();
+                SharedLogStore.writePrefix(crc32c, buf, len, groupId, SharedLogStore.TYPE_ITEM,
+                        li.getIndex(), li.getTerm());
+                LogHeader.writeHeader(crc32c, buf, li);
+                if (li.getType() != LogItem.TYPE_LOG_READ) {
+                    encodeData(li.getActualHeaderSize(), li.getHeader(), buf);
+                    encodeData(li.getActualBodySize(), li.getBody(), buf);
+                }
+            }
+        } catch (RuntimeException e) {
+            rb.release();
+            throw e;
+        }
+        buf.flip();
+        pendingBatches++;
+        store.submit(b);
+    }
+
+    private static int itemLen(LogItem li) {
+        if (li.getType() == LogItem.TYPE_LOG_READ) {
+            return LogHeader.ITEM_HEADER_SIZE;
+        } else {
+            return LogHeader.computeTotalLen(0, li.getActualHeaderSize(), li.getActualBodySize());
+        }
+    }
+
+    private void encodeData(int actualSize, Encodable src, ByteBuffer dest) {
+        if (actualSize == 0) {
+            return;
+        }
+        int startPos = dest.position();
+        try {
+            if (!src.encode(encodeContext, dest) || dest.position() - startPos != actualSize) {
+                throw new RaftException("encode problem, totalEncodeLen != actualSize");
+            }
+        } finally {
+            encodeContext.reset();
+        }
+        crc32c.reset();
+        RaftUtil.updateCrc(crc32c, dest, startPos, actualSize);
+        dest.putInt((int) crc32c.getValue());
+    }
+
+    private void submitMark(int type, long idx, int term, FiberFuture<Void> future) {
+        ByteBuffer buf = ByteBuffer.allocate(SharedLogStore.PREFIX_SIZE);
+        SharedLogStore.writePrefix(crc32c, buf, SharedLogStore.PREFIX_SIZE, groupId, type, idx, term);
+        buf.flip();
+        SharedLogStore.WriteBatch b = new SharedLogStore.WriteBatch(this, SharedLogStore.WriteBatch.MARK,
+                buf, epoch);
+        b.indexes = new long[]{type};
+        b.future = future;
+        pendingBatches++;
+        store.submit(b);
+    }
+
+    // called by writer thread of store
+    void fireWriteFinish(SharedLogStore.WriteBatch b) {
+        fiberGroup.getExecutor().execute(() -> afterWrite(b));
+    }
+
+    // called by writer thread of store
+    void fireForceFinish(SharedLogStore.WriteBatch b) {
+        fiberGroup.getExecutor().execute(() -> afterForce(b, null));
+    }
+
+    // called by writer thread of store, or in raft thread
+    void fireError(SharedLogStore.WriteBatch b, Throwable ex) {
+        fiberGroup.getExecutor().execute(() -> afterForce(b, ex));
+    }
+
+    private void afterWrite(SharedLogStore.WriteBatch b) {
+        try {
+            if (b.epoch != epoch || index == null) {
+                return;
+            }
+            if (b.type == SharedLogStore.WriteBatch.APPEND) {
+                WalIndex idx = index;
+                long[] indexes = b.indexes;
+                for (int i = 0; i < indexes.length; i++) {
+                    idx.put(indexes[i], b.startPos + b.offsets[i], b.lens[i], b.terms[i], b.timestamps[i]);
+                }
+                minLivePos = Math.min(minLivePos, b.startPos);
+                liveBytes += b.buf.limit();
+                raftStatus.setLastWriteLogIndex(indexes[indexes.length - 1]);
+                raftStatus.getLogWriteFinishCondition().signalAll();
+            } else if (b.type == SharedLogStore.WriteBatch.REWRITE) {
+                WalIndex idx = index;
+                long[] indexes = b.indexes;
+                for (int i = 0; i < indexes.length; i++) {
+                    long x = indexes[i];
+                    if (x >= idx.getFirstIndex() && x <= idx.getLastIndex() && idx.getPos(x) == b.oldPos[i]) {
+                        idx.setPos(x, b.startPos + b.offsets[i]);
+                    }
+                }
+                updateLiveStatus();
+            } else if (b.indexes[0] == SharedLogStore.TYPE_INSTALL) {
+                index.setAnchorPos(b.startPos);
+                updateLiveStatus();
+            }
+        } finally {
+            b.applied = true;
+        }
+    }
+
+    private void afterForce(SharedLogStore.WriteBatch b, Throwable ex) {
+        pendingBatches--;
+        if (b.refBuf != null) {
+            // the writer thread will not touch the buffer after force or error
+            b.refBuf.release();
+            b.refBuf = null;
+        }
+        if (ex != null) {
+            log.error("shared log write failed, groupId={}", groupId, ex);
+            if (b.future != null) {
+                b.future.completeExceptionally(ex);
+            }
+            fiberGroup.requestShutdown();
+        } else {
+            if (b.type == SharedLogStore.WriteBatch.APPEND && b.epoch == epoch) {
+                raftStatus.setLastForceLogIndex(b.indexes[b.indexes.length - 1]);
+                raftStatus.getLogForceFinishCondition().signalAll();
+            }
+            if (b.future != null) {
+                b.future.complete(null);
+            }
+        }
+        if (pendingBatches == 0 && closeFuture != null && !closeFuture.isDone()) {
+            store.releaseIndex(this, index);
+            closeFuture.complete(null);
+        }
+    }
+
+    private void updateIndex(Runnable r) {
+        r.run();
+        epoch++;
+        updateLiveStatus();
+    }
+
+    @Override
+    public FiberFrame<Void> truncateTail(long idx) {
+        updateIndex(() -> index.truncateTail(idx));
+        submitMark(SharedLogStore.TYPE_TRUNCATE, idx, 0, null);
+        return FiberFrame.completedFrame(null);
+    }
+
+    @Override
+    public LogIterator openIterator(Supplier<Boolean> cancelIndicator) {
+        return new SharedLogIterator(cancelIndicator);
+    }
+
+    @Override
+    public FiberFrame<Pair<Integer, Long>> tryFindMatchPos(int suggestTerm, long suggestIndex,
+                                                           Supplier<Boolean> cancelIndicator) {
+        WalIndex idx = index;
+        long left = idx.isEmpty() && tailCache.size() > 0 ? tailCache.getFirstIndex() : idx.getFirstIndex();
+        long right = Math.min(suggestIndex, raftStatus.getLastLogIndex());
+        Pair<Integer, Long> result = null;
+        while (left <= right) {
+            long mid = (left + right) >>> 1;
+            int term = termOf(mid);
+            if ((term <= suggestTerm && mid < suggestIndex) || (term == suggestTerm && mid == suggestIndex)) {
+                result = new Pair<>(term, mid);
+                left = mid + 1;
+            } else {
+                right = mid - 1;
+            }
+        }
+        return FiberFrame.completedFrame(result);
+    }
+
+    private int termOf(long i) {
+        WalIndex idx = index;
+        if (i >= idx.getFirstIndex() && i <= idx.getLastIndex()) {
+            return idx.getTerm(i);
+        }
+        RaftTask rt = tailCache.get(i);
+        if (rt == null) {
+            throw new RaftException("index not found: " + i);
+        }
+        return rt.getItem().getTerm();
+    }
+
+    @Override
+    public void markTruncateByIndex(long idx, long delayMillis) {
+        deleteIndexBound = idx;
+        deleteTimestampBound = Long.MAX_VALUE;
+        deleteDeadline = ts.getWallClockMillis() + delayMillis;
+    }
+
+    @Override
+    public void markTruncateByTimestamp(long timestampBound, long delayMillis) {
+        deleteIndexBound = Long.MAX_VALUE;
+        deleteTimestampBound = timestampBound;
+        deleteDeadline = ts.getWallClockMillis() + delayMillis;
+    }
+
+    private void truncateHead() {
+        if (deleteDeadline == 0 || ts.getWallClockMillis() < deleteDeadline || index.isEmpty()) {
+            return;
+        }
+        deleteDeadline = 0;
+        WalIndex idx = index;
+        // keep the last item, so the last term and index can be restored
+        long bound = Math.min(raftStatus.getLastApplied(), raftStatus.getLastForceLogIndex());
+        bound = Math.min(Math.min(bound, deleteIndexBound), idx.getLastIndex());
+        if (deleteTimestampBound != Long.MAX_VALUE) {
+            // the timestamp of items is non-decreasing
+            long left = idx.getFirstIndex(), right = bound - 1;
+            while (left <= right) {
+                long mid = (left + right) >>> 1;
+                if (idx.getTimestampCeil(mid) < deleteTimestampBound) {
+                    left = mid + 1;
+                } else {
+                    right = mid - 1;
+                }
+            }
+            bound = left;
+        }
+        if (bound > idx.getFirstIndex()) {
+            log.info("truncate head of shared raft log, groupId={}, firstIndex {} -> {}",
+                    groupId, idx.getFirstIndex(), bound);
+            idx.truncateHead(bound);
+            updateLiveStatus();
+        }
+    }
+
+    @Override
+    public FiberFrame<Void> beginInstall() {
+        return new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (pendingBatches > 0) {
+                    log.info("shared raft log wait for write done, groupId={}", groupId);
+                    return raftStatus.getLogForceFinishCondition().await(1000, this);
+                }
+                return Fiber.frameReturn();
+            }
+        };
+    }
+
+    @Override
+    public FiberFrame<Void> finishInstall(long nextLogIndex, long nextLogPos) {
+        int term = raftStatus.getLastLogTerm();
+        updateIndex(() -> index.reset(nextLogIndex, term));
+        FiberFuture<Void> f = fiberGroup.newFuture("sharedLogInstall");
+        submitMark(SharedLogStore.TYPE_INSTALL, nextLogIndex, term, f);
+        return new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return f.await(this::justReturn);
+            }
+        };
+    }
+
+    @Override
+    public FiberFrame<Long> loadNextItemPos(long idx) {
+        return FiberFrame.completedFrame(NO_POS);
+    }
+
+    @Override
+    public FiberFuture<Void> close() {
+        closed = true;
+        raftStatus.getLogWriteFinishCondition().signalAll();
+        raftStatus.getLogForceFinishCondition().signalAll();
+        closeFuture = fiberGroup.newFuture("sharedLogClose");
+        if (pendingBatches == 0) {
+            store.releaseIndex(this, index);
+            closeFuture.complete(null);
+        }
+        // check fiber is daemon
+        return closeFuture;
+    }
+
+    private class CheckFrame extends FiberFrame<Void> {
+        private final long checkIntervalMillis;
+
+        CheckFrame(long checkIntervalMillis) {
+            this.checkIntervalMillis = checkIntervalMillis;
+        }
+
+        @Override
+        protected FrameCallResult handle(Throwable ex) {
+            throw Fiber.fatal(ex);
+        }
+
+        @Override
+        public FrameCallResult execute(Void input) {
+            if (closed) {
+                return Fiber.frameReturn();
+            }
+            return Fiber.sleep(checkIntervalMillis, this::afterSleep);
+        }
+
+        private FrameCallResult afterSleep(Void v) {
+            if (closed) {
+                return Fiber.frameReturn();
+            }
+            truncateHead();
+            long target = rewriteTarget;
+            if (target > 0) {
+                return Fiber.call(new RewriteFrame(target), this);
+            }
+            return Fiber.resume(null, this);
+        }
+    }
+
+    /**
+     * Copy the live records before target to the head of the store, chunk by chunk.
+     */
+    private class RewriteFrame extends FiberFrame<Void> {
+        private final long target;
+        private int startEpoch;
+        private RefBuffer readBuf;
+
+        RewriteFrame(long target) {
+            this.target = target;
+        }
+
+        @Override
+        public FrameCallResult execute(Void input) {
+            if (closed) {
+                return Fiber.frameReturn();
+            }
+            WalIndex idx = index;
+            ArrayList<Long> list = new ArrayList<>();
+            int bytes = 0;
+            for (long i = idx.getFirstIndex(); i <= idx.getLastIndex() && bytes < REWRITE_CHUNK_BYTES; i++) {
+                if (idx.getPos(i) < target) {
+                    list.add(i);
+                    bytes += idx.getLen(i);
+                }
+            }
+            if (list.isEmpty()) {
+                if (rewriteTarget == target) {
+                    rewriteTarget = 0;
+                }
+                return Fiber.frameReturn();
+            }
+            int count = list.size();
+            long[] indexes = new long[count];
+            long[] oldPos = new long[count];
+            int[] lens = new int[count];
+            for (int i = 0; i < count; i++) {
+                long x = list.get(i);
+                indexes[i] = x;
+                oldPos[i] = idx.getPos(x);
+                lens[i] = idx.getLen(x);
+            }
+            startEpoch = epoch;
+            readBuf = fiberGroup.getThread().getHeapPool().create(bytes);
+            ReadFrame rf = new ReadFrame(oldPos, lens, readBuf.getBuffer());
+            return Fiber.call(rf, buf -> afterRead(buf, indexes, oldPos, lens));
+        }
+
+        private FrameCallResult afterRead(ByteBuffer buf, long[] indexes, long[] oldPos, int[] lens) {
+            if (closed || startEpoch != epoch) {
+                // retry in next check, the buffer is released in doFinally()
+                return Fiber.frameReturn();
+            }
+            SharedLogStore.WriteBatch b = new SharedLogStore.WriteBatch(SharedRaftLog.this,
+                    SharedLogStore.WriteBatch.REWRITE, buf, epoch);
+            b.refBuf = readBuf;
+            readBuf = null;
+            b.indexes = indexes;
+            b.oldPos = oldPos;
+            b.lens = lens;
+            b.offsets = new int[indexes.length];
+            for (int i = 1; i < indexes.length; i++) {
+                b.offsets[i] = b.offsets[i - 1] + lens[i - 1];
+            }
+            b.future = fiberGroup.newFuture("sharedLogRewrite");
+            pendingBatches++;
+            store.submit(b);
+            // loop
+            return b.future.await(v -> Fiber.resume(null, this));
+        }
+
+        @Override
+        protected FrameCallResult doFinally() {
+            if (readBuf != null) {
+                readBuf.release();
+                readBuf = null;
+            }
+            return Fiber.frameReturn();
+        }
+    }
+
+    /**
+     * Read the records into buf in blocking io thread, the continuous records are read together. The buf is
+     * borrowed from the pool in raft thread by the caller, and released by the caller.
+     */
+    private class ReadFrame extends BlockingCallFrame<ByteBuffer> {
+        private final long[] pos;
+        private final int[] lens;
+        private final ByteBuffer buf;
+
+        ReadFrame(long[] pos, int[] lens, ByteBuffer buf) {
+            super(groupConfig.getBlockIoExecutor());
+            this.pos = pos;
+            this.lens = lens;
+            this.buf = buf;
+        }
+
+        @Override
+        protected ByteBuffer callInBlockingThread() throws Exception {
+            int i = 0;
+            while (i < pos.length) {
+                int len = lens[i];
+                int j = i + 1;
+                while (j < pos.length && pos[j] == pos[j - 1] + lens[j - 1]) {
+                    len += lens[j];
+                    j++;
+                }
+                buf.limit(buf.position() + len);
+                store.read(pos[i], buf);
+                i = j;
+            }
+            buf.flip();
+            return buf;
+        }
+    }
+
+    private class SharedLogIterator implements LogIterator {
+        private final Supplier<Boolean> cancelIndicator;
+        private final LogHeader header = new LogHeader();
+        private final DecodeContext decodeContext;
+        private final Decoder decoder = new Decoder();
+        private final CRC32C readCrc = new CRC32C();
+        private boolean close;
+
+        SharedLogIterator(Supplier<Boolean> cancelIndicator) {
+            this.cancelIndicator = cancelIndicator;
+            DispatcherThread t = fiberGroup.getThread();
+            this.decodeContext = new DecodeContextEx();
+            this.decodeContext.setHeapPool(t.getHeapPool());
+        }
+
+        @Override
+        public FiberFrame<List<LogItem>> next(long startIndex, int limit, int bytesLimit) {
+            if (close) {
+                throw new RaftException("iterator closed");
+            }
+            return new FiberFrame<>() {
+                private RefBuffer readBuf;
+
+                @Override
+                public FrameCallResult execute(Void input) {
+                    checkCancel();
+                    WalIndex idx = index;
+                    if (startIndex > idx.getLastIndex()) {
+                        if (startIndex <= raftStatus.getLastLogIndex() && !closed) {
+                            // not written yet
+                            return raftStatus.getLogWriteFinishCondition().await(1000, this);
+                        }
+                        throw new RaftException("index out of range: " + startIndex + ", lastIndex="
+                                + idx.getLastIndex());
+                    }
+                    if (startIndex < idx.getFirstIndex()) {
+                        throw new RaftException("log deleted: " + startIndex + ", firstIndex="
+                                + idx.getFirstIndex());
+                    }
+                    int count = 0;
+                    int bytes = 0;
+                    long last = Math.min(idx.getLastIndex(), startIndex + limit - 1);
+                    for (long i = startIndex; i <= last; i++) {
+                        int len = idx.getLen(i);
+                        if (count > 0 && (tailCache.get(i) != null || (bytesLimit > 0 && bytes + len > bytesLimit))) {
+                            break;
+                        }
+                        count++;
+                        bytes += len;
+                    }
+                    long[] pos = new long[count];
+                    int[] lens = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        pos[i] = idx.getPos(startIndex + i);
+                        lens[i] = idx.getLen(startIndex + i);
+                    }
+                    readBuf = fiberGroup.getThread().getHeapPool().create(bytes);
+                    return Fiber.call(new ReadFrame(pos, lens, readBuf.getBuffer()), buf -> afterRead(buf, lens));
+                }
+
+                private FrameCallResult afterRead(ByteBuffer buf, int[] lens) {
+                    checkCancel();
+                    ArrayList<LogItem> result = new ArrayList<>(lens.length);
+                    for (int len : lens) {
+                        int start = buf.position();
+                        result.add(parse(buf, start + SharedLogStore.PREFIX_SIZE));
+                        buf.position(start + len);
+                    }
+                    setResult(result);
+                    return Fiber.frameReturn();
+                }
+
+                @Override
+                protected FrameCallResult doFinally() {
+                    decodeContext.reset(decoder);
+                    if (readBuf != null) {
+                        // the decoded items don't refer to the buffer
+                        readBuf.release();
+                        readBuf = null;
+                    }
+                    return Fiber.frameReturn();
+                }
+            };
+        }
+
+        private void checkCancel() {
+            if (cancelIndicator != null && cancelIndicator.get()) {
+                throw new RaftCancelException("canceled");
+            }
+        }
+
+        private LogItem parse(ByteBuffer buf, int itemStart) {
+            buf.position(itemStart);
+            LogHeader h = header;
+            h.read(buf);
+            if (!h.crcMatch()) {
+                throw new ChecksumException("header crc not match: groupId=" + groupId + ", index=" + h.index);
+            }
+            LogItem li = new LogItem();
+            h.copy(li);
+            li.setActualHeaderSize(h.bizHeaderLen);
+            li.setActualBodySize(h.bodyLen);
+            if (h.bizHeaderLen > 0) {
+                li.setHeader(readData(buf, h.bizHeaderLen, true));
+            }
+            if (h.bodyLen > 0) {
+                li.setBody(readData(buf, h.bodyLen, false));
+            }
+            return li;
+        }
+
+        private Encodable readData(ByteBuffer buf, int len, boolean isHeader) {
+            int start = buf.position();
+            readCrc.reset();
+            RaftUtil.updateCrc(readCrc, buf, start, len);
+            if ((int) readCrc.getValue() != buf.getInt(start + len)) {
+                throw new ChecksumException("crc32c not match: groupId=" + groupId + ", index=" + header.index);
+            }
+            DecoderCallback<?> callback;
+            if (header.type == LogItem.TYPE_NORMAL) {
+                callback = isHeader ? codecFactory.createHeaderCallback(header.bizType, decodeContext)
+                        : codecFactory.createBodyCallback(header.bizType, decodeContext);
+            } else {
+                callback = new ByteArray.Callback();
+            }
+            decoder.prepareNext(decodeContext, callback);
+            Encodable result = (Encodable) decoder.decode(buf, len, 0);
+            buf.position(start + len + 4);
+            return result;
+        }
+
+        @Override
+        public void close() {
+            close = true;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+/**
+ * The in-memory index of a raft group in the SharedLogStore, map raft index to the position, length, term and
+ * timestamp (in seconds after BASE_SECONDS, rounded up) of the record. The items are in an array window
+ * [firstIndex, lastIndex], the window is empty if lastIndex is firstIndex - 1.
+ *
+ * <p>The rewritten records are appended after the newer records, so the records are not ordered by index when
+ * replay the log, the put method accepts any index, and the missing items (the pos is -1) are removed by
+ * removeGap() after restore.
+ *
+ * @author huangli
+ */
+class WalIndex {
+    private static final int MIN_CAPACITY = 16;
+    // 2020-09-13, so the seconds can be stored in int for about 68 years
+    static final long BASE_SECONDS = 1_600_000_000L;
+
+    private long[] pos;
+    private int[] len;
+    private int[] term;
+    private int[] timeSec;
+
+    // the array offset of firstIndex
+    private int head;
+    private long firstIndex = 1;
+    private long lastIndex = 0;
+    // the term of firstIndex - 1 if it's known (after install snapshot), or 0
+    private int prevTerm;
+    // the position of the record which reset this index (install snapshot), used to keep it when the index is empty
+    private long anchorPos = Long.MAX_VALUE;
+
+    WalIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        pos = new long[capacity];
+        len = new int[capacity];
+        term = new int[capacity];
+        timeSec = new int[capacity];
+    }
+
+    public boolean isEmpty() {
+        return lastIndex < firstIndex;
+    }
+
+    public long getFirstIndex() {
+        return firstIndex;
+    }
+
+    public long getLastIndex() {
+        return lastIndex;
+    }
+
+    public int getPrevTerm() {
+        return prevTerm;
+    }
+
+    private int slot(long index) {
+        if (index < firstIndex || index > lastIndex) {
+            throw new IndexOutOfBoundsException(index + " not in [" + firstIndex + "," + lastIndex + "]");
+        }
+        return head + (int) (index - firstIndex);
+    }
+
+    public long getPos(long index) {
+        return pos[slot(index)];
+    }
+
+    public int getLen(long index) {
+        return len[slot(index)];
+    }
+
+    public void setPos(long index, long p) {
+        pos[slot(index)] = p;
+    }
+
+    public int getTerm(long index) {
+        return term[slot(index)];
+    }
+
+    /**
+     * @return the timestamp of the item rounded up to seconds, in millis
+     */
+    public long getTimestampCeil(long index) {
+        return (timeSec[slot(index)] + BASE_SECONDS) * 1000;
+    }
+
+    public void put(long index, long p, int l, int t, long timestampMillis) {
+        int s;
+        if (isEmpty()) {
+            head = 0;
+            firstIndex = index;
+            lastIndex = index;
+            s = 0;
+        } else if (index > lastIndex) {
+            int size = (int) (index - firstIndex + 1);
+            ensureTailCapacity(size);
+            for (int i = head + (int) (lastIndex - firstIndex + 1), end = head + size - 1; i < end; i++) {
+                pos[i] = -1;
+            }
+            lastIndex = index;
+            s = head + size - 1;
+        } else if (index < firstIndex) {
+            int count = (int) (firstIndex - index);
+            ensureHeadCapacity(count);
+            head -= count;
+            firstIndex = index;
+            for (int i = head + 1; i < head + count; i++) {
+                pos[i] = -1;
+            }
+            s = head;
+        } else {
+            s = head + (int) (index - firstIndex);
+        }
+        pos[s] = p;
+        len[s] = l;
+        term[s] = t;
+        timeSec[s] = (int) ((timestampMillis + 999) / 1000 - BASE_SECONDS);
+    }
+
+    private void ensureTailCapacity(int size) {
+        if (head + size <= pos.length) {
+            return;
+        }
+        int oldSize = (int) (lastIndex - firstIndex + 1);
+        if (size <= pos.length && head >= pos.length / 2) {
+            move(pos.length, 0, oldSize);
+        } else {
+            move(Math.max(size + (size >> 1), MIN_CAPACITY), 0, oldSize);
+        }
+    }
+
+    private void ensureHeadCapacity(int count) {
+        if (head >= count) {
+            return;
+        }
+        int oldSize = (int) (lastIndex - firstIndex + 1);
+        int newSize = oldSize + count;
+        int capacity = Math.max(newSize + (newSize >> 1), MIN_CAPACITY);
+        move(capacity, capacity - oldSize, oldSize);
+    }
+
+    private void move(int capacity, int newHead, int size) {
+        long[] p = pos;
+        int[] l = len;
+        int[] t = term;
+        int[] ts = timeSec;
+        if (capacity != p.length) {
+            allocate(capacity);
+        }
+        System.arraycopy(p, head, pos, newHead, size);
+        System.arraycopy(l, head, len, newHead, size);
+        System.arraycopy(t, head, term, newHead, size);
+        System.arraycopy(ts, head, timeSec, newHead, size);
+        head = newHead;
+    }
+
+    /**
+     * remove the items whose index is greater than or equals to the index.
+     */
+    public void truncateTail(long index) {
+        if (index <= firstIndex) {
+            reset(index);
+        } else if (index <= lastIndex) {
+            lastIndex = index - 1;
+        }
+    }
+
+    /**
+     * remove the items whose index is less than the index.
+     */
+    public void truncateHead(long index) {
+        if (index > lastIndex) {
+            reset(index, index == lastIndex + 1 && !isEmpty() ? getTerm(lastIndex) : 0);
+        } else if (index > firstIndex) {
+            prevTerm = getPos(index - 1) == -1 ? 0 : getTerm(index - 1);
+            head += (int) (index - firstIndex);
+            firstIndex = index;
+        }
+    }
+
+    /**
+     * remove all items, the next index is nextIndex.
+     */
+    public void reset(long nextIndex) {
+        reset(nextIndex, 0);
+    }
+
+    public void reset(long nextIndex, int prevTerm) {
+        if (pos.length > MIN_CAPACITY * 64) {
+            allocate(MIN_CAPACITY);
+        }
+        head = 0;
+        firstIndex = nextIndex;
+        lastIndex = nextIndex - 1;
+        this.prevTerm = prevTerm;
+        this.anchorPos = Long.MAX_VALUE;
+    }
+
+    public void setAnchorPos(long anchorPos) {
+        this.anchorPos = anchorPos;
+    }
+
+    /**
+     * keep the last continuous items only.
+     */
+    public void removeGap() {
+        for (long i = lastIndex; i >= firstIndex; i--) {
+            if (getPos(i) == -1) {
+                truncateHead(i + 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the total length of all items
+     */
+    public long totalLen() {
+        long sum = 0;
+        for (int i = head, end = head + (int) (lastIndex - firstIndex + 1); i < end; i++) {
+            sum += len[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return the min position of all items, or the anchor position if the index is empty
+     */
+    public long minPos() {
+        if (isEmpty()) {
+            return anchorPos;
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = head, end = head + (int) (lastIndex - firstIndex + 1); i < end; i++) {
+            min = Math.min(min, pos[i]);
+        }
+        return min;
+    }
+}
@@ -281,7 +281,7 @@ class KvImplTest {
     }
 
     private void assertNodeCount(int expect, String key) {
-        KvNodeHolder holder = kv.map.get(ba(key));
+        KvNodeHolder holder = kv.map.get(new KvKey(key.getBytes()));
         if (expect == 0) {
             assertNull(holder);
         } else {
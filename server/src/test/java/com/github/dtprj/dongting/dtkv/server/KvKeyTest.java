@@ -0,0 +1,102 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class KvKeyTest {
+
+    private static KvKey flat(String s) {
+        return new KvKey(s.getBytes());
+    }
+
+    private static KvKey store(KvKey parent, String s, boolean dir) {
+        KvKey k = flat(s);
+        return k.toStoreKey(parent, k.lastIndexOfSep(), dir);
+    }
+
+    @Test
+    public void testFlat() {
+        assertEquals(flat("a.b"), flat("a.b"));
+        assertEquals(flat("a.b").hashCode(), flat("a.b").hashCode());
+        assertNotEquals(flat("a.b"), flat("a.c"));
+        assertNotEquals(flat("a.b"), flat("a.bc"));
+        assertNotEquals(flat("a"), flat("a\0"));
+        assertEquals(KvKey.EMPTY, flat(""));
+
+        // prefix key
+        KvKey prefix = new KvKey("key1.key2".getBytes(), 4);
+        assertEquals(flat("key1"), prefix);
+        assertEquals(flat("key1").hash64, prefix.hash64);
+        assertEquals("key1", prefix.toString());
+
+        // long keys, more than 8 bytes
+        String s = "0123456789abcdefghijklmn.0123456789abcdefghijklmn";
+        assertEquals(flat(s), flat(s));
+        assertNotEquals(flat(s), flat(s.substring(0, s.length() - 1) + "x"));
+        assertNotEquals(flat(s), flat("x" + s.substring(1)));
+    }
+
+    @Test
+    public void testStoreKey() {
+        // a and a.b are stored as value keys to test the key chain, they should be dirs in KvImpl
+        KvKey a = store(null, "a", false);
+        KvKey ab = store(a, "a.b", false);
+        KvKey abc = store(ab, "a.b.c123456789", false);
+        assertNull(a.parent);
+        assertSame(a, ab.parent);
+        assertSame(ab, abc.parent);
+
+        assertEquals(flat("a.b.c123456789"), abc);
+        assertEquals(abc, flat("a.b.c123456789"));
+        assertEquals(flat("a.b.c123456789").hashCode(), abc.hashCode());
+        assertNotEquals(flat("a.x.c123456789"), abc);
+        assertNotEquals(flat("x.b.c123456789"), abc);
+        assertNotEquals(flat("a.b.c123456780"), abc);
+
+        assertEquals("a.b.c123456789", abc.toString());
+        assertArrayEquals("a.b.c123456789".getBytes(), abc.toBytes());
+        assertEquals("c123456789", abc.keyInDir().toString());
+        assertEquals("a", a.keyInDir().toString());
+
+        // both are stored keys, with different parent instance
+        KvKey abc2 = store(store(store(null, "a", false), "a.b", false), "a.b.c123456789", false);
+        assertEquals(abc, abc2);
+
+        // dir keys are flat
+        KvKey dir = store(a, "a.b", true);
+        assertNull(dir.parent);
+        assertEquals(ab, dir);
+        assertEquals("b", dir.keyInDir().toString());
+        KvKey abc3 = store(dir, "a.b.c123456789", false);
+        assertEquals(abc, abc3);
+        assertEquals(flat("a.b.c123456789"), abc3);
+        assertNotEquals(flat("a.c.c123456789"), abc3);
+
+        HashSet<KvKey> set = new HashSet<>();
+        set.add(abc);
+        assertTrue(set.contains(flat("a.b.c123456789")));
+        assertTrue(set.contains(abc2));
+        assertFalse(set.contains(flat("a.b")));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import com.github.dtprj.dongting.common.DtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class BlockingCallFrameTest extends AbstractFiberTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCall() throws Exception {
+        assertEquals(DtUtil.javaVersion() >= 21, BlockingCallFrame.isVirtualThreadEnabled());
+        CompletableFuture<String> result = new CompletableFuture<>();
+        fiberGroup.fireFiber("f", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return Fiber.call(new BlockingCallFrame<String>(executor) {
+                    @Override
+                    protected String callInBlockingThread() {
+                        assertNotSame(dispatcher.thread, Thread.currentThread());
+                        return "hello";
+                    }
+                }, this::resume);
+            }
+
+            private FrameCallResult resume(String s) {
+                assertSame(dispatcher.thread, Thread.currentThread());
+                result.complete(s);
+                return Fiber.frameReturn();
+            }
+        });
+        assertEquals("hello", result.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testException() throws Exception {
+        CompletableFuture<Throwable> result = new CompletableFuture<>();
+        fiberGroup.fireFiber("f", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return Fiber.call(new BlockingCallFrame<Void>(executor) {
+                    @Override
+                    protected Void callInBlockingThread() throws IOException {
+                        throw new IOException("mock error");
+                    }
+                }, this::justReturn);
+            }
+
+            @Override
+            protected FrameCallResult handle(Throwable ex) {
+                result.complete(ex);
+                return Fiber.frameReturn();
+            }
+        });
+        Throwable ex = result.get(1, TimeUnit.SECONDS);
+        assertInstanceOf(IOException.class, ex);
+    }
+
+    @Test
+    public void testStaticCall() throws Exception {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        fiberGroup.fireFiber("f", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                FiberFuture<Integer> f = BlockingCallFrame.call(fiberGroup, executor, () -> {
+                    assertNotSame(dispatcher.thread, Thread.currentThread());
+                    return 100;
+                });
+                return f.await(this::resume);
+            }
+
+            private FrameCallResult resume(Integer v) {
+                result.complete(v);
+                return Fiber.frameReturn();
+            }
+        });
+        assertEquals(100, result.get(1, TimeUnit.SECONDS));
+    }
+}
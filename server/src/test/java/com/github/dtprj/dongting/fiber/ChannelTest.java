@@ -15,18 +15,24 @@
  */
 package com.github.dtprj.dongting.fiber;
 
+import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.raft.test.TestUtil;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 /**
  * @author huangli
  */
@@ -141,4 +147,120 @@ public class ChannelTest extends AbstractFiberTest {
         Assertions.assertTrue(latch2.await(1, TimeUnit.SECONDS));
         Assertions.assertTrue(System.nanoTime() - t < Duration.ofMillis(10).toNanos());
     }
+
+    @Test
+    public void testBounded() throws Exception {
+        FiberChannel<Integer> channel = fiberGroup.newChannel(3);
+        assertTrue(channel.fireOffer(1));
+        assertTrue(channel.fireOffer(2));
+        assertEquals(FiberChannel.OFFER_SUCCESS, channel.tryOffer(3));
+        assertFalse(channel.fireOffer(4));
+        assertEquals(FiberChannel.OFFER_FULL, channel.tryOffer(4));
+        assertEquals(3, channel.size());
+
+        List<Integer> list = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        fiberGroup.fireFiber("f1", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return channel.takeAll(list, this::resume);
+            }
+
+            private FrameCallResult resume(Void v) {
+                latch.countDown();
+                return Fiber.frameReturn();
+            }
+        });
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), list);
+        assertEquals(0, channel.size());
+        assertTrue(channel.fireOffer(4));
+    }
+
+    @Test
+    public void testBoundedMultiProducer() throws Exception {
+        int producerCount = 4;
+        int itemsPerProducer = 20000;
+        FiberChannel<Integer> channel = fiberGroup.newChannel(16);
+        AtomicLong sum = new AtomicLong();
+        AtomicInteger received = new AtomicInteger();
+        fiberGroup.fireFiber("consumer", new FiberFrame<>() {
+            private final ArrayList<Integer> list = new ArrayList<>();
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                return channel.takeAll(list, this::resume);
+            }
+
+            private FrameCallResult resume(Void v) {
+                for (Integer x : list) {
+                    sum.addAndGet(x);
+                }
+                received.addAndGet(list.size());
+                list.clear();
+                if (received.get() == producerCount * itemsPerProducer) {
+                    return Fiber.frameReturn();
+                }
+                return Fiber.resume(null, this);
+            }
+        });
+        Thread[] producers = new Thread[producerCount];
+        for (int i = 0; i < producerCount; i++) {
+            producers[i] = new Thread(() -> {
+                for (int j = 1; j <= itemsPerProducer; j++) {
+                    // the channel is small, retry until the consumer takes the items
+                    while (!channel.fireOffer(j)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producers[i].start();
+        }
+        for (Thread t : producers) {
+            t.join(10000);
+        }
+        // a lost wakeup leaves the last items in the staging queue
+        TestUtil.waitUtil(() -> received.get() == producerCount * itemsPerProducer);
+        assertEquals((long) producerCount * itemsPerProducer * (itemsPerProducer + 1) / 2, sum.get());
+        assertEquals(0, channel.size());
+    }
+
+    @Test
+    public void testBoundedDrop() throws Exception {
+        List<Integer> dropped = Collections.synchronizedList(new ArrayList<>());
+        FiberChannel<Integer> channel = fiberGroup.newChannel(10, dropped::add);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        fiberGroup.fireFiber("block", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) throws Exception {
+                blocked.countDown();
+                assertTrue(unblock.await(1, TimeUnit.SECONDS));
+                return Fiber.frameReturn();
+            }
+        });
+        assertTrue(blocked.await(1, TimeUnit.SECONDS));
+        // the drain task is pending, the items of other offers are staged
+        assertTrue(channel.fireOffer(1));
+        assertTrue(channel.fireOffer(2));
+        assertTrue(channel.fireOffer(3));
+        fiberGroup.requestShutdown();
+        unblock.countDown();
+        fiberGroup.getShutdownFuture().get(1, TimeUnit.SECONDS);
+        assertEquals(List.of(1, 2, 3), dropped);
+        assertEquals(0, channel.size());
+        assertFalse(channel.fireOffer(4));
+
+        // the drain task is rejected by the stopped dispatcher
+        FiberGroup g2 = new FiberGroup("g2", dispatcher);
+        dispatcher.stop(new DtTime(1000, TimeUnit.MILLISECONDS));
+        dispatcher.thread.join(1500);
+        FiberChannel<Integer> c2 = g2.newChannel(10, dropped::add);
+        dropped.clear();
+        assertTrue(c2.fireOffer(5));
+        assertTrue(c2.fireOffer(6));
+        assertTrue(c2.fireOffer(7));
+        assertEquals(List.of(5, 6, 7), dropped);
+        assertEquals(0, c2.size());
+    }
 }
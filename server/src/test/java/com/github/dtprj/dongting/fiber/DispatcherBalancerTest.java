@@ -0,0 +1,187 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.raft.test.TestUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class DispatcherBalancerTest {
+
+    private Dispatcher d1;
+    private Dispatcher d2;
+
+    private final AtomicBoolean concurrentExec = new AtomicBoolean();
+
+    @AfterEach
+    public void shutdown() throws Exception {
+        d1.stop(new DtTime(1000, TimeUnit.MILLISECONDS));
+        d2.stop(new DtTime(1000, TimeUnit.MILLISECONDS));
+        d1.thread.join(1500);
+        d2.thread.join(1500);
+        assertFalse(d1.thread.isAlive());
+        assertFalse(d2.thread.isAlive());
+    }
+
+    private void startBusyFiber(FiberGroup g, AtomicInteger executing, AtomicInteger count) {
+        g.fireFiber("busy", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (isGroupShouldStopPlain()) {
+                    return Fiber.frameReturn();
+                }
+                if (executing.incrementAndGet() != 1) {
+                    concurrentExec.set(true);
+                }
+                long start = System.nanoTime();
+                // spin 1ms
+                while (System.nanoTime() - start < 1_000_000) {
+                    Thread.onSpinWait();
+                }
+                count.incrementAndGet();
+                executing.decrementAndGet();
+                return Fiber.yield(this);
+            }
+        });
+    }
+
+    private void startSleepFiber(FiberGroup g, AtomicInteger count) {
+        g.fireFiber("sleep", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (isGroupShouldStopPlain()) {
+                    return Fiber.frameReturn();
+                }
+                return Fiber.sleep(5, this::resume);
+            }
+
+            private FrameCallResult resume(Void v) {
+                count.incrementAndGet();
+                return execute(null);
+            }
+        });
+    }
+
+    @Test
+    public void testSteal() throws Exception {
+        d1 = new Dispatcher("d1");
+        d2 = new Dispatcher("d2");
+        DispatcherBalancer balancer = new DispatcherBalancer(d1, d2);
+        balancer.setStealIntervalMillis(10);
+        d1.start();
+        d2.start();
+
+        FiberGroup[] groups = new FiberGroup[2];
+        AtomicInteger[] busyCount = new AtomicInteger[2];
+        AtomicInteger[] sleepCount = new AtomicInteger[2];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = new FiberGroup("g" + i, d1);
+            groups[i].setMigratable(true);
+            d1.startGroup(groups[i]).get();
+            AtomicInteger executing = new AtomicInteger();
+            busyCount[i] = new AtomicInteger();
+            sleepCount[i] = new AtomicInteger();
+            startBusyFiber(groups[i], executing, busyCount[i]);
+            startBusyFiber(groups[i], executing, busyCount[i]);
+            startSleepFiber(groups[i], sleepCount[i]);
+        }
+
+        TestUtil.waitUtil(() -> balancer.getMigrationCount() > 0);
+        assertEquals(1, balancer.getMigrationCount());
+        assertEquals(1, d1.getMigrateOutCount());
+        assertEquals(1, d2.getMigrateInCount());
+        FiberGroup migrated = groups[0].getDispatcher() == d2 ? groups[0] : groups[1];
+        assertSame(d2, migrated.getDispatcher());
+        assertSame(d2.thread, migrated.getThread());
+        int index = migrated == groups[0] ? 0 : 1;
+
+        // the migrated group still works, include the timers
+        int busy = busyCount[index].get();
+        int sleep = sleepCount[index].get();
+        TestUtil.waitUtil(() -> busyCount[index].get() > busy + 10 && sleepCount[index].get() > sleep + 3);
+        assertFalse(concurrentExec.get());
+
+        // fire fiber to migrated group
+        AtomicBoolean run = new AtomicBoolean();
+        migrated.fireFiber("f", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                assertSame(d2.thread, Thread.currentThread());
+                run.set(true);
+                return Fiber.frameReturn();
+            }
+        });
+        TestUtil.waitUtil(run::get);
+        // both dispatchers are busy now
+        TestUtil.waitUtil(() -> d1.getUtilization() > 0.5f && d2.getUtilization() > 0.5f);
+    }
+
+    @Test
+    public void testNotMigratable() throws Exception {
+        d1 = new Dispatcher("d1");
+        d2 = new Dispatcher("d2");
+        DispatcherBalancer balancer = new DispatcherBalancer(d1, d2);
+        balancer.setStealIntervalMillis(10);
+        d1.start();
+        d2.start();
+        for (int i = 0; i < 2; i++) {
+            FiberGroup g = new FiberGroup("g" + i, d1);
+            d1.startGroup(g).get();
+            startBusyFiber(g, new AtomicInteger(), new AtomicInteger());
+        }
+        TestUtil.waitUtil(() -> d1.getUtilization() > 0.8f);
+        Thread.sleep(100);
+        assertEquals(0, balancer.getMigrationCount());
+    }
+
+    @Test
+    public void testPendingTaskKeepGroupUnfinished() throws Exception {
+        d1 = new Dispatcher("d1");
+        d2 = new Dispatcher("d2");
+        d1.start();
+        d2.start();
+        FiberGroup g = new FiberGroup("g", d1);
+        d1.startGroup(g).get();
+        // a task of the group is in the queue of old dispatcher, or the producer is offering it
+        assertTrue(g.tryAddPendingTask());
+        g.requestShutdown();
+        Thread.sleep(50);
+        assertFalse(g.getShutdownFuture().isDone());
+        assertFalse(g.isFinishedVolatile());
+
+        g.removePendingTask();
+        AtomicBoolean run = new AtomicBoolean();
+        assertTrue(g.fireFiber("forwarded", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                run.set(true);
+                return Fiber.frameReturn();
+            }
+        }));
+        g.getShutdownFuture().get(1, TimeUnit.SECONDS);
+        assertTrue(run.get());
+    }
+}
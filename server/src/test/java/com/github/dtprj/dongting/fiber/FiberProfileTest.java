@@ -0,0 +1,134 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import com.github.dtprj.dongting.buf.DefaultPoolFactory;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.PerfCallback;
+import com.github.dtprj.dongting.net.PerfConsts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class FiberProfileTest {
+
+    private Dispatcher dispatcher;
+
+    private final AtomicInteger execEvents = new AtomicInteger();
+    private final AtomicInteger waitEvents = new AtomicInteger();
+
+    @AfterEach
+    public void shutdown() throws Exception {
+        dispatcher.stop(new DtTime(1000, TimeUnit.MILLISECONDS));
+        dispatcher.thread.join(1500);
+    }
+
+    private static FiberStat find(List<FiberStat> list, String type, String name) {
+        for (FiberStat s : list) {
+            if (s.getType().equals(type) && s.getName().equals(name)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testProfile() throws Exception {
+        PerfCallback perfCallback = new PerfCallback(true) {
+            @Override
+            public boolean accept(int perfType) {
+                return perfType == PerfConsts.FIBER_D_EXEC || perfType == PerfConsts.FIBER_D_WAIT;
+            }
+
+            @Override
+            public void onEvent(int perfType, long costTime, int count, long sum) {
+                if (perfType == PerfConsts.FIBER_D_EXEC) {
+                    execEvents.incrementAndGet();
+                } else {
+                    waitEvents.incrementAndGet();
+                }
+            }
+        };
+        dispatcher = new Dispatcher("d", new DefaultPoolFactory(), perfCallback);
+        dispatcher.start();
+        FiberGroup g = new FiberGroup("g", dispatcher);
+        dispatcher.startGroup(g).get();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        g.fireFiber("worker", new FiberFrame<>() {
+            private FiberCondition c;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                c = g.newCondition("c1");
+                Fiber signaler = new Fiber("signaler", g, new FiberFrame<>() {
+                    @Override
+                    public FrameCallResult execute(Void input) {
+                        return Fiber.sleep(5, this::resume);
+                    }
+
+                    private FrameCallResult resume(Void v) {
+                        c.signal();
+                        return Fiber.frameReturn();
+                    }
+                });
+                signaler.start();
+                return c.await(this::afterAwait);
+            }
+
+            private FrameCallResult afterAwait(Void v) {
+                latch.countDown();
+                return Fiber.frameReturn();
+            }
+        });
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+        List<FiberStat> list = dispatcher.sampleFiberStats(true).get(1, TimeUnit.SECONDS);
+        FiberStat worker = find(list, FiberStat.TYPE_FIBER, "worker");
+        assertNotNull(worker);
+        assertEquals(2, worker.getResumeCount());
+        assertEquals(1, worker.getWaitCount());
+        assertTrue(worker.getWaitNanos() > 0);
+
+        FiberStat signaler = find(list, FiberStat.TYPE_FIBER, "signaler");
+        assertNotNull(signaler);
+        assertEquals(2, signaler.getResumeCount());
+
+        FiberStat cond = find(list, FiberCondition.class.getSimpleName(), "c1");
+        assertNotNull(cond);
+        assertEquals(1, cond.getWaitCount());
+
+        FiberStat sleep = find(list, FiberStat.TYPE_SLEEP, "sleep");
+        assertNotNull(sleep);
+        assertEquals(1, sleep.getWaitCount());
+
+        assertTrue(execEvents.get() >= 4);
+        assertTrue(waitEvents.get() >= 2);
+
+        // reset
+        list = dispatcher.sampleFiberStats(false).get(1, TimeUnit.SECONDS);
+        assertNull(find(list, FiberStat.TYPE_FIBER, "worker"));
+    }
+}
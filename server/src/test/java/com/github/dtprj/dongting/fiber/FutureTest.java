@@ -19,6 +19,7 @@ import com.github.dtprj.dongting.raft.test.TestUtil;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -563,4 +564,104 @@ public class FutureTest extends AbstractFiberTest {
         assertNull(futureResult.get());
         assertTrue(f.isCancelled());
     }
+
+    @Test
+    public void testRecycle() throws Exception {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        fiberGroup.fireFiber("f", new FiberFrame<>() {
+            private FiberFuture<Integer> f1;
+            private int gen;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                f1 = fiberGroup.newRecyclableFuture("f1");
+                gen = f1.generation;
+                f1.registerCallback((r, ex) -> {
+                    assertEquals(1, r);
+                    // recycle in callback is delayed after all callbacks invoked
+                    f1.recycle();
+                    assertFalse(f1.inPool);
+                });
+                f1.registerCallback((r, ex) -> assertEquals(1, r));
+                f1.fireComplete(1);
+                assertTrue(f1.inPool);
+                return Fiber.resume(null, this::resume);
+            }
+
+            private FrameCallResult resume(Void v) {
+                assertThrows(FiberException.class, () -> f1.complete(2));
+                assertThrows(FiberException.class, f1::recycle);
+
+                FiberFuture<Integer> f2 = fiberGroup.newRecyclableFuture("f2");
+                assertSame(f1, f2);
+                assertFalse(f2.isDone());
+                assertNull(f2.getResult());
+                assertEquals("f2", f2.getName());
+                assertNotEquals(gen, f2.generation);
+                assertThrows(FiberException.class, f2::recycle);
+
+                // stale fire after recycle is ignored
+                f2.complete(2);
+                f2.recycle();
+                f2.fireComplete(3);
+                FiberFuture<Integer> f3 = fiberGroup.newRecyclableFuture("f3");
+                assertSame(f2, f3);
+                return Fiber.yield(unused -> afterYield(f3));
+            }
+
+            private FrameCallResult afterYield(FiberFuture<Integer> f3) {
+                assertFalse(f3.isDone());
+                // no-op for normal future
+                FiberFuture<Integer> f4 = fiberGroup.newFuture("f4");
+                f4.complete(4);
+                f4.recycle();
+                assertEquals(4, f4.getResult());
+                result.complete(null);
+                return Fiber.frameReturn();
+            }
+
+            @Override
+            protected FrameCallResult handle(Throwable ex) {
+                result.completeExceptionally(ex);
+                return Fiber.frameReturn();
+            }
+        });
+        result.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRecycleInCallbackWithWaiter() throws Exception {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        fiberGroup.fireFiber("f", new FiberFrame<>() {
+            private FiberFuture<Integer> f1;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                f1 = fiberGroup.newRecyclableFuture("f1");
+                f1.registerCallback((r, ex) -> f1.recycle());
+                fiberGroup.fireFiber("completer", new FiberFrame<>() {
+                    @Override
+                    public FrameCallResult execute(Void input) {
+                        f1.complete(1);
+                        return Fiber.frameReturn();
+                    }
+                });
+                return f1.await(this::resume);
+            }
+
+            private FrameCallResult resume(Integer v) {
+                // recycled after the waiter is signaled
+                assertTrue(f1.inPool);
+                result.complete(v);
+                return Fiber.frameReturn();
+            }
+
+            @Override
+            protected FrameCallResult handle(Throwable ex) {
+                result.completeExceptionally(ex);
+                return Fiber.frameReturn();
+            }
+        });
+        assertEquals(1, result.get(1, TimeUnit.SECONDS));
+    }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class TimingWheelTest {
+
+    private static final long MS = TimingWheel.TICK_NANOS;
+
+    private static Fiber createFiber(long scheduleNanoTime) {
+        Fiber f = new Fiber("f", null, new EmptyFiberFrame());
+        f.scheduleNanoTime = scheduleNanoTime;
+        return f;
+    }
+
+    @Test
+    public void testExpireOrder() {
+        long base = -100 * MS;
+        TimingWheel w = new TimingWheel(base);
+        Fiber f1 = createFiber(base + 5 * MS);
+        Fiber f2 = createFiber(base + 3 * MS + 1);
+        Fiber f3 = createFiber(base + 3 * MS);
+        w.add(f1);
+        w.add(f2);
+        w.add(f3);
+        assertEquals(3, w.size());
+        assertEquals(base + 3 * MS, w.nextExpireNanos());
+
+        List<Fiber> list = new ArrayList<>();
+        w.advance(base + 3 * MS, list::add);
+        assertEquals(List.of(f3), list);
+        assertEquals(base + 4 * MS, w.nextExpireNanos());
+
+        w.advance(base + 4 * MS, list::add);
+        assertEquals(List.of(f3, f2), list);
+
+        w.advance(base + 10 * MS, list::add);
+        assertEquals(List.of(f3, f2, f1), list);
+        assertEquals(0, w.size());
+        assertEquals(-1, f1.timerLevel);
+    }
+
+    @Test
+    public void testRemove() {
+        TimingWheel w = new TimingWheel(0);
+        Fiber f1 = createFiber(10 * MS);
+        Fiber f2 = createFiber(10 * MS);
+        Fiber f3 = createFiber(10 * MS);
+        Fiber f4 = createFiber(100_000 * MS);
+        w.add(f1);
+        w.add(f2);
+        w.add(f3);
+        w.add(f4);
+        w.remove(f2);
+        w.remove(f4);
+        // not in wheel
+        w.remove(f4);
+        assertEquals(2, w.size());
+        List<Fiber> list = new ArrayList<>();
+        w.advance(200_000 * MS, list::add);
+        assertEquals(List.of(f1, f3), list);
+        assertEquals(0, w.size());
+    }
+
+    @Test
+    public void testPastAndFarTime() {
+        TimingWheel w = new TimingWheel(0);
+        List<Fiber> list = new ArrayList<>();
+        w.advance(50 * MS, list::add);
+        Fiber past = createFiber(MS);
+        w.add(past);
+        w.advance(50 * MS, list::add);
+        assertTrue(list.isEmpty());
+        w.advance(51 * MS, list::add);
+        assertEquals(List.of(past), list);
+
+        // beyond the range of the wheel
+        long far = 50 * MS + (1L << 27) * MS;
+        Fiber farFiber = createFiber(far);
+        w.add(farFiber);
+        list.clear();
+        w.advance(far - MS, list::add);
+        assertTrue(list.isEmpty());
+        assertEquals(1, w.size());
+        w.advance(far, list::add);
+        assertEquals(List.of(farFiber), list);
+    }
+
+    @Test
+    public void testRandom() {
+        Random r = new Random();
+        long base = r.nextLong();
+        TimingWheel w = new TimingWheel(base);
+        List<Fiber> fibers = new ArrayList<>();
+        long now = base;
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 200; i++) {
+                long delay;
+                switch (r.nextInt(4)) {
+                    case 0:
+                        delay = r.nextInt(300) * MS;
+                        break;
+                    case 1:
+                        delay = r.nextInt(20_000) * MS + r.nextInt(1_000_000);
+                        break;
+                    case 2:
+                        delay = r.nextInt(2_000_000) * MS;
+                        break;
+                    default:
+                        delay = (long) r.nextInt(100_000_000) * MS;
+                }
+                Fiber f = createFiber(now + delay);
+                w.add(f);
+                fibers.add(f);
+            }
+            for (int i = 0; i < 20; i++) {
+                Fiber f = fibers.remove(r.nextInt(fibers.size()));
+                w.remove(f);
+            }
+            long newNow = now + (long) r.nextInt(30_000_000) * MS;
+            List<Fiber> expired = new ArrayList<>();
+            w.advance(newNow, f -> {
+                // never expire early
+                assertTrue(f.scheduleNanoTime - newNow <= 0);
+                expired.add(f);
+            });
+            for (Fiber f : expired) {
+                assertTrue(fibers.remove(f));
+            }
+            for (Fiber f : fibers) {
+                // not expired fibers should be later than (newNow - 1 tick)
+                assertTrue(f.scheduleNanoTime - newNow > -MS);
+            }
+            assertEquals(fibers.size(), w.size());
+            now = newNow;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.github.dtprj.dongting.raft.impl;
 
+import com.github.dtprj.dongting.common.ConcurrentIntObjMap;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.DtUtil;
 import com.github.dtprj.dongting.common.Timestamp;
@@ -34,7 +35,6 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -81,7 +81,7 @@ public class NodeManagerTest {
         GroupComponents gc = new GroupComponents();
         gc.setRaftStatus(raftStatus);
         gc.setGroupConfig(new RaftGroupConfigEx(1, members, observers));
-        ConcurrentHashMap<Integer, RaftGroupImpl> raftGroups = new ConcurrentHashMap<>();
+        ConcurrentIntObjMap<RaftGroupImpl> raftGroups = new ConcurrentIntObjMap<>();
         raftGroups.put(1, new RaftGroupImpl(gc));
 
         nodeManager.initNodes(raftGroups);
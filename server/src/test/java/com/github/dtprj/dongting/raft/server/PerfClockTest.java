@@ -0,0 +1,134 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.server;
+
+import com.github.dtprj.dongting.common.ByteArray;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.PerfCallback;
+import com.github.dtprj.dongting.dtkv.server.DtKV;
+import com.github.dtprj.dongting.raft.test.TestUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measure the clock reads of perf timing on the raft append path.
+ *
+ * @author huangli
+ */
+public class PerfClockTest extends ServerTestBase {
+
+    /**
+     * Count the clock reads of the perf timing methods without Timestamp parameter, the methods with
+     * Timestamp parameter read the Timestamp refreshed by the round loop of the thread.
+     */
+    private static class ClockCountPerfCallback extends PerfCallback {
+        final AtomicLong clockCalls = new AtomicLong();
+
+        ClockCountPerfCallback(boolean coarseClock) {
+            super(true, coarseClock);
+        }
+
+        private void count() {
+            if (!coarseClock) {
+                clockCalls.incrementAndGet();
+            }
+        }
+
+        @Override
+        public long takeTime(int perfType) {
+            count();
+            return super.takeTime(perfType);
+        }
+
+        @Override
+        public void fireTime(int perfType, long startTime) {
+            count();
+            super.fireTime(perfType, startTime);
+        }
+
+        @Override
+        public void fireTime(int perfType, long startTime, int count, long sum) {
+            count();
+            super.fireTime(perfType, startTime, count, sum);
+        }
+
+        @Override
+        public boolean accept(int perfType) {
+            return true;
+        }
+
+        @Override
+        public void onEvent(int perfType, long costTime, int count, long sum) {
+        }
+    }
+
+    private static void put(RaftGroup g, int i) throws Exception {
+        CompletableFuture<Long> f = new CompletableFuture<>();
+        RaftInput input = new RaftInput(DtKV.BIZ_TYPE_PUT, new ByteArray(("key" + i).getBytes()),
+                new ByteArray(("value" + i).getBytes()), new DtTime(5, TimeUnit.SECONDS), false);
+        g.submitLinearTask(input, new RaftCallback() {
+            @Override
+            public void success(long raftIndex, Object result) {
+                f.complete(raftIndex);
+            }
+
+            @Override
+            public void fail(Throwable ex) {
+                f.completeExceptionally(ex);
+            }
+        });
+        f.get(5, TimeUnit.SECONDS);
+    }
+
+    private double clockCallsPerRequest(boolean coarseClock) throws Exception {
+        ClockCountPerfCallback c = new ClockCountPerfCallback(coarseClock);
+        perfCallback = c;
+        // single node group, the replicate rpc and the followers are not included
+        ServerInfo s1 = createServer(1, "1,127.0.0.1:4001", "1", "");
+        try {
+            waitStart(s1);
+            TestUtil.waitUtil(() -> s1.group.isLeader());
+            put(s1.group, 0);
+            c.clockCalls.set(0);
+            int count = 50;
+            for (int i = 1; i <= count; i++) {
+                put(s1.group, i);
+            }
+            return (double) c.clockCalls.get() / count;
+        } finally {
+            perfCallback = null;
+            waitStop(s1);
+        }
+    }
+
+    @Test
+    void testSystemClock() throws Exception {
+        double calls = clockCallsPerRequest(false);
+        System.out.println("clock calls per raft append of perf timing: " + calls);
+        assertTrue(calls > 0);
+    }
+
+    @Test
+    void testCoarseClock() throws Exception {
+        assertEquals(0, clockCallsPerRequest(true));
+    }
+}
@@ -17,6 +17,7 @@ package com.github.dtprj.dongting.raft.server;
 
 import com.github.dtprj.dongting.buf.DefaultPoolFactory;
 import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.PerfCallback;
 import com.github.dtprj.dongting.dtkv.server.DtKV;
 import com.github.dtprj.dongting.dtkv.server.KvConfig;
 import com.github.dtprj.dongting.dtkv.server.KvServerUtil;
@@ -59,6 +60,7 @@ public class ServerTestBase {
     protected int initVoteFor = 0;
     protected long initCommitIndex = 0;
     protected boolean initSnapshot = false;
+    protected PerfCallback perfCallback;
 
     protected static class ServerInfo {
         public RaftServer raftServer;
@@ -85,6 +87,9 @@ public class ServerTestBase {
         RaftGroupConfig groupConfig = RaftGroupConfig.newInstance(groupId, nodeIdOfMembers, nodeIdOfObservers);
         groupConfig.setDataDir(DATA_DIR + "-" + nodeId);
         groupConfig.setSaveSnapshotWhenClose(false);
+        if (perfCallback != null) {
+            groupConfig.setPerfCallback(perfCallback);
+        }
 
         DefaultRaftFactory raftFactory = createRaftFactory(nodeId);
 
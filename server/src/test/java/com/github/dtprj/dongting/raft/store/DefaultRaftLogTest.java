@@ -21,6 +21,7 @@ import com.github.dtprj.dongting.fiber.Fiber;
 import com.github.dtprj.dongting.fiber.FiberFrame;
 import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.raft.RaftException;
 import com.github.dtprj.dongting.raft.impl.InitFiberFrame;
 import com.github.dtprj.dongting.raft.impl.RaftCancelException;
 import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
@@ -409,6 +410,27 @@ public class DefaultRaftLogTest extends BaseFiberTest {
         });
     }
 
+    @Test
+    void testInstallWithNoPos() throws Exception {
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) throws Exception {
+                return Fiber.call(raftLog.finishInstall(20, RaftLog.NO_POS), this::afterInstall);
+            }
+
+            private FrameCallResult afterInstall(Void v) {
+                fail();
+                return Fiber.frameReturn();
+            }
+
+            @Override
+            protected FrameCallResult handle(Throwable ex) {
+                assertInstanceOf(RaftException.class, ex);
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
     @Test
     void testTryFindMatchPos() throws Exception {
         ArrayList<LogItem> list = new ArrayList<>();
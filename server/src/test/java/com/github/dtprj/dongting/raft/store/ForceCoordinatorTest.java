@@ -0,0 +1,170 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.fiber.BaseFiberTest;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.raft.RaftException;
+import com.github.dtprj.dongting.raft.test.MockExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class ForceCoordinatorTest extends BaseFiberTest {
+    private AsynchronousFileChannel channel1;
+    private AsynchronousFileChannel channel2;
+    private AsynchronousFileChannel channel3;
+    private ForceCoordinator coordinator;
+    private final ExecutorService executor = MockExecutors.ioExecutor();
+
+    @BeforeEach
+    void setup() throws Exception {
+        File dir = TestDir.createTestDir(ForceCoordinatorTest.class.getSimpleName());
+        channel1 = AsynchronousFileChannel.open(new File(dir, "1").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel2 = AsynchronousFileChannel.open(new File(dir, "2").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel3 = AsynchronousFileChannel.open(new File(dir, "3").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        coordinator = new ForceCoordinator(50 * 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.shutdown();
+        DtUtil.close(channel1, channel2, channel3);
+    }
+
+    @Test
+    void testMerge() throws Exception {
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                FiberFuture<Void> f1 = coordinator.submit(fiberGroup, channel1, false, executor);
+                FiberFuture<Void> f2 = coordinator.submit(fiberGroup, channel1, true, executor);
+                FiberFuture<Void> f3 = coordinator.submit(fiberGroup, channel2, false, executor);
+                FiberFuture<Void> f4 = coordinator.submit(fiberGroup, channel1, false, executor);
+                return FiberFuture.allOf("force", f1, f2, f3, f4).await(this::justReturn);
+            }
+        });
+        assertEquals(4, coordinator.getRequestCount());
+        assertEquals(2, coordinator.getForceCount());
+        assertEquals(2, coordinator.getForcesSaved());
+        assertEquals(1, coordinator.getParallelForceCount());
+        assertEquals(1, coordinator.getBatchCount());
+
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return Fiber.call(coordinator.createForceFrame(channel2, false, executor), this::justReturn);
+            }
+        });
+        assertEquals(5, coordinator.getRequestCount());
+        assertEquals(3, coordinator.getForceCount());
+        assertEquals(1, coordinator.getParallelForceCount());
+        assertEquals(2, coordinator.getBatchCount());
+    }
+
+    @Test
+    void testParallel() throws Exception {
+        coordinator.shutdown();
+        // each force waits the forces of other files, so the batch finishes only if they run in parallel
+        CountDownLatch latch = new CountDownLatch(3);
+        AtomicInteger timeoutCount = new AtomicInteger();
+        coordinator = new ForceCoordinator(50 * 1000) {
+            @Override
+            void force(AsynchronousFileChannel channel, boolean meta) throws IOException {
+                latch.countDown();
+                try {
+                    if (!latch.await(5, TimeUnit.SECONDS)) {
+                        timeoutCount.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                super.force(channel, meta);
+            }
+        };
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                FiberFuture<Void> f1 = coordinator.submit(fiberGroup, channel1, false, executor);
+                FiberFuture<Void> f2 = coordinator.submit(fiberGroup, channel2, false, executor);
+                FiberFuture<Void> f3 = coordinator.submit(fiberGroup, channel3, false, executor);
+                return FiberFuture.allOf("force", f1, f2, f3).await(this::justReturn);
+            }
+        });
+        assertEquals(0, timeoutCount.get());
+        assertEquals(3, coordinator.getForceCount());
+        assertEquals(2, coordinator.getParallelForceCount());
+        assertEquals(1, coordinator.getBatchCount());
+    }
+
+    @Test
+    void testError() throws Exception {
+        channel2.close();
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                FiberFuture<Void> f1 = coordinator.submit(fiberGroup, channel1, false, executor);
+                FiberFuture<Void> f2 = coordinator.submit(fiberGroup, channel2, false, executor);
+                return f1.await(v -> f2.await(this::afterF2));
+            }
+
+            private FrameCallResult afterF2(Void v) {
+                fail();
+                return Fiber.frameReturn();
+            }
+
+            @Override
+            protected FrameCallResult handle(Throwable ex) {
+                assertFalse(ex instanceof AssertionError);
+                return Fiber.frameReturn();
+            }
+        });
+        coordinator.shutdown();
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return coordinator.submit(fiberGroup, channel1, false, executor).await(this::justReturn);
+            }
+
+            @Override
+            protected FrameCallResult handle(Throwable ex) {
+                assertInstanceOf(RaftException.class, ex);
+                return Fiber.frameReturn();
+            }
+        });
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.common.ByteArray;
+import com.github.dtprj.dongting.common.Pair;
+import com.github.dtprj.dongting.fiber.BaseFiberTest;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.raft.impl.InitFiberFrame;
+import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
+import com.github.dtprj.dongting.raft.impl.TailCache;
+import com.github.dtprj.dongting.raft.server.LogItem;
+import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
+import com.github.dtprj.dongting.raft.server.RaftServerConfig;
+import com.github.dtprj.dongting.raft.test.MockExecutors;
+import com.github.dtprj.dongting.raft.test.TestUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.dtprj.dongting.raft.store.LogFileQueueTest.createItem;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class SharedRaftLogTest extends BaseFiberTest {
+    private String dataDir;
+    private SharedLogStore store;
+    private Group g1;
+    private Group g2;
+
+    private static class Group {
+        RaftStatusImpl raftStatus;
+        RaftGroupConfigEx config;
+        RaftLog raftLog;
+        Pair<Integer, Long> initResult;
+    }
+
+    @BeforeEach
+    void setup() throws Exception {
+        dataDir = TestDir.testDir(SharedRaftLogTest.class.getSimpleName());
+        init();
+    }
+
+    private void init() throws Exception {
+        store = new SharedLogStore(dataDir, 1024, 1);
+        store.compactIntervalMillis = 1;
+        store.groupCheckIntervalMillis = 1;
+        g1 = initGroup(1);
+        g2 = initGroup(2);
+    }
+
+    private Group initGroup(int groupId) throws Exception {
+        Group g = new Group();
+        g.raftStatus = new RaftStatusImpl(dispatcher.getTs());
+        g.config = new RaftGroupConfigEx(groupId, "1", "1");
+        g.config.setFiberGroup(fiberGroup);
+        g.config.setBlockIoExecutor(MockExecutors.ioExecutor());
+        g.config.setTs(g.raftStatus.getTs());
+        g.config.setRaftStatus(g.raftStatus);
+        g.raftStatus.setTailCache(new TailCache(g.config, g.raftStatus));
+        g.raftLog = store.createRaftLog(g.config, null);
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                InitFiberFrame.initRaftStatus(g.raftStatus, fiberGroup, new RaftServerConfig());
+                return Fiber.call(g.raftLog.init(), this::resume);
+            }
+
+            private FrameCallResult resume(Pair<Integer, Long> p) {
+                g.initResult = p;
+                g.raftStatus.setLastLogTerm(p.getLeft());
+                g.raftStatus.setLastLogIndex(p.getRight());
+                g.raftStatus.setLastWriteLogIndex(p.getRight());
+                g.raftStatus.setLastForceLogIndex(p.getRight());
+                return Fiber.frameReturn();
+            }
+        });
+        return g;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                FiberFuture<Void> f1 = g1.raftLog.close();
+                FiberFuture<Void> f2 = g2.raftLog.close();
+                return FiberFuture.allOf("close", f1, f2).await(this::justReturn);
+            }
+        });
+        store.close();
+    }
+
+    private void restart() throws Exception {
+        tearDown();
+        init();
+    }
+
+    private void append(Group g, int term, long index, int... totalSizes) throws Exception {
+        ArrayList<LogItem> list = new ArrayList<>();
+        for (int size : totalSizes) {
+            list.add(createItem(g.config, term, term, index++, size, 10));
+        }
+        long lastIdx = list.get(list.size() - 1).getIndex();
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                g.raftStatus.setLastLogIndex(lastIdx);
+                g.raftStatus.setLastLogTerm(term);
+                g.raftLog.append(list);
+                return waitForceFinish(null);
+            }
+
+            private FrameCallResult waitForceFinish(Void v) {
+                if (g.raftStatus.getLastForceLogIndex() < lastIdx) {
+                    return g.raftStatus.getLogForceFinishCondition().await(1000, this::waitForceFinish);
+                } else {
+                    return Fiber.frameReturn();
+                }
+            }
+        });
+    }
+
+    private List<LogItem> load(Group g, long index, int limit) throws Exception {
+        ArrayList<LogItem> result = new ArrayList<>();
+        doInFiber(new FiberFrame<>() {
+            final RaftLog.LogIterator it = g.raftLog.openIterator(() -> false);
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                return Fiber.call(it.next(index, limit, 0), this::afterNext);
+            }
+
+            private FrameCallResult afterNext(List<LogItem> items) throws Exception {
+                result.addAll(items);
+                it.close();
+                return Fiber.frameReturn();
+            }
+        });
+        return result;
+    }
+
+    private void check(LogItem li, int term, long index, int totalSize) {
+        assertEquals(term, li.getTerm());
+        assertEquals(index, li.getIndex());
+        assertEquals(10, ((ByteArray) li.getHeader()).getData().length);
+        int bodySize = totalSize - LogHeader.computeTotalLen(0, 10, 0) - 4;
+        byte[] body = ((ByteArray) li.getBody()).getData();
+        assertEquals(bodySize, body.length);
+        for (int i = 0; i < bodySize; i++) {
+            assertEquals((byte) i, body[i]);
+        }
+    }
+
+    @Test
+    void testAppendAndRestore() throws Exception {
+        append(g1, 100, 1, 200, 300);
+        append(g2, 100, 1, 400);
+        append(g1, 100, 3, 500);
+        append(g2, 100, 2, 200, 200);
+
+        List<LogItem> list = load(g1, 1, 10);
+        assertEquals(3, list.size());
+        check(list.get(0), 100, 1, 200);
+        check(list.get(1), 100, 2, 300);
+        check(list.get(2), 100, 3, 500);
+
+        restart();
+        assertEquals(new Pair<>(100, 3L), g1.initResult);
+        assertEquals(new Pair<>(100, 3L), g2.initResult);
+        list = load(g2, 2, 10);
+        assertEquals(2, list.size());
+        check(list.get(0), 100, 2, 200);
+        check(list.get(1), 100, 3, 200);
+        assertTrue(store.getSegmentCount() > 1);
+    }
+
+    @Test
+    void testTruncateTail() throws Exception {
+        append(g1, 100, 1, 200, 200, 200, 200);
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                g1.raftStatus.setLastWriteLogIndex(2);
+                g1.raftStatus.setLastForceLogIndex(2);
+                return Fiber.call(g1.raftLog.truncateTail(3), this::justReturn);
+            }
+        });
+        append(g1, 101, 3, 300);
+        List<LogItem> list = load(g1, 2, 10);
+        assertEquals(2, list.size());
+        check(list.get(1), 101, 3, 300);
+
+        restart();
+        assertEquals(new Pair<>(101, 3L), g1.initResult);
+        assertEquals(new Pair<>(0, 0L), g2.initResult);
+        list = load(g1, 1, 10);
+        assertEquals(3, list.size());
+        check(list.get(0), 100, 1, 200);
+        check(list.get(2), 101, 3, 300);
+    }
+
+    @Test
+    void testFindMatchPos() throws Exception {
+        append(g1, 100, 1, 200, 200);
+        append(g1, 101, 3, 200, 200);
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return Fiber.call(g1.raftLog.tryFindMatchPos(101, 10, null), this::resume1);
+            }
+
+            private FrameCallResult resume1(Pair<Integer, Long> p) {
+                assertEquals(new Pair<>(101, 4L), p);
+                return Fiber.call(g1.raftLog.tryFindMatchPos(100, 4, null), this::resume2);
+            }
+
+            private FrameCallResult resume2(Pair<Integer, Long> p) {
+                assertEquals(new Pair<>(100, 2L), p);
+                return Fiber.call(g1.raftLog.tryFindMatchPos(99, 4, null), this::resume3);
+            }
+
+            private FrameCallResult resume3(Pair<Integer, Long> p) {
+                assertNull(p);
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
+    @Test
+    void testInstall() throws Exception {
+        append(g1, 100, 1, 200, 200);
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) throws Exception {
+                return Fiber.call(g1.raftLog.beginInstall(), this::resume);
+            }
+
+            private FrameCallResult resume(Void v) {
+                return Fiber.call(g1.raftLog.loadNextItemPos(19), this::resume2);
+            }
+
+            private FrameCallResult resume2(Long pos) throws Exception {
+                assertEquals(RaftLog.NO_POS, pos);
+                g1.raftStatus.setLastLogTerm(200);
+                return Fiber.call(g1.raftLog.finishInstall(20, pos), this::justReturn);
+            }
+        });
+        restart();
+        assertEquals(new Pair<>(200, 19L), g1.initResult);
+        append(g1, 200, 20, 200);
+        restart();
+        assertEquals(new Pair<>(200, 20L), g1.initResult);
+        check(load(g1, 20, 10).get(0), 200, 20, 200);
+    }
+
+    @Test
+    void testCompact() throws Exception {
+        // g2 is slow, its item is in the first segment
+        append(g2, 100, 1, 300);
+        long index = 1;
+        for (int i = 0; i < 20; i++) {
+            append(g1, 100, index++, 300);
+        }
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                g1.raftStatus.setLastApplied(20);
+                g1.raftLog.markTruncateByIndex(20, 0);
+                return Fiber.frameReturn();
+            }
+        });
+        // g1 keep the last item, g2 is rewritten
+        TestUtil.waitUtil(() -> store.getSegmentCount() <= 2);
+        assertTrue(store.getRewriteRequestCount() > 0);
+        assertThrows(Exception.class, () -> load(g1, 1, 10));
+
+        restart();
+        assertEquals(new Pair<>(100, 20L), g1.initResult);
+        assertEquals(new Pair<>(100, 1L), g2.initResult);
+        check(load(g2, 1, 10).get(0), 100, 1, 300);
+        check(load(g1, 20, 10).get(0), 100, 20, 300);
+    }
+
+    @Test
+    void testWalIndex() {
+        WalIndex idx = new WalIndex();
+        assertTrue(idx.isEmpty());
+        for (int i = 10; i < 50; i++) {
+            idx.put(i, i * 100, 100, 1, 0);
+        }
+        // rewritten records are replayed after the newer ones
+        for (int i = 5; i < 10; i++) {
+            idx.put(i, 10000 + i, 100, 1, 0);
+        }
+        assertEquals(5, idx.getFirstIndex());
+        assertEquals(49, idx.getLastIndex());
+        assertEquals(1000, idx.minPos());
+        idx.put(52, 5200, 100, 2, 0);
+        idx.removeGap();
+        assertEquals(52, idx.getFirstIndex());
+        assertEquals(0, idx.getPrevTerm());
+        idx.truncateTail(52);
+        assertTrue(idx.isEmpty());
+        assertEquals(Long.MAX_VALUE, idx.minPos());
+        idx.reset(100, 5);
+        idx.setAnchorPos(300);
+        assertEquals(300, idx.minPos());
+        assertEquals(5, idx.getPrevTerm());
+    }
+}